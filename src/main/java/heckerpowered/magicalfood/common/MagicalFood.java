@@ -22,13 +22,18 @@ import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.jetbrains.annotations.NotNull;
 
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
 import heckerpowered.magicalfood.common.world.item.MagicalFoodItem;
 import heckerpowered.magicalfood.common.world.item.enchantment.MagicalFoodEnchantment;
 import heckerpowered.magicalfood.common.world.level.block.MagicalFoodBlock;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFoodFarmFeature;
+import heckerpowered.magicalfood.common.world.level.block.entity.MagicalFoodBlockEntityType;
 import net.minecraft.FieldsAreNonnullByDefault;
 import net.minecraft.MethodsReturnNonnullByDefault;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 
 /**
@@ -57,6 +62,11 @@ public final class MagicalFood {
         MagicalFoodItem.DEFERRED_REGISTER.register(eventBus);
         MagicalFoodBlock.DEFERRED_REGISTER.register(eventBus);
         MagicalFoodEnchantment.DEFERRED_REGISTER.register(eventBus);
+        MagicalFoodFarmFeature.DEFERRED_REGISTER.register(eventBus);
+        MagicalFoodBlockEntityType.DEFERRED_REGISTER.register(eventBus);
+
+        // Register the server configuration, it is loaded when a server starts
+        ModLoadingContext.get().registerConfig(ModConfig.Type.SERVER, MagicalFoodConfig.SERVER_SPEC);
     }
 
     /**
@@ -0,0 +1,252 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.config;
+
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmStorage;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.common.ForgeConfigSpec;
+import net.minecraftforge.fml.config.ModConfig;
+
+/**
+ * {@code MagicalFood} mod's configurations, any options that server owners may
+ * want to tune should be defined in this class. The server configuration is
+ * stored per world under the {@code serverconfig} folder and is only available
+ * while a server is running.
+ *
+ * @author Heckerpowered
+ * @see ForgeConfigSpec
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFoodConfig {
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFoodConfig() {
+    }
+
+    /**
+     * The server configuration values, see {@link Server} for details.
+     */
+    public static final Server SERVER;
+
+    /**
+     * The specification of the server configuration, should be registered as
+     * {@link ModConfig.Type#SERVER} configuration.
+     */
+    public static final ForgeConfigSpec SERVER_SPEC;
+
+    static {
+        // Build the specification and the value holders at the same time
+        final var pair = new ForgeConfigSpec.Builder().configure(Server::new);
+        SERVER = pair.getLeft();
+        SERVER_SPEC = pair.getRight();
+    }
+
+    /**
+     * Represents the server side configuration values of {@code MagicalFood} mod.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    @MethodsReturnNonnullByDefault
+    @FieldsAreNonnullByDefault
+    public static final class Server {
+        /**
+         * The time in milliseconds that all magical farm processing may take in a
+         * single server tick, work beyond this budget is deferred to the next tick.
+         */
+        public final ForgeConfigSpec.DoubleValue farmTickBudget;
+
+        /**
+         * The count of threads that compute the work of farm features in parallel,
+         * {@code 0} to use all processors but one, {@code 1} to compute on the
+         * server thread.
+         */
+        public final ForgeConfigSpec.IntValue computeThreads;
+
+        /**
+         * The time in seconds after which the farm data of an unloaded chunk is
+         * evicted from memory to disk.
+         */
+        public final ForgeConfigSpec.IntValue residencyIdleSeconds;
+
+        /**
+         * The maximum count of magical farmland whose data is kept in memory, the
+         * data of unloaded chunks is evicted in least recently used order beyond it.
+         */
+        public final ForgeConfigSpec.IntValue residencyMaxEntries;
+
+        /**
+         * The backend that stores the feature datas of magical farmland.
+         */
+        public final ForgeConfigSpec.EnumValue<MagicalFarmStorage.Backend> storageBackend;
+
+        /**
+         * The names of the farm features that are mirrored into the block state of
+         * magical farmland, in the order of the hot feature slots.
+         */
+        public final ForgeConfigSpec.ConfigValue<List<? extends String>> hotFeatures;
+
+        /**
+         * The interval in ticks between two syncs of the farm data journal to the
+         * disk.
+         */
+        public final ForgeConfigSpec.IntValue journalSyncTicks;
+
+        /**
+         * The size in bytes of the farm data journal beyond which it is compacted
+         * into the farm data file.
+         */
+        public final ForgeConfigSpec.IntValue journalCompactBytes;
+
+        /**
+         * Whether the time spent on magical farm work is accumulated per chunk for
+         * the {@code /magicalfood heatmap} command.
+         */
+        public final ForgeConfigSpec.BooleanValue heatmap;
+
+        /**
+         * Whether magical farmland only sends its moisture to clients when it
+         * changes between hydrated and dry.
+         */
+        public final ForgeConfigSpec.BooleanValue quietMoisture;
+
+        /**
+         * How many times as fast crops on magical farmland with the growth
+         * accelerator feature grow.
+         */
+        public final ForgeConfigSpec.IntValue growthMultiplier;
+
+        /**
+         * The maximum count of magical farmland in a field fertilized at once by
+         * the area fertilizer feature.
+         */
+        public final ForgeConfigSpec.IntValue fertilizerMaxFarmland;
+
+        /**
+         * Constructs the server configuration values, this constructor should only
+         * be called by {@link ForgeConfigSpec.Builder#configure}.
+         *
+         * @param builder The builder used to define the configuration values.
+         */
+        private Server(@NotNull final ForgeConfigSpec.Builder builder) {
+            builder.comment("Magical farm scheduling").push("scheduler");
+
+            farmTickBudget = builder
+                    .comment("Time in milliseconds that all magical farm processing may take per server tick.",
+                            "Work beyond the budget is deferred to the following ticks in a round-robin order over chunks.")
+                    .defineInRange("farmTickBudget", 2.0D, 0.05D, 50.0D);
+
+            computeThreads = builder
+                    .comment("Threads that compute the work of farm features in parallel before it is applied.",
+                            "0 uses all processors but one, 1 computes on the server thread.",
+                            "Results are the same for any count of threads.")
+                    .defineInRange("computeThreads", 0, 0, 256);
+
+            builder.pop();
+
+            builder.comment("Magical farm data residency").push("residency");
+
+            residencyIdleSeconds = builder
+                    .comment("Seconds after which the farm data of an unloaded chunk is evicted from memory to disk.")
+                    .defineInRange("idleSeconds", 300, 0, Integer.MAX_VALUE);
+
+            residencyMaxEntries = builder
+                    .comment("Maximum count of magical farmland whose data is kept in memory per dimension.",
+                            "Data of unloaded chunks is evicted in least recently used order beyond this count,",
+                            "data of loaded chunks is always kept.")
+                    .defineInRange("maxEntries", 1_000_000, 0, Integer.MAX_VALUE);
+
+            builder.pop();
+
+            builder.comment("Magical farm data storage").push("storage");
+
+            storageBackend = builder
+                    .comment("Backend that stores the features of magical farmland, the residency options only apply",
+                            "to SAVED_DATA. Data is not migrated when the backend is changed, existing data of the",
+                            "previous backend is ignored. MAPPED keeps the features off the heap in a memory-mapped",
+                            "file, for worlds with millions of magical farmland.")
+                    .worldRestart()
+                    .defineEnum("backend", MagicalFarmStorage.Backend.SAVED_DATA);
+
+            journalSyncTicks = builder
+                    .comment("Ticks between two syncs of the farm data journal to the disk, changes made since the",
+                            "last sync are lost if the server crashes. Only applies to SAVED_DATA.")
+                    .defineInRange("journalSyncTicks", 20, 1, 72_000);
+
+            journalCompactBytes = builder
+                    .comment("Size in bytes of the farm data journal beyond which the farm data file is rewritten",
+                            "and the journal is discarded. Only applies to SAVED_DATA.")
+                    .defineInRange("journalCompactBytes", 16 * 1024 * 1024, 64 * 1024, Integer.MAX_VALUE);
+
+            hotFeatures = builder
+                    .comment("Names of the most frequently checked farm features, at most "
+                            + MagicalFarmBlock.HOT_FEATURES.length + ".",
+                            "These features are mirrored into the block state of magical farmland, so checking them",
+                            "needs no lookup in the storage. Other features are only kept in the storage.")
+                    .defineList("hotFeatures", List.of(), name -> name instanceof final String string
+                            && ResourceLocation.isValidResourceLocation(string));
+
+            builder.pop();
+
+            builder.comment("Magical farm profiling").push("profiling");
+
+            heatmap = builder
+                    .comment("Accumulate the time spent on magical farm work per chunk over the last minute, which is",
+                            "listed by the /magicalfood heatmap command. Costs nothing while disabled.")
+                    .define("heatmap", false);
+
+            builder.pop();
+
+            builder.comment("Magical farmland").push("farmland");
+
+            quietMoisture = builder
+                    .comment("Only send the moisture of magical farmland to clients when it becomes hydrated or dry.",
+                            "The steps in between are kept on the server, which grows crops the same as vanilla.")
+                    .define("quietMoisture", true);
+
+            builder.pop();
+
+            builder.comment("Magical farm features").push("features");
+
+            growthMultiplier = builder
+                    .comment("How many times as fast crops grow on magical farmland with the growth accelerator",
+                            "feature. The growth is computed in closed form, a higher multiplier costs no more.")
+                    .defineInRange("growthMultiplier", 4, 1, 64);
+
+            fertilizerMaxFarmland = builder
+                    .comment("The maximum count of connected magical farmland fertilized by a single bone meal use",
+                            "on farmland with the area fertilizer feature.")
+                    .defineInRange("fertilizerMaxFarmland", 1024, 1, 65_536);
+
+            builder.pop();
+        }
+    }
+}
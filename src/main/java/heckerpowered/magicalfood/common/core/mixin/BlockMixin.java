@@ -0,0 +1,85 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.core.mixin;
+
+import java.util.function.Function;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.block.state.MagicalFarmBlockState;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.StateDefinition;
+
+/**
+ * {@link Block}'s mixin class, this class will not be loaded if mixed with
+ * {@link Block} successfully. Do not reference this class manually. This class
+ * is mainly used to make the states of {@link MagicalFarmBlock} instances of
+ * {@link MagicalFarmBlockState}, the state definition of a block is created
+ * by the constructor of {@link Block} with a fixed factory.
+ *
+ * @author Heckerpowered
+ * @see Block
+ * @see MagicalFarmBlockState
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mixin(Block.class)
+public final class BlockMixin {
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private BlockMixin() {
+    }
+
+    /**
+     * This method will replace the call to {@link StateDefinition.Builder#create}
+     * in the constructor of {@link Block}. It creates the state definition with
+     * {@link MagicalFarmBlockState} as the state factory if the block is a
+     * {@link MagicalFarmBlock}, and with the original factory otherwise.
+     *
+     * @param builder      The builder of the state definition.
+     * @param defaultState The function that gets the default state of the block.
+     * @param factory      The original state factory.
+     * @return The state definition of the block.
+     */
+    @Redirect(method = "<init>", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/level/block/state/"
+            + "StateDefinition$Builder;create(Ljava/util/function/Function;Lnet/minecraft/world/level/block/state/"
+            + "StateDefinition$Factory;)Lnet/minecraft/world/level/block/state/StateDefinition;"))
+    private final StateDefinition<Block, BlockState> createStateDefinition(
+            @NotNull final StateDefinition.Builder<Block, BlockState> builder,
+            @NotNull final Function<Block, BlockState> defaultState,
+            @NotNull final StateDefinition.Factory<Block, BlockState> factory) {
+        // The mixin is merged into Block, so this is the block being constructed
+        if ((Object) this instanceof MagicalFarmBlock) {
+            return builder.create(defaultState, MagicalFarmBlockState::new);
+        }
+
+        return builder.create(defaultState, factory);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.core.mixin;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmPlants;
+import heckerpowered.magicalfood.common.world.level.block.state.MagicalFarmPlantState;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.world.level.block.state.BlockBehaviour;
+
+/**
+ * {@link BlockBehaviour.BlockStateBase}'s mixin class, this class will not be
+ * loaded if mixed with {@link BlockBehaviour.BlockStateBase} successfully. Do
+ * not reference this class manually. This class adds the cached result of
+ * {@link MagicalFarmPlants#isFarmlandPlant} and the cached maturity to every
+ * block state, so that the survival check of a plant on magical farmland and
+ * the comparator signal of the farmland are field reads.
+ *
+ * @author Heckerpowered
+ * @see MagicalFarmPlantState
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mixin(BlockBehaviour.BlockStateBase.class)
+public abstract class BlockStateBaseMixin implements MagicalFarmPlantState {
+    /**
+     * The cached farmland plant flag of the state, see
+     * {@link MagicalFarmPlantState}.
+     */
+    @Unique
+    private byte magicalFarmPlant;
+
+    /**
+     * The cached maturity of the state plus one, see
+     * {@link MagicalFarmPlantState}.
+     */
+    @Unique
+    private byte magicalFarmMaturity;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private BlockStateBaseMixin() {
+    }
+
+    @Override
+    public final byte getMagicalFarmPlant() {
+        return magicalFarmPlant;
+    }
+
+    @Override
+    public final void setMagicalFarmPlant(final byte flag) {
+        magicalFarmPlant = flag;
+    }
+
+    @Override
+    public final byte getMagicalFarmMaturity() {
+        return magicalFarmMaturity;
+    }
+
+    @Override
+    public final void setMagicalFarmMaturity(final byte maturity) {
+        magicalFarmMaturity = maturity;
+    }
+}
@@ -0,0 +1,60 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.core.mixin;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmPlants;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.BushBlock;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * {@link BushBlock}'s invoker mixin, exposes the protected soil check of plants
+ * to {@link MagicalFarmPlants}, which asks plants whether they may be placed
+ * on vanilla farmland.
+ *
+ * @author Heckerpowered
+ * @see BushBlock
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mixin(BushBlock.class)
+public interface BushBlockInvoker {
+    /**
+     * Invokes {@link BushBlock#mayPlaceOn}, whether the plant may be placed on
+     * the specified soil.
+     *
+     * @param soilState The state of the soil.
+     * @param level     The level where the soil is.
+     * @param location  The location of the soil.
+     * @return {@code true} if the plant may be placed on the soil, {@code false}
+     *         otherwise.
+     */
+    @Invoker("mayPlaceOn")
+    boolean invokeMayPlaceOn(@NotNull BlockState soilState, @NotNull BlockGetter level, @NotNull BlockPos location);
+}
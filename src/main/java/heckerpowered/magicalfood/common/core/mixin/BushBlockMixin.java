@@ -0,0 +1,95 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.core.mixin;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmPlants;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.LevelReader;
+import net.minecraft.world.level.block.BushBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraftforge.common.IPlantable;
+
+/**
+ * {@link BushBlock}'s mixin class, this class will not be loaded if mixed with
+ * {@link BushBlock} successfully. Do not reference this class manually. This
+ * class is mainly used to answer the survival check of a plant on
+ * {@link MagicalFarmBlock} from the state of the plant, which
+ * {@link BushBlock#canSurvive} already has, instead of looking the plant up
+ * again through {@link IPlantable#getPlant}.
+ *
+ * @author Heckerpowered
+ * @see BushBlock
+ * @see MagicalFarmPlants
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mixin(BushBlock.class)
+public abstract class BushBlockMixin {
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private BushBlockMixin() {
+    }
+
+    /**
+     * This method redirects the soil check of {@link BushBlock#canSurvive}. A
+     * plant on magical farmland survives if the flag cached in its state says it
+     * grows on magical farmland, see {@link MagicalFarmPlants#isFarmlandPlant},
+     * any other soil and plant are checked as usual.
+     *
+     * @param soilState    The state of the soil.
+     * @param level        The level where the soil is.
+     * @param soilLocation The location of the soil.
+     * @param facing       The side of the soil the plant grows on.
+     * @param plantable    The plant.
+     * @param plantState   The state of the plant, the parameter of
+     *                     {@link BushBlock#canSurvive}.
+     * @param levelReader  The level where the plant is.
+     * @param location     The location of the plant.
+     * @return {@code true} if the soil sustains the plant, {@code false}
+     *         otherwise.
+     */
+    @Redirect(method = "canSurvive", at = @At(value = "INVOKE", target = "Lnet/minecraft/world/level/block/state/"
+            + "BlockState;canSustainPlant(Lnet/minecraft/world/level/BlockGetter;Lnet/minecraft/core/BlockPos;"
+            + "Lnet/minecraft/core/Direction;Lnet/minecraftforge/common/IPlantable;)Z", remap = false))
+    private boolean canSustainPlant(@NotNull final BlockState soilState, @NotNull final BlockGetter level,
+            @NotNull final BlockPos soilLocation, @NotNull final Direction facing,
+            @NotNull final IPlantable plantable, @NotNull final BlockState plantState,
+            @NotNull final LevelReader levelReader, @NotNull final BlockPos location) {
+        if (facing == Direction.UP && soilState.getBlock() instanceof MagicalFarmBlock
+                && MagicalFarmPlants.isFarmlandPlant(plantState, level, soilLocation)) {
+            return true;
+        }
+
+        return soilState.canSustainPlant(level, soilLocation, facing, plantable);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.core.mixin;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmAreaFertilizer;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmGrowthAccelerator;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.CropBlock;
+
+/**
+ * {@link CropBlock}'s invoker mixin, exposes the protected growth speed of
+ * crops to {@link MagicalFarmGrowthAccelerator}, and the protected bone meal
+ * growth of crops to {@link MagicalFarmAreaFertilizer}.
+ *
+ * @author Heckerpowered
+ * @see CropBlock
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mixin(CropBlock.class)
+public interface CropBlockInvoker {
+    /**
+     * Invokes {@link CropBlock#getGrowthSpeed}, the growth speed of a crop
+     * depends on the farmland and the crops around it.
+     *
+     * @param block    The crop block.
+     * @param level    The level where the crop is.
+     * @param location The location of the crop.
+     * @return The growth speed of the crop.
+     */
+    @Invoker("getGrowthSpeed")
+    static float invokeGetGrowthSpeed(@NotNull final Block block, @NotNull final BlockGetter level,
+            @NotNull final BlockPos location) {
+        throw new AssertionError();
+    }
+
+    /**
+     * Invokes {@link CropBlock#getBonemealAgeIncrease}, the count of stages a crop
+     * grows by a bone meal.
+     *
+     * @param level The level where the crop is.
+     * @return The count of stages.
+     */
+    @Invoker("getBonemealAgeIncrease")
+    int invokeGetBonemealAgeIncrease(@NotNull Level level);
+}
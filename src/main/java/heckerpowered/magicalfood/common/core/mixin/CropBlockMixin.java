@@ -22,15 +22,19 @@ import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.jetbrains.annotations.NotNull;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
-import heckerpowered.magicalfood.common.world.level.block.MagicalFoodBlock;
+import heckerpowered.magicalfood.common.world.ticks.MagicalFarmHeatmap;
 import net.minecraft.FieldsAreNonnullByDefault;
 import net.minecraft.MethodsReturnNonnullByDefault;
 import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.RandomSource;
 import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.block.CropBlock;
 import net.minecraft.world.level.block.state.BlockState;
@@ -39,7 +43,7 @@ import net.minecraft.world.level.block.state.BlockState;
  * {@link CropBlock}'s mixin class, this class will not be loaded if mixed with
  * {@link CropBlock} successfully. Do not reference this class manually. This
  * class is mainly used to enable {@link CropBlock} to be planted on
- * {@link MagicalFarmBlock}
+ * {@link MagicalFarmBlock}, and to profile the growth of crops planted on it.
  *
  * @author Heckerpowered
  * @see CropBlock
@@ -56,11 +60,21 @@ public final class CropBlockMixin {
     private CropBlockMixin() {
     }
 
+    /**
+     * The start time of the random tick in progress, see
+     * {@link MagicalFarmHeatmap#start()}. Random ticks run on the server thread
+     * one at a time.
+     */
+    @Unique
+    private static long growthStart;
+
     /**
      * This method will be injected into the {@link CropBlock#mayPlaceOn} method and
      * execute before the injected method returns. This method modifies the return
      * value of the injected method {@link CropBlock#mayPlaceOn} so that the
-     * {@link CropBlock} can be placed on {@link MagicalFarmBlock}.
+     * {@link CropBlock} can be placed on {@link MagicalFarmBlock}. Plants already
+     * in place check their soil through {@link BushBlockMixin} instead, this only
+     * covers the checks made before a crop is set.
      *
      * @param blockState The state of a block in the world, including its properties
      *                   and values.
@@ -77,6 +91,44 @@ public final class CropBlockMixin {
     private final void mayPlaceOn(@NotNull final BlockState blockState, @NotNull final BlockGetter level,
             @NotNull final BlockPos location, @NotNull final CallbackInfoReturnable<Boolean> info) {
         // Modify the return value, allow CropBlock to be placed on MagicalFarmBlock
-        info.setReturnValue(info.getReturnValueZ() || blockState.is(MagicalFoodBlock.MAGICAL_FARM_BLOCK.get()));
+        info.setReturnValue(info.getReturnValueZ() || blockState.getBlock() instanceof MagicalFarmBlock);
+    }
+
+    /**
+     * This method will be injected into the {@link CropBlock#randomTick} method and
+     * execute before the injected method runs, it takes the start time of the
+     * growth for {@link MagicalFarmHeatmap}.
+     *
+     * @param blockState The state of the crop.
+     * @param level      The level where the crop is.
+     * @param location   The location of the crop.
+     * @param random     The random source of the level.
+     * @param info       A callback info.
+     */
+    @Inject(method = "randomTick", at = @At("HEAD"))
+    private final void onRandomTickStart(@NotNull final BlockState blockState, @NotNull final ServerLevel level,
+            @NotNull final BlockPos location, @NotNull final RandomSource random, @NotNull final CallbackInfo info) {
+        growthStart = MagicalFarmHeatmap.start();
+    }
+
+    /**
+     * This method will be injected into the {@link CropBlock#randomTick} method and
+     * execute before the injected method returns, it records the time of the
+     * growth for {@link MagicalFarmHeatmap} if the crop is planted on
+     * {@link MagicalFarmBlock}.
+     *
+     * @param blockState The state of the crop.
+     * @param level      The level where the crop is.
+     * @param location   The location of the crop.
+     * @param random     The random source of the level.
+     * @param info       A callback info.
+     */
+    @Inject(method = "randomTick", at = @At("RETURN"))
+    private final void onRandomTickEnd(@NotNull final BlockState blockState, @NotNull final ServerLevel level,
+            @NotNull final BlockPos location, @NotNull final RandomSource random, @NotNull final CallbackInfo info) {
+        // Only crops on magical farmland count towards the farm
+        if (growthStart != 0L && level.getBlockState(location.below()).getBlock() instanceof MagicalFarmBlock) {
+            MagicalFarmHeatmap.record(level, location, MagicalFarmHeatmap.Category.GROWTH, growthStart);
+        }
     }
 }
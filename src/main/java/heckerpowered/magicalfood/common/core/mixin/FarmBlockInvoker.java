@@ -0,0 +1,73 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.core.mixin;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Invoker;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.LevelReader;
+import net.minecraft.world.level.block.FarmBlock;
+
+/**
+ * {@link FarmBlock}'s invoker mixin, exposes the private hydration checks of
+ * farmland to {@link MagicalFarmBlock}, which updates its moisture without
+ * the block updates the vanilla farm block sends for every step.
+ *
+ * @author Heckerpowered
+ * @see FarmBlock
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mixin(FarmBlock.class)
+public interface FarmBlockInvoker {
+    /**
+     * Invokes {@link FarmBlock#isNearWater}, farmland is hydrated by water
+     * within four blocks horizontally.
+     *
+     * @param level    The level where the farmland is.
+     * @param location The location of the farmland.
+     * @return {@code true} if there is water nearby, {@code false} otherwise.
+     */
+    @Invoker("isNearWater")
+    static boolean invokeIsNearWater(@NotNull final LevelReader level, @NotNull final BlockPos location) {
+        throw new AssertionError();
+    }
+
+    /**
+     * Invokes {@link FarmBlock#isUnderCrops}, dry farmland under a crop does not
+     * turn to dirt.
+     *
+     * @param level    The level where the farmland is.
+     * @param location The location of the farmland.
+     * @return {@code true} if there is a crop above, {@code false} otherwise.
+     */
+    @Invoker("isUnderCrops")
+    static boolean invokeIsUnderCrops(@NotNull final BlockGetter level, @NotNull final BlockPos location) {
+        throw new AssertionError();
+    }
+}
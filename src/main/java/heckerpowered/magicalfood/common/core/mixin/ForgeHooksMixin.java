@@ -26,6 +26,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
+import heckerpowered.magicalfood.common.profiling.MagicalFarmEvents;
 import heckerpowered.magicalfood.common.world.item.enchantment.MagicalFoodEnchantment;
 import heckerpowered.magicalfood.common.world.item.enchantment.MagicalHoeEnchantment;
 import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
@@ -97,6 +98,10 @@ public final class ForgeHooksMixin {
             return;
         }
 
+        // Record the conversion for flight recordings
+        final var event = new MagicalFarmEvents.HoeConversion();
+        event.begin();
+
         // Set the block to magical farmland with 1,2 and 8 flags (same as vanilla),
         // which flags will cause block update, send changes to client and force any
         // re-renders to run on the main thread instead
@@ -105,5 +110,14 @@ public final class ForgeHooksMixin {
 
         // Raise block change game event
         level.gameEvent(GameEvent.BLOCK_CHANGE, location, GameEvent.Context.of(context.getPlayer(), blockState));
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.dimension = level.dimension().location().toString();
+            event.x = location.getX();
+            event.y = location.getY();
+            event.z = location.getZ();
+            event.commit();
+        }
     }
 }
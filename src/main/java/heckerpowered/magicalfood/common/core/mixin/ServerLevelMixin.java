@@ -0,0 +1,77 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.core.mixin;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * {@link ServerLevel}'s mixin class, this class will not be loaded if mixed
+ * with {@link ServerLevel} successfully. Do not reference this class manually.
+ * This class is mainly used to inject {@link #onBlockStateChange} method into
+ * {@link ServerLevel#onBlockStateChange}, which is called for every changed
+ * block with both the old and the new state.
+ *
+ * @author Heckerpowered
+ * @see MagicalFarmBlock#onFluidRemoved
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mixin(ServerLevel.class)
+public abstract class ServerLevelMixin {
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private ServerLevelMixin() {
+    }
+
+    /**
+     * This method will be injected into the
+     * {@link ServerLevel#onBlockStateChange} method and execute before it. Idle
+     * magical farmland near a removed fluid is woken up to look for water again.
+     * Only the fluid of the old state is compared, so the check is cheap for the
+     * blocks without fluids.
+     *
+     * @param location      The location of the changed block.
+     * @param oldBlockState The old state of the block.
+     * @param newBlockState The new state of the block.
+     * @param info          The callback info.
+     */
+    @Inject(method = "onBlockStateChange", at = @At("HEAD"))
+    private void onBlockStateChange(@NotNull final BlockPos location, @NotNull final BlockState oldBlockState,
+            @NotNull final BlockState newBlockState, @NotNull final CallbackInfo info) {
+        final var oldFluidState = oldBlockState.getFluidState();
+        if (!oldFluidState.isEmpty() && !oldFluidState.getType().isSame(newBlockState.getFluidState().getType())) {
+            MagicalFarmBlock.onFluidRemoved((ServerLevel) (Object) this, location);
+        }
+    }
+}
@@ -50,4 +50,288 @@ public final class MagicalFoodLang {
      * modify it
      */
     public static final MutableComponent CREATIVE_MODE_TAB_TITLE = Component.translatable("itemGroup.magicalfood");
+
+    /**
+     * Create the status message of the farm tick scheduler, which is the output of
+     * {@code /magicalfood scheduler} command.
+     *
+     * @param queueDepth     The count of tasks that are currently pending.
+     * @param pendingChunks  The count of chunks that currently have pending work.
+     * @param lastProcessed  The count of tasks processed in the last tick.
+     * @param lastDeferred   The count of tasks deferred in the last tick.
+     * @param lastMillis     The time in milliseconds spent in the last tick.
+     * @param totalProcessed The count of tasks processed since the server started.
+     * @param totalDeferred  The sum of tasks deferred since the server started.
+     * @param totalCoalesced The count of tasks merged into pending tasks.
+     * @return The status message
+     */
+    public static final MutableComponent schedulerStatus(final int queueDepth, final int pendingChunks,
+            final int lastProcessed, final int lastDeferred, final double lastMillis, final long totalProcessed,
+            final long totalDeferred, final long totalCoalesced) {
+        return Component.translatable("commands.magicalfood.scheduler", queueDepth, pendingChunks, lastProcessed,
+                lastDeferred, String.format("%.3f", lastMillis), totalProcessed, totalDeferred, totalCoalesced);
+    }
+
+    /**
+     * Create the status message of the neighbor access, which is the second line
+     * of the output of {@code /magicalfood scheduler} command.
+     *
+     * @param unknownReads The count of reads skipped because their chunk was not
+     *                     loaded.
+     * @param chunkLoads   The count of chunks loaded by farm work.
+     * @return The status message
+     */
+    public static final MutableComponent neighborAccessStatus(final long unknownReads, final long chunkLoads) {
+        return Component.translatable("commands.magicalfood.scheduler.chunks", unknownReads, chunkLoads);
+    }
+
+    /**
+     * Create the status of a cluster of magical farmland, which is the output of
+     * {@code /magicalfood cluster} command.
+     *
+     * @param location The location the cluster was looked up at.
+     * @param farmland The count of magical farmland in the cluster.
+     * @param grown    The count of magical farmland with a fully grown crop.
+     * @param features The features enabled in the cluster.
+     * @return The status message
+     */
+    public static final MutableComponent clusterStatus(final String location, final int farmland, final int grown,
+            final String features) {
+        return Component.translatable("commands.magicalfood.cluster", location, farmland, grown, features);
+    }
+
+    /**
+     * Create the message sent if there is no magical farmland at the location a
+     * cluster is looked up at.
+     *
+     * @param location The location the cluster was looked up at.
+     * @return The message
+     */
+    public static final MutableComponent clusterNone(final String location) {
+        return Component.translatable("commands.magicalfood.cluster.none", location);
+    }
+
+    /**
+     * Create the message sent if the heatmap is requested while collection is
+     * disabled.
+     *
+     * @return The message
+     */
+    public static final MutableComponent heatmapDisabled() {
+        return Component.translatable("commands.magicalfood.heatmap.disabled");
+    }
+
+    /**
+     * Create the message sent if no magical farm work was recorded in the window
+     * of the heatmap.
+     *
+     * @param windowSeconds The length of the window in seconds.
+     * @return The message
+     */
+    public static final MutableComponent heatmapEmpty(final int windowSeconds) {
+        return Component.translatable("commands.magicalfood.heatmap.empty", windowSeconds);
+    }
+
+    /**
+     * Create the first line of the heatmap, which is the output of
+     * {@code /magicalfood heatmap} command.
+     *
+     * @param windowSeconds The length of the window in seconds.
+     * @return The message
+     */
+    public static final MutableComponent heatmapHeader(final int windowSeconds) {
+        return Component.translatable("commands.magicalfood.heatmap.header", windowSeconds);
+    }
+
+    /**
+     * Create the line of a single chunk of the heatmap.
+     *
+     * @param rank          The rank of the chunk, starting from 1.
+     * @param dimension     The dimension of the chunk.
+     * @param chunkX        The X coordinate of the chunk.
+     * @param chunkZ        The Z coordinate of the chunk.
+     * @param totalMillis   The time of all work in milliseconds.
+     * @param featureMillis The time of feature work in milliseconds.
+     * @param tickMillis    The time of random ticks of magical farmland in
+     *                      milliseconds.
+     * @param growthMillis  The time of random ticks of crops in milliseconds.
+     * @param farmland      The count of magical farmland in the chunk.
+     * @param features      The features enabled in the chunk.
+     * @return The message
+     */
+    public static final MutableComponent heatmapEntry(final int rank, final String dimension, final int chunkX,
+            final int chunkZ, final double totalMillis, final double featureMillis, final double tickMillis,
+            final double growthMillis, final int farmland, final String features) {
+        return Component.translatable("commands.magicalfood.heatmap.entry", rank, dimension, chunkX, chunkZ,
+                String.format("%.3f", totalMillis), String.format("%.3f", featureMillis),
+                String.format("%.3f", tickMillis), String.format("%.3f", growthMillis), farmland, features);
+    }
+
+    /**
+     * Create the message sent once the snapshots of a backup are taken, which is
+     * the first output of {@code /magicalfood backup} command.
+     *
+     * @param snapshotMillis The time in milliseconds spent taking the snapshots.
+     * @return The message
+     */
+    public static final MutableComponent backupStarted(final double snapshotMillis) {
+        return Component.translatable("commands.magicalfood.backup.started", String.format("%.3f", snapshotMillis));
+    }
+
+    /**
+     * Create the message sent once a backup is written.
+     *
+     * @param folder The folder of the backup.
+     * @param millis The time in milliseconds spent exporting the backup.
+     * @return The message
+     */
+    public static final MutableComponent backupSucceeded(final String folder, final long millis) {
+        return Component.translatable("commands.magicalfood.backup.success", folder, millis);
+    }
+
+    /**
+     * Create the message sent if a backup failed.
+     *
+     * @param reason The reason of the failure.
+     * @return The message
+     */
+    public static final MutableComponent backupFailed(final String reason) {
+        return Component.translatable("commands.magicalfood.backup.failed", reason);
+    }
+
+    /**
+     * Create the message sent if a backup is requested while a storage backend
+     * other than the saved data is selected, whose data is saved with the chunks.
+     *
+     * @param backend The name of the selected backend.
+     * @return The message
+     */
+    public static final MutableComponent backupUnsupported(final String backend) {
+        return Component.translatable("commands.magicalfood.backup.unsupported", backend);
+    }
+
+    /**
+     * Create the message sent once a storage benchmark is started.
+     *
+     * @param count The count of magical farmland.
+     * @return The message
+     */
+    public static final MutableComponent storageBenchmarkStarted(final int count) {
+        return Component.translatable("commands.magicalfood.benchmark.started", count);
+    }
+
+    /**
+     * Create the message that reports the result of a storage benchmark, which is
+     * the output of {@code /magicalfood benchmark storage} command.
+     *
+     * @param backend       The name of the measured backend.
+     * @param count         The count of magical farmland.
+     * @param lookupNanos   The average time of a lookup in nanoseconds.
+     * @param bytesPerEntry The estimated memory per magical farmland in bytes.
+     * @param saveMillis    The time of saving all magical farmland in milliseconds.
+     * @return The message
+     */
+    public static final MutableComponent storageBenchmark(final String backend, final int count,
+            final double lookupNanos, final double bytesPerEntry, final double saveMillis) {
+        return Component.translatable("commands.magicalfood.benchmark.storage", backend, count,
+                String.format("%.1f", lookupNanos), String.format("%.1f", bytesPerEntry),
+                String.format("%.3f", saveMillis));
+    }
+
+    /**
+     * Create the message sent if a storage benchmark failed.
+     *
+     * @param reason The reason of the failure.
+     * @return The message
+     */
+    public static final MutableComponent storageBenchmarkFailed(final String reason) {
+        return Component.translatable("commands.magicalfood.benchmark.failed", reason);
+    }
+
+    /**
+     * Create the message that reports the result of a mutation benchmark, which
+     * is the output of {@code /magicalfood benchmark mutation} command.
+     *
+     * @param count         The count of magical farmland.
+     * @param setBlockNanos The average time of changing a block block by block in
+     *                      nanoseconds.
+     * @param bulkNanos     The average time of changing a block with a bulk
+     *                      mutation in nanoseconds.
+     * @return The message
+     */
+    public static final MutableComponent mutationBenchmark(final int count, final double setBlockNanos,
+            final double bulkNanos) {
+        return Component.translatable("commands.magicalfood.benchmark.mutation", count,
+                String.format("%.1f", setBlockNanos), String.format("%.1f", bulkNanos));
+    }
+
+    /**
+     * Create the message sent if there is no magical farmland to benchmark
+     * mutations on.
+     *
+     * @param radius The radius in chunks that was searched.
+     * @return The message
+     */
+    public static final MutableComponent mutationBenchmarkEmpty(final int radius) {
+        return Component.translatable("commands.magicalfood.benchmark.mutation.empty", radius);
+    }
+
+    /**
+     * Create the message sent once a reindex of all chunks is started.
+     *
+     * @param dimension The dimension that is reindexed.
+     * @return The message
+     */
+    public static final MutableComponent reindexStarted(final String dimension) {
+        return Component.translatable("commands.magicalfood.reindex.started", dimension);
+    }
+
+    /**
+     * Create the message that reports the result of a reindex, which is the output
+     * of {@code /magicalfood reindex} command.
+     *
+     * @param chunks          The count of scanned chunks.
+     * @param scannedSections The count of sections whose blocks were scanned.
+     * @param skippedSections The count of sections skipped by their palette.
+     * @param added           The count of magical farmland that was added.
+     * @param removed         The count of feature datas that were dropped.
+     * @return The message
+     */
+    public static final MutableComponent reindexSucceeded(final int chunks, final int scannedSections,
+            final int skippedSections, final int added, final int removed) {
+        return Component.translatable("commands.magicalfood.reindex.success", chunks, scannedSections,
+                skippedSections, added, removed);
+    }
+
+    /**
+     * Create the message that reports the chunks skipped by a reindex because they
+     * were saved by an older version.
+     *
+     * @param chunks The count of skipped chunks.
+     * @return The message
+     */
+    public static final MutableComponent reindexOutdated(final int chunks) {
+        return Component.translatable("commands.magicalfood.reindex.outdated", chunks);
+    }
+
+    /**
+     * Create the message sent if a reindex failed.
+     *
+     * @param reason The reason of the failure.
+     * @return The message
+     */
+    public static final MutableComponent reindexFailed(final String reason) {
+        return Component.translatable("commands.magicalfood.reindex.failed", reason);
+    }
+
+    /**
+     * Create the message sent if a reindex of all chunks is requested while a
+     * storage backend other than the saved data is selected.
+     *
+     * @param backend The name of the selected backend.
+     * @return The message
+     */
+    public static final MutableComponent reindexUnsupported(final String backend) {
+        return Component.translatable("commands.magicalfood.reindex.unsupported", backend);
+    }
 }
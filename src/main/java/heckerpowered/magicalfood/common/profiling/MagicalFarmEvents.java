@@ -0,0 +1,283 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.profiling;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+
+/**
+ * The Java Flight Recorder events of the magical farm, so that recordings show
+ * when and why the mod costs time instead of anonymous Minecraft frames. The
+ * events are committed as usual: when no recording is running, or an event
+ * ends within its threshold, {@code commit} does nothing. Fields that are
+ * costly to compute are only filled in once {@code shouldCommit} returns
+ * {@code true}.
+ * <p>
+ * The thresholds of frequent events are {@code 1 ms}, so that a continuous
+ * recording only keeps the expensive ones; they can be lowered in the recording
+ * settings like any other event.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmEvents {
+    /**
+     * The top level category of all events.
+     */
+    public static final String CATEGORY = "Magical Food";
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmEvents() {
+    }
+
+    /**
+     * A save of the magical farm data of a dimension, the serialization and write
+     * of the snapshot on the save executor.
+     *
+     * @author Heckerpowered
+     */
+    @Name("magicalfood.FarmSave")
+    @Label("Magical Farm Save")
+    @Category({ CATEGORY, "Storage" })
+    @Description("The magical farm data of a dimension is written to disk")
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class Save extends Event {
+        /**
+         * The dimension whose data is saved.
+         */
+        @Label("Dimension")
+        public String dimension;
+
+        /**
+         * The count of chunks whose data is written.
+         */
+        @Label("Resident Chunks")
+        public int residentChunks;
+
+        /**
+         * The count of chunks whose data is evicted, only their positions are
+         * written.
+         */
+        @Label("Spilled Chunks")
+        public int spilledChunks;
+
+        /**
+         * The count of magical farmland whose data is written.
+         */
+        @Label("Entries")
+        public int entries;
+
+        /**
+         * The size of the written file.
+         */
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    /**
+     * A load of the magical farm data of a dimension, including the replay of its
+     * journal.
+     *
+     * @author Heckerpowered
+     */
+    @Name("magicalfood.FarmLoad")
+    @Label("Magical Farm Load")
+    @Category({ CATEGORY, "Storage" })
+    @Description("The magical farm data of a dimension is read from disk")
+    @StackTrace(false)
+    @Threshold("0 ms")
+    public static final class Load extends Event {
+        /**
+         * The dimension whose data is loaded.
+         */
+        @Label("Dimension")
+        public String dimension;
+
+        /**
+         * The count of chunks whose data is resident after the load.
+         */
+        @Label("Resident Chunks")
+        public int residentChunks;
+
+        /**
+         * The count of chunks whose data is evicted after the load.
+         */
+        @Label("Spilled Chunks")
+        public int spilledChunks;
+
+        /**
+         * The count of magical farmland whose data is resident after the load.
+         */
+        @Label("Entries")
+        public int entries;
+
+        /**
+         * The size of the read file, {@code 0} if there is none.
+         */
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    /**
+     * The farm work of a server tick, a drain of the farm tick scheduler.
+     *
+     * @author Heckerpowered
+     */
+    @Name("magicalfood.FarmTick")
+    @Label("Magical Farm Tick")
+    @Category({ CATEGORY, "Ticking" })
+    @Description("The farm tick scheduler drains its pending work")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static final class Tick extends Event {
+        /**
+         * The count of tasks processed.
+         */
+        @Label("Processed")
+        public int processed;
+
+        /**
+         * The count of tasks deferred to the next tick.
+         */
+        @Label("Deferred")
+        public int deferred;
+
+        /**
+         * The count of chunks with pending work after the drain.
+         */
+        @Label("Pending Chunks")
+        public int pendingChunks;
+    }
+
+    /**
+     * The farm work of a single chunk, a task of the farm tick scheduler.
+     *
+     * @author Heckerpowered
+     */
+    @Name("magicalfood.FarmChunk")
+    @Label("Magical Farm Chunk")
+    @Category({ CATEGORY, "Ticking" })
+    @Description("A farm task of a chunk runs")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static final class Chunk extends Event {
+        /**
+         * The dimension of the chunk.
+         */
+        @Label("Dimension")
+        public String dimension;
+
+        /**
+         * The x coordinate of the chunk.
+         */
+        @Label("Chunk X")
+        public int chunkX;
+
+        /**
+         * The z coordinate of the chunk.
+         */
+        @Label("Chunk Z")
+        public int chunkZ;
+    }
+
+    /**
+     * A batch of feature work, computed and applied by the compute phase.
+     *
+     * @author Heckerpowered
+     */
+    @Name("magicalfood.FeatureBatch")
+    @Label("Magical Farm Feature Batch")
+    @Category({ CATEGORY, "Ticking" })
+    @Description("A batch of farm feature work is computed and applied")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    public static final class FeatureBatch extends Event {
+        /**
+         * The count of computations of the batch.
+         */
+        @Label("Computations")
+        public int computations;
+
+        /**
+         * The count of changes applied.
+         */
+        @Label("Changes")
+        public int changes;
+
+        /**
+         * The count of threads the batch was computed on.
+         */
+        @Label("Threads")
+        public int threads;
+    }
+
+    /**
+     * A conversion of farmland into magical farmland by a hoe with the magical hoe
+     * enchantment.
+     *
+     * @author Heckerpowered
+     */
+    @Name("magicalfood.HoeConversion")
+    @Label("Magical Hoe Conversion")
+    @Category({ CATEGORY, "Blocks" })
+    @Description("Farmland is converted into magical farmland")
+    @Threshold("0 ms")
+    public static final class HoeConversion extends Event {
+        /**
+         * The dimension of the farmland.
+         */
+        @Label("Dimension")
+        public String dimension;
+
+        /**
+         * The x coordinate of the farmland.
+         */
+        @Label("X")
+        public int x;
+
+        /**
+         * The y coordinate of the farmland.
+         */
+        @Label("Y")
+        public int y;
+
+        /**
+         * The z coordinate of the farmland.
+         */
+        @Label("Z")
+        public int z;
+    }
+}
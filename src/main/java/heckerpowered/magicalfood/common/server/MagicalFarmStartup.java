@@ -0,0 +1,106 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.server;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import com.mojang.logging.LogUtils;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmPlants;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFoodFarmFeature;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmBlockSavedData;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmStorage;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.Util;
+import net.minecraftforge.event.server.ServerStartingEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.registries.IdMappingEvent;
+
+/**
+ * Moves the one-time initialization of the magical farm out of gameplay. By
+ * default the farm data of a level is loaded when its first farmland is
+ * touched, which is a visible hitch in the middle of a tick on big worlds.
+ * Instead, when the server starts, the lookup tables of the features and the
+ * plants, see {@link MagicalFarmPlants}, are built and the farm data of all
+ * levels is loaded in parallel, see
+ * {@link MagicalFarmBlockSavedData#preload}. The time of each phase is logged.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmStartup {
+    /**
+     * The logger of the startup.
+     */
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmStartup() {
+    }
+
+    /**
+     * This function is called when the server is starting, after the levels are
+     * created and their spawn chunks are loaded.
+     *
+     * @param event The server starting event.
+     */
+    @SubscribeEvent
+    public static final void onServerStarting(@NotNull final ServerStartingEvent event) {
+        final var start = Util.getNanos();
+
+        // The registry is resolved when it is created, building the tables is cheap
+        // but would otherwise happen while the first farm data is decoded
+        final var features = MagicalFoodFarmFeature.REGISTRY.get().getValues().size();
+        MagicalFarmBlock.FeatureData.buildLookupTable();
+        final var plants = MagicalFarmPlants.precompute();
+        final var tablesNanos = Util.getNanos() - start;
+
+        var levels = 0;
+        if (MagicalFarmStorage.getBackend() == MagicalFarmStorage.Backend.SAVED_DATA) {
+            levels = MagicalFarmBlockSavedData.preload(event.getServer().getAllLevels(), Util.backgroundExecutor());
+        }
+
+        final var totalNanos = Util.getNanos() - start;
+        LOGGER.info("Prepared the magical farm in {} ms: lookup tables {} ms ({} features, {} plant states), "
+                + "farm data {} ms ({} levels)", totalNanos / 1_000_000L, tablesNanos / 1_000_000L, features, plants,
+                (totalNanos - tablesNanos) / 1_000_000L, levels);
+    }
+
+    /**
+     * This function is called when the IDs of the registries are remapped, which
+     * changes the IDs of the farm features.
+     *
+     * @param event The ID mapping event.
+     */
+    @SubscribeEvent
+    public static final void onIdMapping(@NotNull final IdMappingEvent event) {
+        MagicalFarmBlock.FeatureData.buildLookupTable();
+    }
+}
@@ -0,0 +1,415 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.server.commands;
+
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.logging.LogUtils;
+
+import heckerpowered.magicalfood.common.MagicalFood;
+import heckerpowered.magicalfood.common.lang.MagicalFoodLang;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmBulkMutationBenchmark;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmClusters;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmNeighborAccess;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFoodFarmFeature;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmDataBackup;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmReindex;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmStorage;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmStorageBenchmark;
+import heckerpowered.magicalfood.common.world.ticks.MagicalFarmHeatmap;
+import heckerpowered.magicalfood.common.world.ticks.MagicalFarmTickScheduler;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.Util;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.coordinates.BlockPosArgument;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * The {@code /magicalfood} command, any administrative commands derived from
+ * {@code MagicalFood} mod should be registered as sub-commands of this command.
+ * All sub-commands require the permission level of game masters.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFoodCommand {
+    /**
+     * The logger of the command.
+     */
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /**
+     * The default count of magical farmland of a storage benchmark.
+     */
+    private static final int DEFAULT_BENCHMARK_COUNT = 100_000;
+
+    /**
+     * The maximum count of magical farmland of a storage benchmark.
+     */
+    private static final int MAX_BENCHMARK_COUNT = 10_000_000;
+
+    /**
+     * The default radius in chunks of a mutation benchmark.
+     */
+    private static final int DEFAULT_BENCHMARK_RADIUS = 4;
+
+    /**
+     * The maximum radius in chunks of a mutation benchmark.
+     */
+    private static final int MAX_BENCHMARK_RADIUS = 32;
+
+    /**
+     * The default count of chunks listed by the heatmap.
+     */
+    private static final int DEFAULT_HEATMAP_TOP = 10;
+
+    /**
+     * The maximum count of chunks listed by the heatmap.
+     */
+    private static final int MAX_HEATMAP_TOP = 100;
+
+    /**
+     * The default radius in chunks of a reindex.
+     */
+    private static final int DEFAULT_REINDEX_RADIUS = 8;
+
+    /**
+     * The maximum radius in chunks of a reindex of loaded chunks.
+     */
+    private static final int MAX_REINDEX_RADIUS = 64;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFoodCommand() {
+    }
+
+    /**
+     * This function is called when commands can be registered, which is once the
+     * server is about to start and every time data packs are reloaded.
+     *
+     * @param event The event related to register commands.
+     */
+    @SubscribeEvent
+    public static final void onRegisterCommands(@NotNull final RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    /**
+     * Register the {@code /magicalfood} command to the specified dispatcher.
+     *
+     * @param dispatcher The command dispatcher of the server.
+     */
+    public static final void register(@NotNull final CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal(MagicalFood.MODID)
+                // Only game masters are allowed to use the command
+                .requires(source -> source.hasPermission(Commands.LEVEL_GAMEMASTERS))
+                .then(Commands.literal("scheduler").executes(MagicalFoodCommand::scheduler))
+                .then(Commands.literal("backup").executes(MagicalFoodCommand::backup))
+                .then(Commands.literal("cluster").then(Commands.argument("location", BlockPosArgument.blockPos())
+                        .executes(MagicalFoodCommand::cluster)))
+                .then(Commands.literal("reindex").executes(context -> reindex(context, DEFAULT_REINDEX_RADIUS))
+                        .then(Commands.literal("all").executes(MagicalFoodCommand::reindexAll))
+                        .then(Commands.argument("radius", IntegerArgumentType.integer(0, MAX_REINDEX_RADIUS))
+                                .executes(context -> reindex(context,
+                                        IntegerArgumentType.getInteger(context, "radius")))))
+                .then(Commands.literal("heatmap").executes(context -> heatmap(context, DEFAULT_HEATMAP_TOP))
+                        .then(Commands.argument("top", IntegerArgumentType.integer(1, MAX_HEATMAP_TOP))
+                                .executes(context -> heatmap(context, IntegerArgumentType.getInteger(context, "top")))))
+                .then(Commands.literal("benchmark").then(Commands.literal("storage")
+                        .executes(context -> benchmarkStorage(context, DEFAULT_BENCHMARK_COUNT))
+                        .then(Commands.argument("count", IntegerArgumentType.integer(1, MAX_BENCHMARK_COUNT))
+                                .executes(context -> benchmarkStorage(context,
+                                        IntegerArgumentType.getInteger(context, "count")))))
+                        .then(Commands.literal("mutation")
+                                .executes(context -> benchmarkMutation(context, DEFAULT_BENCHMARK_RADIUS))
+                                .then(Commands.argument("radius", IntegerArgumentType.integer(0, MAX_BENCHMARK_RADIUS))
+                                        .executes(context -> benchmarkMutation(context,
+                                                IntegerArgumentType.getInteger(context, "radius")))))));
+    }
+
+    /**
+     * Report the metrics of {@link MagicalFarmTickScheduler} and the reads of
+     * {@link MagicalFarmNeighborAccess}.
+     *
+     * @param context The command context.
+     * @return The count of tasks that are currently pending.
+     */
+    private static final int scheduler(@NotNull final CommandContext<CommandSourceStack> context) {
+        context.getSource().sendSuccess(MagicalFoodLang.schedulerStatus(MagicalFarmTickScheduler.getQueueDepth(),
+                MagicalFarmTickScheduler.getPendingChunks(), MagicalFarmTickScheduler.getLastProcessed(),
+                MagicalFarmTickScheduler.getLastDeferred(), MagicalFarmTickScheduler.getLastNanos() / 1_000_000.0D,
+                MagicalFarmTickScheduler.getTotalProcessed(), MagicalFarmTickScheduler.getTotalDeferred(),
+                MagicalFarmTickScheduler.getTotalCoalesced()), false);
+        context.getSource().sendSuccess(MagicalFoodLang.neighborAccessStatus(
+                MagicalFarmNeighborAccess.getUnknownReads(), MagicalFarmNeighborAccess.getChunkLoads()), false);
+
+        return MagicalFarmTickScheduler.getQueueDepth();
+    }
+
+    /**
+     * Report the aggregated state of the cluster of the magical farmland at the
+     * specified location, see {@link MagicalFarmClusters}.
+     *
+     * @param context The command context.
+     * @return The count of magical farmland in the cluster.
+     * @throws CommandSyntaxException if the location is not loaded or outside
+     *                                the world.
+     */
+    private static final int cluster(@NotNull final CommandContext<CommandSourceStack> context)
+            throws CommandSyntaxException {
+        final var source = context.getSource();
+        final var location = BlockPosArgument.getLoadedBlockPos(context, "location");
+        final var cluster = MagicalFarmClusters.get(source.getLevel()).getCluster(location);
+        if (cluster == null) {
+            source.sendFailure(MagicalFoodLang.clusterNone(location.toShortString()));
+            return 0;
+        }
+
+        final var features = new TreeSet<String>();
+        for (final var feature : MagicalFoodFarmFeature.REGISTRY.get().getValues()) {
+            if (cluster.isFeatureEnabled(feature)) {
+                features.add(String.valueOf(MagicalFoodFarmFeature.REGISTRY.get().getKey(feature)));
+            }
+        }
+
+        source.sendSuccess(MagicalFoodLang.clusterStatus(location.toShortString(), cluster.getSize(),
+                cluster.getMaturityCount(15), String.join(", ", features)), false);
+        return cluster.getSize();
+    }
+
+    /**
+     * List the chunks whose magical farm work cost the most time in the rolling
+     * window of {@link MagicalFarmHeatmap}, with the farmland and the features
+     * enabled in each chunk.
+     *
+     * @param context The command context.
+     * @param top     The maximum count of chunks.
+     * @return The count of chunks listed.
+     */
+    private static final int heatmap(@NotNull final CommandContext<CommandSourceStack> context, final int top) {
+        final var source = context.getSource();
+        if (!MagicalFarmHeatmap.isEnabled()) {
+            source.sendFailure(MagicalFoodLang.heatmapDisabled());
+            return 0;
+        }
+
+        final var entries = MagicalFarmHeatmap.getTop(top);
+        if (entries.isEmpty()) {
+            source.sendSuccess(MagicalFoodLang.heatmapEmpty(MagicalFarmHeatmap.WINDOW_SECONDS), false);
+            return 0;
+        }
+
+        source.sendSuccess(MagicalFoodLang.heatmapHeader(MagicalFarmHeatmap.WINDOW_SECONDS), false);
+        for (var rank = 0; rank < entries.size(); rank++) {
+            final var entry = entries.get(rank);
+
+            // Count the farmland and collect the features of the chunk
+            final var farmland = new int[1];
+            final var features = new TreeSet<String>();
+            MagicalFarmStorage.get(entry.level()).forEachInChunk(entry.chunk().toLong(), (location, featureData) -> {
+                farmland[0]++;
+                for (final var feature : featureData.getFeatures()) {
+                    features.add(String.valueOf(MagicalFoodFarmFeature.REGISTRY.get().getKey(feature)));
+                }
+            });
+
+            source.sendSuccess(MagicalFoodLang.heatmapEntry(rank + 1, entry.level().dimension().location().toString(),
+                    entry.chunk().x, entry.chunk().z, entry.totalNanos() / 1_000_000.0D,
+                    entry.featureNanos() / 1_000_000.0D, entry.tickNanos() / 1_000_000.0D,
+                    entry.growthNanos() / 1_000_000.0D, farmland[0], String.join(", ", features)), false);
+        }
+
+        return entries.size();
+    }
+
+    /**
+     * Reindex the magical farmland in the loaded chunks around the source, see
+     * {@link MagicalFarmReindex}.
+     *
+     * @param context The command context.
+     * @param radius  The radius in chunks.
+     * @return The count of scanned chunks.
+     */
+    private static final int reindex(@NotNull final CommandContext<CommandSourceStack> context, final int radius) {
+        final var source = context.getSource();
+        final var result = MagicalFarmReindex.reindexLoaded(source.getLevel(),
+                new ChunkPos(new BlockPos(source.getPosition())), radius);
+        source.sendSuccess(MagicalFoodLang.reindexSucceeded(result.chunks(), result.scannedSections(),
+                result.skippedSections(), result.added(), result.removed()), true);
+        return result.chunks();
+    }
+
+    /**
+     * Reindex the magical farmland in all chunks of the dimension of the source in
+     * the background, see {@link MagicalFarmReindex}.
+     *
+     * @param context The command context.
+     * @return {@code 1} if the reindex is started, {@code 0} otherwise.
+     */
+    private static final int reindexAll(@NotNull final CommandContext<CommandSourceStack> context) {
+        final var source = context.getSource();
+
+        // Other backends store the data in the chunks, which would have to be loaded
+        final var backend = MagicalFarmStorage.getBackend();
+        if (backend != MagicalFarmStorage.Backend.SAVED_DATA) {
+            source.sendFailure(MagicalFoodLang.reindexUnsupported(backend.name()));
+            return 0;
+        }
+
+        final var level = source.getLevel();
+        source.sendSuccess(MagicalFoodLang.reindexStarted(level.dimension().location().toString()), true);
+
+        // The future completes on the server thread
+        final var start = System.nanoTime();
+        MagicalFarmReindex.reindexAll(level).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                LOGGER.error("Failed to reindex magical farmland of {}", level.dimension().location(), throwable);
+                source.sendFailure(MagicalFoodLang.reindexFailed(Throwables.getRootCause(throwable).toString()));
+                return;
+            }
+
+            source.sendSuccess(MagicalFoodLang.reindexSucceeded(result.chunks(), result.scannedSections(),
+                    result.skippedSections(), result.added(), result.removed()), true);
+            if (result.outdated() > 0) {
+                source.sendSuccess(MagicalFoodLang.reindexOutdated(result.outdated()), true);
+            }
+
+            LOGGER.info("Reindexed magical farmland of {} in {} s", level.dimension().location(),
+                    (System.nanoTime() - start) / 1_000_000_000L);
+        });
+
+        return 1;
+    }
+
+    /**
+     * Back up the magical farm data of all dimensions in the background, see
+     * {@link MagicalFarmDataBackup}.
+     *
+     * @param context The command context.
+     * @return The count of dimensions that are backed up.
+     */
+    private static final int backup(@NotNull final CommandContext<CommandSourceStack> context) {
+        final var source = context.getSource();
+
+        // Other backends save the data with the chunks, which are part of any world backup
+        final var backend = MagicalFarmStorage.getBackend();
+        if (backend != MagicalFarmStorage.Backend.SAVED_DATA) {
+            source.sendFailure(MagicalFoodLang.backupUnsupported(backend.name()));
+            return 0;
+        }
+
+        final var start = System.nanoTime();
+        final var backup = MagicalFarmDataBackup.backup(source.getServer());
+        final var snapshotNanos = System.nanoTime() - start;
+        source.sendSuccess(MagicalFoodLang.backupStarted(snapshotNanos / 1_000_000.0D), true);
+
+        // The future completes on the server thread
+        backup.whenComplete((folder, throwable) -> {
+            if (throwable != null) {
+                LOGGER.error("Failed to back up magical farm data", throwable);
+                source.sendFailure(MagicalFoodLang.backupFailed(Throwables.getRootCause(throwable).toString()));
+                return;
+            }
+
+            source.sendSuccess(MagicalFoodLang.backupSucceeded(folder.toString(),
+                    (System.nanoTime() - start) / 1_000_000L), true);
+        });
+
+        return Iterables.size(source.getServer().getAllLevels());
+    }
+
+    /**
+     * Benchmark all storage backends on a worker thread, see
+     * {@link MagicalFarmStorageBenchmark}. The result of each backend is reported
+     * once it is measured.
+     *
+     * @param context The command context.
+     * @param count   The count of magical farmland.
+     * @return The count of backends that are benchmarked.
+     */
+    private static final int benchmarkStorage(@NotNull final CommandContext<CommandSourceStack> context,
+            final int count) {
+        final var source = context.getSource();
+        final var server = source.getServer();
+        source.sendSuccess(MagicalFoodLang.storageBenchmarkStarted(count), false);
+
+        final var backends = MagicalFarmStorage.Backend.values();
+        CompletableFuture.runAsync(() -> {
+            for (final var backend : backends) {
+                final var result = MagicalFarmStorageBenchmark.run(backend, count);
+                server.execute(() -> source.sendSuccess(MagicalFoodLang.storageBenchmark(backend.name(),
+                        result.count(), result.lookupNanos(), result.bytesPerEntry(), result.saveMillis()), false));
+            }
+        }, Util.backgroundExecutor()).exceptionally(throwable -> {
+            LOGGER.error("Failed to benchmark magical farm storage backends", throwable);
+            server.execute(() -> source.sendFailure(
+                    MagicalFoodLang.storageBenchmarkFailed(Throwables.getRootCause(throwable).toString())));
+            return null;
+        });
+
+        return backends.length;
+    }
+
+    /**
+     * Benchmark quiet bulk block changes against block by block changes on the
+     * magical farmland around the source, see
+     * {@link MagicalFarmBulkMutationBenchmark}. The benchmark changes blocks, so it
+     * runs on the server thread.
+     *
+     * @param context The command context.
+     * @param radius  The radius in chunks.
+     * @return The count of magical farmland that is benchmarked.
+     */
+    private static final int benchmarkMutation(@NotNull final CommandContext<CommandSourceStack> context,
+            final int radius) {
+        final var source = context.getSource();
+        final var result = MagicalFarmBulkMutationBenchmark.run(source.getLevel(),
+                new ChunkPos(new BlockPos(source.getPosition())), radius);
+        if (result.count() == 0) {
+            source.sendFailure(MagicalFoodLang.mutationBenchmarkEmpty(radius));
+            return 0;
+        }
+
+        source.sendSuccess(MagicalFoodLang.mutationBenchmark(result.count(), result.setBlockNanos(),
+                result.bulkNanos()), false);
+        return result.count();
+    }
+}
@@ -0,0 +1,134 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.item;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.BlockItem;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * The magical farm block in the form of item. The item carries the features of
+ * the farmland it was broken from as a {@code long[]} bit mask of feature IDs
+ * in the {@value #FEATURES} tag, the same bits as
+ * {@link MagicalFarmBlock.FeatureData#getData()}, and the features are restored
+ * when the item is placed.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmBlockItem extends BlockItem {
+    /**
+     * The tag that stores the feature bits of the item.
+     */
+    public static final String FEATURES = "MagicalFarmFeatures";
+
+    /**
+     * Constructs a new magical farm block item, this constructor should be called
+     * for registration.
+     *
+     * @param block      The magical farm block.
+     * @param properties The properties of the item.
+     */
+    public MagicalFarmBlockItem(@NotNull final MagicalFarmBlock block, @NotNull final Properties properties) {
+        super(block, properties);
+    }
+
+    /**
+     * Create an item stack of the magical farm block with the specified features.
+     *
+     * @param featureData The features of the farmland, or {@code null} if it has
+     *                    none.
+     * @return The item stack.
+     */
+    public final @NotNull ItemStack create(@Nullable final MagicalFarmBlock.FeatureData featureData) {
+        final var itemStack = new ItemStack(this);
+        if (featureData != null && !featureData.getFeatures().isEmpty()) {
+            itemStack.getOrCreateTag().putLongArray(FEATURES, featureData.getData());
+        }
+
+        return itemStack;
+    }
+
+    /**
+     * Get the features carried by the specified item stack.
+     *
+     * @param itemStack The item stack.
+     * @return The features, or {@code null} if the item stack carries none.
+     */
+    public static final @Nullable MagicalFarmBlock.FeatureData getFeatureData(@NotNull final ItemStack itemStack) {
+        final var compoundTag = itemStack.getTag();
+        if (compoundTag == null || !compoundTag.contains(FEATURES, Tag.TAG_LONG_ARRAY)) {
+            return null;
+        }
+
+        return new MagicalFarmBlock.FeatureData(compoundTag.getLongArray(FEATURES));
+    }
+
+    /**
+     * Restore the features carried by the item stack after the block is placed.
+     *
+     * @param location   The location of the placed block.
+     * @param level      The level where the block is placed.
+     * @param player     The player that placed the block, or {@code null}.
+     * @param itemStack  The item stack that was placed.
+     * @param blockState The state of the placed block.
+     * @return {@code true} if the features are restored, {@code false} otherwise.
+     */
+    @Override
+    protected boolean updateCustomBlockEntityTag(@NotNull final BlockPos location, @NotNull final Level level,
+            @Nullable final Player player, @NotNull final ItemStack itemStack, @NotNull final BlockState blockState) {
+        final var restored = super.updateCustomBlockEntityTag(location, level, player, itemStack, blockState);
+        if (!(level instanceof final ServerLevel serverLevel) || !(blockState.getBlock() instanceof MagicalFarmBlock)) {
+            return restored;
+        }
+
+        final var featureData = getFeatureData(itemStack);
+        if (featureData == null) {
+            return restored;
+        }
+
+        MagicalFarmBlock.setFeatureData(serverLevel, location, featureData);
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if this item has an enchantment glint. By default, this
+     * returns <code>stack.isItemEnchanted()</code>, but other items can override it
+     * (for instance, written books always return true).
+     */
+    @Override
+    public boolean isFoil(@NotNull final ItemStack stack) {
+        return true;
+    }
+}
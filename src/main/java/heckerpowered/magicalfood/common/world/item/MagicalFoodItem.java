@@ -20,16 +20,12 @@ package heckerpowered.magicalfood.common.world.item;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
-import org.jetbrains.annotations.NotNull;
-
 import heckerpowered.magicalfood.common.MagicalFood;
 import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
 import heckerpowered.magicalfood.common.world.level.block.MagicalFoodBlock;
 import net.minecraft.FieldsAreNonnullByDefault;
 import net.minecraft.MethodsReturnNonnullByDefault;
-import net.minecraft.world.item.BlockItem;
 import net.minecraft.world.item.Item;
-import net.minecraft.world.item.ItemStack;
 import net.minecraftforge.registries.DeferredRegister;
 import net.minecraftforge.registries.ForgeRegistries;
 import net.minecraftforge.registries.RegistryObject;
@@ -62,16 +58,7 @@ public final class MagicalFoodItem {
      * The magical farm block in the form of item, see {@link MagicalFarmBlock} for
      * details related to this block
      */
-    public static final RegistryObject<BlockItem> MAGICAL_FARM_BLOCK = DEFERRED_REGISTER.register("magical_farmland",
-            () -> new BlockItem(MagicalFoodBlock.MAGICAL_FARM_BLOCK.get(), new Item.Properties()) {
-                /**
-                 * Returns {@code true} if this item has an enchantment glint. By default, this
-                 * returns <code>stack.isItemEnchanted()</code>, but other items can override it
-                 * (for instance, written books always return true).
-                 */
-                @Override
-                public boolean isFoil(@NotNull final ItemStack stack) {
-                    return true;
-                }
-            });
+    public static final RegistryObject<MagicalFarmBlockItem> MAGICAL_FARM_BLOCK = DEFERRED_REGISTER.register(
+            "magical_farmland",
+            () -> new MagicalFarmBlockItem(MagicalFoodBlock.MAGICAL_FARM_BLOCK.get(), new Item.Properties()));
 }
@@ -0,0 +1,153 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+
+/**
+ * An immutable copy of the block states in a small box of a level, taken by
+ * {@link MagicalFarmNeighborAccess#snapshot} on the server thread. Block states
+ * are immutable, so a snapshot can be read on any thread, which lets the
+ * parallel compute phase run vanilla code that takes a {@link BlockGetter}
+ * without touching the level. Blocks outside the box read as air, and there
+ * are no block entities.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmBlockSnapshot implements BlockGetter {
+    /**
+     * The lowest corner of the box.
+     */
+    private final int minX, minY, minZ;
+
+    /**
+     * The size of the box.
+     */
+    private final int sizeX, sizeY, sizeZ;
+
+    /**
+     * The block states of the box, indexed by {@link #indexOf}.
+     */
+    private final BlockState[] states;
+
+    /**
+     * The height of the level.
+     */
+    private final int height;
+
+    /**
+     * The minimum build height of the level.
+     */
+    private final int minBuildHeight;
+
+    /**
+     * Constructs a new snapshot of the specified box, the block states are
+     * filled in by the neighbor access.
+     *
+     * @param min            The lowest corner of the box.
+     * @param sizeX          The size of the box along the x axis.
+     * @param sizeY          The size of the box along the y axis.
+     * @param sizeZ          The size of the box along the z axis.
+     * @param height         The height of the level.
+     * @param minBuildHeight The minimum build height of the level.
+     */
+    MagicalFarmBlockSnapshot(@NotNull final BlockPos min, final int sizeX, final int sizeY, final int sizeZ,
+            final int height, final int minBuildHeight) {
+        minX = min.getX();
+        minY = min.getY();
+        minZ = min.getZ();
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        states = new BlockState[sizeX * sizeY * sizeZ];
+        this.height = height;
+        this.minBuildHeight = minBuildHeight;
+    }
+
+    /**
+     * Get the index of the specified location in the states.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The index, or {@code -1} if the location is outside the box.
+     */
+    final int indexOf(final int x, final int y, final int z) {
+        final var dx = x - minX;
+        final var dy = y - minY;
+        final var dz = z - minZ;
+        if (dx < 0 || dy < 0 || dz < 0 || dx >= sizeX || dy >= sizeY || dz >= sizeZ) {
+            return -1;
+        }
+
+        return (dy * sizeZ + dz) * sizeX + dx;
+    }
+
+    /**
+     * Set the block state at the specified index, only called while the snapshot
+     * is taken.
+     *
+     * @param index      The index.
+     * @param blockState The block state.
+     */
+    final void set(final int index, @NotNull final BlockState blockState) {
+        states[index] = blockState;
+    }
+
+    @Override
+    public @NotNull BlockState getBlockState(@NotNull final BlockPos location) {
+        final var index = indexOf(location.getX(), location.getY(), location.getZ());
+        return index < 0 ? Blocks.AIR.defaultBlockState() : states[index];
+    }
+
+    @Override
+    public @NotNull FluidState getFluidState(@NotNull final BlockPos location) {
+        return getBlockState(location).getFluidState();
+    }
+
+    @Override
+    public @Nullable BlockEntity getBlockEntity(@NotNull final BlockPos location) {
+        return null;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinBuildHeight() {
+        return minBuildHeight;
+    }
+}
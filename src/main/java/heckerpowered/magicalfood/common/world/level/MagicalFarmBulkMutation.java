@@ -0,0 +1,230 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmStorage;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.EntityBlock;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Collects block changes and writes them directly into the sections of the
+ * level, bypassing {@link ServerLevel#setBlock}. Changes are grouped by section,
+ * so each chunk and section is looked up once, and no game event, shape update
+ * or {@link Block#onPlace}/{@link Block#onRemove} call is made, the changes of
+ * magical farmland are reported to {@link MagicalFarmClusters} directly.
+ * Neighbors are only notified if requested. Changed blocks are reported to the chunk holder,
+ * which sends the changes of a section to the tracking players as a single
+ * packet at the end of the tick.
+ * <p>
+ * This is meant for features that rewrite many blocks at once, such as moisture
+ * or crop age. Blocks that have or get a block entity are still changed through
+ * {@link ServerLevel#setBlock}, unless only the properties of a block with a
+ * block entity change. Changes in chunks that are not loaded are
+ * dropped, the mutation never loads chunks. A mutation must only be used on the
+ * server thread.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmBulkMutation {
+    /**
+     * The level the blocks are changed in.
+     */
+    private final ServerLevel level;
+
+    /**
+     * Whether neighbors are notified of each changed block.
+     */
+    private final boolean notifyNeighbors;
+
+    /**
+     * The pending changes of each section, maps packed section positions to the
+     * new states keyed by packed locations.
+     */
+    private final Long2ObjectOpenHashMap<Long2ObjectLinkedOpenHashMap<BlockState>> sections;
+
+    /**
+     * The count of pending changes.
+     */
+    private int size;
+
+    /**
+     * Constructs a new empty mutation of the specified level.
+     *
+     * @param level           The level, must in server side.
+     * @param notifyNeighbors Whether neighbors are notified of each changed block.
+     */
+    public MagicalFarmBulkMutation(@NotNull final ServerLevel level, final boolean notifyNeighbors) {
+        this.level = level;
+        this.notifyNeighbors = notifyNeighbors;
+        sections = new Long2ObjectOpenHashMap<>();
+    }
+
+    /**
+     * Set the state of the block at the specified location once the mutation is
+     * applied, replacing any change pending at the same location.
+     *
+     * @param location   The location of the block.
+     * @param blockState The new state of the block.
+     */
+    public final void setBlockState(@NotNull final BlockPos location, @NotNull final BlockState blockState) {
+        final var blocks = sections.computeIfAbsent(SectionPos.asLong(location),
+                section -> new Long2ObjectLinkedOpenHashMap<>());
+        if (blocks.put(location.asLong(), blockState) == null) {
+            size++;
+        }
+    }
+
+    /**
+     * Get the count of pending changes.
+     *
+     * @return The count of pending changes.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Write all pending changes into the level, the mutation is empty afterwards
+     * and can be reused.
+     *
+     * @return The count of blocks that actually changed.
+     */
+    public final int apply() {
+        final var chunkSource = level.getChunkSource();
+        final var location = new BlockPos.MutableBlockPos();
+        var changed = 0;
+
+        for (final var entry : Long2ObjectMaps.fastIterable(sections)) {
+            final var section = entry.getLongKey();
+            final var sectionIndex = level.getSectionIndexFromSectionY(SectionPos.y(section));
+            final var levelChunk = chunkSource.getChunkNow(SectionPos.x(section), SectionPos.z(section));
+            if (levelChunk == null || sectionIndex < 0 || sectionIndex >= level.getSectionsCount()) {
+                continue;
+            }
+
+            final var levelChunkSection = levelChunk.getSection(sectionIndex);
+            for (final var block : Long2ObjectMaps.fastIterable(entry.getValue())) {
+                location.set(block.getLongKey());
+                final var blockState = block.getValue();
+                final var oldBlockState = levelChunkSection.getBlockState(location.getX() & 15,
+                        location.getY() & 15, location.getZ() & 15);
+                if (oldBlockState == blockState) {
+                    continue;
+                }
+
+                changed++;
+
+                // Block entities are created and removed by the level. A block that can
+                // have one, such as the magical farmland, often has none, so the chunk is
+                // asked instead of the state. The pending block entities of a full chunk
+                // are already created.
+                final var blockEntity = oldBlockState.hasBlockEntity() ? levelChunk.getBlockEntities().get(location)
+                        : null;
+                if (blockEntity == null ? createsBlockEntity(location, blockState)
+                        : !oldBlockState.is(blockState.getBlock())) {
+                    level.setBlock(location, blockState, notifyNeighbors ? Block.UPDATE_ALL : Block.UPDATE_CLIENTS);
+                    continue;
+                }
+
+                final var wasEmpty = levelChunkSection.hasOnlyAir();
+                levelChunkSection.setBlockState(location.getX() & 15, location.getY() & 15, location.getZ() & 15,
+                        blockState);
+                if (blockEntity != null) {
+                    // The same as the chunk does if the properties of a block change
+                    blockEntity.setBlockState(blockState);
+                }
+
+                if (wasEmpty != levelChunkSection.hasOnlyAir()) {
+                    chunkSource.getLightEngine().updateSectionStatus(location, levelChunkSection.hasOnlyAir());
+                }
+
+                // Properties of the same block do not change its shape in the heightmaps
+                if (!oldBlockState.is(blockState.getBlock())) {
+                    for (final var heightmap : levelChunk.getHeightmaps()) {
+                        heightmap.getValue().update(location.getX() & 15, location.getY(), location.getZ() & 15,
+                                blockState);
+                    }
+                }
+
+                // The same condition as the level uses to check the light
+                if (blockState.getLightBlock(level, location) != oldBlockState.getLightBlock(level, location)
+                        || blockState.getLightEmission(level, location) != oldBlockState.getLightEmission(level,
+                                location)
+                        || blockState.useShapeForLightOcclusion() || oldBlockState.useShapeForLightOcclusion()) {
+                    chunkSource.getLightEngine().checkBlock(location);
+                }
+
+                level.onBlockStateChange(location, oldBlockState, blockState);
+                MagicalFarmClusters.onBlockStateChange(level, location, oldBlockState, blockState);
+                chunkSource.blockChanged(location);
+                if (notifyNeighbors) {
+                    // The neighbor updater may keep the location
+                    level.updateNeighborsAt(location.immutable(), blockState.getBlock());
+                }
+            }
+
+            levelChunk.setUnsaved(true);
+        }
+
+        sections.clear();
+        size = 0;
+        return changed;
+    }
+
+    /**
+     * Returns a boolean that indicates whether the level would create a block
+     * entity for the specified state. The magical farmland only has one with the
+     * block entity storage backend.
+     *
+     * @param location   The location of the block.
+     * @param blockState The new state of the block.
+     * @return {@code true} if a block entity would be created, {@code false}
+     *         otherwise.
+     */
+    private static final boolean createsBlockEntity(@NotNull final BlockPos location,
+            @NotNull final BlockState blockState) {
+        if (!blockState.hasBlockEntity()) {
+            return false;
+        }
+
+        if (blockState.getBlock() instanceof MagicalFarmBlock) {
+            return MagicalFarmStorage.getBackend() == MagicalFarmStorage.Backend.BLOCK_ENTITY;
+        }
+
+        return blockState.getBlock() instanceof final EntityBlock entityBlock
+                && entityBlock.newBlockEntity(location.immutable(), blockState) != null;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level;
+
+import java.util.ArrayList;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Compares {@link MagicalFarmBulkMutation} with {@link ServerLevel#setBlock} on
+ * the magical farmland in the loaded chunks around a center chunk. The moisture
+ * of each farmland is first changed block by block with full updates, the same
+ * way the mod changes blocks elsewhere, and then changed back with a single
+ * quiet bulk mutation, so the farmland is left as it was found.
+ * <p>
+ * The benchmark changes blocks of a live level, it must be run on the server
+ * thread and stalls the tick while it runs.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmBulkMutationBenchmark {
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmBulkMutationBenchmark() {
+    }
+
+    /**
+     * Measure the magical farmland in the loaded chunks within the specified
+     * radius of the specified chunk.
+     *
+     * @param level  The level, must in server side.
+     * @param center The center chunk.
+     * @param radius The radius in chunks.
+     * @return The result of the measurement, the count of which is zero if no
+     *         magical farmland is found.
+     */
+    public static final @NotNull Result run(@NotNull final ServerLevel level, @NotNull final ChunkPos center,
+            final int radius) {
+        final var locations = new ArrayList<BlockPos>();
+        final var blockStates = new ArrayList<BlockState>();
+        final var chunkSource = level.getChunkSource();
+
+        // Find the magical farmland, skipping sections without any
+        for (var chunkX = center.x - radius; chunkX <= center.x + radius; chunkX++) {
+            for (var chunkZ = center.z - radius; chunkZ <= center.z + radius; chunkZ++) {
+                final var levelChunk = chunkSource.getChunkNow(chunkX, chunkZ);
+                if (levelChunk == null) {
+                    continue;
+                }
+
+                final var levelChunkSections = levelChunk.getSections();
+                for (var sectionIndex = 0; sectionIndex < levelChunkSections.length; sectionIndex++) {
+                    final var levelChunkSection = levelChunkSections[sectionIndex];
+                    if (!levelChunkSection.maybeHas(blockState -> blockState.getBlock() instanceof MagicalFarmBlock)) {
+                        continue;
+                    }
+
+                    final var origin = SectionPos.of(chunkX, level.getSectionYFromSectionIndex(sectionIndex), chunkZ);
+                    for (var index = 0; index < 4096; index++) {
+                        final var blockState = levelChunkSection.getBlockState(index & 15, index >> 8 & 15,
+                                index >> 4 & 15);
+                        if (blockState.getBlock() instanceof MagicalFarmBlock) {
+                            locations.add(origin.origin().offset(index & 15, index >> 8 & 15, index >> 4 & 15));
+                            blockStates.add(blockState);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (locations.isEmpty()) {
+            return new Result(0, 0.0D, 0.0D);
+        }
+
+        // Change the moisture block by block with full updates
+        final var setBlockStart = System.nanoTime();
+        for (var index = 0; index < locations.size(); index++) {
+            final var blockState = blockStates.get(index);
+            level.setBlock(locations.get(index), blockState.setValue(MagicalFarmBlock.MOISTURE,
+                    MagicalFarmBlock.MAX_MOISTURE - blockState.getValue(MagicalFarmBlock.MOISTURE)), Block.UPDATE_ALL);
+        }
+
+        final var setBlockNanos = System.nanoTime() - setBlockStart;
+
+        // Change it back with a quiet bulk mutation
+        final var bulkStart = System.nanoTime();
+        final var mutation = new MagicalFarmBulkMutation(level, false);
+        for (var index = 0; index < locations.size(); index++) {
+            mutation.setBlockState(locations.get(index), blockStates.get(index));
+        }
+
+        mutation.apply();
+        final var bulkNanos = System.nanoTime() - bulkStart;
+
+        return new Result(locations.size(), (double) setBlockNanos / locations.size(),
+                (double) bulkNanos / locations.size());
+    }
+
+    /**
+     * Represents the result of a measurement.
+     *
+     * @param count         The count of magical farmland.
+     * @param setBlockNanos The average time of changing a block with
+     *                      {@link ServerLevel#setBlock} in nanoseconds.
+     * @param bulkNanos     The average time of changing a block with a bulk
+     *                      mutation in nanoseconds.
+     */
+    public record Result(int count, double setBlockNanos, double bulkNanos) {
+    }
+}
@@ -0,0 +1,819 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmHotFeatures;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFoodFarmFeature;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmStorage;
+import heckerpowered.magicalfood.common.world.ticks.MagicalFarmHeatmap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.ChunkAccess;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.ChunkEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Maintains the clusters of horizontally adjacent magical farmland in the
+ * loaded chunks of a level, so that work that concerns a whole field runs
+ * once per field instead of once per block, see
+ * {@link MagicalFarmBlock.Feature#clusterTick}. Each cluster carries the
+ * aggregated state of its members: their count, a histogram of the maturity
+ * of their crops and the count of members with each feature enabled.
+ * <p>
+ * Clusters are a union-find over packed locations, so placing farmland merges
+ * clusters in nearly constant time. A union-find cannot split, so removing
+ * farmland only marks its cluster as possibly split, and leaves the location
+ * behind as a link of the parent pointers. Marked clusters are rebuilt from
+ * their remaining members once per tick, or when they are looked up, which
+ * coalesces all removals of a tick into a single rebuild.
+ * <p>
+ * Changes of the block state are tracked by {@link MagicalFarmBlock} and
+ * {@link MagicalFarmBulkMutation}, changes of the features by
+ * {@link MagicalFarmBlock#setFeatureData}. Farmland of a chunk joins its
+ * clusters in the tick after the chunk is loaded, and leaves them when the
+ * chunk is unloaded. All methods must be called on the server thread.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmClusters {
+    /**
+     * The clusters of each level.
+     */
+    private static final Map<ServerLevel, MagicalFarmClusters> LEVELS = new HashMap<>();
+
+    /**
+     * The directions in which farmland is adjacent.
+     */
+    private static final Direction[] NEIGHBORS = { Direction.NORTH, Direction.EAST, Direction.SOUTH,
+            Direction.WEST };
+
+    /**
+     * The count of distinct maturities, see {@link MagicalFarmBlock#getMaturity}.
+     */
+    private static final int MATURITIES = 16;
+
+    /**
+     * The features that do cluster-level work, or {@code null} if they have not
+     * been collected from the registry yet.
+     */
+    private static @Nullable List<MagicalFarmBlock.Feature> clusterTickingFeatures;
+
+    /**
+     * The level of the clusters.
+     */
+    private final ServerLevel level;
+
+    /**
+     * The parent of each member and each removed location still linking members,
+     * the root of a cluster is its own parent.
+     */
+    private final Long2LongOpenHashMap parents = new Long2LongOpenHashMap();
+
+    /**
+     * The clusters, keyed by the packed location of their root.
+     */
+    private final Long2ObjectOpenHashMap<Cluster> clusters = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * The maturity of the crop above each member, keyed by its packed location.
+     */
+    private final Long2ByteOpenHashMap maturities = new Long2ByteOpenHashMap();
+
+    /**
+     * The packed positions of the chunks loaded since the last tick, whose
+     * farmland has yet to join the clusters.
+     */
+    private final LongLinkedOpenHashSet loadedChunks = new LongLinkedOpenHashSet();
+
+    /**
+     * Constructs the empty clusters of the specified level.
+     *
+     * @param level The level, must in server side.
+     */
+    private MagicalFarmClusters(@NotNull final ServerLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the clusters of the specified level.
+     *
+     * @param level The level, must in server side.
+     * @return The clusters of the level.
+     */
+    public static final @NotNull MagicalFarmClusters get(@NotNull final ServerLevel level) {
+        return LEVELS.computeIfAbsent(level, MagicalFarmClusters::new);
+    }
+
+    /**
+     * Get the packed locations of the magical farmland that has joined the
+     * clusters, which is the farmland of the loaded chunks except the chunks
+     * loaded since the last tick.
+     *
+     * @return The packed locations, a new set.
+     */
+    public final @NotNull LongSet getMembers() {
+        return new LongOpenHashSet(maturities.keySet());
+    }
+
+    /**
+     * Returns a boolean that indicates whether the magical farmland at the
+     * specified location has joined the clusters. The hot features of its block
+     * state match the current mapping of the hot feature slots once it joined.
+     *
+     * @param location The location of the farmland.
+     * @return {@code true} if the farmland has joined, {@code false} otherwise.
+     */
+    public final boolean contains(@NotNull final BlockPos location) {
+        return isMember(location.asLong());
+    }
+
+    /**
+     * Get the cluster of the magical farmland at the specified location, a
+     * cluster marked as possibly split is rebuilt first.
+     *
+     * @param location The location of the farmland.
+     * @return The cluster, or {@code null} if there is no tracked farmland at the
+     *         location.
+     */
+    public final @Nullable Cluster getCluster(@NotNull final BlockPos location) {
+        final var block = location.asLong();
+        if (!isMember(block)) {
+            return null;
+        }
+
+        final var cluster = clusters.get(find(block));
+        if (cluster.split) {
+            rebuild(cluster);
+            return clusters.get(find(block));
+        }
+
+        return cluster;
+    }
+
+    /**
+     * Get the count of clusters, including clusters that will be split.
+     *
+     * @return The count of clusters.
+     */
+    public final int size() {
+        return clusters.size();
+    }
+
+    /**
+     * Track a change of the block state at the specified location, farmland
+     * joins or leaves its cluster and the maturity histogram is updated.
+     *
+     * @param level         The level where the block is.
+     * @param location      The location of the block.
+     * @param oldBlockState The previous state of the block.
+     * @param newBlockState The new state of the block.
+     */
+    public static final void onBlockStateChange(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+            @NotNull final BlockState oldBlockState, @NotNull final BlockState newBlockState) {
+        final var wasFarmland = oldBlockState.getBlock() instanceof MagicalFarmBlock;
+        final var isFarmland = newBlockState.getBlock() instanceof MagicalFarmBlock;
+        if (!wasFarmland && !isFarmland) {
+            return;
+        }
+
+        final var clusters = get(level);
+        final var block = location.asLong();
+        if (!isFarmland) {
+            clusters.remove(block);
+        } else if (!wasFarmland) {
+            clusters.add(block, MagicalFarmBlock.getMaturity(level.getBlockState(location.above())),
+                    MagicalFarmStorage.get(level).getFeatureData(location));
+        }
+    }
+
+    /**
+     * Track a change of the crop above the magical farmland at the specified
+     * location, the maturity histogram of its cluster is updated.
+     *
+     * @param level    The level where the block is.
+     * @param location The location of the farmland.
+     * @param maturity The maturity of the crop above.
+     * @return {@code true} if the maturity changed, or may have changed because
+     *         the farmland has not joined a cluster yet, {@code false}
+     *         otherwise.
+     */
+    public static final boolean onCropChange(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+            final int maturity) {
+        final var clusters = LEVELS.get(level);
+        final var block = location.asLong();
+        if (clusters == null || !clusters.isMember(block)) {
+            return true;
+        }
+
+        final var oldMaturity = clusters.maturities.put(block, (byte) maturity);
+        if (oldMaturity == maturity) {
+            return false;
+        }
+
+        final var cluster = clusters.clusters.get(clusters.find(block));
+        cluster.maturities[oldMaturity]--;
+        cluster.maturities[maturity]++;
+        return true;
+    }
+
+    /**
+     * Track a change of the features of the magical farmland at the specified
+     * location.
+     *
+     * @param level          The level where the block is.
+     * @param location       The location of the block.
+     * @param oldFeatureData The previous features, or {@code null} if there
+     *                       were none.
+     * @param newFeatureData The new features, or {@code null} if there are none.
+     */
+    public static final void onFeatureChange(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+            @Nullable final MagicalFarmBlock.FeatureData oldFeatureData,
+            @Nullable final MagicalFarmBlock.FeatureData newFeatureData) {
+        final var clusters = LEVELS.get(level);
+        final var block = location.asLong();
+        if (clusters == null || !clusters.isMember(block)) {
+            return;
+        }
+
+        final var cluster = clusters.clusters.get(clusters.find(block));
+        cluster.addFeatures(oldFeatureData, -1);
+        cluster.addFeatures(newFeatureData, 1);
+    }
+
+    /**
+     * Add the magical farmland at the specified location to a new cluster, and
+     * merge it with the clusters of the adjacent farmland.
+     *
+     * @param block       The packed location of the farmland.
+     * @param maturity    The maturity of the crop above.
+     * @param featureData The features of the farmland, or {@code null} if it has
+     *                    none.
+     */
+    private final void add(final long block, final int maturity,
+            @Nullable final MagicalFarmBlock.FeatureData featureData) {
+        if (parents.containsKey(block)) {
+            final var cluster = clusters.get(find(block));
+            if (cluster.members.contains(block)) {
+                return;
+            }
+
+            // A removed location of a cluster that will be split, whose aggregated
+            // state is computed again anyway
+            cluster.removed.remove(block);
+            cluster.members.add(block);
+            maturities.put(block, (byte) maturity);
+        } else {
+            final var cluster = new Cluster(block);
+            cluster.addMember(block, maturity, featureData);
+            maturities.put(block, (byte) maturity);
+            parents.put(block, block);
+            clusters.put(block, cluster);
+        }
+
+        for (final var direction : NEIGHBORS) {
+            final var neighbor = BlockPos.offset(block, direction);
+            if (isMember(neighbor)) {
+                union(block, neighbor);
+            }
+        }
+    }
+
+    /**
+     * Remove the magical farmland at the specified location from its cluster,
+     * which is marked as possibly split.
+     *
+     * @param block The packed location of the farmland.
+     */
+    private final void remove(final long block) {
+        if (!isMember(block)) {
+            return;
+        }
+
+        final var root = find(block);
+        final var cluster = clusters.get(root);
+        cluster.members.remove(block);
+        cluster.removed.add(block);
+        maturities.remove(block);
+        cluster.split = true;
+
+        // Drop the links of a cluster without members right away
+        if (cluster.members.isEmpty()) {
+            cluster.removed.forEach(parents::remove);
+            clusters.remove(root);
+        }
+    }
+
+    /**
+     * Returns a boolean that indicates whether the magical farmland at the
+     * specified location is a member of a cluster.
+     *
+     * @param block The packed location.
+     * @return {@code true} if the farmland is a member, {@code false} otherwise.
+     */
+    private final boolean isMember(final long block) {
+        return parents.containsKey(block) && clusters.get(find(block)).members.contains(block);
+    }
+
+    /**
+     * Find the root of the cluster of the specified location, compressing the
+     * path on the way.
+     *
+     * @param block The packed location, must have a parent.
+     * @return The packed location of the root.
+     */
+    private final long find(final long block) {
+        var root = block;
+        for (var parent = parents.get(root); parent != root; parent = parents.get(root)) {
+            root = parent;
+        }
+
+        var node = block;
+        while (node != root) {
+            node = parents.put(node, root);
+        }
+
+        return root;
+    }
+
+    /**
+     * Merge the clusters of the specified locations, the smaller cluster is
+     * merged into the larger one.
+     *
+     * @param first  The packed location of a member of the first cluster.
+     * @param second The packed location of a member of the second cluster.
+     */
+    private final void union(final long first, final long second) {
+        final var firstRoot = find(first);
+        final var secondRoot = find(second);
+        if (firstRoot == secondRoot) {
+            return;
+        }
+
+        var larger = clusters.get(firstRoot);
+        var smaller = clusters.get(secondRoot);
+        if (larger.getWeight() < smaller.getWeight()) {
+            final var cluster = larger;
+            larger = smaller;
+            smaller = cluster;
+        }
+
+        parents.put(smaller.root, larger.root);
+        clusters.remove(smaller.root);
+        larger.absorb(smaller);
+    }
+
+    /**
+     * Rebuild the specified cluster, which may have been split by removals, into
+     * the clusters of its remaining members, and compute their aggregated state
+     * from the level again.
+     *
+     * @param cluster The cluster.
+     */
+    private final void rebuild(@NotNull final Cluster cluster) {
+        clusters.remove(cluster.root);
+        cluster.members.forEach(parents::remove);
+        cluster.removed.forEach(parents::remove);
+
+        final var storage = MagicalFarmStorage.get(level);
+        final var queue = new LongArrayFIFOQueue();
+        final var location = new BlockPos.MutableBlockPos();
+        for (final var iterator = cluster.members.iterator(); iterator.hasNext();) {
+            final var start = iterator.nextLong();
+            if (parents.containsKey(start)) {
+                continue;
+            }
+
+            // Flood the remaining members reachable from the start
+            final var component = new Cluster(start);
+            parents.put(start, start);
+            clusters.put(start, component);
+            queue.enqueue(start);
+            while (!queue.isEmpty()) {
+                final var block = queue.dequeueLong();
+                component.addMember(block, maturities.get(block), storage.getFeatureData(location.set(block)));
+
+                for (final var direction : NEIGHBORS) {
+                    final var neighbor = BlockPos.offset(block, direction);
+                    if (cluster.members.contains(neighbor) && !parents.containsKey(neighbor)) {
+                        parents.put(neighbor, start);
+                        queue.enqueue(neighbor);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the magical farmland of the chunks loaded since the last tick to the
+     * clusters, and correct the hot features of the farmland that was saved with
+     * another mapping of the hot feature slots, see {@link MagicalFarmHotFeatures}.
+     */
+    private final void joinLoadedChunks() {
+        final var storage = MagicalFarmStorage.get(level);
+        final var stale = new ArrayList<BlockPos>();
+        while (!loadedChunks.isEmpty()) {
+            final var chunk = loadedChunks.removeFirstLong();
+            final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk), ChunkPos.getZ(chunk));
+            if (levelChunk != null) {
+                forEachFarmland(levelChunk, (location, blockState) -> {
+                    final var featureData = storage.getFeatureData(location);
+                    add(location.asLong(), MagicalFarmBlock.getMaturity(levelChunk.getBlockState(location.above())),
+                            featureData);
+                    if (MagicalFarmBlock.withHotFeatures(blockState, featureData) != blockState) {
+                        stale.add(location);
+                    }
+                });
+            }
+        }
+
+        // The sections are not modified while they are scanned
+        for (final var location : stale) {
+            final var blockState = level.getBlockState(location);
+            level.setBlock(location, MagicalFarmBlock.withHotFeatures(blockState, storage.getFeatureData(location)),
+                    Block.UPDATE_CLIENTS);
+        }
+    }
+
+    /**
+     * Rebuild the clusters that may have been split, and run the cluster-level
+     * work of their features.
+     */
+    private final void tick() {
+        final var split = new ArrayList<Cluster>();
+        for (final var cluster : clusters.values()) {
+            if (cluster.split) {
+                split.add(cluster);
+            }
+        }
+
+        split.forEach(this::rebuild);
+
+        final var features = getClusterTickingFeatures();
+        if (features.isEmpty()) {
+            return;
+        }
+
+        // Features may change the farmland, which changes the clusters
+        for (final var cluster : new ArrayList<>(clusters.values())) {
+            if (clusters.get(cluster.root) != cluster) {
+                continue;
+            }
+
+            final var start = MagicalFarmHeatmap.start();
+            for (final var feature : features) {
+                if (cluster.isFeatureEnabled(feature)) {
+                    feature.clusterTick(level, cluster);
+                }
+            }
+
+            MagicalFarmHeatmap.record(level, BlockPos.of(cluster.root), MagicalFarmHeatmap.Category.FEATURE, start);
+        }
+    }
+
+    /**
+     * Get the features that do cluster-level work, the registry does not change
+     * once the game is loaded.
+     *
+     * @return The features that do cluster-level work.
+     */
+    private static final List<MagicalFarmBlock.Feature> getClusterTickingFeatures() {
+        if (clusterTickingFeatures == null) {
+            clusterTickingFeatures = MagicalFoodFarmFeature.REGISTRY.get().getValues().stream()
+                    .filter(MagicalFarmBlock.Feature::isClusterTicking).toList();
+        }
+
+        return clusterTickingFeatures;
+    }
+
+    /**
+     * Perform the specified action for each magical farmland in the specified
+     * chunk, skipping the sections without any by their palette.
+     *
+     * @param chunk  The chunk.
+     * @param action The action that accepts the location and the state of the
+     *               farmland.
+     */
+    private static final void forEachFarmland(@NotNull final ChunkAccess chunk,
+            @NotNull final BiConsumer<BlockPos, BlockState> action) {
+        final var sections = chunk.getSections();
+        for (var sectionIndex = 0; sectionIndex < sections.length; sectionIndex++) {
+            final var section = sections[sectionIndex];
+            if (!section.maybeHas(blockState -> blockState.getBlock() instanceof MagicalFarmBlock)) {
+                continue;
+            }
+
+            final var origin = SectionPos.of(chunk.getPos(), chunk.getSectionYFromSectionIndex(sectionIndex))
+                    .origin();
+            for (var index = 0; index < 4096; index++) {
+                final var blockState = section.getBlockState(index & 15, index >> 8 & 15, index >> 4 & 15);
+                if (blockState.getBlock() instanceof MagicalFarmBlock) {
+                    action.accept(origin.offset(index & 15, index >> 8 & 15, index >> 4 & 15), blockState);
+                }
+            }
+        }
+    }
+
+    /**
+     * This function is called when a chunk is loaded, its farmland joins the
+     * clusters in the next tick, once the chunk is accessible.
+     *
+     * @param event The chunk load event.
+     */
+    @SubscribeEvent
+    public static final void onChunkLoad(@NotNull final ChunkEvent.Load event) {
+        if (event.getLevel() instanceof final ServerLevel level && event.getChunk() instanceof LevelChunk) {
+            get(level).loadedChunks.add(event.getChunk().getPos().toLong());
+        }
+    }
+
+    /**
+     * This function is called when a chunk is unloaded, its farmland leaves the
+     * clusters.
+     *
+     * @param event The chunk unload event.
+     */
+    @SubscribeEvent
+    public static final void onChunkUnload(@NotNull final ChunkEvent.Unload event) {
+        if (!(event.getLevel() instanceof final ServerLevel level)) {
+            return;
+        }
+
+        final var clusters = LEVELS.get(level);
+        if (clusters == null) {
+            return;
+        }
+
+        clusters.loadedChunks.remove(event.getChunk().getPos().toLong());
+        forEachFarmland(event.getChunk(), (location, blockState) -> clusters.remove(location.asLong()));
+    }
+
+    /**
+     * This function is called at the start and the end of each server tick, the
+     * clusters are updated and ticked at the end of the tick.
+     *
+     * @param event The server tick event.
+     */
+    @SubscribeEvent
+    public static final void onServerTick(@NotNull final TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        MagicalFarmNeighborAccess.beginBatch();
+        try {
+            for (final var clusters : LEVELS.values()) {
+                clusters.joinLoadedChunks();
+                clusters.tick();
+            }
+        } finally {
+            MagicalFarmNeighborAccess.endBatch();
+        }
+    }
+
+    /**
+     * This function is called when a level is unloaded, drop its clusters so that
+     * the level can be garbage collected.
+     *
+     * @param event The level unload event.
+     */
+    @SubscribeEvent
+    public static final void onLevelUnload(@NotNull final LevelEvent.Unload event) {
+        if (event.getLevel() instanceof final ServerLevel level) {
+            LEVELS.remove(level);
+        }
+    }
+
+    /**
+     * Represents a cluster of horizontally adjacent magical farmland and the
+     * aggregated state of its members.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    @MethodsReturnNonnullByDefault
+    @FieldsAreNonnullByDefault
+    public static final class Cluster {
+        /**
+         * The packed location of the root of the cluster.
+         */
+        private final long root;
+
+        /**
+         * The packed locations of the members.
+         */
+        private final LongOpenHashSet members = new LongOpenHashSet();
+
+        /**
+         * The packed locations of the removed members that may still link members.
+         */
+        private final LongOpenHashSet removed = new LongOpenHashSet();
+
+        /**
+         * The count of members with each maturity of the crop above.
+         */
+        private final int[] maturities = new int[MATURITIES];
+
+        /**
+         * The count of members with each feature enabled, indexed by feature ID.
+         */
+        private int[] featureCounts = new int[0];
+
+        /**
+         * Whether members were removed, so that the cluster may be split and its
+         * aggregated state is not maintained until it is rebuilt.
+         */
+        private boolean split;
+
+        /**
+         * Constructs a new empty cluster.
+         *
+         * @param root The packed location of the root.
+         */
+        private Cluster(final long root) {
+            this.root = root;
+        }
+
+        /**
+         * Get the packed location of the root of the cluster, which identifies the
+         * cluster until it is merged or split.
+         *
+         * @return The packed location of the root.
+         */
+        public final long getRoot() {
+            return root;
+        }
+
+        /**
+         * Get the count of magical farmland in the cluster.
+         *
+         * @return The count of magical farmland.
+         */
+        public final int getSize() {
+            return members.size();
+        }
+
+        /**
+         * Get the packed locations of the magical farmland in the cluster.
+         *
+         * @return The unmodifiable set of packed locations.
+         */
+        public final @NotNull LongSet getMembers() {
+            return LongSets.unmodifiable(members);
+        }
+
+        /**
+         * Get the count of magical farmland in the cluster with the specified
+         * maturity of the crop above, see {@link MagicalFarmBlock#getMaturity}.
+         *
+         * @param maturity The maturity.
+         * @return The count of magical farmland.
+         */
+        public final int getMaturityCount(final int maturity) {
+            return maturities[maturity];
+        }
+
+        /**
+         * Get the count of magical farmland in the cluster with the specified
+         * feature enabled.
+         *
+         * @param feature The feature.
+         * @return The count of magical farmland.
+         */
+        public final int getFeatureCount(@NotNull final MagicalFarmBlock.Feature feature) {
+            final var featureID = feature.getId();
+            return featureID < featureCounts.length ? featureCounts[featureID] : 0;
+        }
+
+        /**
+         * Returns a boolean that indicates whether any magical farmland in the
+         * cluster has the specified feature enabled.
+         *
+         * @param feature The feature.
+         * @return {@code true} if the feature is enabled, {@code false} otherwise.
+         */
+        public final boolean isFeatureEnabled(@NotNull final MagicalFarmBlock.Feature feature) {
+            return getFeatureCount(feature) > 0;
+        }
+
+        /**
+         * Get the weight of the cluster in the union-find, which counts the removed
+         * members that still link members.
+         *
+         * @return The weight of the cluster.
+         */
+        private int getWeight() {
+            return members.size() + removed.size();
+        }
+
+        /**
+         * Add a member to the cluster.
+         *
+         * @param block       The packed location of the member.
+         * @param maturity    The maturity of the crop above.
+         * @param featureData The features of the member, or {@code null} if it has
+         *                    none.
+         */
+        private void addMember(final long block, final int maturity,
+                @Nullable final MagicalFarmBlock.FeatureData featureData) {
+            members.add(block);
+            maturities[maturity]++;
+            addFeatures(featureData, 1);
+        }
+
+        /**
+         * Add the features of a member to the feature counts.
+         *
+         * @param featureData The features, or {@code null} if there are none.
+         * @param delta       {@code 1} to add the features, {@code -1} to subtract
+         *                    them.
+         */
+        private void addFeatures(@Nullable final MagicalFarmBlock.FeatureData featureData, final int delta) {
+            if (featureData == null) {
+                return;
+            }
+
+            for (final var feature : featureData.getFeatures()) {
+                final var featureID = feature.getId();
+                if (featureID >= featureCounts.length) {
+                    featureCounts = Arrays.copyOf(featureCounts, featureID + 1);
+                }
+
+                featureCounts[featureID] += delta;
+            }
+        }
+
+        /**
+         * Merge the specified cluster into this cluster.
+         *
+         * @param cluster The cluster to merge.
+         */
+        private void absorb(@NotNull final Cluster cluster) {
+            members.addAll(cluster.members);
+            removed.addAll(cluster.removed);
+            split |= cluster.split;
+            for (var maturity = 0; maturity < MATURITIES; maturity++) {
+                maturities[maturity] += cluster.maturities[maturity];
+            }
+
+            if (cluster.featureCounts.length > featureCounts.length) {
+                featureCounts = Arrays.copyOf(featureCounts, cluster.featureCounts.length);
+            }
+
+            for (var featureID = 0; featureID < cluster.featureCounts.length; featureID++) {
+                featureCounts[featureID] += cluster.featureCounts[featureID];
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import com.mojang.logging.LogUtils;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraftforge.event.level.ChunkEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Reads blocks around magical farmland without ever loading a chunk. Calling
+ * {@code getBlockState} of a level on a location in a chunk that is not loaded
+ * loads the chunk synchronously, which stalls the tick when features look at
+ * their neighbors at the border of the loaded area. The reads of this class
+ * only use chunks that are already loaded, and report {@code null}, meaning
+ * unknown, for the others; callers treat unknown as "skip this time".
+ * <p>
+ * Farm work runs in batches, see {@link #beginBatch()}. Within a batch the
+ * chunks that were looked up are cached, so the farmland, the crop above and
+ * their neighbors resolve their chunk once per batch instead of once per read.
+ * The cache is dropped when the batch ends, chunks are only unloaded between
+ * batches. Outside a batch every read looks the chunk up again.
+ * <p>
+ * Chunks that are loaded while a batch is running can only have been loaded by
+ * the farm work itself, they are counted by {@link #getChunkLoads()}, which is
+ * expected to stay {@code 0}. All methods must be called on the server thread.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmNeighborAccess {
+    /**
+     * The logger of the neighbor access.
+     */
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /**
+     * The neighbor access of each level.
+     */
+    private static final Map<ServerLevel, MagicalFarmNeighborAccess> LEVELS = new HashMap<>();
+
+    /**
+     * The depth of nested batches, {@code 0} outside a batch.
+     */
+    private static int batchDepth;
+
+    /**
+     * The count of reads that were reported unknown because their chunk was not
+     * loaded, since the server started.
+     */
+    private static long unknownReads;
+
+    /**
+     * The count of chunks loaded while farm work was running, since the server
+     * started.
+     */
+    private static long chunkLoads;
+
+    /**
+     * The level whose blocks are read.
+     */
+    private final ServerLevel level;
+
+    /**
+     * The chunks looked up in the current batch, maps packed chunk positions to
+     * the chunks.
+     */
+    private final Long2ObjectOpenHashMap<LevelChunk> chunks = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * The packed position of the chunk looked up last.
+     */
+    private long lastChunk;
+
+    /**
+     * The chunk looked up last, or {@code null} if there is none.
+     */
+    private @Nullable LevelChunk lastLevelChunk;
+
+    /**
+     * Constructs a new neighbor access of the specified level.
+     *
+     * @param level The level whose blocks are read.
+     */
+    private MagicalFarmNeighborAccess(@NotNull final ServerLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the neighbor access of the specified level.
+     *
+     * @param level The level.
+     * @return The neighbor access of the level.
+     */
+    public static final @NotNull MagicalFarmNeighborAccess get(@NotNull final ServerLevel level) {
+        return LEVELS.computeIfAbsent(level, MagicalFarmNeighborAccess::new);
+    }
+
+    /**
+     * Begin a batch of farm work. Batches may nest, every call must be paired
+     * with a call to {@link #endBatch()} in a {@code finally} block.
+     */
+    public static final void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * End a batch of farm work, the cached chunks are dropped when the outermost
+     * batch ends.
+     */
+    public static final void endBatch() {
+        if (--batchDepth == 0) {
+            LEVELS.values().forEach(MagicalFarmNeighborAccess::invalidate);
+        }
+    }
+
+    /**
+     * Get the loaded chunk at the specified chunk coordinates.
+     *
+     * @param chunkX The x coordinate of the chunk.
+     * @param chunkZ The z coordinate of the chunk.
+     * @return The chunk, or {@code null} if it is not loaded.
+     */
+    public final @Nullable LevelChunk getChunk(final int chunkX, final int chunkZ) {
+        final var chunk = ChunkPos.asLong(chunkX, chunkZ);
+        if (lastLevelChunk != null && lastChunk == chunk) {
+            return lastLevelChunk;
+        }
+
+        var levelChunk = chunks.get(chunk);
+        if (levelChunk == null) {
+            levelChunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+            if (levelChunk == null) {
+                unknownReads++;
+                return null;
+            }
+
+            if (batchDepth == 0) {
+                return levelChunk;
+            }
+
+            chunks.put(chunk, levelChunk);
+        }
+
+        lastChunk = chunk;
+        lastLevelChunk = levelChunk;
+        return levelChunk;
+    }
+
+    /**
+     * Returns a boolean that indicates whether the chunk of the specified
+     * location is loaded.
+     *
+     * @param location The location.
+     * @return {@code true} if the chunk is loaded, {@code false} otherwise.
+     */
+    public final boolean isLoaded(@NotNull final BlockPos location) {
+        return getChunk(SectionPos.blockToSectionCoord(location.getX()),
+                SectionPos.blockToSectionCoord(location.getZ())) != null;
+    }
+
+    /**
+     * Returns a boolean that indicates whether all chunks within the specified
+     * horizontal radius of the specified location are loaded.
+     *
+     * @param location The location.
+     * @param radius   The radius in blocks.
+     * @return {@code true} if all chunks are loaded, {@code false} otherwise.
+     */
+    public final boolean isAreaLoaded(@NotNull final BlockPos location, final int radius) {
+        final var minX = SectionPos.blockToSectionCoord(location.getX() - radius);
+        final var maxX = SectionPos.blockToSectionCoord(location.getX() + radius);
+        final var minZ = SectionPos.blockToSectionCoord(location.getZ() - radius);
+        final var maxZ = SectionPos.blockToSectionCoord(location.getZ() + radius);
+        for (var chunkX = minX; chunkX <= maxX; chunkX++) {
+            for (var chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+                if (getChunk(chunkX, chunkZ) == null) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the state of the block at the specified location without loading its
+     * chunk.
+     *
+     * @param location The location.
+     * @return The state of the block, or {@code null} if it is unknown because
+     *         the chunk is not loaded.
+     */
+    public final @Nullable BlockState getBlockState(@NotNull final BlockPos location) {
+        if (level.isOutsideBuildHeight(location)) {
+            return Blocks.VOID_AIR.defaultBlockState();
+        }
+
+        final var levelChunk = getChunk(SectionPos.blockToSectionCoord(location.getX()),
+                SectionPos.blockToSectionCoord(location.getZ()));
+        return levelChunk == null ? null : levelChunk.getBlockState(location);
+    }
+
+    /**
+     * Take an immutable snapshot of the block states in the specified box
+     * without loading any chunk, see {@link MagicalFarmBlockSnapshot}.
+     *
+     * @param min   The lowest corner of the box.
+     * @param sizeX The size of the box along the x axis.
+     * @param sizeY The size of the box along the y axis.
+     * @param sizeZ The size of the box along the z axis.
+     * @return The snapshot, or {@code null} if any block of the box is unknown.
+     */
+    public final @Nullable MagicalFarmBlockSnapshot snapshot(@NotNull final BlockPos min, final int sizeX,
+            final int sizeY, final int sizeZ) {
+        final var snapshot = new MagicalFarmBlockSnapshot(min, sizeX, sizeY, sizeZ, level.getHeight(),
+                level.getMinBuildHeight());
+        final var location = new BlockPos.MutableBlockPos();
+        for (var y = min.getY(); y < min.getY() + sizeY; y++) {
+            for (var z = min.getZ(); z < min.getZ() + sizeZ; z++) {
+                for (var x = min.getX(); x < min.getX() + sizeX; x++) {
+                    final var blockState = getBlockState(location.set(x, y, z));
+                    if (blockState == null) {
+                        return null;
+                    }
+
+                    snapshot.set(snapshot.indexOf(x, y, z), blockState);
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Drop the cached chunks.
+     */
+    private final void invalidate() {
+        chunks.clear();
+        lastLevelChunk = null;
+    }
+
+    /**
+     * Get the count of reads that were reported unknown because their chunk was
+     * not loaded, since the server started.
+     *
+     * @return The count of unknown reads.
+     */
+    public static final long getUnknownReads() {
+        return unknownReads;
+    }
+
+    /**
+     * Get the count of chunks that were loaded while farm work was running, since
+     * the server started. Any chunk counted here was loaded synchronously by farm
+     * code that bypassed this class.
+     *
+     * @return The count of chunk loads.
+     */
+    public static final long getChunkLoads() {
+        return chunkLoads;
+    }
+
+    /**
+     * This function is called when a chunk is loaded, counts the chunks loaded by
+     * farm work.
+     *
+     * @param event The chunk load event.
+     */
+    @SubscribeEvent
+    public static final void onChunkLoad(@NotNull final ChunkEvent.Load event) {
+        if (batchDepth == 0 || !(event.getLevel() instanceof final ServerLevel level)
+                || !(event.getChunk() instanceof LevelChunk)) {
+            return;
+        }
+
+        chunkLoads++;
+        LOGGER.debug("Chunk {} of {} was loaded by magical farm work", event.getChunk().getPos(),
+                level.dimension().location());
+    }
+
+    /**
+     * This function is called when a chunk is unloaded, a cached chunk must not
+     * outlive its unloading.
+     *
+     * @param event The chunk unload event.
+     */
+    @SubscribeEvent
+    public static final void onChunkUnload(@NotNull final ChunkEvent.Unload event) {
+        final var access = event.getLevel() instanceof final ServerLevel level ? LEVELS.get(level) : null;
+        if (access != null) {
+            final var chunk = event.getChunk().getPos().toLong();
+            access.chunks.remove(chunk);
+            if (access.lastChunk == chunk) {
+                access.lastLevelChunk = null;
+            }
+        }
+    }
+
+    /**
+     * This function is called when a level is unloaded, drop the neighbor access
+     * of the level so that the level can be garbage collected.
+     *
+     * @param event The level unload event.
+     */
+    @SubscribeEvent
+    public static final void onLevelUnload(@NotNull final LevelEvent.Unload event) {
+        if (event.getLevel() instanceof final ServerLevel level) {
+            LEVELS.remove(level);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import heckerpowered.magicalfood.common.core.mixin.CropBlockInvoker;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmBulkMutation;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmClusters;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmNeighborAccess;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.CropBlock;
+import net.minecraft.world.level.block.LevelEvent;
+import net.minecraftforge.event.entity.player.BonemealEvent;
+import net.minecraftforge.eventbus.api.Event;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * A farm feature that spreads bone meal over the whole field. Using bone meal
+ * on a crop planted on magical farmland with this feature, or on the farmland
+ * itself, fertilizes every crop on the magical farmland connected to it, up to
+ * {@link MagicalFoodConfig.Server#fertilizerMaxFarmland} blocks.
+ * <p>
+ * One bone meal is consumed per crop that grows, as if each crop was
+ * fertilized by hand. The new ages are computed in a single pass and written
+ * with a {@link MagicalFarmBulkMutation}, so the tracking players receive one
+ * update per chunk section instead of a packet per crop, and the growth
+ * particles are only shown at a bounded sample of the crops.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmAreaFertilizer extends MagicalFarmBlock.Feature {
+    /**
+     * The maximum count of crops the growth particles are shown at.
+     */
+    private static final int PARTICLE_SAMPLES = 16;
+
+    /**
+     * Constructs a new area fertilizer, this constructor should be called for
+     * registration.
+     */
+    public MagicalFarmAreaFertilizer() {
+    }
+
+    /**
+     * This function is called when bone meal is used on a block, fertilizes the
+     * field if the block is a magical farmland with this feature or a crop
+     * planted on one. The event is allowed if any crop grew, in which case one of
+     * the consumed bone meals is taken by the caller.
+     *
+     * @param event The bone meal event.
+     */
+    @SubscribeEvent
+    public static final void onBonemeal(@NotNull final BonemealEvent event) {
+        if (!(event.getLevel() instanceof final ServerLevel level)) {
+            return;
+        }
+
+        final var location = event.getBlock().getBlock() instanceof MagicalFarmBlock ? event.getPos()
+                : event.getPos().below();
+        final var farmState = level.getBlockState(location);
+        if (!(farmState.getBlock() instanceof MagicalFarmBlock) || !MagicalFarmBlock.isFeatureEnabled(level,
+                location, farmState, MagicalFoodFarmFeature.AREA_FERTILIZER.get())) {
+            return;
+        }
+
+        final var player = event.getEntity();
+        final var stack = event.getStack();
+        final var creative = player != null && player.getAbilities().instabuild;
+        final var used = fertilize(level, location, creative ? Integer.MAX_VALUE : stack.getCount());
+        if (used == 0) {
+            return;
+        }
+
+        // The caller consumes one bone meal for an allowed event
+        if (!creative) {
+            stack.shrink(used - 1);
+        }
+
+        event.setResult(Event.Result.ALLOW);
+    }
+
+    /**
+     * Fertilize the crops on the field of magical farmland connected to the
+     * specified farmland. The field is searched horizontally, only in loaded
+     * chunks, see {@link MagicalFarmNeighborAccess}.
+     *
+     * @param level     The level where the field is.
+     * @param origin    The location of a magical farmland of the field.
+     * @param bonemeals The count of bone meals that may be used.
+     * @return The count of crops that grew, which is the count of used bone meals.
+     */
+    private static final int fertilize(@NotNull final ServerLevel level, @NotNull final BlockPos origin,
+            final int bonemeals) {
+        final var maxFarmland = MagicalFoodConfig.SERVER.fertilizerMaxFarmland.get();
+        final var mutation = new MagicalFarmBulkMutation(level, false);
+        final var grown = new LongArrayList();
+        final var visited = new LongOpenHashSet();
+        final var queue = new LongArrayFIFOQueue();
+        final var location = new BlockPos.MutableBlockPos();
+        final var cropLocation = new BlockPos.MutableBlockPos();
+        visited.add(origin.asLong());
+        queue.enqueue(origin.asLong());
+
+        // The field may reach the border of the loaded area, it is searched through
+        // the neighbor access so that no chunk is loaded
+        final var access = MagicalFarmNeighborAccess.get(level);
+        MagicalFarmNeighborAccess.beginBatch();
+        try {
+            while (!queue.isEmpty() && grown.size() < bonemeals) {
+                location.set(queue.dequeueLong());
+                final var farmState = access.getBlockState(location);
+
+                // Grow the crop the same as CropBlock#performBonemeal
+                cropLocation.setWithOffset(location, Direction.UP);
+                final var cropState = access.getBlockState(cropLocation);
+                if (farmState != null && cropState != null && cropState.getBlock() instanceof final CropBlock crop
+                        && !crop.isMaxAge(cropState)) {
+                    final var age = cropState.getValue(crop.getAgeProperty());
+                    final var newAge = Math.min(crop.getMaxAge(),
+                            age + ((CropBlockInvoker) crop).invokeGetBonemealAgeIncrease(level));
+                    final var newCropState = crop.getStateForAge(newAge);
+                    mutation.setBlockState(cropLocation, newCropState);
+                    grown.add(location.asLong());
+                }
+
+                for (final var direction : Direction.Plane.HORIZONTAL) {
+                    final var neighbor = location.relative(direction);
+                    if (visited.size() >= maxFarmland || visited.contains(neighbor.asLong())) {
+                        continue;
+                    }
+
+                    final var neighborState = access.getBlockState(neighbor);
+                    if (neighborState != null && neighborState.getBlock() instanceof MagicalFarmBlock) {
+                        visited.add(neighbor.asLong());
+                        queue.enqueue(neighbor.asLong());
+                    }
+                }
+            }
+        } finally {
+            MagicalFarmNeighborAccess.endBatch();
+        }
+
+        if (grown.isEmpty()) {
+            return 0;
+        }
+
+        mutation.apply();
+
+        // The bulk mutation makes no neighbor update, notify comparators of a changed
+        // maturity and show the particles at an even sample of the crops
+        final var step = Math.max(1, grown.size() / PARTICLE_SAMPLES);
+        for (var index = 0; index < grown.size(); index++) {
+            location.set(grown.getLong(index));
+            if (MagicalFarmClusters.onCropChange(level, location,
+                    MagicalFarmBlock.getMaturity(level.getBlockState(location.above())))) {
+                level.updateNeighbourForOutputSignal(location, level.getBlockState(location).getBlock());
+            }
+
+            if (index % step == 0 && index / step < PARTICLE_SAMPLES) {
+                level.levelEvent(LevelEvent.PARTICLES_AND_SOUND_PLANT_GROWTH, location.above(), 0);
+            }
+        }
+
+        return grown.size();
+    }
+}
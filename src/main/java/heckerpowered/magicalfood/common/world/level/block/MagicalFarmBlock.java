@@ -20,6 +20,7 @@ package heckerpowered.magicalfood.common.world.level.block;
 
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.Nonnegative;
@@ -28,17 +29,51 @@ import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.jetbrains.annotations.NotNull;
 
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import heckerpowered.magicalfood.common.core.mixin.FarmBlockInvoker;
 import heckerpowered.magicalfood.common.registries.MagicalFoodRegistries;
+import heckerpowered.magicalfood.common.world.item.MagicalFarmBlockItem;
+import heckerpowered.magicalfood.common.world.item.MagicalFoodItem;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmClusters;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmNeighborAccess;
+import heckerpowered.magicalfood.common.world.level.block.entity.MagicalFarmBlockEntity;
 import heckerpowered.magicalfood.common.world.level.block.state.MagicalFarmBlockState;
+import heckerpowered.magicalfood.common.world.level.block.state.MagicalFarmPlantState;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmBlockSavedData;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmStorage;
+import heckerpowered.magicalfood.common.world.ticks.MagicalFarmComputePhase;
+import heckerpowered.magicalfood.common.world.ticks.MagicalFarmHeatmap;
+import heckerpowered.magicalfood.common.world.ticks.MagicalFarmTickScheduler;
 import net.minecraft.FieldsAreNonnullByDefault;
 import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.BushBlock;
+import net.minecraft.world.level.block.CropBlock;
+import net.minecraft.world.level.block.EntityBlock;
 import net.minecraft.world.level.block.FarmBlock;
 import net.minecraft.world.level.block.SoundType;
+import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockBehaviour;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
+import net.minecraft.world.level.block.state.properties.BooleanProperty;
+import net.minecraft.world.level.block.state.properties.IntegerProperty;
+import net.minecraft.world.level.material.FluidState;
 import net.minecraft.world.level.material.Material;
+import net.minecraft.world.level.storage.loot.LootContext;
+import net.minecraft.world.level.storage.loot.parameters.LootContextParams;
+import net.minecraftforge.common.IPlantable;
+import net.minecraftforge.registries.ForgeRegistry;
 
 /**
  * Represents a magical fram block with special effects.
@@ -48,7 +83,31 @@ import net.minecraft.world.level.material.Material;
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
 @FieldsAreNonnullByDefault
-public final class MagicalFarmBlock extends FarmBlock {
+public final class MagicalFarmBlock extends FarmBlock implements EntityBlock {
+    /**
+     * The hot feature slots of the block state. The features mapped to the slots
+     * by {@link MagicalFarmHotFeatures} are mirrored into these properties, so
+     * that checking them only reads the block state, the storage remains the
+     * authority for all features.
+     */
+    public static final BooleanProperty[] HOT_FEATURES = { BooleanProperty.create("hot_0"),
+            BooleanProperty.create("hot_1"), BooleanProperty.create("hot_2"), BooleanProperty.create("hot_3") };
+
+    /**
+     * Whether the block has work to do on random ticks, see {@link #hasWork}.
+     * Only active blocks are randomly ticked, so chunk sections that only contain
+     * idle magical farmland are skipped by the random tick of the level, the
+     * same as sections without any randomly ticking block. The flag is
+     * maintained as the crop above, the moisture and the features change, and
+     * as fluids are removed near the block, see {@link #onFluidRemoved}.
+     */
+    public static final BooleanProperty ACTIVE = BooleanProperty.create("active");
+
+    /**
+     * The name of the age property of crops, shared by all vanilla plants that
+     * grow in stages.
+     */
+    private static final String AGE = "age";
 
     /**
      * Constructs a new farm block, this constructor should be called for
@@ -57,46 +116,631 @@ public final class MagicalFarmBlock extends FarmBlock {
     public MagicalFarmBlock() {
         // Use the same properties as the vanilla farm block, note that Blocks.always
         // method is private and invisible here, we use the public implementation in the
-        // MagicalFoodBlock class.
-        super(BlockBehaviour.Properties.of(Material.DIRT).randomTicks().strength(0.6F).sound(SoundType.GRAVEL)
+        // MagicalFoodBlock class. Random ticks depend on the state, see isRandomlyTicking.
+        super(BlockBehaviour.Properties.of(Material.DIRT).strength(0.6F).sound(SoundType.GRAVEL)
                 .isViewBlocking(MagicalFoodBlock::always).isSuffocating(MagicalFoodBlock::always));
-        registerDefaultState(new StateDefinition.Builder<Block, BlockState>(this)
-                .create(Block::defaultBlockState, (owner, values,
-                        propertiesCodec) -> (BlockState) new MagicalFarmBlockState(owner, values, propertiesCodec))
-                .any());
+
+        // The states are instances of MagicalFarmBlockState, see BlockMixin. New
+        // blocks are active until their first random tick finds out otherwise.
+        var defaultState = stateDefinition.any().setValue(MOISTURE, 0).setValue(ACTIVE, true);
+        for (final var property : HOT_FEATURES) {
+            defaultState = defaultState.setValue(property, false);
+        }
+
+        registerDefaultState(defaultState);
+    }
+
+    /**
+     * Add the properties of the block, the moisture of the vanilla farm block, the
+     * hot feature slots and whether the block is active.
+     *
+     * @param builder The builder of the state definition.
+     */
+    @Override
+    protected void createBlockStateDefinition(@NotNull final StateDefinition.Builder<Block, BlockState> builder) {
+        super.createBlockStateDefinition(builder);
+        builder.add(HOT_FEATURES);
+        builder.add(ACTIVE);
+    }
+
+    /**
+     * Returns a boolean that indicates whether the block is randomly ticked,
+     * which is cached by the chunk sections to count their randomly ticking
+     * blocks.
+     *
+     * @param blockState The state of the block.
+     * @return {@code true} if the block is active, {@code false} otherwise.
+     */
+    @Override
+    public boolean isRandomlyTicking(@NotNull final BlockState blockState) {
+        return blockState.getValue(ACTIVE);
+    }
+
+    /**
+     * Returns a boolean that indicates whether a magical farmland has work to do
+     * on random ticks. The vanilla farm block only changes its moisture, or turns
+     * to dirt, on random ticks, which fully hydrated farmland within the range of
+     * water never does. Farmland only hydrated by rain stays active, so that it
+     * dries out once the rain stops. The features only have work if they need the
+     * block above, see {@link Feature#isRandomlyTicking}.
+     *
+     * @param level       The level where the block is.
+     * @param location    The location of the block.
+     * @param blockState  The state of the block.
+     * @param featureData The features of the block, or {@code null} if it has
+     *                    none.
+     * @param aboveState  The state of the block above.
+     * @return {@code true} if the block has work to do, {@code false} otherwise.
+     */
+    public static final boolean hasWork(@NotNull final LevelReader level, @NotNull final BlockPos location,
+            @NotNull final BlockState blockState, @Nullable final FeatureData featureData,
+            @NotNull final BlockState aboveState) {
+        if (blockState.getValue(MOISTURE) < MAX_MOISTURE || !FarmBlockInvoker.invokeIsNearWater(level, location)) {
+            return true;
+        }
+
+        if (featureData == null) {
+            return false;
+        }
+
+        for (final var feature : featureData.getFeatures()) {
+            if (feature.isRandomlyTicking(aboveState)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the maturity of the specified crop mapped to {@code 0..15}, a fully
+     * grown crop is {@code 15}. Any block with an integer {@value #AGE} property
+     * counts as a crop. The maturity only depends on the state, it is computed
+     * once per state and cached in the state, see {@link MagicalFarmPlantState}.
+     *
+     * @param cropState The state of the block above a magical farmland.
+     * @return The maturity, or {@code 0} if the block is not a crop.
+     */
+    public static final int getMaturity(@NotNull final BlockState cropState) {
+        final var cached = (MagicalFarmPlantState) cropState;
+        var maturity = cached.getMagicalFarmMaturity() - 1;
+        if (maturity < 0) {
+            maturity = computeMaturity(cropState);
+            cached.setMagicalFarmMaturity((byte) (maturity + 1));
+        }
+
+        return maturity;
+    }
+
+    /**
+     * Compute the maturity of the specified crop, see {@link #getMaturity}.
+     *
+     * @param cropState The state of the block above a magical farmland.
+     * @return The maturity, or {@code 0} if the block is not a crop.
+     */
+    private static final int computeMaturity(@NotNull final BlockState cropState) {
+        if (cropState.getBlock() instanceof final CropBlock crop) {
+            return cropState.getValue(crop.getAgeProperty()) * 15 / crop.getMaxAge();
+        }
+
+        for (final var property : cropState.getProperties()) {
+            if (property instanceof final IntegerProperty age && property.getName().equals(AGE)) {
+                final var maxAge = Collections.max(age.getPossibleValues());
+                return maxAge > 0 ? cropState.getValue(age) * 15 / maxAge : 0;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Magical farmland provides the maturity of the crop above to comparators.
+     *
+     * @param blockState The state of the block.
+     * @return Always returns {@code true}.
+     */
+    @Override
+    public boolean hasAnalogOutputSignal(@NotNull final BlockState blockState) {
+        return true;
+    }
+
+    /**
+     * Get the maturity of the crop above, which is cached in the state of the
+     * crop, so reading the signal only looks the crop up.
+     *
+     * @param blockState The state of the block.
+     * @param level      The level where the block is.
+     * @param location   The location of the block.
+     * @return The maturity of the crop above, see {@link #getMaturity}.
+     */
+    @Override
+    public int getAnalogOutputSignal(@NotNull final BlockState blockState, @NotNull final Level level,
+            @NotNull final BlockPos location) {
+        return getMaturity(level.getBlockState(location.above()));
+    }
+
+    /**
+     * Update whether the block is active, and the maturity of its cluster, when
+     * the crop above changes, the hot features are corrected on the way.
+     * Comparators compare the signal as soon as they are notified, before the
+     * shape updates of the crop are done, so they are notified by a scheduled
+     * tick if the maturity changed, see {@link #tick}.
+     *
+     * @param blockState       The state of the block.
+     * @param direction        The direction of the changed neighbor.
+     * @param neighborState    The new state of the neighbor.
+     * @param level            The level where the block is.
+     * @param location         The location of the block.
+     * @param neighborLocation The location of the neighbor.
+     * @return The new state of the block.
+     */
+    @Override
+    public BlockState updateShape(@NotNull final BlockState blockState, @NotNull final Direction direction,
+            @NotNull final BlockState neighborState, @NotNull final LevelAccessor level,
+            @NotNull final BlockPos location, @NotNull final BlockPos neighborLocation) {
+        final var newBlockState = super.updateShape(blockState, direction, neighborState, level, location,
+                neighborLocation);
+        if (direction != Direction.UP || !newBlockState.is(this)) {
+            return newBlockState;
+        }
+
+        if (!(level instanceof final ServerLevel serverLevel)) {
+            return newBlockState;
+        }
+
+        if (MagicalFarmClusters.onCropChange(serverLevel, location, getMaturity(neighborState))) {
+            level.scheduleTick(location, this, 1);
+        }
+
+        final var featureData = MagicalFarmStorage.get(serverLevel).getFeatureData(location);
+        return withHotFeatures(newBlockState, featureData).setValue(ACTIVE,
+                hasWork(level, location, newBlockState, featureData, neighborState));
+    }
+
+    /**
+     * Wake the block up when a neighbor other than the crop above changes. Idle
+     * farmland is fully hydrated by water in range and only looks for water on
+     * random ticks, so it is activated to look again once something next to it
+     * changes, such as the water it is hydrated by.
+     *
+     * @param blockState       The state of the block.
+     * @param level            The level where the block is.
+     * @param location         The location of the block.
+     * @param neighborBlock    The block of the changed neighbor.
+     * @param neighborLocation The location of the changed neighbor.
+     * @param movedByPiston    Whether the neighbor is moved by a piston.
+     */
+    @Override
+    public void neighborChanged(@NotNull final BlockState blockState, @NotNull final Level level,
+            @NotNull final BlockPos location, @NotNull final Block neighborBlock,
+            @NotNull final BlockPos neighborLocation, final boolean movedByPiston) {
+        super.neighborChanged(blockState, level, location, neighborBlock, neighborLocation, movedByPiston);
+        if (!level.isClientSide() && !blockState.getValue(ACTIVE) && !neighborLocation.equals(location.above())) {
+            level.setBlock(location, blockState.setValue(ACTIVE, true), Block.UPDATE_CLIENTS);
+        }
+    }
+
+    /**
+     * Wake the idle magical farmland that may have been hydrated by a fluid
+     * removed at the specified location, so that it looks for water again on its
+     * next random tick. Farmland is hydrated by water up to four blocks away
+     * horizontally and one block above, which neighbor updates do not reach.
+     * Chunks that are not loaded are skipped, their farmland is woken up by its
+     * own neighbors once they change.
+     *
+     * @param level    The level where the fluid was removed.
+     * @param location The location of the removed fluid.
+     */
+    public static final void onFluidRemoved(@NotNull final ServerLevel level, @NotNull final BlockPos location) {
+        final var access = MagicalFarmNeighborAccess.get(level);
+        for (final var farmLocation : BlockPos.betweenClosed(location.offset(-4, -1, -4), location.offset(4, 0, 4))) {
+            final var blockState = access.getBlockState(farmLocation);
+            if (blockState != null && blockState.getBlock() instanceof MagicalFarmBlock
+                    && !blockState.getValue(ACTIVE)) {
+                level.setBlock(farmLocation.immutable(), blockState.setValue(ACTIVE, true), Block.UPDATE_CLIENTS);
+            }
+        }
+    }
+
+    /**
+     * Turns the block to dirt if it cannot survive the same as vanilla, and
+     * notifies comparators of the maturity changed by the crop above, see
+     * {@link #updateShape}.
+     *
+     * @param blockState The state of the block.
+     * @param level      The level where the block is.
+     * @param location   The location of the block.
+     * @param random     The random source of the level.
+     */
+    @Override
+    public void tick(@NotNull final BlockState blockState, @NotNull final ServerLevel level,
+            @NotNull final BlockPos location, @NotNull final RandomSource random) {
+        super.tick(blockState, level, location, random);
+        if (level.getBlockState(location).is(this)) {
+            level.updateNeighbourForOutputSignal(location, this);
+        }
+    }
+
+    /**
+     * Returns a boolean that indicates whether the specified feature is enabled at
+     * the specified magical farmland. Hot features are read from the block state
+     * once the farmland has joined its cluster, which corrects states written with
+     * another mapping of the hot feature slots, see {@link MagicalFarmHotFeatures}.
+     * Other features, and farmland of a chunk loaded in this tick, are looked up
+     * in the storage.
+     *
+     * @param level      The level where the block is.
+     * @param location   The location of the block.
+     * @param blockState The state of the block.
+     * @param feature    The feature.
+     * @return {@code true} if the feature is enabled, {@code false} otherwise.
+     */
+    public static final boolean isFeatureEnabled(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+            @NotNull final BlockState blockState, @NotNull final Feature feature) {
+        final var slot = MagicalFarmHotFeatures.getSlot(feature);
+        if (slot >= 0 && blockState instanceof final MagicalFarmBlockState magicalFarmBlockState
+                && MagicalFarmClusters.get(level).contains(location)) {
+            return magicalFarmBlockState.isHotFeatureEnabled(slot);
+        }
+
+        final var featureData = MagicalFarmStorage.get(level).getFeatureData(location);
+        return featureData != null && featureData.isFeatureEnabled(feature.getId());
+    }
+
+    /**
+     * Set the features of the magical farmland at the specified location, mirror
+     * the hot features and whether it is active into its block state, and update
+     * the feature counts of its cluster.
+     *
+     * @param level       The level where the block is.
+     * @param location    The location of the block.
+     * @param featureData The features of the block.
+     */
+    public static final void setFeatureData(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+            @NotNull final FeatureData featureData) {
+        final var previous = MagicalFarmStorage.get(level).setFeatureData(location, featureData);
+        MagicalFarmClusters.onFeatureChange(level, location, previous, featureData);
+
+        final var blockState = level.getBlockState(location);
+        if (blockState.getBlock() instanceof MagicalFarmBlock) {
+            final var newBlockState = withHotFeatures(blockState, featureData).setValue(ACTIVE,
+                    hasWork(level, location, blockState, featureData, level.getBlockState(location.above())));
+            if (newBlockState != blockState) {
+                level.setBlock(location, newBlockState, Block.UPDATE_CLIENTS);
+            }
+        }
+    }
+
+    /**
+     * Get the specified state with its hot feature slots matching the specified
+     * features.
+     *
+     * @param blockState  The state of a magical farmland.
+     * @param featureData The features of the block, or {@code null} if it has
+     *                    none.
+     * @return The state with the hot features, the same state if they already
+     *         match.
+     */
+    public static final @NotNull BlockState withHotFeatures(@NotNull final BlockState blockState,
+            @Nullable final FeatureData featureData) {
+        var newBlockState = blockState;
+        for (var slot = 0; slot < HOT_FEATURES.length; slot++) {
+            final var feature = MagicalFarmHotFeatures.getFeature(slot);
+            final var enabled = feature != null && featureData != null && featureData.isFeatureEnabled(feature.getId());
+            newBlockState = newBlockState.setValue(HOT_FEATURES[slot], enabled);
+        }
+
+        return newBlockState;
+    }
+
+    /**
+     * Create the block entity of the block, which only exists if the block entity
+     * storage backend is selected.
+     *
+     * @param location   The location of the block.
+     * @param blockState The state of the block.
+     * @return The block entity, or {@code null} if another backend is selected.
+     */
+    @Override
+    public @Nullable BlockEntity newBlockEntity(@NotNull final BlockPos location,
+            @NotNull final BlockState blockState) {
+        return MagicalFarmStorage.getBackend() == MagicalFarmStorage.Backend.BLOCK_ENTITY
+                ? new MagicalFarmBlockEntity(location, blockState)
+                : null;
+    }
+
+    /**
+     * Remove the features of the block from the storage once the block is
+     * replaced by another block, including when it turns to dirt, so that no
+     * orphaned entry is left behind.
+     *
+     * @param blockState    The state of the removed block.
+     * @param level         The level where the block is.
+     * @param location      The location of the block.
+     * @param newBlockState The state of the block that replaces it.
+     * @param isMoving      Whether the block is moved by a piston.
+     */
+    @Override
+    public void onRemove(@NotNull final BlockState blockState, @NotNull final Level level,
+            @NotNull final BlockPos location, @NotNull final BlockState newBlockState, final boolean isMoving) {
+        if (level instanceof final ServerLevel serverLevel && !newBlockState.is(this)) {
+            MagicalFarmStorage.get(serverLevel).removeFeatureData(location);
+            MagicalFarmClusters.onBlockStateChange(serverLevel, location, blockState, newBlockState);
+        }
+
+        super.onRemove(blockState, level, location, newBlockState, isMoving);
+    }
+
+    /**
+     * Add the block to its cluster when it is placed, see
+     * {@link MagicalFarmClusters}.
+     *
+     * @param blockState    The new state of the block.
+     * @param level         The level where the block is.
+     * @param location      The location of the block.
+     * @param oldBlockState The previous state at the location.
+     * @param isMoving      Whether the block is moved by a piston.
+     */
+    @Override
+    public void onPlace(@NotNull final BlockState blockState, @NotNull final Level level,
+            @NotNull final BlockPos location, @NotNull final BlockState oldBlockState, final boolean isMoving) {
+        super.onPlace(blockState, level, location, oldBlockState, isMoving);
+        if (level instanceof final ServerLevel serverLevel) {
+            MagicalFarmClusters.onBlockStateChange(serverLevel, location, oldBlockState, blockState);
+        }
+    }
+
+    /**
+     * Returns a boolean that indicates whether the specified plant can grow on
+     * this block. Every plant that grows on vanilla farmland grows on magical
+     * farmland, see {@link MagicalFarmPlants}, which answers from a flag cached
+     * in the state of the plant. Plants derived from {@link BushBlock} are
+     * answered before this method is called, from the state they already have,
+     * see {@code BushBlockMixin}; other callers only pass the plant, whose state
+     * is looked up here. Other plants are checked as usual.
+     *
+     * @param blockState The state of the block.
+     * @param level      The level where the block is.
+     * @param location   The location of the block.
+     * @param facing     The side of the block the plant grows on.
+     * @param plantable  The plant.
+     * @return {@code true} if the plant can grow on this block, {@code false}
+     *         otherwise.
+     */
+    @Override
+    public boolean canSustainPlant(@NotNull final BlockState blockState, @NotNull final BlockGetter level,
+            @NotNull final BlockPos location, @NotNull final Direction facing, @NotNull final IPlantable plantable) {
+        if (facing == Direction.UP
+                && MagicalFarmPlants.isFarmlandPlant(plantable.getPlant(level, location.above()), level, location)) {
+            return true;
+        }
+
+        return super.canSustainPlant(blockState, level, location, facing, plantable);
+    }
+
+    /**
+     * Keep the block in place if it will be harvested, so that its features are
+     * still in the storage when {@link #playerDestroy} creates the drops.
+     *
+     * @param blockState  The state of the block.
+     * @param level       The level where the block is.
+     * @param location    The location of the block.
+     * @param player      The player that destroys the block.
+     * @param willHarvest Whether the block will be harvested.
+     * @param fluidState  The fluid state at the location.
+     * @return {@code true} if the block is or will be removed.
+     */
+    @Override
+    public boolean onDestroyedByPlayer(@NotNull final BlockState blockState, @NotNull final Level level,
+            @NotNull final BlockPos location, @NotNull final Player player, final boolean willHarvest,
+            @NotNull final FluidState fluidState) {
+        if (willHarvest) {
+            // Removed by playerDestroy after the drops are created
+            playerWillDestroy(level, location, blockState, player);
+            return true;
+        }
+
+        return super.onDestroyedByPlayer(blockState, level, location, player, willHarvest, fluidState);
+    }
+
+    /**
+     * Create the drops of the harvested block, then remove the block.
+     *
+     * @param level       The level where the block is.
+     * @param player      The player that destroyed the block.
+     * @param location    The location of the block.
+     * @param blockState  The state of the block.
+     * @param blockEntity The block entity of the block, or {@code null}.
+     * @param tool        The tool used to destroy the block.
+     */
+    @Override
+    public void playerDestroy(@NotNull final Level level, @NotNull final Player player,
+            @NotNull final BlockPos location, @NotNull final BlockState blockState,
+            @Nullable final BlockEntity blockEntity, @NotNull final ItemStack tool) {
+        super.playerDestroy(level, player, location, blockState, blockEntity, tool);
+        level.removeBlock(location, false);
     }
 
     /**
+     * Get the drops of the block, which is the block in the form of item carrying
+     * the features of the block, see {@link MagicalFarmBlockItem}.
      *
+     * @param blockState The state of the block.
+     * @param builder    The builder of the loot context.
+     * @return The drops of the block.
+     */
+    @Override
+    public List<ItemStack> getDrops(@NotNull final BlockState blockState, @NotNull final LootContext.Builder builder) {
+        final var origin = builder.getOptionalParameter(LootContextParams.ORIGIN);
+        final FeatureData featureData = origin == null ? null
+                : MagicalFarmStorage.get(builder.getLevel()).getFeatureData(new BlockPos(origin));
+        return List.of(MagicalFoodItem.MAGICAL_FARM_BLOCK.get().create(featureData));
+    }
+
+    /**
+     * Performs a random tick on the block, the vanilla moisture logic runs
+     * immediately while the work of the enabled features is handed to
+     * {@link MagicalFarmTickScheduler}, so that it is bounded by the per-tick time
+     * budget.
+     *
+     * @param blockState The state of the block.
+     * @param level      The level where the block is.
+     * @param location   The location of the block.
+     * @param random     The random source of the level.
+     */
+    @Override
+    public void randomTick(@NotNull final BlockState blockState, @NotNull final ServerLevel level,
+            @NotNull final BlockPos location, @NotNull final RandomSource random) {
+        final var start = MagicalFarmHeatmap.start();
+        doRandomTick(blockState, level, location, random);
+        MagicalFarmHeatmap.record(level, location, MagicalFarmHeatmap.Category.TICK, start);
+    }
+
+    /**
+     * The random tick of the block without the profiling, see
+     * {@link #randomTick}.
+     *
+     * @param blockState The state of the block.
+     * @param level      The level where the block is.
+     * @param location   The location of the block.
+     * @param random     The random source of the level.
+     */
+    private final void doRandomTick(@NotNull final BlockState blockState, @NotNull final ServerLevel level,
+            @NotNull final BlockPos location, @NotNull final RandomSource random) {
+        // Update moisture and turn to dirt the same as vanilla
+        if (MagicalFoodConfig.SERVER.quietMoisture.get()) {
+            updateMoisture(blockState, level, location);
+        } else {
+            super.randomTick(blockState, level, location, random);
+        }
+
+        // The block may have turned to dirt
+        final var currentBlockState = level.getBlockState(location);
+        if (!currentBlockState.is(this)) {
+            return;
+        }
+
+        // Correct the hot features written with a previous slot mapping, and the
+        // maturity if the crop changed without a shape update, then go idle if
+        // there is no work left
+        final var featureData = MagicalFarmStorage.get(level).getFeatureData(location);
+        final var aboveState = level.getBlockState(location.above());
+        final var newBlockState = withHotFeatures(currentBlockState, featureData)
+                .setValue(ACTIVE, hasWork(level, location, currentBlockState, featureData, aboveState));
+        if (newBlockState != currentBlockState) {
+            level.setBlock(location, newBlockState, Block.UPDATE_CLIENTS);
+        }
+
+        if (MagicalFarmClusters.onCropChange(level, location, getMaturity(aboveState))) {
+            level.updateNeighbourForOutputSignal(location, this);
+        }
+
+        // Determine whether there is any feature work to do
+        if (featureData == null || featureData.getFeatures().isEmpty()) {
+            return;
+        }
+
+        final var immutableLocation = location.immutable();
+        MagicalFarmTickScheduler.schedule(level, immutableLocation,
+                () -> dispatchRandomTick(level, immutableLocation));
+    }
+
+    /**
+     * Update the moisture and turn to dirt the same as the random tick of the
+     * vanilla farm block, but only send the state to clients when the farmland
+     * becomes hydrated or dry. Crops only tell hydrated farmland from dry, so
+     * clients keep seeing hydrated farmland while it dries out step by step, and
+     * a single update is sent once it is dry or hydrated again.
+     *
+     * @param blockState The state of the block.
+     * @param level      The level where the block is.
+     * @param location   The location of the block.
+     */
+    private static final void updateMoisture(@NotNull final BlockState blockState, @NotNull final ServerLevel level,
+            @NotNull final BlockPos location) {
+        final var moisture = blockState.getValue(MOISTURE);
+        if (!FarmBlockInvoker.invokeIsNearWater(level, location) && !level.isRainingAt(location.above())) {
+            if (moisture > 0) {
+                level.setBlock(location, blockState.setValue(MOISTURE, moisture - 1),
+                        moisture == 1 ? Block.UPDATE_CLIENTS : Block.UPDATE_NONE);
+            } else if (!FarmBlockInvoker.invokeIsUnderCrops(level, location)) {
+                turnToDirt(blockState, level, location);
+            }
+        } else if (moisture < MAX_MOISTURE) {
+            // Clients may have been sent a step in between along with another change
+            level.setBlock(location, blockState.setValue(MOISTURE, MAX_MOISTURE), Block.UPDATE_CLIENTS);
+        }
+    }
+
+    /**
+     * Dispatch a random tick to all features enabled at the specified location.
+     * The block may have changed since the tick was scheduled, so both the block
+     * and the features are looked up again.
+     *
+     * @param level    The level where the block is.
+     * @param location The location of the block.
+     */
+    private static final void dispatchRandomTick(@NotNull final ServerLevel level, @NotNull final BlockPos location) {
+        // Determine whether the block is still a magical farmland
+        final var blockState = MagicalFarmNeighborAccess.get(level).getBlockState(location);
+        if (blockState == null || !(blockState.getBlock() instanceof MagicalFarmBlock)) {
+            return;
+        }
+
+        final var featureData = MagicalFarmStorage.get(level).getFeatureData(location);
+        if (featureData == null) {
+            return;
+        }
+
+        for (final var feature : featureData.getFeatures()) {
+            final var computation = feature.prepare(level, location, blockState);
+            if (computation != null) {
+                MagicalFarmComputePhase.submit(level, location, feature, computation);
+            } else {
+                feature.randomTick(level, location, blockState, level.getRandom());
+            }
+        }
+    }
+
+    /**
+     * Represents the features enabled at a single magical farmland. Feature datas
+     * are immutable, enabling or disabling a feature returns a new feature data,
+     * so that they can be shared freely by snapshots of
+     * {@link MagicalFarmBlockSavedData}.
      *
      * @author Heckerpowered
-     * @implNote
      */
     @ParametersAreNonnullByDefault
     @MethodsReturnNonnullByDefault
     @FieldsAreNonnullByDefault
     public static final class FeatureData {
 
-        private static Feature[] registeredFeatures;
-
         /**
          * A {@link BitSet} that stores features. To query whether a feature is enabled,
          * use {@link BitSet#get} method. Where the integer parameter is the feature's
-         * ID.
+         * ID. The bit set is never modified once the feature data is constructed.
          */
         private final BitSet featureSet;
 
         /**
          * Features that are enabled, cached for performance.
          */
-        private List<Feature> features;
+        private final List<Feature> features;
 
         /**
-         * Constructs a new feature data, with the count of features as the size of
-         * features data.
+         * The registered features indexed by their IDs, built by
+         * {@link #buildLookupTable()}. Feature datas are decoded on several threads
+         * while the data of the levels is preloaded, so the table is published
+         * through a volatile field.
+         */
+        private static volatile @Nullable Feature[] lookupTable;
+
+        /**
+         * Constructs a new feature data without any feature enabled.
          */
         public FeatureData() {
-            featureSet = new BitSet(Feature.featureCount);
+            featureSet = new BitSet();
+            features = Collections.emptyList();
         }
 
         /**
@@ -107,10 +751,20 @@ public final class MagicalFarmBlock extends FarmBlock {
          *             sequence of bits.
          */
         public FeatureData(long[] data) {
-            featureSet = BitSet.valueOf(data);
+            this(BitSet.valueOf(data));
+        }
+
+        /**
+         * Constructs a new feature data that takes the ownership of the specified bit
+         * set.
+         *
+         * @param featureSet The bit set that stores the features.
+         */
+        private FeatureData(@NotNull final BitSet featureSet) {
+            this.featureSet = featureSet;
 
             // Cache for performance
-            features = getFeaturesEnabled();
+            features = Collections.unmodifiableList(getFeaturesEnabled());
         }
 
         /**
@@ -122,6 +776,16 @@ public final class MagicalFarmBlock extends FarmBlock {
             return featureSet.toLongArray();
         }
 
+        /**
+         * Get features that are currently enabled, the returned list is cached and
+         * must not be modified.
+         *
+         * @return The features that are currently enabled
+         */
+        public final List<Feature> getFeatures() {
+            return features;
+        }
+
         /**
          * Get features that are currently enabled.
          *
@@ -134,7 +798,11 @@ public final class MagicalFarmBlock extends FarmBlock {
 
             // Iterate over the true bits in a BitSet, true bits means enabled features
             for (var index = featureSet.nextSetBit(0); index >= 0; index = featureSet.nextSetBit(index + 1)) {
-                list.add(getFeature(index));
+                // Skip features that are no longer registered
+                final var feature = lookup(index);
+                if (feature != null) {
+                    list.add(feature);
+                }
             }
 
             return list;
@@ -152,30 +820,65 @@ public final class MagicalFarmBlock extends FarmBlock {
         }
 
         /**
-         * Enable the specified feature.
+         * Get a feature data with the specified feature enabled in addition to the
+         * features of this feature data.
          *
          * @param featureID The feature ID
+         * @return The feature data with the feature enabled, this feature data if the
+         *         feature is already enabled
          * @throws IndexOutOfBoundsException if the specified ID is negative
+         * @throws IllegalArgumentException  if there is no feature registered with
+         *                                   the specified ID
          */
-        public final void enableFeature(@Nonnegative final int featureID) {
+        public final @NotNull FeatureData withFeatureEnabled(@Nonnegative final int featureID) {
             // Determine whether the feature is already enabled
             if (isFeatureEnabled(featureID)) {
-                return;
+                return this;
             }
 
+            // Validate the ID before it is persisted
+            getFeature(featureID);
+
+            final var featureSet = (BitSet) this.featureSet.clone();
             featureSet.set(featureID);
-            features.add(getFeature(featureID));
+            return new FeatureData(featureSet);
         }
 
         /**
-         * Disable the specified feature.
+         * Get a feature data with the specified feature disabled.
          *
          * @param featureID The feature ID
+         * @return The feature data with the feature disabled, this feature data if the
+         *         feature is already disabled
          * @throws IndexOutOfBoundsException if the specified ID is negative
          */
-        public final void disableFeature(@Nonnegative final int featureID) {
+        public final @NotNull FeatureData withFeatureDisabled(@Nonnegative final int featureID) {
+            // Determine whether the feature is already disabled
+            if (!isFeatureEnabled(featureID)) {
+                return this;
+            }
+
+            final var featureSet = (BitSet) this.featureSet.clone();
             featureSet.clear(featureID);
-            features.remove(getFeature(featureID));
+            return new FeatureData(featureSet);
+        }
+
+        /**
+         * Feature datas are equal if the same features are enabled, so that equal
+         * feature datas can share a palette entry of the chunk data.
+         *
+         * @param object The object to compare with.
+         * @return {@code true} if the object is a feature data with the same features
+         *         enabled, {@code false} otherwise.
+         */
+        @Override
+        public final boolean equals(@Nullable final Object object) {
+            return object instanceof final FeatureData featureData && featureData.featureSet.equals(featureSet);
+        }
+
+        @Override
+        public final int hashCode() {
+            return featureSet.hashCode();
         }
 
         /**
@@ -183,38 +886,167 @@ public final class MagicalFarmBlock extends FarmBlock {
          *
          * @param featureID The feature ID
          * @return The feature with the specified ID
+         * @throws IllegalArgumentException if there is no feature registered with the
+         *                                  specified ID
          */
         public static final @NotNull Feature getFeature(@Nonnegative final int featureID) {
-            // Determine if the registered features is cached
-            if (registeredFeatures == null) {
-                // Get all registered features
-                final var registeredFeatures = MagicalFoodRegistries.FARM_FEATURES.getValues();
+            final var feature = lookup(featureID);
+            if (feature == null) {
+                throw new IllegalArgumentException("Unknown farm feature ID: " + featureID);
+            }
+
+            return feature;
+        }
 
-                // Allocate a new feature array for index access
-                FeatureData.registeredFeatures = new Feature[registeredFeatures.size()];
+        /**
+         * Build the table of the registered features by their IDs. The table is
+         * built on first use, and should be built again whenever the IDs of the
+         * registry are remapped.
+         *
+         * @return The count of registered features.
+         */
+        public static final int buildLookupTable() {
+            final var registry = getRegistry();
+            var maxID = -1;
+            for (final var feature : registry.getValues()) {
+                maxID = Math.max(maxID, registry.getID(feature));
+            }
 
-                // Copy the features in the collection to the array
-                registeredFeatures.toArray(FeatureData.registeredFeatures);
+            final var table = new Feature[maxID + 1];
+            for (final var feature : registry.getValues()) {
+                table[registry.getID(feature)] = feature;
             }
 
-            return FeatureData.getFeature(featureID);
+            lookupTable = table;
+            return registry.getValues().size();
+        }
+
+        /**
+         * Get the feature with the specified ID from the lookup table.
+         *
+         * @param featureID The feature ID
+         * @return The feature, or {@code null} if there is no feature registered with
+         *         the specified ID
+         */
+        private static final @Nullable Feature lookup(@Nonnegative final int featureID) {
+            var table = lookupTable;
+            if (table == null) {
+                buildLookupTable();
+                table = lookupTable;
+            }
+
+            return featureID < table.length ? table[featureID] : null;
+        }
+
+        /**
+         * Get the farm feature registry with integer ID access.
+         *
+         * @return The farm feature registry
+         */
+        private static final @NotNull ForgeRegistry<Feature> getRegistry() {
+            return (ForgeRegistry<Feature>) MagicalFoodFarmFeature.REGISTRY.get();
         }
     }
 
+    /**
+     * Represents a feature of a magical farmland, features are registered to
+     * {@link MagicalFoodRegistries#FARM_FEATURES} and enabled per block through
+     * {@link FeatureData}. Features that read the blocks around the farmland
+     * should read them through {@link MagicalFarmNeighborAccess}, which never
+     * loads a chunk at the border of the loaded area.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    @MethodsReturnNonnullByDefault
+    @FieldsAreNonnullByDefault
     public static class Feature {
         /**
-         * The count of features, each of which occupies one bit. For memory alignment
-         * reasons, the size of the occupied bits is a multiple of 8.
+         * Get the ID of this feature, which is the ID assigned by the farm feature
+         * registry. The ID is saved with the world so it is stable across restarts.
+         *
+         * @return The ID of this feature
+         */
+        public final int getId() {
+            return FeatureData.getRegistry().getID(this);
+        }
+
+        /**
+         * Called when a magical farmland with this feature enabled is randomly ticked.
+         * This method is called by {@link MagicalFarmTickScheduler}, possibly a few
+         * ticks after the random tick happened, the time spent here counts towards the
+         * farm tick budget. By default, this method does nothing.
+         *
+         * @param level      The level where the block is.
+         * @param location   The location of the block.
+         * @param blockState The current state of the block.
+         * @param random     The random source of the level.
+         */
+        public void randomTick(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+                @NotNull final BlockState blockState, @NotNull final RandomSource random) {
+        }
+
+        /**
+         * Prepare the work of a random tick of a magical farmland with this feature
+         * enabled for {@link MagicalFarmComputePhase}. This method is called on the
+         * server thread instead of {@link #randomTick}, and reads the inputs of the
+         * work from the level into a computation, which may run on another thread
+         * and returns the change to apply. By default, this method returns
+         * {@code null}, which means the feature does its work in
+         * {@link #randomTick}.
+         *
+         * @param level      The level where the block is.
+         * @param location   The location of the block.
+         * @param blockState The current state of the block.
+         * @return The computation, or {@code null} to call {@link #randomTick}
+         *         instead.
          */
-        static int featureCount;
+        public @Nullable MagicalFarmComputePhase.Computation prepare(@NotNull final ServerLevel level,
+                @NotNull final BlockPos location, @NotNull final BlockState blockState) {
+            return null;
+        }
 
         /**
-         * Assign a new feature ID, starting from 0. The feature ID is continuous.
+         * Returns a boolean that indicates whether this feature has work to do on
+         * random ticks of a magical farmland, see {@link MagicalFarmBlock#hasWork}.
+         * Features that override {@link #randomTick} or {@link #prepare} must
+         * override this method as well, magical farmland without work is not
+         * randomly ticked. By default, this method returns {@code false}.
          *
-         * @return
+         * @param aboveState The state of the block above the farmland.
+         * @return {@code true} if this feature has work to do, {@code false}
+         *         otherwise.
          */
-        protected static final int getFeatureId() {
-            return featureCount++;
+        public boolean isRandomlyTicking(@NotNull final BlockState aboveState) {
+            return false;
+        }
+
+        /**
+         * Returns a boolean that indicates whether this feature does work for whole
+         * clusters of magical farmland, see {@link #clusterTick}. The result must
+         * not change once the feature is registered. By default, this method
+         * returns {@code false}.
+         *
+         * @return {@code true} if this feature does cluster-level work,
+         *         {@code false} otherwise.
+         */
+        public boolean isClusterTicking() {
+            return false;
+        }
+
+        /**
+         * Called once per server tick for each cluster of adjacent magical
+         * farmland that has this feature enabled on any of its members, if
+         * {@link #isClusterTicking} returns {@code true}. Work that concerns a
+         * whole field, such as shared water or statistics, should be done here
+         * with the aggregated state of the cluster instead of in
+         * {@link #randomTick} of every farmland. By default, this method does
+         * nothing.
+         *
+         * @param level   The level where the cluster is.
+         * @param cluster The cluster.
+         */
+        public void clusterTick(@NotNull final ServerLevel level, @NotNull final MagicalFarmClusters.Cluster cluster) {
         }
 
         @Override
@@ -225,5 +1057,10 @@ public final class MagicalFarmBlock extends FarmBlock {
 
             return false;
         }
+
+        @Override
+        public final int hashCode() {
+            return getClass().hashCode();
+        }
     }
 }
@@ -0,0 +1,187 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import heckerpowered.magicalfood.common.core.mixin.CropBlockInvoker;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmNeighborAccess;
+import heckerpowered.magicalfood.common.world.ticks.MagicalFarmComputePhase;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.CropBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraftforge.common.ForgeHooks;
+
+/**
+ * A farm feature that makes the crop planted on the magical farmland grow
+ * {@link MagicalFoodConfig.Server#growthMultiplier} times as fast.
+ * <p>
+ * The crop is not randomly ticked extra times. Every random tick of a crop is
+ * a growth attempt that succeeds with a probability derived from its growth
+ * speed, and the farmland is randomly ticked as often as the crop. So, on each
+ * random tick of the farmland, the stages gained by the missing attempts
+ * follow a binomial distribution. The count of stages is sampled from it with
+ * a single random draw and applied with a single block update, so a fast farm
+ * costs the same per tick as a normal one. The growth speed and the sampling
+ * run in the parallel compute phase on a snapshot of the blocks around the
+ * crop, see {@link MagicalFarmComputePhase}.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmGrowthAccelerator extends MagicalFarmBlock.Feature {
+    /**
+     * The minimum raw brightness above the crop for it to grow, the same as
+     * vanilla.
+     */
+    private static final int MIN_BRIGHTNESS = 9;
+
+    /**
+     * Constructs a new growth accelerator, this constructor should be called for
+     * registration.
+     */
+    public MagicalFarmGrowthAccelerator() {
+    }
+
+    /**
+     * The growth accelerator only has work while the crop above is growing.
+     *
+     * @param aboveState The state of the block above the farmland.
+     * @return {@code true} if the block above is a crop that is not fully grown,
+     *         {@code false} otherwise.
+     */
+    @Override
+    public boolean isRandomlyTicking(@NotNull final BlockState aboveState) {
+        return aboveState.getBlock() instanceof final CropBlock crop && !crop.isMaxAge(aboveState);
+    }
+
+    /**
+     * Read the crop above and copy the blocks around it on the server thread, the
+     * growth speed is computed and the stages are sampled by the computation, and
+     * applied back on the server thread if the crop has not changed in the
+     * meantime.
+     *
+     * @param level      The level where the block is.
+     * @param location   The location of the block.
+     * @param blockState The current state of the block.
+     * @return The computation, or {@code null} if the crop cannot grow.
+     */
+    @Override
+    public @Nullable MagicalFarmComputePhase.Computation prepare(@NotNull final ServerLevel level,
+            @NotNull final BlockPos location, @NotNull final BlockState blockState) {
+        // The crop itself makes one attempt per random tick
+        final var attempts = MagicalFoodConfig.SERVER.growthMultiplier.get() - 1;
+        if (attempts <= 0) {
+            return null;
+        }
+
+        // The farmland around the crop may be in a neighboring chunk at the border
+        // of the loaded area
+        final var access = MagicalFarmNeighborAccess.get(level);
+        final var cropLocation = location.above();
+        final var cropState = access.getBlockState(cropLocation);
+        if (cropState == null || !(cropState.getBlock() instanceof final CropBlock crop)
+                || level.getRawBrightness(cropLocation, 0) < MIN_BRIGHTNESS) {
+            return null;
+        }
+
+        final var age = cropState.getValue(crop.getAgeProperty());
+        final var maxAge = crop.getMaxAge();
+        if (age >= maxAge) {
+            return null;
+        }
+
+        // The growth speed looks at the farmland and the crops around the crop,
+        // which are copied so that it is computed off the server thread
+        final var snapshot = access.snapshot(location.offset(-1, 0, -1), 3, 2, 3);
+        if (snapshot == null) {
+            return null;
+        }
+
+        return random -> {
+            // The same probability as an attempt of CropBlock#randomTick
+            final var speed = CropBlockInvoker.invokeGetGrowthSpeed(crop, snapshot, cropLocation);
+            final var probability = 1.0D / ((int) (25.0F / speed) + 1);
+            final var stages = sampleStages(attempts, probability, maxAge - age, random.nextDouble());
+            return stages == 0 ? null : () -> grow(level, cropLocation, cropState, crop.getStateForAge(age + stages));
+        };
+    }
+
+    /**
+     * Apply the sampled growth to the crop, unless it changed since its state was
+     * read.
+     *
+     * @param level        The level where the crop is.
+     * @param cropLocation The location of the crop.
+     * @param cropState    The state of the crop the growth was sampled for.
+     * @param grownState   The state of the grown crop.
+     */
+    private static final void grow(@NotNull final ServerLevel level, @NotNull final BlockPos cropLocation,
+            @NotNull final BlockState cropState, @NotNull final BlockState grownState) {
+        if (level.getBlockState(cropLocation) != cropState
+                || !ForgeHooks.onCropsGrowPre(level, cropLocation, cropState, true)) {
+            return;
+        }
+
+        level.setBlock(cropLocation, grownState, Block.UPDATE_CLIENTS);
+        ForgeHooks.onCropsGrowPost(level, cropLocation, cropState);
+    }
+
+    /**
+     * Sample the count of successful attempts from a binomial distribution by
+     * inverting its cumulative distribution function at the specified uniform
+     * value. The walk stops at the cap, so it takes at most as many steps as a
+     * crop has stages.
+     *
+     * @param attempts    The count of attempts.
+     * @param probability The probability that an attempt succeeds.
+     * @param cap         The maximum count to return.
+     * @param uniform     A uniform random value in {@code [0, 1)}.
+     * @return The count of successful attempts, at most {@code cap}.
+     */
+    static final int sampleStages(final int attempts, final double probability, final int cap,
+            final double uniform) {
+        if (probability >= 1.0D) {
+            return Math.min(attempts, cap);
+        }
+
+        // P(k + 1) = P(k) * (n - k) / (k + 1) * p / (1 - p)
+        final var odds = probability / (1.0D - probability);
+        var mass = Math.pow(1.0D - probability, attempts);
+        var cumulative = mass;
+        var stages = 0;
+        while (uniform >= cumulative && stages < Math.min(attempts, cap)) {
+            mass *= (double) (attempts - stages) / (stages + 1) * odds;
+            cumulative += mass;
+            stages++;
+        }
+
+        return stages;
+    }
+}
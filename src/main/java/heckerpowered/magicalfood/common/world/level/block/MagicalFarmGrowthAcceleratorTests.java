@@ -0,0 +1,122 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.MagicalFood;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestAssertException;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraftforge.gametest.GameTestHolder;
+import net.minecraftforge.gametest.PrefixGameTestTemplate;
+
+/**
+ * Game tests of {@link MagicalFarmGrowthAccelerator}, run by the game test
+ * server or the {@code /test} command. The sampling is checked against the
+ * binomial distribution with evenly spaced uniform values instead of random
+ * ones, so the tests are deterministic.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@GameTestHolder(MagicalFood.MODID)
+@PrefixGameTestTemplate(false)
+public final class MagicalFarmGrowthAcceleratorTests {
+    /**
+     * The count of evenly spaced uniform values the distribution is sampled at.
+     */
+    private static final int SAMPLES = 100_000;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmGrowthAcceleratorTests() {
+    }
+
+    /**
+     * The sampled stages never exceed the cap or the attempts, certain attempts
+     * all succeed, and the lowest uniform value gains no stage.
+     *
+     * @param helper The game test helper.
+     */
+    @GameTest(template = "forge:empty3x3x3")
+    public static final void sampleStagesBounds(@NotNull final GameTestHelper helper) {
+        check(MagicalFarmGrowthAccelerator.sampleStages(10, 1.0D, 3, 0.5D) == 3, "certain attempts are capped");
+        check(MagicalFarmGrowthAccelerator.sampleStages(2, 1.0D, 7, 0.5D) == 2, "certain attempts all succeed");
+        check(MagicalFarmGrowthAccelerator.sampleStages(10, 0.3D, 7, 0.0D) == 0, "lowest uniform gains nothing");
+        check(MagicalFarmGrowthAccelerator.sampleStages(0, 0.3D, 7, 0.99D) == 0, "no attempt gains nothing");
+        for (var sample = 0; sample < SAMPLES; sample++) {
+            final var uniform = (sample + 0.5D) / SAMPLES;
+            final var stages = MagicalFarmGrowthAccelerator.sampleStages(10, 0.3D, 2, uniform);
+            check(stages >= 0 && stages <= 2, "stages out of range at " + uniform);
+        }
+
+        helper.succeed();
+    }
+
+    /**
+     * Without a cap, the sampled stages follow the binomial distribution, so
+     * their mean and variance are {@code np} and {@code np(1 - p)}. The stages
+     * are also non-decreasing in the uniform value, as an inverted cumulative
+     * distribution function is.
+     *
+     * @param helper The game test helper.
+     */
+    @GameTest(template = "forge:empty3x3x3")
+    public static final void sampleStagesDistribution(@NotNull final GameTestHelper helper) {
+        final var attempts = 12;
+        final var probability = 1.0D / 26.0D;
+        var sum = 0.0D;
+        var squares = 0.0D;
+        var previous = 0;
+        for (var sample = 0; sample < SAMPLES; sample++) {
+            final var stages = MagicalFarmGrowthAccelerator.sampleStages(attempts, probability, attempts,
+                    (sample + 0.5D) / SAMPLES);
+            check(stages >= previous, "stages decrease at sample " + sample);
+            previous = stages;
+            sum += stages;
+            squares += (double) stages * stages;
+        }
+
+        final var mean = sum / SAMPLES;
+        final var variance = squares / SAMPLES - mean * mean;
+        check(Math.abs(mean - attempts * probability) < 1.0E-3D, "mean " + mean);
+        check(Math.abs(variance - attempts * probability * (1.0D - probability)) < 1.0E-2D, "variance " + variance);
+        helper.succeed();
+    }
+
+    /**
+     * Fail the test with the specified message if the condition does not hold.
+     *
+     * @param condition The condition.
+     * @param message   The message of the failure.
+     */
+    private static final void check(final boolean condition, @NotNull final String message) {
+        if (!condition) {
+            throw new GameTestAssertException(message);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import com.mojang.logging.LogUtils;
+
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmClusters;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmStorage;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.block.Block;
+import net.minecraftforge.event.server.ServerStartingEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
+import net.minecraftforge.server.ServerLifecycleHooks;
+
+/**
+ * Maps the hot feature slots of {@link MagicalFarmBlock#HOT_FEATURES} to farm
+ * features, as configured by {@link MagicalFoodConfig.Server#hotFeatures}. The
+ * features in the slots are mirrored into the block state of each magical
+ * farmland, so that checking them needs no lookup in the feature storage.
+ * <p>
+ * The mapping is resolved when the server starts and when the configuration
+ * is reloaded, on the server thread. When a reload changes the mapping, the
+ * hot features of all farmland that has joined {@link MagicalFarmClusters} are
+ * rewritten right away. Farmland in chunks loaded afterwards, or saved with a
+ * mapping of an earlier run, is corrected when its chunk joins the clusters in
+ * the tick after it is loaded.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmHotFeatures {
+    /**
+     * The logger of the hot features.
+     */
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /**
+     * The feature in each slot, {@code null} if the slot is unused.
+     */
+    private static final MagicalFarmBlock.Feature[] SLOTS = new MagicalFarmBlock.Feature[
+            MagicalFarmBlock.HOT_FEATURES.length];
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmHotFeatures() {
+    }
+
+    /**
+     * Get the slot of the specified feature.
+     *
+     * @param feature The feature.
+     * @return The slot, or {@code -1} if the feature is not a hot feature.
+     */
+    public static final int getSlot(@NotNull final MagicalFarmBlock.Feature feature) {
+        // There are only a few slots, a linear search is faster than a map
+        for (var slot = 0; slot < SLOTS.length; slot++) {
+            if (SLOTS[slot] == feature) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get the feature in the specified slot.
+     *
+     * @param slot The slot.
+     * @return The feature, or {@code null} if the slot is unused.
+     */
+    public static final @Nullable MagicalFarmBlock.Feature getFeature(final int slot) {
+        return SLOTS[slot];
+    }
+
+    /**
+     * Resolve the configured hot features into the slots, unknown features and
+     * features beyond the count of slots are ignored with a warning.
+     *
+     * @return {@code true} if the mapping changed, {@code false} otherwise.
+     */
+    private static final boolean resolve() {
+        final var names = MagicalFoodConfig.SERVER.hotFeatures.get();
+        final var previous = SLOTS.clone();
+        for (var slot = 0; slot < SLOTS.length; slot++) {
+            SLOTS[slot] = null;
+            if (slot >= names.size()) {
+                continue;
+            }
+
+            final var name = ResourceLocation.tryParse(names.get(slot));
+            final MagicalFarmBlock.Feature feature = name == null ? null
+                    : MagicalFoodFarmFeature.REGISTRY.get().getValue(name);
+            if (feature == null) {
+                LOGGER.warn("Ignoring unknown hot farm feature {}", names.get(slot));
+                continue;
+            }
+
+            SLOTS[slot] = feature;
+        }
+
+        if (names.size() > SLOTS.length) {
+            LOGGER.warn("Only {} hot farm features are supported, ignoring {}", SLOTS.length,
+                    names.subList(SLOTS.length, names.size()));
+        }
+
+        return !Arrays.equals(previous, SLOTS);
+    }
+
+    /**
+     * Rewrite the hot features of the magical farmland of the loaded chunks of
+     * the specified server after the mapping changed. This method must be called
+     * on the server thread.
+     *
+     * @param server The server.
+     */
+    private static final void rewriteLoaded(@NotNull final MinecraftServer server) {
+        var rewritten = 0;
+        for (final var level : server.getAllLevels()) {
+            final var storage = MagicalFarmStorage.get(level);
+            final var location = new BlockPos.MutableBlockPos();
+            for (final var iterator = MagicalFarmClusters.get(level).getMembers().iterator(); iterator.hasNext();) {
+                location.set(iterator.nextLong());
+                final var blockState = level.getBlockState(location);
+                if (!(blockState.getBlock() instanceof MagicalFarmBlock)) {
+                    continue;
+                }
+
+                final var newBlockState = MagicalFarmBlock.withHotFeatures(blockState,
+                        storage.getFeatureData(location));
+                if (newBlockState != blockState) {
+                    level.setBlock(location, newBlockState, Block.UPDATE_CLIENTS);
+                    rewritten++;
+                }
+            }
+        }
+
+        LOGGER.info("Rewrote the hot farm features of {} magical farmland for the new mapping", rewritten);
+    }
+
+    /**
+     * This function is called when the server is starting, after the server
+     * configuration is loaded.
+     *
+     * @param event The server starting event.
+     */
+    @SubscribeEvent
+    public static final void onServerStarting(@NotNull final ServerStartingEvent event) {
+        resolve();
+    }
+
+    /**
+     * Resolves the hot features again when the server configuration is reloaded.
+     *
+     * @author Heckerpowered
+     */
+    @Mod.EventBusSubscriber(bus = Mod.EventBusSubscriber.Bus.MOD)
+    public static final class Reloading {
+        /**
+         * Do not let anyone instantiate this class
+         */
+        private Reloading() {
+        }
+
+        /**
+         * This function is called when a configuration is reloaded.
+         *
+         * @param event The config reloading event.
+         */
+        @SubscribeEvent
+        public static final void onConfigReloading(@NotNull final ModConfigEvent.Reloading event) {
+            if (event.getConfig().getSpec() != MagicalFoodConfig.SERVER_SPEC) {
+                return;
+            }
+
+            // The configuration is reloaded on the thread that watches its file
+            final var server = ServerLifecycleHooks.getCurrentServer();
+            if (server == null) {
+                resolve();
+                return;
+            }
+
+            server.execute(() -> {
+                if (resolve()) {
+                    rewriteLoaded(server);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.core.mixin.BushBlockInvoker;
+import heckerpowered.magicalfood.common.world.level.block.state.MagicalFarmPlantState;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.BushBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraftforge.common.IPlantable;
+import net.minecraftforge.common.PlantType;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Decides which plants grow on magical farmland: every plant that grows on
+ * vanilla farmland regardless of its surroundings, which is every
+ * {@link IPlantable} of {@link PlantType#CROP} or {@link PlantType#PLAINS},
+ * and every {@link BushBlock} that may be placed on farmland, such as stems.
+ * <p>
+ * Plants re-check their soil on every neighbor update, which happens in
+ * storms in dense fields. The answer only depends on the state of the plant,
+ * so it is cached in the state itself, see {@link MagicalFarmPlantState}, and
+ * the check is a single field read. The flags are precomputed for all states
+ * when the server starts and when the tags are reloaded, since soil checks of
+ * plants may depend on tags; states whose flag could not be precomputed are
+ * computed on first use.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmPlants {
+    /**
+     * The flag of a state that was not computed yet.
+     */
+    public static final byte UNKNOWN = 0;
+
+    /**
+     * The flag of a state that grows on magical farmland.
+     */
+    public static final byte SUPPORTED = 1;
+
+    /**
+     * The flag of a state that does not grow on magical farmland unless its own
+     * soil check accepts it.
+     */
+    public static final byte UNSUPPORTED = 2;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmPlants() {
+    }
+
+    /**
+     * Returns a boolean that indicates whether the specified plant grows on
+     * magical farmland.
+     *
+     * @param plantState The state of the plant.
+     * @param level      The level where the farmland is.
+     * @param location   The location of the farmland.
+     * @return {@code true} if the plant grows on magical farmland, {@code false}
+     *         otherwise.
+     */
+    public static final boolean isFarmlandPlant(@NotNull final BlockState plantState, @NotNull final BlockGetter level,
+            @NotNull final BlockPos location) {
+        final var cached = (MagicalFarmPlantState) plantState;
+        var flag = cached.getMagicalFarmPlant();
+        if (flag == UNKNOWN) {
+            flag = compute(plantState, level, location) ? SUPPORTED : UNSUPPORTED;
+            cached.setMagicalFarmPlant(flag);
+        }
+
+        return flag == SUPPORTED;
+    }
+
+    /**
+     * Precompute the flags of all block states, the flags of states whose check
+     * fails without a level are left to be computed on first use.
+     *
+     * @return The count of states that grow on magical farmland.
+     */
+    public static final int precompute() {
+        var supported = 0;
+        for (final var plantState : Block.BLOCK_STATE_REGISTRY) {
+            final var cached = (MagicalFarmPlantState) plantState;
+            try {
+                final var flag = compute(plantState, EmptyBlockGetter.INSTANCE, BlockPos.ZERO) ? SUPPORTED
+                        : UNSUPPORTED;
+                cached.setMagicalFarmPlant(flag);
+                if (flag == SUPPORTED) {
+                    supported++;
+                }
+            } catch (final RuntimeException exception) {
+                // Modded plants may need a real level, check them on first use
+                cached.setMagicalFarmPlant(UNKNOWN);
+            }
+        }
+
+        return supported;
+    }
+
+    /**
+     * Compute whether the specified plant grows on vanilla farmland regardless of
+     * its surroundings.
+     *
+     * @param plantState The state of the plant.
+     * @param level      The level where the farmland is.
+     * @param location   The location of the farmland.
+     * @return {@code true} if the plant grows on farmland, {@code false}
+     *         otherwise.
+     */
+    private static final boolean compute(@NotNull final BlockState plantState, @NotNull final BlockGetter level,
+            @NotNull final BlockPos location) {
+        if (!(plantState.getBlock() instanceof final IPlantable plantable)) {
+            return false;
+        }
+
+        final var plantType = plantable.getPlantType(level, location.above());
+        if (plantType == PlantType.CROP || plantType == PlantType.PLAINS) {
+            return true;
+        }
+
+        return plantState.getBlock() instanceof final BushBlock bush
+                && ((BushBlockInvoker) bush).invokeMayPlaceOn(Blocks.FARMLAND.defaultBlockState(), level, location);
+    }
+
+    /**
+     * This function is called when the tags are loaded or synchronized, the soil
+     * checks of plants may depend on tags, so the flags are computed again.
+     *
+     * @param event The tags updated event.
+     */
+    @SubscribeEvent
+    public static final void onTagsUpdated(@NotNull final TagsUpdatedEvent event) {
+        precompute();
+    }
+}
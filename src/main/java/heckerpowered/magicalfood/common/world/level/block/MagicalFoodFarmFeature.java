@@ -0,0 +1,79 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block;
+
+import java.util.function.Supplier;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import heckerpowered.magicalfood.common.MagicalFood;
+import heckerpowered.magicalfood.common.registries.MagicalFoodRegistries;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraftforge.registries.DeferredRegister;
+import net.minecraftforge.registries.IForgeRegistry;
+import net.minecraftforge.registries.RegistryBuilder;
+import net.minecraftforge.registries.RegistryObject;
+
+/**
+ * The register class for {@code MagicalFood} mod farm features, any
+ * {@link MagicalFarmBlock.Feature} derived from {@code MagicalFood} mod should
+ * be registered at this class. This class also creates the farm feature
+ * registry itself.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFoodFarmFeature {
+
+    /**
+     * The deferred register of all the farm features derived from
+     * {@code MagicalFood} mod.
+     */
+    public static final DeferredRegister<MagicalFarmBlock.Feature> DEFERRED_REGISTER = DeferredRegister
+            .create(MagicalFoodRegistries.Keys.FARM_FEATURES, MagicalFood.MODID);
+
+    /**
+     * The farm feature registry, created by {@link #DEFERRED_REGISTER}. The IDs of
+     * the registry are saved with the world, so they are stable across restarts
+     * and can be used as bit indices of {@link MagicalFarmBlock.FeatureData}.
+     */
+    public static final Supplier<IForgeRegistry<MagicalFarmBlock.Feature>> REGISTRY = DEFERRED_REGISTER
+            .makeRegistry(() -> new RegistryBuilder<MagicalFarmBlock.Feature>());
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFoodFarmFeature() {
+    }
+
+    /**
+     * See {@link MagicalFarmGrowthAccelerator} for details related to this feature
+     */
+    public static final RegistryObject<MagicalFarmGrowthAccelerator> GROWTH_ACCELERATOR = DEFERRED_REGISTER
+            .register("growth_accelerator", MagicalFarmGrowthAccelerator::new);
+
+    /**
+     * See {@link MagicalFarmAreaFertilizer} for details related to this feature
+     */
+    public static final RegistryObject<MagicalFarmAreaFertilizer> AREA_FERTILIZER = DEFERRED_REGISTER
+            .register("area_fertilizer", MagicalFarmAreaFertilizer::new);
+}
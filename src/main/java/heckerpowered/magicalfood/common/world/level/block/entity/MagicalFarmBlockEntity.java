@@ -0,0 +1,99 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block.entity;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmDataFormat;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Represents the block entity of a magical farmland, which stores the feature
+ * data of the farmland if the block entity storage backend is selected. The
+ * block entity is only created by the server, and never synchronized to
+ * clients.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class MagicalFarmBlockEntity extends BlockEntity {
+    /**
+     * The feature data of the farmland, or {@code null} if there is none.
+     */
+    private @Nullable MagicalFarmBlock.FeatureData featureData;
+
+    /**
+     * Constructs a new block entity without feature data.
+     *
+     * @param location   The location of the block.
+     * @param blockState The state of the block.
+     */
+    public MagicalFarmBlockEntity(@NotNull final BlockPos location, @NotNull final BlockState blockState) {
+        super(MagicalFoodBlockEntityType.MAGICAL_FARMLAND.get(), location, blockState);
+    }
+
+    /**
+     * Get the feature data of the farmland.
+     *
+     * @return The feature data, or {@code null} if there is none.
+     */
+    public final @Nullable MagicalFarmBlock.FeatureData getFeatureData() {
+        return featureData;
+    }
+
+    /**
+     * Set the feature data of the farmland, the block entity is marked as changed.
+     *
+     * @param featureData The feature data, or {@code null} to remove it.
+     * @return The previous feature data, or {@code null} if there was none.
+     */
+    public final @Nullable MagicalFarmBlock.FeatureData setFeatureData(
+            @Nullable final MagicalFarmBlock.FeatureData featureData) {
+        final var previous = this.featureData;
+        this.featureData = featureData;
+        setChanged();
+        return previous;
+    }
+
+    @Override
+    public void load(@NotNull final CompoundTag compoundTag) {
+        super.load(compoundTag);
+        featureData = compoundTag.contains(MagicalFarmDataFormat.FEATURES, Tag.TAG_LONG_ARRAY)
+                ? new MagicalFarmBlock.FeatureData(compoundTag.getLongArray(MagicalFarmDataFormat.FEATURES))
+                : null;
+    }
+
+    @Override
+    protected void saveAdditional(@NotNull final CompoundTag compoundTag) {
+        super.saveAdditional(compoundTag);
+        if (featureData != null) {
+            compoundTag.putLongArray(MagicalFarmDataFormat.FEATURES, featureData.getData());
+        }
+    }
+}
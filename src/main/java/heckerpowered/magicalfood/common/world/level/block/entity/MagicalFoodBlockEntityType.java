@@ -0,0 +1,64 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block.entity;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import heckerpowered.magicalfood.common.MagicalFood;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFoodBlock;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraftforge.registries.DeferredRegister;
+import net.minecraftforge.registries.ForgeRegistries;
+import net.minecraftforge.registries.RegistryObject;
+
+/**
+ * The register class for {@code MagicalFood} mod block entity types, any block
+ * entity types derived from {@code MagicalFood} mod should be registered at
+ * this class.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFoodBlockEntityType {
+
+    /**
+     * The deferred register of all the block entity types derived from
+     * {@code MagicalFood} mod.
+     */
+    public static final DeferredRegister<BlockEntityType<?>> DEFERRED_REGISTER = DeferredRegister
+            .create(ForgeRegistries.BLOCK_ENTITY_TYPES, MagicalFood.MODID);
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFoodBlockEntityType() {
+    }
+
+    /**
+     * See {@link MagicalFarmBlockEntity} for details related to this block entity
+     * type
+     */
+    public static final RegistryObject<BlockEntityType<MagicalFarmBlockEntity>> MAGICAL_FARMLAND = DEFERRED_REGISTER
+            .register("magical_farmland", () -> BlockEntityType.Builder
+                    .of(MagicalFarmBlockEntity::new, MagicalFoodBlock.MAGICAL_FARM_BLOCK.get()).build(null));
+}
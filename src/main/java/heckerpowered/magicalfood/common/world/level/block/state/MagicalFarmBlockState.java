@@ -25,6 +25,7 @@ import org.jetbrains.annotations.NotNull;
 import com.google.common.collect.ImmutableMap;
 import com.mojang.serialization.MapCodec;
 
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
 import net.minecraft.FieldsAreNonnullByDefault;
 import net.minecraft.MethodsReturnNonnullByDefault;
 import net.minecraft.world.level.block.Block;
@@ -33,12 +34,21 @@ import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.Property;
 
 /**
+ * Represents a state of {@link MagicalFarmBlock}. The hot feature properties
+ * of the state, see {@link MagicalFarmBlock#HOT_FEATURES}, are cached as a bit
+ * mask when the state is constructed, so checking a hot feature is a field
+ * read.
  *
+ * @author Heckerpowered
  */
 @ParametersAreNonnullByDefault
 @MethodsReturnNonnullByDefault
 @FieldsAreNonnullByDefault
 public final class MagicalFarmBlockState extends BlockState {
+    /**
+     * The bit mask of the hot feature slots that are enabled in this state.
+     */
+    private final int hotFeatures;
 
     /**
      * Construct a new {@link MagicalFarmBlockState}, normally this constructor
@@ -55,5 +65,34 @@ public final class MagicalFarmBlockState extends BlockState {
             @NotNull final ImmutableMap<Property<?>, Comparable<?>> values,
             @NotNull final MapCodec<BlockState> propertiesCodec) {
         super(owner, values, propertiesCodec);
+
+        var hotFeatures = 0;
+        for (var slot = 0; slot < MagicalFarmBlock.HOT_FEATURES.length; slot++) {
+            if (Boolean.TRUE.equals(values.get(MagicalFarmBlock.HOT_FEATURES[slot]))) {
+                hotFeatures |= 1 << slot;
+            }
+        }
+
+        this.hotFeatures = hotFeatures;
+    }
+
+    /**
+     * Returns a boolean that indicates whether the specified hot feature slot is
+     * enabled in this state.
+     *
+     * @param slot The hot feature slot.
+     * @return {@code true} if the slot is enabled, {@code false} otherwise.
+     */
+    public final boolean isHotFeatureEnabled(final int slot) {
+        return (hotFeatures & (1 << slot)) != 0;
+    }
+
+    /**
+     * Get the bit mask of the hot feature slots that are enabled in this state.
+     *
+     * @return The bit mask, bit {@code n} is set if slot {@code n} is enabled.
+     */
+    public final int getHotFeatures() {
+        return hotFeatures;
     }
 }
@@ -0,0 +1,68 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.block.state;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmPlants;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Implemented by every {@link BlockState} through a mixin, holds the cached
+ * result of {@link MagicalFarmPlants#isFarmlandPlant} and the cached
+ * {@link MagicalFarmBlock#getMaturity} of the state. Cast a block state to
+ * this interface to access them.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public interface MagicalFarmPlantState {
+    /**
+     * Get the cached farmland plant flag of the state.
+     *
+     * @return {@link MagicalFarmPlants#UNKNOWN} if not computed yet,
+     *         {@link MagicalFarmPlants#SUPPORTED} or
+     *         {@link MagicalFarmPlants#UNSUPPORTED} otherwise.
+     */
+    byte getMagicalFarmPlant();
+
+    /**
+     * Set the cached farmland plant flag of the state.
+     *
+     * @param flag The flag.
+     */
+    void setMagicalFarmPlant(byte flag);
+
+    /**
+     * Get the cached maturity of the state as a crop.
+     *
+     * @return {@code 0} if not computed yet, the maturity plus one otherwise.
+     */
+    byte getMagicalFarmMaturity();
+
+    /**
+     * Set the cached maturity of the state as a crop.
+     *
+     * @param maturity The maturity plus one.
+     */
+    void setMagicalFarmMaturity(byte maturity);
+}
@@ -0,0 +1,171 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.block.entity.MagicalFarmBlockEntity;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * A {@link MagicalFarmStorage} that stores the feature data of each magical
+ * farmland in its {@link MagicalFarmBlockEntity}. The data is saved with the
+ * chunk and removed with the block, but each farmland costs a block entity.
+ * Chunks are never loaded by the storage, locations in chunks that are not
+ * loaded have no data.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmBlockEntityStorage implements MagicalFarmStorage {
+    /**
+     * The block entity storages of each level.
+     */
+    private static final Map<ServerLevel, MagicalFarmBlockEntityStorage> STORAGES = new HashMap<>();
+
+    /**
+     * The level the storage is attached to.
+     */
+    private final ServerLevel level;
+
+    /**
+     * Constructs a new block entity storage of the specified level.
+     *
+     * @param level The level, must in server side.
+     */
+    private MagicalFarmBlockEntityStorage(@NotNull final ServerLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the block entity storage of the specified level, one storage is kept per
+     * level until the level is unloaded.
+     *
+     * @param level The level, must in server side.
+     * @return The storage of the level.
+     */
+    public static final @NotNull MagicalFarmBlockEntityStorage getStorage(@NotNull final ServerLevel level) {
+        return STORAGES.computeIfAbsent(level, MagicalFarmBlockEntityStorage::new);
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData getFeatureData(@NotNull final BlockPos location) {
+        return getBlockEntity(location) instanceof final MagicalFarmBlockEntity blockEntity
+                ? blockEntity.getFeatureData()
+                : null;
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData setFeatureData(@NotNull final BlockPos location,
+            @NotNull final MagicalFarmBlock.FeatureData featureData) {
+        if (getBlockEntity(location) instanceof final MagicalFarmBlockEntity blockEntity) {
+            return blockEntity.setFeatureData(featureData);
+        }
+
+        final var levelChunk = level.getChunkSource().getChunkNow(location.getX() >> 4, location.getZ() >> 4);
+        if (levelChunk == null) {
+            throw new IllegalArgumentException("Chunk of " + location.toShortString() + " is not loaded");
+        }
+
+        // The block entity is missing if the farmland was placed with another backend
+        final var blockState = levelChunk.getBlockState(location);
+        if (!(blockState.getBlock() instanceof MagicalFarmBlock)) {
+            throw new IllegalArgumentException("No magical farmland at " + location.toShortString());
+        }
+
+        final var blockEntity = new MagicalFarmBlockEntity(location.immutable(), blockState);
+        blockEntity.setFeatureData(featureData);
+        level.setBlockEntity(blockEntity);
+        return null;
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData removeFeatureData(@NotNull final BlockPos location) {
+        // The block entity is kept as long as the block is a magical farmland
+        return getBlockEntity(location) instanceof final MagicalFarmBlockEntity blockEntity
+                ? blockEntity.setFeatureData(null)
+                : null;
+    }
+
+    @Override
+    public final void forEachInChunk(final long chunk,
+            @NotNull final BiConsumer<BlockPos, MagicalFarmBlock.FeatureData> action) {
+        final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk), ChunkPos.getZ(chunk));
+        if (levelChunk == null) {
+            return;
+        }
+
+        for (final var blockEntity : levelChunk.getBlockEntities().values()) {
+            if (blockEntity instanceof final MagicalFarmBlockEntity farmBlockEntity
+                    && farmBlockEntity.getFeatureData() != null) {
+                action.accept(farmBlockEntity.getBlockPos(), farmBlockEntity.getFeatureData());
+            }
+        }
+    }
+
+    @Override
+    public final void persist() {
+        // Block entities are marked as changed by each modification
+    }
+
+    /**
+     * Get the block entity at the specified location without loading its chunk.
+     *
+     * @param location The location.
+     * @return The block entity, or {@code null} if there is none or the chunk is
+     *         not loaded.
+     */
+    private final @Nullable BlockEntity getBlockEntity(@NotNull final BlockPos location) {
+        final var levelChunk = level.getChunkSource().getChunkNow(location.getX() >> 4, location.getZ() >> 4);
+        return levelChunk == null ? null : levelChunk.getBlockEntity(location, LevelChunk.EntityCreationType.CHECK);
+    }
+
+    /**
+     * This function is called when a level is unloaded, forget the storage of the
+     * level so that the level can be garbage collected.
+     *
+     * @param event The level unload event.
+     */
+    @SubscribeEvent
+    public static final void onLevelUnload(@NotNull final LevelEvent.Unload event) {
+        if (event.getLevel() instanceof final ServerLevel level) {
+            STORAGES.remove(level);
+        }
+    }
+}
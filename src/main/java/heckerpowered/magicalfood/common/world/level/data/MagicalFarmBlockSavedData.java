@@ -18,27 +18,92 @@
 */
 package heckerpowered.magicalfood.common.world.level.data;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mojang.logging.LogUtils;
+
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import heckerpowered.magicalfood.common.profiling.MagicalFarmEvents;
 import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
-import heckerpowered.magicalfood.common.world.level.block.state.MagicalFarmBlockState;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.FieldsAreNonnullByDefault;
 import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.Util;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.dimension.DimensionType;
 import net.minecraft.world.level.saveddata.SavedData;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.ChunkEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 
 /**
- * Represents a saved data that contains all {@link MagialFarmBlock}'s locations
- * and features that are enabled.
+ * Represents a saved data that contains all {@link MagicalFarmBlock}'s locations
+ * and features that are enabled, this is the default {@link MagicalFarmStorage}
+ * backend.
+ * <p>
+ * The data is grouped by chunk. Only chunks that are loaded, or were unloaded
+ * recently, are resident in memory: the data of a chunk that stays unloaded for
+ * {@link MagicalFoodConfig.Server#residencyIdleSeconds} is evicted to disk by
+ * {@link MagicalFarmSpillStorage}, and so is the data of the least recently
+ * used unloaded chunks once more than
+ * {@link MagicalFoodConfig.Server#residencyMaxEntries} blocks are resident. The
+ * data is faulted back in when the chunk loads, or when it is accessed.
+ * Evicted chunks are written, and the chunks that load are read, on
+ * {@link Util#ioPool()}, and the results are applied on the server thread.
+ * Only an access to an evicted chunk that has not been read yet reads it on
+ * the server thread.
+ * <p>
+ * A point-in-time view of the data is taken by {@link #snapshot()} in constant
+ * time. Feature datas are immutable, and the map of chunks and the chunk datas
+ * are copied lazily by the first modification after a snapshot, so the
+ * snapshot can be read on another thread while the level keeps modifying the
+ * data.
+ * <p>
+ * Changes are recorded in a {@link MagicalFarmJournal} instead of marking the
+ * saved data as dirty, so persisting a change costs a small record rather than
+ * a rewrite of the whole file. The file is only rewritten once the journal
+ * grows beyond {@link MagicalFoodConfig.Server#journalCompactBytes}, or when
+ * the server stops, and the journal is replayed when the data is loaded.
+ * <p>
+ * The file is written off the server thread: a save only takes a snapshot and
+ * rotates the journal on the server thread, and the snapshot is serialized and
+ * written on {@link #SAVE_EXECUTOR}, a small pool shared by all dimensions, so
+ * the dimensions are written in parallel. Saves of the same dimension are
+ * chained so that they reach the file in order.
  *
  * @author Heckerpowered
  */
@@ -46,7 +111,17 @@ import net.minecraftforge.fml.common.Mod;
 @MethodsReturnNonnullByDefault
 @FieldsAreNonnullByDefault
 @Mod.EventBusSubscriber
-public final class MagicalFarmBlockSavedData extends SavedData {
+public final class MagicalFarmBlockSavedData extends SavedData implements MagicalFarmStorage {
+
+    /**
+     * The logger of the saved data.
+     */
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /**
+     * The interval in ticks between two residency sweeps.
+     */
+    private static final int SWEEP_INTERVAL = 100;
 
     /**
      * The map of saved datas, each level has a saved data.
@@ -54,10 +129,88 @@ public final class MagicalFarmBlockSavedData extends SavedData {
     private static final Map<ServerLevel, MagicalFarmBlockSavedData> DATA = new HashMap<>();
 
     /**
-     * A map that maps {@link BlockPos} block locations to
-     * {@link MagicalFarmBlock.FeatureData} feature data.
+     * The pool that saved datas are written on, bounded so that saving many
+     * dimensions at once does not take every core from the server.
+     */
+    private static final ExecutorService SAVE_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)),
+            new ThreadFactoryBuilder().setNameFormat("Magical-Farm-Save-%d").setDaemon(true).build());
+
+    /**
+     * The count of server ticks since the last residency sweep.
+     */
+    private static int ticksSinceSweep;
+
+    /**
+     * The count of server ticks since the journals were last synced.
+     */
+    private static int ticksSinceSync;
+
+    /**
+     * The resident chunk datas, in least recently used order.
+     */
+    private Long2ObjectLinkedOpenHashMap<MagicalFarmChunkData> chunks = new Long2ObjectLinkedOpenHashMap<>();
+
+    /**
+     * The packed positions of the chunks whose data is evicted to disk.
+     */
+    private LongOpenHashSet spilled = new LongOpenHashSet();
+
+    /**
+     * Whether {@link #chunks} and {@link #spilled} are shared with a snapshot and
+     * must be copied before they are modified.
+     */
+    private boolean shared;
+
+    /**
+     * The current snapshot epoch, chunk datas created in an earlier epoch are
+     * shared with a snapshot and must be copied before they are modified.
+     */
+    private int epoch;
+
+    /**
+     * The count of snapshots that are still being read, evicted chunks must not
+     * be rewritten while a snapshot may read them.
+     */
+    private int activeSnapshots;
+
+    /**
+     * The count of magical farmland whose data is resident.
+     */
+    private int residentEntries;
+
+    /**
+     * The storage that evicted chunk datas are written to.
+     */
+    private final MagicalFarmSpillStorage spillStorage;
+
+    /**
+     * The last write of evicted chunk datas handed to {@link Util#ioPool()}.
+     */
+    private CompletableFuture<Void> spillWrite = CompletableFuture.completedFuture(null);
+
+    /**
+     * The reads of evicted chunks handed to {@link Util#ioPool()} that have not
+     * been faulted in yet, keyed by the packed positions of the chunks.
+     */
+    private final Long2ObjectOpenHashMap<CompletableFuture<CompoundTag>> spillReads = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * The journal that changes since the file was last written are recorded to.
+     */
+    private final MagicalFarmJournal journal;
+
+    /**
+     * The saves handed to {@link #SAVE_EXECUTOR} that are not finished yet, in
+     * the order they were started.
+     */
+    private final ArrayDeque<PendingSave> pendingSaves = new ArrayDeque<>();
+
+    /**
+     * The last save handed to {@link #SAVE_EXECUTOR}, the next save is written
+     * after it.
      */
-    private final Map<BlockPos, MagicalFarmBlock.FeatureData> FEATURES = new LinkedHashMap<>();
+    private CompletableFuture<Boolean> lastSave = CompletableFuture.completedFuture(true);
 
     /**
      * The level the data is attached to.
@@ -72,11 +225,90 @@ public final class MagicalFarmBlockSavedData extends SavedData {
      */
     public MagicalFarmBlockSavedData(@NotNull final ServerLevel level) {
         this.level = level;
+        spillStorage = new MagicalFarmSpillStorage(level);
+        journal = new MagicalFarmJournal(level);
     }
 
     /**
-     * Save the current data to the specified {@link CompoundTag}, with the blocks'
-     * locations as the key and feature datas as the value.
+     * Write the saved data to the specified file if it is dirty, and discard the
+     * journal once the file is written. Unlike {@link SavedData#save(File)}, only
+     * a snapshot is taken and the journal is rotated on the calling thread, and
+     * the file is written on {@link #SAVE_EXECUTOR}. The level saves its chunks
+     * right after its saved datas, so the snapshot and the chunks are taken at
+     * the same tick. If the file could not be written, the journal is kept and
+     * the data is marked as dirty again.
+     *
+     * @param file The file of the saved data.
+     */
+    @Override
+    public void save(@NotNull final File file) {
+        if (!isDirty()) {
+            return;
+        }
+
+        setDirty(false);
+        final var snapshot = snapshot();
+        final var entries = residentEntries;
+        journal.rotate();
+
+        final var path = file.toPath();
+        lastSave = lastSave.handleAsync((previous, throwable) -> {
+            final var event = new MagicalFarmEvents.Save();
+            event.begin();
+            try {
+                snapshot.save(path);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.dimension = level.dimension().location().toString();
+                    event.residentChunks = snapshot.getResidentChunks();
+                    event.spilledChunks = snapshot.getSpilledChunks();
+                    event.entries = entries;
+                    event.bytes = Files.size(path);
+                    event.commit();
+                }
+
+                return true;
+            } catch (final IOException | RuntimeException exception) {
+                LOGGER.error("Could not save magical farm data {}", file, exception);
+                return false;
+            }
+        }, SAVE_EXECUTOR);
+
+        pendingSaves.add(new PendingSave(snapshot, lastSave));
+        lastSave.thenRunAsync(this::finishSaves, level.getServer());
+    }
+
+    /**
+     * Finish the saves whose files are written or failed, in the order they were
+     * started. The snapshot of a finished save is released, and the journal it
+     * rotated is discarded if the file is written, or the data is marked as dirty
+     * again otherwise. This method must be called on the server thread.
+     */
+    private final void finishSaves() {
+        while (!pendingSaves.isEmpty() && pendingSaves.peek().result().isDone()) {
+            final var pendingSave = pendingSaves.poll();
+            release(pendingSave.snapshot());
+            if (pendingSave.result().join()) {
+                journal.commit();
+            } else {
+                setDirty();
+            }
+        }
+    }
+
+    /**
+     * Wait until all saves handed to {@link #SAVE_EXECUTOR} are written, and
+     * finish them.
+     */
+    private final void awaitSaves() {
+        lastSave.join();
+        finishSaves();
+    }
+
+    /**
+     * Save the current data to the specified {@link CompoundTag}, in the layout
+     * described by {@link MagicalFarmDataFormat}. Only resident chunks are saved,
+     * evicted chunks are already on disk and only their positions are saved.
      *
      * @return The {@link CompoundTag} that stores the blocks' locations and
      *         feature datas, is the same instance of the {@link CompoundTag}
@@ -84,22 +316,464 @@ public final class MagicalFarmBlockSavedData extends SavedData {
      */
     @Override
     public CompoundTag save(@NotNull final CompoundTag compoundTag) {
-        for (final var entry : FEATURES.entrySet()) {
-            compoundTag.putLongArray(entry.getKey().toShortString(), entry.getValue().getData());
+        final var chunkList = new ListTag();
+        for (final var chunkData : chunks.values()) {
+            chunkList.add(chunkData.save());
         }
 
+        compoundTag.putInt(MagicalFarmDataFormat.VERSION, MagicalFarmDataFormat.CURRENT_VERSION);
+        compoundTag.put(MagicalFarmDataFormat.CHUNKS, chunkList);
+        compoundTag.putLongArray(MagicalFarmDataFormat.SPILLED, spilled.toLongArray());
         return compoundTag;
     }
 
     /**
-     * Get a map that maps {@link BlockPos} block locations to
-     * {@link MagicalFarmBlock.FeatureData} feature data.
+     * Get the feature data of the magical farmland at the specified location. If
+     * the data of the chunk is evicted, it is faulted back in.
+     *
+     * @param location The location of the block.
+     * @return The feature data, or {@code null} if there is no magical farmland at
+     *         the location.
+     */
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData getFeatureData(@NotNull final BlockPos location) {
+        final var chunkData = getChunkData(ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4));
+        return chunkData == null ? null : chunkData.get(location.asLong());
+    }
+
+    /**
+     * Set the feature data of the magical farmland at the specified location.
+     *
+     * @param location    The location of the block.
+     * @param featureData The feature data.
+     * @return The previous feature data, or {@code null} if there was none.
+     */
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData setFeatureData(@NotNull final BlockPos location,
+            @NotNull final MagicalFarmBlock.FeatureData featureData) {
+        final var chunk = ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4);
+        var chunkData = getChunkData(chunk);
+        if (chunkData == null) {
+            chunkData = new MagicalFarmChunkData(chunk, epoch);
+            chunkData.setLoaded(level.getChunkSource().hasChunk(ChunkPos.getX(chunk), ChunkPos.getZ(chunk)),
+                    Util.getMillis());
+            unshare();
+            chunks.put(chunk, chunkData);
+        }
+
+        final var previous = mutableChunkData(chunkData).put(location.asLong(), featureData);
+        if (previous == null) {
+            residentEntries++;
+        }
+
+        journal.set(location.asLong(), featureData.getData());
+        return previous;
+    }
+
+    /**
+     * Remove the feature data of the magical farmland at the specified location.
+     *
+     * @param location The location of the block.
+     * @return The removed feature data, or {@code null} if there was none.
+     */
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData removeFeatureData(@NotNull final BlockPos location) {
+        final var chunk = ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4);
+        final var chunkData = getChunkData(chunk);
+        if (chunkData == null || chunkData.get(location.asLong()) == null) {
+            return null;
+        }
+
+        final var mutableChunkData = mutableChunkData(chunkData);
+        final var featureData = mutableChunkData.remove(location.asLong());
+        residentEntries--;
+        journal.remove(location.asLong());
+
+        // Drop chunks without magical farmland entirely
+        if (mutableChunkData.isEmpty()) {
+            unshare();
+            chunks.remove(chunk);
+        }
+
+        return featureData;
+    }
+
+    /**
+     * Perform the specified action for each magical farmland in the specified
+     * chunk, the chunk is faulted in if it is evicted.
+     *
+     * @param chunk  The packed position of the chunk.
+     * @param action The action that accepts the location and the feature data.
+     */
+    @Override
+    public final void forEachInChunk(final long chunk,
+            @NotNull final BiConsumer<BlockPos, MagicalFarmBlock.FeatureData> action) {
+        final var chunkData = getChunkData(chunk);
+        if (chunkData != null) {
+            chunkData.forEach(action);
+        }
+    }
+
+    @Override
+    public final void persist() {
+        setDirty();
+    }
+
+    /**
+     * Take a point-in-time view of the data in constant time. The snapshot is
+     * not affected by later modifications and may be read on any thread, it must
+     * be released by {@link #release} on the server thread once it is no longer
+     * read.
+     *
+     * @return The snapshot.
+     */
+    public final @NotNull MagicalFarmDataSnapshot snapshot() {
+        // Everything that exists now is shared with the snapshot
+        shared = true;
+        epoch++;
+        activeSnapshots++;
+        return new MagicalFarmDataSnapshot(chunks, spilled, spillStorage);
+    }
+
+    /**
+     * Release a snapshot taken by {@link #snapshot()}, so that chunks can be
+     * evicted again once no snapshot is read.
+     *
+     * @param snapshot The snapshot to release.
+     */
+    public final void release(@NotNull final MagicalFarmDataSnapshot snapshot) {
+        if (activeSnapshots > 0) {
+            activeSnapshots--;
+        }
+    }
+
+    /**
+     * Copy the map of chunks and the set of evicted chunks if they are shared with
+     * a snapshot, this method must be called before they are modified.
+     */
+    private final void unshare() {
+        if (shared) {
+            chunks = chunks.clone();
+            spilled = spilled.clone();
+            shared = false;
+        }
+    }
+
+    /**
+     * Get the specified resident chunk data for modification, copy it first if it
+     * is shared with a snapshot.
+     *
+     * @param chunkData The resident chunk data.
+     * @return The chunk data that is safe to modify.
+     */
+    private final @NotNull MagicalFarmChunkData mutableChunkData(@NotNull final MagicalFarmChunkData chunkData) {
+        if (chunkData.getEpoch() == epoch) {
+            return chunkData;
+        }
+
+        final var copy = chunkData.copy(epoch);
+        unshare();
+        chunks.put(copy.getChunk(), copy);
+        return copy;
+    }
+
+    /**
+     * Get the data of the specified chunk, fault it in if it is evicted. The chunk
+     * becomes the most recently used chunk.
+     *
+     * @param chunk The packed position of the chunk.
+     * @return The chunk data, or {@code null} if there is no magical farmland in
+     *         the chunk.
+     */
+    public final @Nullable MagicalFarmChunkData getChunkData(final long chunk) {
+        // Do not copy a shared map only to keep the order of use
+        final var chunkData = shared ? chunks.get(chunk) : chunks.getAndMoveToLast(chunk);
+        if (chunkData != null || !spilled.contains(chunk)) {
+            return chunkData;
+        }
+
+        return faultIn(chunk);
+    }
+
+    /**
+     * Read the data of an evicted chunk back into memory. If a read of the chunk
+     * was started by {@link #prefetch}, it is awaited instead of reading the
+     * chunk again.
+     *
+     * @param chunk The packed position of the chunk.
+     * @return The chunk data, or {@code null} if the chunk could not be read.
+     */
+    private final @Nullable MagicalFarmChunkData faultIn(final long chunk) {
+        final var spillRead = spillReads.remove(chunk);
+        final CompoundTag record;
+        try {
+            record = spillRead != null ? spillRead.join() : spillStorage.read(chunk);
+        } catch (final IOException | CompletionException exception) {
+            // Keep the chunk marked as evicted, so that the data is not overwritten
+            LOGGER.error("Failed to read evicted magical farm data of chunk {}", new ChunkPos(chunk), exception);
+            return null;
+        }
+
+        // The saved data file may still list the chunk as evicted, which is harmless
+        // since the region file keeps the record until the chunk is evicted again
+        unshare();
+        spilled.remove(chunk);
+
+        if (record == null) {
+            return null;
+        }
+
+        final var chunkData = new MagicalFarmChunkData(chunk, epoch);
+        MagicalFarmChunkData.load(record, (block, data) -> {
+            if (chunkData.put(block, new MagicalFarmBlock.FeatureData(data)) == null) {
+                residentEntries++;
+            }
+        });
+
+        if (chunkData.isEmpty()) {
+            return null;
+        }
+
+        chunkData.setLoaded(level.getChunkSource().hasChunk(ChunkPos.getX(chunk), ChunkPos.getZ(chunk)),
+                Util.getMillis());
+        chunks.put(chunk, chunkData);
+        return chunkData;
+    }
+
+    /**
+     * Start reading the data of the specified evicted chunk on
+     * {@link Util#ioPool()}, the data is faulted in on the server thread once it
+     * is read, unless it was accessed and faulted in before.
+     *
+     * @param chunk The packed position of the chunk.
+     */
+    private final void prefetch(final long chunk) {
+        if (!spilled.contains(chunk) || spillReads.containsKey(chunk)) {
+            return;
+        }
+
+        final var spillRead = CompletableFuture.supplyAsync(() -> {
+            try {
+                return spillStorage.read(chunk);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, Util.ioPool());
+        spillReads.put(chunk, spillRead);
+        spillRead.whenCompleteAsync((record, throwable) -> finishPrefetch(chunk, spillRead), level.getServer());
+    }
+
+    /**
+     * Fault in the data of a chunk read by {@link #prefetch}, and remove its
+     * orphans if the chunk is loaded. This method must be called on the server
+     * thread.
+     *
+     * @param chunk     The packed position of the chunk.
+     * @param spillRead The read of the chunk.
+     */
+    private final void finishPrefetch(final long chunk, @NotNull final CompletableFuture<CompoundTag> spillRead) {
+        // The chunk may have been faulted in by an access in the meantime
+        if (spillReads.get(chunk) != spillRead) {
+            return;
+        }
+
+        final var chunkData = faultIn(chunk);
+        final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk), ChunkPos.getZ(chunk));
+        if (chunkData != null && levelChunk != null) {
+            chunkData.setLoaded(true, Util.getMillis());
+            removeOrphans(chunkData, levelChunk);
+        }
+    }
+
+    /**
+     * Evict the data of unloaded chunks that have been idle for too long, and the
+     * data of the least recently used unloaded chunks while more blocks than the
+     * configured maximum are resident. The chunk datas are written on
+     * {@link Util#ioPool()} and dropped by {@link #finishEviction} on the server
+     * thread.
+     *
+     * @param now The current time in milliseconds.
+     */
+    private final void evict(final long now) {
+        // A snapshot may still read the region files, and an eviction that is still
+        // being written holds one too
+        if (activeSnapshots > 0) {
+            return;
+        }
+
+        final var idleMillis = MagicalFoodConfig.SERVER.residencyIdleSeconds.get() * 1000L;
+        final var maxEntries = MagicalFoodConfig.SERVER.residencyMaxEntries.get();
+
+        // Iterate from the least recently used chunk, loaded chunks are never evicted
+        final var evicted = new ArrayList<MagicalFarmChunkData>();
+        var resident = residentEntries;
+        for (final var chunkData : chunks.values()) {
+            if (chunkData.isLoaded()) {
+                continue;
+            }
+
+            if (now - chunkData.getUnloadedAt() >= idleMillis || resident > maxEntries) {
+                evicted.add(chunkData);
+                resident -= chunkData.size();
+            }
+        }
+
+        if (evicted.isEmpty()) {
+            return;
+        }
+
+        // The snapshot makes modifications copy the chunk datas instead of changing
+        // them while they are written
+        final var snapshot = snapshot();
+        spillWrite = CompletableFuture.runAsync(() -> {
+            try {
+                spillStorage.write(evicted);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, Util.ioPool());
+        spillWrite.whenCompleteAsync((result, throwable) -> finishEviction(snapshot, evicted, throwable),
+                level.getServer());
+    }
+
+    /**
+     * Drop the chunk datas written by {@link #evict}, unless the chunks were
+     * modified, loaded or faulted in while they were written. Chunks are only
+     * dropped once they are written, so that the data is kept in memory on
+     * failure. This method must be called on the server thread.
+     *
+     * @param snapshot  The snapshot taken for the write.
+     * @param evicted   The written chunk datas.
+     * @param throwable The failure of the write, or {@code null} if the chunk
+     *                  datas are written.
+     */
+    private final void finishEviction(@NotNull final MagicalFarmDataSnapshot snapshot,
+            @NotNull final ArrayList<MagicalFarmChunkData> evicted, @Nullable final Throwable throwable) {
+        release(snapshot);
+        if (throwable != null) {
+            LOGGER.error("Failed to evict magical farm data of {} chunks", evicted.size(), throwable);
+            return;
+        }
+
+        unshare();
+        for (final var chunkData : evicted) {
+            // A modified chunk data has been copied, the written record is stale
+            if (chunks.get(chunkData.getChunk()) != chunkData || chunkData.isLoaded()) {
+                continue;
+            }
+
+            chunks.remove(chunkData.getChunk());
+            spilled.add(chunkData.getChunk());
+            journal.spill(chunkData.getChunk());
+            residentEntries -= chunkData.size();
+        }
+    }
+
+    /**
+     * Replay the journal left by the last run on top of the data loaded from the
+     * file, which is the case if the server crashed before the file was written.
+     */
+    private final void replayJournal() {
+        final var replayed = journal.replay(
+                (block, data) -> setFeatureData(BlockPos.of(block), new MagicalFarmBlock.FeatureData(data)),
+                block -> removeFeatureData(BlockPos.of(block)), this::replaySpill);
+        if (replayed > 0) {
+            LOGGER.info("Replayed {} magical farm journal records of {}", replayed, level.dimension().location());
+        }
+    }
+
+    /**
+     * Mark the specified chunk as evicted while the journal is replayed, the
+     * region file already contains the latest data of the chunk.
+     *
+     * @param chunk The packed position of the chunk.
+     */
+    private final void replaySpill(final long chunk) {
+        final var chunkData = chunks.remove(chunk);
+        if (chunkData != null) {
+            residentEntries -= chunkData.size();
+        }
+
+        spilled.add(chunk);
+    }
+
+    /**
+     * Remove the feature datas of the specified chunk whose block is no longer a
+     * magical farmland, which is left behind by data saved before blocks removed
+     * their data, or by blocks changed without any block update.
+     *
+     * @param chunkData  The chunk data.
+     * @param levelChunk The loaded chunk.
+     */
+    private final void removeOrphans(@NotNull final MagicalFarmChunkData chunkData,
+            @NotNull final LevelChunk levelChunk) {
+        final var orphans = new ArrayList<BlockPos>();
+        chunkData.forEach((location, featureData) -> {
+            if (!(levelChunk.getBlockState(location).getBlock() instanceof MagicalFarmBlock)) {
+                orphans.add(location);
+            }
+        });
+
+        for (final var location : orphans) {
+            removeFeatureData(location);
+        }
+    }
+
+    /**
+     * Mark the resident chunks that are already loaded as loaded, and remove their
+     * orphaned feature datas, chunks loaded later are validated by
+     * {@link #onChunkLoad}. The chunks are not looked up while the data is read,
+     * which may happen on another thread.
+     */
+    private final void validateLoadedChunks() {
+        final var now = Util.getMillis();
+        for (final var chunkData : new ArrayList<>(chunks.values())) {
+            final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkData.getChunk()),
+                    ChunkPos.getZ(chunkData.getChunk()));
+            chunkData.setLoaded(levelChunk != null, now);
+            if (levelChunk != null) {
+                removeOrphans(chunkData, levelChunk);
+            }
+        }
+    }
+
+    /**
+     * Get the packed positions of all chunks that have magical farmland, whether
+     * their data is resident or evicted.
+     *
+     * @return The packed positions of the chunks, a new set.
+     */
+    public final @NotNull LongOpenHashSet getIndexedChunks() {
+        final var indexed = new LongOpenHashSet(chunks.keySet());
+        indexed.addAll(spilled);
+        return indexed;
+    }
+
+    /**
+     * Get the count of chunks whose data is resident.
      *
-     * @return The map that maps {@link BlockPos} block locations to
-     *         {@link MagicalFarmBlock.FeatureData} feature data.
+     * @return The count of chunks whose data is resident.
      */
-    public final Map<BlockPos, MagicalFarmBlock.FeatureData> getFeatureMap() {
-        return FEATURES;
+    public final int getResidentChunks() {
+        return chunks.size();
+    }
+
+    /**
+     * Get the count of magical farmland whose data is resident.
+     *
+     * @return The count of magical farmland whose data is resident.
+     */
+    public final int getResidentEntries() {
+        return residentEntries;
+    }
+
+    /**
+     * Get the count of chunks whose data is evicted to disk.
+     *
+     * @return The count of chunks whose data is evicted to disk.
+     */
+    public final int getSpilledChunks() {
+        return spilled.size();
     }
 
     /**
@@ -114,20 +788,63 @@ public final class MagicalFarmBlockSavedData extends SavedData {
         // Construct a new saved data object with the specified level
         final var savedData = new MagicalFarmBlockSavedData(level);
 
+        // Data saved before the chunk layout was introduced has no version
+        if (!compoundTag.contains(MagicalFarmDataFormat.VERSION, Tag.TAG_INT)) {
+            loadLegacy(savedData, compoundTag);
+            return savedData;
+        }
+
+        final var chunkList = compoundTag.getList(MagicalFarmDataFormat.CHUNKS, Tag.TAG_COMPOUND);
+        for (var index = 0; index < chunkList.size(); index++) {
+            MagicalFarmChunkData.load(chunkList.getCompound(index),
+                    (block, data) -> savedData.loadBlock(BlockPos.of(block), data));
+        }
+
+        for (final var chunk : compoundTag.getLongArray(MagicalFarmDataFormat.SPILLED)) {
+            // A chunk both resident and evicted was faulted in before the last save
+            if (!savedData.chunks.containsKey(chunk)) {
+                savedData.spilled.add(chunk);
+            }
+        }
+
+        return savedData;
+    }
+
+    /**
+     * Load the saved data from the supplied {@link CompoundTag} that was saved
+     * before the chunk layout was introduced, where the keys are location strings.
+     *
+     * @param savedData   The saved data to load into.
+     * @param compoundTag The {@link CompoundTag} that stores the data.
+     */
+    private static final void loadLegacy(@NotNull final MagicalFarmBlockSavedData savedData,
+            @NotNull final CompoundTag compoundTag) {
         // Iterate over all keys, key stores the location of the block.
         for (final var key : compoundTag.getAllKeys()) {
             // Parse the key to the location of the block
-            final var location = parseLocation(key);
-            final var data = compoundTag.getLongArray(key);
+            savedData.loadBlock(parseLocation(key), compoundTag.getLongArray(key));
+        }
+    }
 
-            // Determine if the block state in the specified location is instance of
-            // MagicalFarmBlockState, only MagicalFarmBlockState stores the feature data.
-            if (level.getBlockState(location) instanceof final MagicalFarmBlockState blockState) {
-                savedData.FEATURES.put(location, new MagicalFarmBlock.FeatureData(data));
-            }
+    /**
+     * Load the feature data of a single block.
+     *
+     * @param location The location of the block.
+     * @param data     The feature data, a long array containing a sequence of bits.
+     */
+    private final void loadBlock(@NotNull final BlockPos location, final long[] data) {
+        // The block is validated once its chunk is loaded, whether the chunk is
+        // loaded is only looked up when the data is installed on the server thread
+        final var chunk = ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4);
+        var chunkData = chunks.get(chunk);
+        if (chunkData == null) {
+            chunkData = new MagicalFarmChunkData(chunk, epoch);
+            chunks.put(chunk, chunkData);
         }
 
-        return savedData;
+        if (chunkData.put(location.asLong(), new MagicalFarmBlock.FeatureData(data)) == null) {
+            residentEntries++;
+        }
     }
 
     /**
@@ -154,8 +871,296 @@ public final class MagicalFarmBlockSavedData extends SavedData {
      * @return The saved data
      */
     public static final @NotNull MagicalFarmBlockSavedData getSavedData(@NotNull final ServerLevel level) {
-        return DATA.computeIfAbsent(level,
-                key -> key.getDataStorage().computeIfAbsent(compoundTag -> load(level, compoundTag),
-                        () -> new MagicalFarmBlockSavedData(level), "magical_farm"));
+        var savedData = DATA.get(level);
+        if (savedData == null) {
+            final var event = new MagicalFarmEvents.Load();
+            event.begin();
+            savedData = install(level, read(level));
+            commitLoad(event, level, savedData);
+        }
+
+        return savedData;
+    }
+
+    /**
+     * Load the data of the specified levels that is not loaded yet, so that it is
+     * not loaded lazily in the middle of a tick. The files are read and decoded
+     * in parallel on the specified executor, which is safe because each level has
+     * its own data storage and the calling thread waits meanwhile. The journals
+     * are then replayed and the data validated against the loaded chunks on the
+     * calling thread, which must be the server thread.
+     *
+     * @param levels   The levels.
+     * @param executor The executor the files are read on.
+     * @return The count of levels whose data was loaded.
+     */
+    public static final int preload(@NotNull final Iterable<ServerLevel> levels, @NotNull final Executor executor) {
+        final var events = new LinkedHashMap<ServerLevel, MagicalFarmEvents.Load>();
+        final var reads = new ArrayList<CompletableFuture<MagicalFarmBlockSavedData>>();
+        final var start = Util.getNanos();
+        for (final var level : levels) {
+            if (!DATA.containsKey(level)) {
+                final var event = new MagicalFarmEvents.Load();
+                event.begin();
+                events.put(level, event);
+                reads.add(CompletableFuture.supplyAsync(() -> read(level), executor));
+            }
+        }
+
+        if (reads.isEmpty()) {
+            return 0;
+        }
+
+        // Wait for all reads before installing any, a level whose data could not be
+        // read is left to be loaded on first access
+        final var results = new ArrayList<MagicalFarmBlockSavedData>(reads.size());
+        var index = 0;
+        for (final var level : events.keySet()) {
+            try {
+                results.add(reads.get(index++).join());
+            } catch (final CompletionException exception) {
+                LOGGER.error("Could not preload magical farm data of {}", level.dimension().location(),
+                        exception.getCause());
+                results.add(null);
+            }
+        }
+
+        final var readNanos = Util.getNanos() - start;
+        var loaded = 0;
+        index = 0;
+        for (final var entry : events.entrySet()) {
+            final var savedData = results.get(index++);
+            if (savedData != null) {
+                commitLoad(entry.getValue(), entry.getKey(), install(entry.getKey(), savedData));
+                loaded++;
+            }
+        }
+
+        LOGGER.info("Preloaded magical farm data of {} levels: read {} ms in parallel, replayed and validated {} ms",
+                loaded, readNanos / 1_000_000L, (Util.getNanos() - start - readNanos) / 1_000_000L);
+        return loaded;
+    }
+
+    /**
+     * Read and decode the saved data of the specified level from its file. Apart
+     * from the data storage of the level, this method only constructs the journal
+     * and the spill storage, which resolve their paths from the world folder, and
+     * never queries the chunk source, so it may run on another thread while the
+     * server thread waits. The loaded chunks are looked up by {@link #install}.
+     *
+     * @param level The level.
+     * @return The saved data, which is not installed yet.
+     */
+    private static final @NotNull MagicalFarmBlockSavedData read(@NotNull final ServerLevel level) {
+        return level.getDataStorage().computeIfAbsent(compoundTag -> load(level, compoundTag),
+                () -> new MagicalFarmBlockSavedData(level), MagicalFarmDataFormat.NAME);
+    }
+
+    /**
+     * Install the saved data of the specified level read by {@link #read}: replay
+     * its journal, mark the chunks that are loaded and remove their orphans. This
+     * method must be called on the server thread.
+     *
+     * @param level     The level.
+     * @param savedData The saved data.
+     * @return The saved data.
+     */
+    private static final @NotNull MagicalFarmBlockSavedData install(@NotNull final ServerLevel level,
+            @NotNull final MagicalFarmBlockSavedData savedData) {
+        // The journal is replayed even if the file was never written
+        DATA.put(level, savedData);
+        savedData.replayJournal();
+        savedData.validateLoadedChunks();
+        return savedData;
+    }
+
+    /**
+     * Commit the flight recorder event of a load of the saved data.
+     *
+     * @param event     The event, begun when the load started.
+     * @param level     The level.
+     * @param savedData The loaded saved data.
+     */
+    private static final void commitLoad(@NotNull final MagicalFarmEvents.Load event,
+            @NotNull final ServerLevel level, @NotNull final MagicalFarmBlockSavedData savedData) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.dimension = level.dimension().location().toString();
+            event.residentChunks = savedData.chunks.size();
+            event.spilledChunks = savedData.spilled.size();
+            event.entries = savedData.residentEntries;
+            event.bytes = getFileSize(level);
+            event.commit();
+        }
+    }
+
+    /**
+     * Get the size of the file of the saved data of the specified level.
+     *
+     * @param level The level.
+     * @return The size of the file, or {@code 0} if it does not exist or its size
+     *         could not be read.
+     */
+    private static final long getFileSize(@NotNull final ServerLevel level) {
+        final var file = getFile(level);
+        try {
+            return Files.exists(file) ? Files.size(file) : 0L;
+        } catch (final IOException exception) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Get the file of the saved data of the specified level, the same file the
+     * data storage of the level writes.
+     *
+     * @param level The level.
+     * @return The file of the saved data.
+     */
+    private static final @NotNull Path getFile(@NotNull final ServerLevel level) {
+        return DimensionType.getStorageFolder(level.dimension(), level.getServer().getWorldPath(LevelResource.ROOT))
+                .resolve("data").resolve(MagicalFarmDataFormat.NAME + ".dat");
+    }
+
+    /**
+     * This function is called when a chunk is loaded, marks the data of the chunk
+     * as loaded, or starts faulting it in if it is evicted.
+     *
+     * @param event The chunk load event.
+     */
+    @SubscribeEvent
+    public static final void onChunkLoad(@NotNull final ChunkEvent.Load event) {
+        if (!(event.getLevel() instanceof final ServerLevel level) || !(event.getChunk() instanceof LevelChunk)) {
+            return;
+        }
+
+        // Levels whose data has not been loaded yet have nothing to fault in
+        final var savedData = DATA.get(level);
+        if (savedData == null) {
+            return;
+        }
+
+        // Evicted chunks are read off the server thread
+        final var chunk = event.getChunk().getPos().toLong();
+        if (savedData.spilled.contains(chunk)) {
+            savedData.prefetch(chunk);
+            return;
+        }
+
+        final var chunkData = savedData.getChunkData(chunk);
+        if (chunkData != null) {
+            chunkData.setLoaded(true, Util.getMillis());
+            savedData.removeOrphans(chunkData, (LevelChunk) event.getChunk());
+        }
+    }
+
+    /**
+     * This function is called when a chunk is unloaded, marks the data of the
+     * chunk as unloaded so that it becomes a candidate for eviction.
+     *
+     * @param event The chunk unload event.
+     */
+    @SubscribeEvent
+    public static final void onChunkUnload(@NotNull final ChunkEvent.Unload event) {
+        if (!(event.getLevel() instanceof final ServerLevel level)) {
+            return;
+        }
+
+        final var savedData = DATA.get(level);
+        if (savedData == null) {
+            return;
+        }
+
+        // Do not fault in the chunk only to mark it as unloaded
+        final var chunkData = savedData.chunks.get(event.getChunk().getPos().toLong());
+        if (chunkData != null) {
+            chunkData.setLoaded(false, Util.getMillis());
+        }
+    }
+
+    /**
+     * This function is called at the start and the end of each server tick, the
+     * residency of all levels is swept periodically at the end of the tick.
+     *
+     * @param event The server tick event.
+     */
+    @SubscribeEvent
+    public static final void onServerTick(@NotNull final TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        if (++ticksSinceSweep >= SWEEP_INTERVAL) {
+            ticksSinceSweep = 0;
+            final var now = Util.getMillis();
+            for (final var savedData : DATA.values()) {
+                savedData.evict(now);
+            }
+        }
+
+        if (++ticksSinceSync >= MagicalFoodConfig.SERVER.journalSyncTicks.get()) {
+            ticksSinceSync = 0;
+            final var compactBytes = MagicalFoodConfig.SERVER.journalCompactBytes.get();
+            for (final var savedData : DATA.values()) {
+                savedData.journal.sync();
+
+                // Compact the journal into the file of this data only, which discards
+                // the journal, the other saved datas of the level are left alone
+                if (savedData.journal.getSize() >= compactBytes) {
+                    savedData.setDirty();
+                    savedData.save(getFile(savedData.level).toFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * This function is called when the server is stopping, before the levels are
+     * saved for the last time, so that the journals are compacted into the files
+     * of the saved datas.
+     *
+     * @param event The server stopping event.
+     */
+    @SubscribeEvent
+    public static final void onServerStopping(@NotNull final ServerStoppingEvent event) {
+        for (final var savedData : DATA.values()) {
+            if (savedData.journal.getSize() > 0L) {
+                savedData.setDirty();
+            }
+        }
+    }
+
+    /**
+     * This function is called when a level is unloaded, forget the data of the
+     * level so that the level can be garbage collected. The data itself is saved
+     * by the level's data storage, the pending saves are awaited and the journal
+     * is synced before it is forgotten.
+     *
+     * @param event The level unload event.
+     */
+    @SubscribeEvent
+    public static final void onLevelUnload(@NotNull final LevelEvent.Unload event) {
+        if (!(event.getLevel() instanceof final ServerLevel level)) {
+            return;
+        }
+
+        final var savedData = DATA.remove(level);
+        if (savedData != null) {
+            // The final save of the level must reach the disk before the server exits,
+            // and so must the region files of an eviction, whose chunks were saved in
+            // the file if it was never applied
+            savedData.awaitSaves();
+            savedData.spillWrite.handle((result, throwable) -> null).join();
+            savedData.journal.close();
+        }
+    }
+
+    /**
+     * Represents a save handed to {@link #SAVE_EXECUTOR}.
+     *
+     * @param snapshot The snapshot that is written.
+     * @param result   The result of the save, {@code true} if the file is written.
+     */
+    private record PendingSave(MagicalFarmDataSnapshot snapshot, CompletableFuture<Boolean> result) {
     }
 }
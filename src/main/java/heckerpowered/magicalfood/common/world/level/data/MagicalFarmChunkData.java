@@ -0,0 +1,672 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Represents the feature datas of all magical farmland in a single chunk. The
+ * chunk is the unit in which {@link MagicalFarmBlockSavedData} keeps data
+ * resident in memory or evicts it to disk. Instances should only be modified
+ * through {@link MagicalFarmBlockSavedData}, which keeps its counters in sync
+ * and copies a chunk data before modifying it if it is shared with a snapshot.
+ * <p>
+ * Like vanilla's {@code PalettedContainer}, each chunk section that contains
+ * magical farmland keeps a palette of the distinct feature datas in it and a
+ * packed array of palette indices, one per block of the section. The magical
+ * farmland of a section almost always shares a handful of feature sets, so a
+ * uniform field costs a bit per block, and lookups stay constant time. The
+ * palette grows, and the indices widen, automatically. Sections are saved in
+ * the same form, see {@link MagicalFarmDataFormat}.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmChunkData {
+    /**
+     * The packed position of the chunk.
+     */
+    private final long chunk;
+
+    /**
+     * The sections that contain magical farmland, keyed by the section y
+     * coordinate.
+     */
+    private final Int2ObjectOpenHashMap<Section> sections = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * The snapshot epoch of the saved data in which this chunk data was created,
+     * the chunk data is shared with every snapshot taken after that.
+     */
+    private final int epoch;
+
+    /**
+     * The count of magical farmland in the chunk.
+     */
+    private int size;
+
+    /**
+     * Whether the chunk is currently loaded in the level.
+     */
+    private boolean loaded;
+
+    /**
+     * The time in milliseconds at which the chunk was unloaded.
+     */
+    private long unloadedAt;
+
+    /**
+     * Constructs a new empty chunk data.
+     *
+     * @param chunk The packed position of the chunk.
+     * @param epoch The current snapshot epoch of the saved data.
+     */
+    MagicalFarmChunkData(final long chunk, final int epoch) {
+        this.chunk = chunk;
+        this.epoch = epoch;
+    }
+
+    /**
+     * Copy the chunk data for a new snapshot epoch. Feature datas are immutable,
+     * so only the palettes and the indices are copied.
+     *
+     * @param epoch The current snapshot epoch of the saved data.
+     * @return The copied chunk data.
+     */
+    final @NotNull MagicalFarmChunkData copy(final int epoch) {
+        final var copy = new MagicalFarmChunkData(chunk, epoch);
+        for (final var entry : Int2ObjectMaps.fastIterable(sections)) {
+            copy.sections.put(entry.getIntKey(), new Section(entry.getValue()));
+        }
+
+        copy.size = size;
+        copy.loaded = loaded;
+        copy.unloadedAt = unloadedAt;
+        return copy;
+    }
+
+    /**
+     * Get the snapshot epoch in which the chunk data was created.
+     *
+     * @return The snapshot epoch.
+     */
+    final int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Get the packed position of the chunk.
+     *
+     * @return The packed position of the chunk.
+     */
+    public final long getChunk() {
+        return chunk;
+    }
+
+    /**
+     * Get the feature data at the specified packed location.
+     *
+     * @param block The packed location of the block.
+     * @return The feature data, or {@code null} if there is no magical farmland
+     *         at the location.
+     */
+    public final @Nullable MagicalFarmBlock.FeatureData get(final long block) {
+        final var section = sections.get(BlockPos.getY(block) >> 4);
+        return section == null ? null : section.get(getCell(block));
+    }
+
+    /**
+     * Put the feature data at the specified packed location.
+     *
+     * @param block       The packed location of the block.
+     * @param featureData The feature data.
+     * @return The previous feature data, or {@code null} if there was none.
+     */
+    final @Nullable MagicalFarmBlock.FeatureData put(final long block,
+            @NotNull final MagicalFarmBlock.FeatureData featureData) {
+        final var previous = sections.computeIfAbsent(BlockPos.getY(block) >> 4, sectionY -> new Section())
+                .put(getCell(block), featureData);
+        if (previous == null) {
+            size++;
+        }
+
+        return previous;
+    }
+
+    /**
+     * Remove the feature data at the specified packed location.
+     *
+     * @param block The packed location of the block.
+     * @return The removed feature data, or {@code null} if there was none.
+     */
+    final @Nullable MagicalFarmBlock.FeatureData remove(final long block) {
+        final var sectionY = BlockPos.getY(block) >> 4;
+        final var section = sections.get(sectionY);
+        if (section == null) {
+            return null;
+        }
+
+        final var previous = section.remove(getCell(block));
+        if (previous != null) {
+            size--;
+            if (section.isEmpty()) {
+                sections.remove(sectionY);
+            }
+        }
+
+        return previous;
+    }
+
+    /**
+     * Get the count of magical farmland in the chunk.
+     *
+     * @return The count of magical farmland in the chunk.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Returns a boolean that indicates whether there is no magical farmland in the
+     * chunk.
+     *
+     * @return {@code true} if there is no magical farmland, {@code false}
+     *         otherwise.
+     */
+    public final boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Perform the specified action for each magical farmland in the chunk.
+     *
+     * @param action The action that accepts the location and the feature data.
+     */
+    public final void forEach(@NotNull final BiConsumer<BlockPos, MagicalFarmBlock.FeatureData> action) {
+        final var minX = ChunkPos.getX(chunk) << 4;
+        final var minZ = ChunkPos.getZ(chunk) << 4;
+        for (final var entry : Int2ObjectMaps.fastIterable(sections)) {
+            final var minY = entry.getIntKey() << 4;
+            entry.getValue().forEach((cell, featureData) -> action.accept(
+                    new BlockPos(minX | cell & 15, minY | cell >> 8, minZ | (cell >> 4) & 15), featureData));
+        }
+    }
+
+    /**
+     * Returns a boolean that indicates whether the chunk is currently loaded.
+     *
+     * @return {@code true} if the chunk is loaded, {@code false} otherwise.
+     */
+    public final boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Get the time in milliseconds at which the chunk was unloaded.
+     *
+     * @return The time at which the chunk was unloaded.
+     */
+    public final long getUnloadedAt() {
+        return unloadedAt;
+    }
+
+    /**
+     * Mark the chunk as loaded or unloaded.
+     *
+     * @param loaded Whether the chunk is loaded.
+     * @param now    The current time in milliseconds.
+     */
+    final void setLoaded(final boolean loaded, final long now) {
+        this.loaded = loaded;
+        if (!loaded) {
+            unloadedAt = now;
+        }
+    }
+
+    /**
+     * Save the chunk data to a new {@link CompoundTag}, in the chunk record layout
+     * described by {@link MagicalFarmDataFormat}. The chunk data is not modified,
+     * so a chunk data shared with a snapshot may be saved on another thread.
+     *
+     * @return The {@link CompoundTag} that stores the chunk.
+     */
+    public final @NotNull CompoundTag save() {
+        final var sectionList = new ListTag();
+        for (final var entry : Int2ObjectMaps.fastIterable(sections)) {
+            sectionList.add(entry.getValue().save(entry.getIntKey()));
+        }
+
+        final var compoundTag = new CompoundTag();
+        compoundTag.putLong(MagicalFarmDataFormat.CHUNK_POS, chunk);
+        compoundTag.put(MagicalFarmDataFormat.SECTIONS, sectionList);
+        return compoundTag;
+    }
+
+    /**
+     * Load the blocks stored in the specified chunk record and pass them to the
+     * specified action, malformed records and sections are ignored. Both the
+     * section layout and the layout of version {@code 1} are accepted.
+     *
+     * @param compoundTag The {@link CompoundTag} that stores the chunk record.
+     * @param action      The action that accepts the packed location and the
+     *                    feature bits of each block, blocks that share a palette
+     *                    entry share the array of feature bits.
+     */
+    public static final void load(@NotNull final CompoundTag compoundTag,
+            @NotNull final BlockLoader action) {
+        if (!compoundTag.contains(MagicalFarmDataFormat.SECTIONS, Tag.TAG_LIST)) {
+            loadBlocks(compoundTag, action);
+            return;
+        }
+
+        final var chunk = compoundTag.getLong(MagicalFarmDataFormat.CHUNK_POS);
+        final var minX = ChunkPos.getX(chunk) << 4;
+        final var minZ = ChunkPos.getZ(chunk) << 4;
+        final var sectionList = compoundTag.getList(MagicalFarmDataFormat.SECTIONS, Tag.TAG_COMPOUND);
+        for (var index = 0; index < sectionList.size(); index++) {
+            final var section = sectionList.getCompound(index);
+            final var minY = section.getInt(MagicalFarmDataFormat.SECTION_Y) << 4;
+            final var words = section.getInt(MagicalFarmDataFormat.WORDS);
+            final var palette = section.getLongArray(MagicalFarmDataFormat.PALETTE);
+            final var data = section.getLongArray(MagicalFarmDataFormat.DATA);
+
+            // Skip malformed sections instead of failing the whole level
+            if (words <= 0 || palette.length % words != 0) {
+                continue;
+            }
+
+            final var paletteSize = palette.length / words;
+            final var bits = MagicalFarmDataFormat.getIndexBits(paletteSize);
+            if (data.length != MagicalFarmDataFormat.getDataLength(bits)) {
+                continue;
+            }
+
+            final var entries = new long[paletteSize][];
+            for (var entry = 0; entry < paletteSize; entry++) {
+                entries[entry] = Arrays.copyOfRange(palette, entry * words, entry * words + words);
+            }
+
+            for (var cell = 0; cell < MagicalFarmDataFormat.SECTION_CELLS; cell++) {
+                final var paletteIndex = MagicalFarmDataFormat.getIndex(data, bits, cell);
+                if (paletteIndex != 0 && paletteIndex <= paletteSize) {
+                    action.load(BlockPos.asLong(minX | cell & 15, minY | cell >> 8, minZ | (cell >> 4) & 15),
+                            entries[paletteIndex - 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the blocks stored in the specified chunk record of version {@code 1},
+     * a malformed record is ignored.
+     *
+     * @param compoundTag The {@link CompoundTag} that stores the chunk record.
+     * @param action      The action that accepts the packed location and the
+     *                    feature bits of each block.
+     */
+    private static final void loadBlocks(@NotNull final CompoundTag compoundTag,
+            @NotNull final BlockLoader action) {
+        final var blocks = compoundTag.getLongArray(MagicalFarmDataFormat.BLOCKS);
+        final var words = compoundTag.getInt(MagicalFarmDataFormat.WORDS);
+        final var features = compoundTag.getLongArray(MagicalFarmDataFormat.FEATURES);
+
+        // Skip malformed chunks instead of failing the whole level
+        if (words < 0 || features.length != blocks.length * words) {
+            return;
+        }
+
+        for (var index = 0; index < blocks.length; index++) {
+            final var data = new long[words];
+            System.arraycopy(features, index * words, data, 0, words);
+            action.load(blocks[index], data);
+        }
+    }
+
+    /**
+     * Get the cell of the specified packed location in its section.
+     *
+     * @param block The packed location of the block.
+     * @return The cell.
+     */
+    private static final int getCell(final long block) {
+        return MagicalFarmDataFormat.getCell(BlockPos.getX(block), BlockPos.getY(block), BlockPos.getZ(block));
+    }
+
+    /**
+     * Represents an action that accepts a block loaded from a chunk record.
+     *
+     * @author Heckerpowered
+     */
+    @FunctionalInterface
+    public interface BlockLoader {
+        /**
+         * Accept a block loaded from a chunk record.
+         *
+         * @param block The packed location of the block.
+         * @param data  The feature bits of the block, must not be modified.
+         */
+        void load(long block, long[] data);
+    }
+
+    /**
+     * Represents an action that accepts a magical farmland of a section.
+     *
+     * @author Heckerpowered
+     */
+    @FunctionalInterface
+    private interface CellConsumer {
+        /**
+         * Accept a magical farmland of a section.
+         *
+         * @param cell        The cell of the block in the section.
+         * @param featureData The feature data of the block.
+         */
+        void accept(int cell, MagicalFarmBlock.FeatureData featureData);
+    }
+
+    /**
+     * The feature datas of a single chunk section, a palette of the distinct
+     * feature datas and the packed palette indices of the blocks. Index
+     * {@code 0} means there is no magical farmland. Palette entries that are no
+     * longer used are only dropped when the palette is full, or when the
+     * section is saved.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    @MethodsReturnNonnullByDefault
+    @FieldsAreNonnullByDefault
+    private static final class Section {
+        /**
+         * The palette, the entry at index {@code 0} is unused.
+         */
+        private MagicalFarmBlock.FeatureData[] palette;
+
+        /**
+         * The count of palette entries, excluding index {@code 0}.
+         */
+        private int paletteSize;
+
+        /**
+         * The count of bits of each palette index.
+         */
+        private int bits;
+
+        /**
+         * The packed palette indices of the blocks.
+         */
+        private long[] data;
+
+        /**
+         * The count of magical farmland in the section.
+         */
+        private int size;
+
+        /**
+         * Constructs a new empty section with a single bit per block.
+         */
+        private Section() {
+            palette = new MagicalFarmBlock.FeatureData[2];
+            bits = 1;
+            data = new long[MagicalFarmDataFormat.getDataLength(bits)];
+        }
+
+        /**
+         * Constructs a copy of the specified section.
+         *
+         * @param section The section to copy.
+         */
+        private Section(@NotNull final Section section) {
+            palette = section.palette.clone();
+            paletteSize = section.paletteSize;
+            bits = section.bits;
+            data = section.data.clone();
+            size = section.size;
+        }
+
+        /**
+         * Get the feature data of the specified cell.
+         *
+         * @param cell The cell.
+         * @return The feature data, or {@code null} if there is none.
+         */
+        private @Nullable MagicalFarmBlock.FeatureData get(final int cell) {
+            final var index = MagicalFarmDataFormat.getIndex(data, bits, cell);
+            return index == 0 ? null : palette[index];
+        }
+
+        /**
+         * Put the feature data of the specified cell.
+         *
+         * @param cell        The cell.
+         * @param featureData The feature data.
+         * @return The previous feature data, or {@code null} if there was none.
+         */
+        private @Nullable MagicalFarmBlock.FeatureData put(final int cell,
+                @NotNull final MagicalFarmBlock.FeatureData featureData) {
+            final var previous = get(cell);
+
+            // Adding a palette entry may repack the indices into a new array
+            final var index = indexOf(featureData);
+            MagicalFarmDataFormat.setIndex(data, bits, cell, index);
+            if (previous == null) {
+                size++;
+            }
+
+            return previous;
+        }
+
+        /**
+         * Remove the feature data of the specified cell.
+         *
+         * @param cell The cell.
+         * @return The removed feature data, or {@code null} if there was none.
+         */
+        private @Nullable MagicalFarmBlock.FeatureData remove(final int cell) {
+            final var previous = get(cell);
+            if (previous != null) {
+                MagicalFarmDataFormat.setIndex(data, bits, cell, 0);
+                size--;
+            }
+
+            return previous;
+        }
+
+        /**
+         * Returns a boolean that indicates whether there is no magical farmland in
+         * the section.
+         *
+         * @return {@code true} if the section is empty, {@code false} otherwise.
+         */
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Perform the specified action for each magical farmland in the section.
+         *
+         * @param action The action that accepts the cell and the feature data.
+         */
+        private void forEach(@NotNull final CellConsumer action) {
+            final var indicesPerLong = Long.SIZE / bits;
+            for (var word = 0; word < data.length; word++) {
+                // Most of a section is usually empty
+                if (data[word] == 0L) {
+                    continue;
+                }
+
+                final var end = Math.min(MagicalFarmDataFormat.SECTION_CELLS, (word + 1) * indicesPerLong);
+                for (var cell = word * indicesPerLong; cell < end; cell++) {
+                    final var featureData = get(cell);
+                    if (featureData != null) {
+                        action.accept(cell, featureData);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Get the palette index of the specified feature data, adding it to the
+         * palette if it is not in it. A full palette drops its unused entries
+         * first, and the indices are widened if it is still full.
+         *
+         * @param featureData The feature data.
+         * @return The palette index.
+         */
+        private int indexOf(@NotNull final MagicalFarmBlock.FeatureData featureData) {
+            // Palettes are small, a linear search is faster than a map
+            for (var index = 1; index <= paletteSize; index++) {
+                if (palette[index].equals(featureData)) {
+                    return index;
+                }
+            }
+
+            if (paletteSize + 1 >= 1 << bits) {
+                compact();
+                if (paletteSize + 1 >= 1 << bits) {
+                    resize(bits + 1);
+                }
+            }
+
+            if (paletteSize + 1 >= palette.length) {
+                palette = Arrays.copyOf(palette, palette.length * 2);
+            }
+
+            palette[++paletteSize] = featureData;
+            return paletteSize;
+        }
+
+        /**
+         * Drop the palette entries that are no longer used by any block.
+         */
+        private void compact() {
+            final var remap = getRemap();
+            var used = 0;
+            for (var index = 1; index <= paletteSize; index++) {
+                if (remap[index] != 0) {
+                    palette[remap[index]] = palette[index];
+                    used = remap[index];
+                }
+            }
+
+            Arrays.fill(palette, used + 1, palette.length, null);
+            paletteSize = used;
+            for (var cell = 0; cell < MagicalFarmDataFormat.SECTION_CELLS; cell++) {
+                MagicalFarmDataFormat.setIndex(data, bits, cell,
+                        remap[MagicalFarmDataFormat.getIndex(data, bits, cell)]);
+            }
+        }
+
+        /**
+         * Get the new palette indices that drop the unused palette entries, the
+         * used entries keep their order.
+         *
+         * @return The new index of each palette index, {@code 0} for unused
+         *         entries.
+         */
+        private int[] getRemap() {
+            final var remap = new int[paletteSize + 1];
+            for (var cell = 0; cell < MagicalFarmDataFormat.SECTION_CELLS; cell++) {
+                remap[MagicalFarmDataFormat.getIndex(data, bits, cell)] = 1;
+            }
+
+            var used = 0;
+            remap[0] = 0;
+            for (var index = 1; index <= paletteSize; index++) {
+                remap[index] = remap[index] == 0 ? 0 : ++used;
+            }
+
+            return remap;
+        }
+
+        /**
+         * Repack the palette indices with the specified count of bits.
+         *
+         * @param newBits The new count of bits of each palette index.
+         */
+        private void resize(final int newBits) {
+            final var newData = new long[MagicalFarmDataFormat.getDataLength(newBits)];
+            for (var cell = 0; cell < MagicalFarmDataFormat.SECTION_CELLS; cell++) {
+                MagicalFarmDataFormat.setIndex(newData, newBits, cell,
+                        MagicalFarmDataFormat.getIndex(data, bits, cell));
+            }
+
+            bits = newBits;
+            data = newData;
+        }
+
+        /**
+         * Save the section to a new {@link CompoundTag} without the unused palette
+         * entries, the section is not modified.
+         *
+         * @param sectionY The y coordinate of the section.
+         * @return The {@link CompoundTag} that stores the section.
+         */
+        private @NotNull CompoundTag save(final int sectionY) {
+            final var remap = getRemap();
+            var used = 0;
+            var words = 1;
+            final var entries = new long[paletteSize][];
+            for (var index = 1; index <= paletteSize; index++) {
+                if (remap[index] != 0) {
+                    entries[used++] = palette[index].getData();
+                    words = Math.max(words, entries[used - 1].length);
+                }
+            }
+
+            final var savedPalette = new long[used * words];
+            for (var entry = 0; entry < used; entry++) {
+                System.arraycopy(entries[entry], 0, savedPalette, entry * words, entries[entry].length);
+            }
+
+            final var savedBits = MagicalFarmDataFormat.getIndexBits(used);
+            final var savedData = new long[MagicalFarmDataFormat.getDataLength(savedBits)];
+            for (var cell = 0; cell < MagicalFarmDataFormat.SECTION_CELLS; cell++) {
+                MagicalFarmDataFormat.setIndex(savedData, savedBits, cell,
+                        remap[MagicalFarmDataFormat.getIndex(data, bits, cell)]);
+            }
+
+            final var compoundTag = new CompoundTag();
+            compoundTag.putInt(MagicalFarmDataFormat.SECTION_Y, sectionY);
+            compoundTag.putInt(MagicalFarmDataFormat.WORDS, words);
+            compoundTag.putLongArray(MagicalFarmDataFormat.PALETTE, savedPalette);
+            compoundTag.putLongArray(MagicalFarmDataFormat.DATA, savedData);
+            return compoundTag;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.util.Arrays;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.MagicalFood;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestAssertException;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraftforge.gametest.GameTestHolder;
+import net.minecraftforge.gametest.PrefixGameTestTemplate;
+
+/**
+ * Game tests of {@link MagicalFarmChunkData}, run by the game test server or
+ * the {@code /test} command. The chunk data does not touch the level, the
+ * tests only need the farm feature registry.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@GameTestHolder(MagicalFood.MODID)
+@PrefixGameTestTemplate(false)
+public final class MagicalFarmChunkDataTests {
+    /**
+     * The count of distinct feature sets put into a single section, enough to
+     * widen the palette indices from a single bit to nine bits.
+     */
+    private static final int FEATURE_SETS = 300;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmChunkDataTests() {
+    }
+
+    /**
+     * Put more distinct feature sets into a section than its palette holds, so
+     * that the indices are repacked several times while blocks are put, and read
+     * them all back, both from the chunk data and from its saved record.
+     *
+     * @param helper The game test helper.
+     */
+    @GameTest(template = "forge:empty3x3x3")
+    public static final void paletteGrowth(@NotNull final GameTestHelper helper) {
+        final var chunkData = new MagicalFarmChunkData(0L, 0);
+        final var expected = new MagicalFarmBlock.FeatureData[FEATURE_SETS];
+        for (var cell = 0; cell < FEATURE_SETS; cell++) {
+            // Unregistered feature IDs are kept, so every cell gets a distinct set
+            expected[cell] = new MagicalFarmBlock.FeatureData(new long[] { cell + 1 });
+            chunkData.put(getBlock(cell), expected[cell]);
+        }
+
+        if (chunkData.size() != FEATURE_SETS) {
+            throw new GameTestAssertException("Expected " + FEATURE_SETS + " blocks, got " + chunkData.size());
+        }
+
+        for (var cell = 0; cell < FEATURE_SETS; cell++) {
+            final var featureData = chunkData.get(getBlock(cell));
+            if (!expected[cell].equals(featureData)) {
+                throw new GameTestAssertException("Wrong feature data at cell " + cell);
+            }
+        }
+
+        final var loaded = new MagicalFarmChunkData(0L, 0);
+        MagicalFarmChunkData.load(chunkData.save(), (block, data) -> loaded.put(block,
+                new MagicalFarmBlock.FeatureData(Arrays.copyOf(data, data.length))));
+        for (var cell = 0; cell < FEATURE_SETS; cell++) {
+            if (!expected[cell].equals(loaded.get(getBlock(cell)))) {
+                throw new GameTestAssertException("Wrong saved feature data at cell " + cell);
+            }
+        }
+
+        helper.succeed();
+    }
+
+    /**
+     * Get the packed location of the specified cell of the lowest section of the
+     * chunk at the origin.
+     *
+     * @param cell The cell.
+     * @return The packed location of the block.
+     */
+    private static final long getBlock(final int cell) {
+        return BlockPos.asLong(cell & 15, cell >> 8, (cell >> 4) & 15);
+    }
+}
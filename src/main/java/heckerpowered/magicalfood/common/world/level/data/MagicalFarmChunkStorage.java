@@ -0,0 +1,311 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.MagicalFood;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.capabilities.CapabilityToken;
+import net.minecraftforge.common.capabilities.ICapabilitySerializable;
+import net.minecraftforge.common.capabilities.RegisterCapabilitiesEvent;
+import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * A {@link MagicalFarmStorage} that attaches a {@link MagicalFarmChunkData} to
+ * each chunk of the level as a capability. The data is saved with the chunk,
+ * and only exists in memory while the chunk is loaded. Chunks are never loaded
+ * by the storage, locations in chunks that are not loaded have no data.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmChunkStorage implements MagicalFarmStorage {
+    /**
+     * The capability of the chunk data attached to chunks.
+     */
+    public static final Capability<MagicalFarmChunkData> CAPABILITY = CapabilityManager
+            .get(new CapabilityToken<>() {
+            });
+
+    /**
+     * The key of the capability provider attached to chunks.
+     */
+    public static final ResourceLocation KEY = MagicalFood.getResource("farm_features");
+
+    /**
+     * The chunk storages of each level.
+     */
+    private static final Map<ServerLevel, MagicalFarmChunkStorage> STORAGES = new HashMap<>();
+
+    /**
+     * The level the storage is attached to.
+     */
+    private final ServerLevel level;
+
+    /**
+     * Constructs a new chunk storage of the specified level.
+     *
+     * @param level The level, must in server side.
+     */
+    private MagicalFarmChunkStorage(@NotNull final ServerLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the chunk storage of the specified level, one storage is kept per
+     * level until the level is unloaded.
+     *
+     * @param level The level, must in server side.
+     * @return The storage of the level.
+     */
+    public static final @NotNull MagicalFarmChunkStorage getStorage(@NotNull final ServerLevel level) {
+        return STORAGES.computeIfAbsent(level, MagicalFarmChunkStorage::new);
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData getFeatureData(@NotNull final BlockPos location) {
+        final var levelChunk = getLevelChunk(location);
+        if (levelChunk == null) {
+            return null;
+        }
+
+        final var chunkData = getChunkData(levelChunk);
+        return chunkData == null ? null : chunkData.get(location.asLong());
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData setFeatureData(@NotNull final BlockPos location,
+            @NotNull final MagicalFarmBlock.FeatureData featureData) {
+        final var levelChunk = getLevelChunk(location);
+        if (levelChunk == null) {
+            throw new IllegalArgumentException("Chunk of " + location.toShortString() + " is not loaded");
+        }
+
+        final var chunkData = getChunkData(levelChunk);
+        if (chunkData == null) {
+            throw new IllegalArgumentException("No farm data attached to chunk " + levelChunk.getPos());
+        }
+
+        levelChunk.setUnsaved(true);
+        return chunkData.put(location.asLong(), featureData);
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData removeFeatureData(@NotNull final BlockPos location) {
+        final var levelChunk = getLevelChunk(location);
+        if (levelChunk == null) {
+            return null;
+        }
+
+        final var chunkData = getChunkData(levelChunk);
+        if (chunkData == null) {
+            return null;
+        }
+
+        final var featureData = chunkData.remove(location.asLong());
+        if (featureData != null) {
+            levelChunk.setUnsaved(true);
+        }
+
+        return featureData;
+    }
+
+    @Override
+    public final void forEachInChunk(final long chunk,
+            @NotNull final BiConsumer<BlockPos, MagicalFarmBlock.FeatureData> action) {
+        final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk), ChunkPos.getZ(chunk));
+        if (levelChunk == null) {
+            return;
+        }
+
+        final var chunkData = getChunkData(levelChunk);
+        if (chunkData != null) {
+            chunkData.forEach(action);
+        }
+    }
+
+    @Override
+    public final void persist() {
+        // Chunks are marked as unsaved by each modification
+    }
+
+    /**
+     * Get the chunk that contains the specified location without loading it.
+     *
+     * @param location The location.
+     * @return The chunk, or {@code null} if it is not loaded.
+     */
+    private final @Nullable LevelChunk getLevelChunk(@NotNull final BlockPos location) {
+        return level.getChunkSource().getChunkNow(location.getX() >> 4, location.getZ() >> 4);
+    }
+
+    /**
+     * Get the chunk data attached to the specified chunk.
+     *
+     * @param levelChunk The chunk.
+     * @return The chunk data, or {@code null} if none is attached, which is the
+     *         case for chunks loaded while another backend was selected.
+     */
+    private static final @Nullable MagicalFarmChunkData getChunkData(@NotNull final LevelChunk levelChunk) {
+        return levelChunk.getCapability(CAPABILITY).resolve().orElse(null);
+    }
+
+    /**
+     * This function is called when a level is unloaded, forget the storage of the
+     * level so that the level can be garbage collected.
+     *
+     * @param event The level unload event.
+     */
+    @SubscribeEvent
+    public static final void onLevelUnload(@NotNull final LevelEvent.Unload event) {
+        if (event.getLevel() instanceof final ServerLevel level) {
+            STORAGES.remove(level);
+        }
+    }
+
+    /**
+     * Registers the capability of the chunk data on the mod event bus.
+     *
+     * @author Heckerpowered
+     */
+    @Mod.EventBusSubscriber(bus = Mod.EventBusSubscriber.Bus.MOD)
+    public static final class Registration {
+        /**
+         * Do not let anyone instantiate this class
+         */
+        private Registration() {
+        }
+
+        /**
+         * This function is called when capabilities can be registered.
+         *
+         * @param event The event related to register capabilities.
+         */
+        @SubscribeEvent
+        public static final void onRegisterCapabilities(@NotNull final RegisterCapabilitiesEvent event) {
+            event.register(MagicalFarmChunkData.class);
+        }
+    }
+
+    /**
+     * Attaches the chunk data to chunks of server levels if the chunk backend is
+     * selected.
+     *
+     * @author Heckerpowered
+     */
+    @Mod.EventBusSubscriber
+    public static final class Attachment {
+        /**
+         * Do not let anyone instantiate this class
+         */
+        private Attachment() {
+        }
+
+        /**
+         * This function is called when capabilities are attached to a chunk.
+         *
+         * @param event The event related to attach capabilities.
+         */
+        @SubscribeEvent
+        public static final void onAttachCapabilities(@NotNull final AttachCapabilitiesEvent<LevelChunk> event) {
+            final var levelChunk = event.getObject();
+            if (!(levelChunk.getLevel() instanceof ServerLevel)
+                    || MagicalFarmStorage.getBackend() != MagicalFarmStorage.Backend.CHUNK) {
+                return;
+            }
+
+            event.addCapability(KEY, new Provider(levelChunk.getPos().toLong()));
+        }
+    }
+
+    /**
+     * Provides the chunk data of a single chunk, and saves it with the chunk in
+     * the chunk record layout described by {@link MagicalFarmDataFormat}.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    @MethodsReturnNonnullByDefault
+    @FieldsAreNonnullByDefault
+    public static final class Provider implements ICapabilitySerializable<CompoundTag> {
+        /**
+         * The chunk data of the chunk.
+         */
+        private final MagicalFarmChunkData chunkData;
+
+        /**
+         * The lazy optional of the chunk data, created once.
+         */
+        private final LazyOptional<MagicalFarmChunkData> optional;
+
+        /**
+         * Constructs a new provider with an empty chunk data.
+         *
+         * @param chunk The packed position of the chunk.
+         */
+        public Provider(final long chunk) {
+            // Chunk datas of this backend are never shared with a snapshot
+            chunkData = new MagicalFarmChunkData(chunk, 0);
+            optional = LazyOptional.of(() -> chunkData);
+        }
+
+        @Override
+        public <T> @NotNull LazyOptional<T> getCapability(@NotNull final Capability<T> capability,
+                @Nullable final Direction side) {
+            return CAPABILITY.orEmpty(capability, optional);
+        }
+
+        @Override
+        public CompoundTag serializeNBT() {
+            return chunkData.save();
+        }
+
+        @Override
+        public void deserializeNBT(@NotNull final CompoundTag compoundTag) {
+            MagicalFarmChunkData.load(compoundTag,
+                    (block, data) -> chunkData.put(block, new MagicalFarmBlock.FeatureData(data)));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.MagicalFood;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.Util;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+
+/**
+ * Backs up the magical farm data of all dimensions while the server keeps
+ * running. The data is captured by {@link MagicalFarmBlockSavedData#snapshot()}
+ * on the server thread in constant time, and exported on a worker thread, so a
+ * backup does not stall the server tick.
+ * <p>
+ * Backups are written to {@code magicalfood_backups/<time>} in the world
+ * folder, with the same folder structure as the world itself, so the files of
+ * a backup can be copied over the world as they are.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmDataBackup {
+    /**
+     * The name of the folder in the world folder that contains the backups.
+     */
+    public static final String FOLDER = MagicalFood.MODID + "_backups";
+
+    /**
+     * The formatter of the names of backups.
+     */
+    private static final DateTimeFormatter NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss");
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmDataBackup() {
+    }
+
+    /**
+     * Back up the magical farm data of all dimensions of the specified server,
+     * this method must be called on the server thread.
+     *
+     * @param server The server.
+     * @return A future that completes with the folder of the backup on the server
+     *         thread, once all dimensions are exported.
+     */
+    public static final @NotNull CompletableFuture<Path> backup(@NotNull final MinecraftServer server) {
+        final var root = server.getWorldPath(LevelResource.ROOT).resolve(FOLDER)
+                .resolve(LocalDateTime.now().format(NAME_FORMATTER));
+
+        // Take all snapshots on the server thread first, so that the backup is
+        // consistent across dimensions
+        final var savedDatas = new ArrayList<MagicalFarmBlockSavedData>();
+        final var snapshots = new ArrayList<MagicalFarmDataSnapshot>();
+        final var files = new ArrayList<Path>();
+        for (final var level : server.getAllLevels()) {
+            final var savedData = MagicalFarmBlockSavedData.getSavedData(level);
+            savedDatas.add(savedData);
+            snapshots.add(savedData.snapshot());
+            files.add(DimensionType.getStorageFolder(level.dimension(), root).resolve("data")
+                    .resolve(MagicalFarmDataFormat.NAME + ".dat"));
+        }
+
+        final var exports = new CompletableFuture<?>[snapshots.size()];
+        for (var index = 0; index < exports.length; index++) {
+            final var snapshot = snapshots.get(index);
+            final var file = files.get(index);
+            exports[index] = CompletableFuture.runAsync(() -> {
+                try {
+                    snapshot.export(file);
+                } catch (final IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            }, Util.ioPool());
+        }
+
+        // Release the snapshots on the server thread whether the export succeeded
+        return CompletableFuture.allOf(exports).handleAsync((result, throwable) -> {
+            for (var index = 0; index < snapshots.size(); index++) {
+                savedDatas.get(index).release(snapshots.get(index));
+            }
+
+            if (throwable != null) {
+                throw new IllegalStateException("Failed to back up magical farm data", throwable);
+            }
+
+            return root;
+        }, server);
+    }
+}
@@ -0,0 +1,326 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Describes the on-disk layout of the {@code magical_farm} saved data. This
+ * class must not reference any Minecraft class, because it is shared with the
+ * offline maintenance tool which runs without Minecraft on the class path.
+ * <p>
+ * The {@code data} compound of the saved data contains an integer
+ * {@value #VERSION} tag and a {@value #CHUNKS} list. Each element of the list
+ * is a compound describing the magical farmland of a single chunk: the packed
+ * chunk position {@value #CHUNK_POS} and a {@value #SECTIONS} list with a
+ * compound per chunk section. A section stores its y coordinate
+ * {@value #SECTION_Y}, a palette of the distinct feature bits of the section
+ * {@value #PALETTE}, {@value #WORDS} longs per entry, and the packed palette
+ * indices of its {@value #SECTION_CELLS} blocks {@value #DATA}, see
+ * {@link #getIndex}. Index {@code 0} means there is no magical farmland, index
+ * {@code i} is the palette entry {@code i - 1}. A chunk may appear more than
+ * once, in which case the entries are merged.
+ * <p>
+ * Chunks written before version {@code 2} have no sections, they store the
+ * packed block locations {@value #BLOCKS}, the count of feature words per
+ * block {@value #WORDS} and the feature bits {@value #FEATURES},
+ * {@value #WORDS} longs per block in the same order as the block locations.
+ * This layout is still accepted on load. The saved data also contains a
+ * {@value #SPILLED} long array of the packed positions of chunks whose data is
+ * evicted to region files in the {@code data/magical_farm} folder, which have
+ * the same layout but no {@value #SPILLED} array.
+ * <p>
+ * Data saved before the layout was introduced has no {@value #VERSION} tag and
+ * maps {@code x,y,z} location strings to feature bits directly, it is still
+ * accepted on load.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+public final class MagicalFarmDataFormat {
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmDataFormat() {
+    }
+
+    /**
+     * The name of the saved data, the file is stored as {@code data/<name>.dat}
+     * under the folder of each dimension.
+     */
+    public static final String NAME = "magical_farm";
+
+    /**
+     * The current version of the layout.
+     */
+    public static final int CURRENT_VERSION = 2;
+
+    /**
+     * The tag that stores the version of the layout.
+     */
+    public static final String VERSION = "Version";
+
+    /**
+     * The tag that stores the list of chunks.
+     */
+    public static final String CHUNKS = "Chunks";
+
+    /**
+     * The tag that stores the packed positions of evicted chunks.
+     */
+    public static final String SPILLED = "Spilled";
+
+    /**
+     * The tag that stores the packed position of a chunk.
+     */
+    public static final String CHUNK_POS = "Pos";
+
+    /**
+     * The tag that stores the packed locations of the blocks of a chunk.
+     */
+    public static final String BLOCKS = "Blocks";
+
+    /**
+     * The tag that stores the count of feature words per block of a chunk.
+     */
+    public static final String WORDS = "Words";
+
+    /**
+     * The tag that stores the feature bits of the blocks of a chunk.
+     */
+    public static final String FEATURES = "Features";
+
+    /**
+     * The tag that stores the list of sections of a chunk.
+     */
+    public static final String SECTIONS = "Sections";
+
+    /**
+     * The tag that stores the y coordinate of a section.
+     */
+    public static final String SECTION_Y = "Y";
+
+    /**
+     * The tag that stores the palette of a section.
+     */
+    public static final String PALETTE = "Palette";
+
+    /**
+     * The tag that stores the packed palette indices of a section.
+     */
+    public static final String DATA = "Data";
+
+    /**
+     * The count of blocks of a section.
+     */
+    public static final int SECTION_CELLS = 16 * 16 * 16;
+
+    /**
+     * The bit length of the packed x coordinate, the same as vanilla's
+     * {@code BlockPos}.
+     */
+    private static final int PACKED_X_LENGTH = 26;
+
+    /**
+     * The bit length of the packed z coordinate, the same as vanilla's
+     * {@code BlockPos}.
+     */
+    private static final int PACKED_Z_LENGTH = 26;
+
+    /**
+     * The bit length of the packed y coordinate, the same as vanilla's
+     * {@code BlockPos}.
+     */
+    private static final int PACKED_Y_LENGTH = 64 - PACKED_X_LENGTH - PACKED_Z_LENGTH;
+
+    /**
+     * The maximum horizontal distance of a block from the origin of the world.
+     */
+    public static final int MAX_HORIZONTAL_COORDINATE = 30_000_000;
+
+    /**
+     * Pack the specified coordinates into a long, the same as
+     * {@code BlockPos#asLong}.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The packed location.
+     */
+    public static final long packBlock(final int x, final int y, final int z) {
+        return ((x & ((1L << PACKED_X_LENGTH) - 1)) << (PACKED_Y_LENGTH + PACKED_Z_LENGTH))
+                | ((z & ((1L << PACKED_Z_LENGTH) - 1)) << PACKED_Y_LENGTH) | (y & ((1L << PACKED_Y_LENGTH) - 1));
+    }
+
+    /**
+     * Get the x coordinate of a packed location.
+     *
+     * @param packed The packed location.
+     * @return The x coordinate.
+     */
+    public static final int unpackX(final long packed) {
+        return (int) (packed >> (PACKED_Y_LENGTH + PACKED_Z_LENGTH));
+    }
+
+    /**
+     * Get the y coordinate of a packed location.
+     *
+     * @param packed The packed location.
+     * @return The y coordinate.
+     */
+    public static final int unpackY(final long packed) {
+        return (int) (packed << (64 - PACKED_Y_LENGTH) >> (64 - PACKED_Y_LENGTH));
+    }
+
+    /**
+     * Get the z coordinate of a packed location.
+     *
+     * @param packed The packed location.
+     * @return The z coordinate.
+     */
+    public static final int unpackZ(final long packed) {
+        return (int) (packed << PACKED_X_LENGTH >> (PACKED_X_LENGTH + PACKED_Y_LENGTH));
+    }
+
+    /**
+     * Get the packed position of the chunk that contains the specified packed
+     * location, the same as {@code ChunkPos#asLong}.
+     *
+     * @param packed The packed location.
+     * @return The packed chunk position.
+     */
+    public static final long chunkOf(final long packed) {
+        return packChunk(unpackX(packed) >> 4, unpackZ(packed) >> 4);
+    }
+
+    /**
+     * Pack the specified chunk coordinates into a long, the same as
+     * {@code ChunkPos#asLong}.
+     *
+     * @param x The x coordinate of the chunk.
+     * @param z The z coordinate of the chunk.
+     * @return The packed chunk position.
+     */
+    public static final long packChunk(final int x, final int z) {
+        return (x & 0xFFFFFFFFL) | ((z & 0xFFFFFFFFL) << 32);
+    }
+
+    /**
+     * Unpack the x coordinate of the specified packed chunk position.
+     *
+     * @param chunk The packed chunk position.
+     * @return The x coordinate of the chunk.
+     */
+    public static final int unpackChunkX(final long chunk) {
+        return (int) chunk;
+    }
+
+    /**
+     * Unpack the z coordinate of the specified packed chunk position.
+     *
+     * @param chunk The packed chunk position.
+     * @return The z coordinate of the chunk.
+     */
+    public static final int unpackChunkZ(final long chunk) {
+        return (int) (chunk >>> 32);
+    }
+
+    /**
+     * Get the cell of the specified location in its section, the same order as
+     * vanilla's block states of a section.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The cell, in {@code [0, SECTION_CELLS)}.
+     */
+    public static final int getCell(final int x, final int y, final int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    /**
+     * Get the count of bits of each palette index of a section with the specified
+     * count of palette entries, the index {@code 0} for no farmland included.
+     *
+     * @param paletteSize The count of palette entries.
+     * @return The count of bits, at least {@code 1}.
+     */
+    public static final int getIndexBits(final int paletteSize) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(paletteSize));
+    }
+
+    /**
+     * Get the count of longs that hold the palette indices of a section, indices
+     * never span two longs, the same as vanilla's {@code SimpleBitStorage}.
+     *
+     * @param bits The count of bits of each index.
+     * @return The count of longs.
+     */
+    public static final int getDataLength(final int bits) {
+        final var indicesPerLong = Long.SIZE / bits;
+        return (SECTION_CELLS + indicesPerLong - 1) / indicesPerLong;
+    }
+
+    /**
+     * Get the palette index of the specified cell.
+     *
+     * @param data The packed palette indices.
+     * @param bits The count of bits of each index.
+     * @param cell The cell.
+     * @return The palette index.
+     */
+    public static final int getIndex(final long[] data, final int bits, final int cell) {
+        final var indicesPerLong = Long.SIZE / bits;
+        final var shift = cell % indicesPerLong * bits;
+        return (int) ((data[cell / indicesPerLong] >>> shift) & ((1L << bits) - 1));
+    }
+
+    /**
+     * Set the palette index of the specified cell.
+     *
+     * @param data  The packed palette indices.
+     * @param bits  The count of bits of each index.
+     * @param cell  The cell.
+     * @param index The palette index, must fit in the count of bits.
+     */
+    public static final void setIndex(final long[] data, final int bits, final int cell, final int index) {
+        final var indicesPerLong = Long.SIZE / bits;
+        final var shift = cell % indicesPerLong * bits;
+        final var mask = ((1L << bits) - 1) << shift;
+        final var word = cell / indicesPerLong;
+        data[word] = (data[word] & ~mask) | (((long) index << shift) & mask);
+    }
+
+    /**
+     * Returns a boolean that indicates whether the specified coordinates are
+     * inside the world border and the specified height range.
+     *
+     * @param x    The x coordinate.
+     * @param y    The y coordinate.
+     * @param z    The z coordinate.
+     * @param minY The minimum y coordinate, inclusive.
+     * @param maxY The maximum y coordinate, exclusive.
+     * @return {@code true} if the location is valid, {@code false} otherwise.
+     */
+    public static final boolean isValidLocation(final int x, final int y, final int z, final int minY,
+            final int maxY) {
+        return x >= -MAX_HORIZONTAL_COORDINATE && x < MAX_HORIZONTAL_COORDINATE && z >= -MAX_HORIZONTAL_COORDINATE
+                && z < MAX_HORIZONTAL_COORDINATE && y >= minY && y < maxY;
+    }
+}
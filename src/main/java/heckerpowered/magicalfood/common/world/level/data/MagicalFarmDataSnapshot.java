@@ -0,0 +1,155 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Represents an immutable point-in-time view of a
+ * {@link MagicalFarmBlockSavedData}, taken by
+ * {@link MagicalFarmBlockSavedData#snapshot()}. The snapshot shares its
+ * structures with the saved data, which copies them before modifying them, so
+ * a snapshot may be read on any thread.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmDataSnapshot {
+    /**
+     * The resident chunk datas at the time the snapshot was taken.
+     */
+    private final Long2ObjectMap<MagicalFarmChunkData> chunks;
+
+    /**
+     * The packed positions of the chunks that were evicted to disk at the time
+     * the snapshot was taken.
+     */
+    private final LongSet spilled;
+
+    /**
+     * The storage that evicted chunk datas are read from.
+     */
+    private final MagicalFarmSpillStorage spillStorage;
+
+    /**
+     * Constructs a new snapshot, this constructor should only be called by
+     * {@link MagicalFarmBlockSavedData#snapshot()}.
+     *
+     * @param chunks       The resident chunk datas, must not be modified afterwards.
+     * @param spilled      The packed positions of evicted chunks, must not be
+     *                     modified afterwards.
+     * @param spillStorage The storage that evicted chunk datas are read from.
+     */
+    MagicalFarmDataSnapshot(@NotNull final Long2ObjectMap<MagicalFarmChunkData> chunks,
+            @NotNull final LongSet spilled, @NotNull final MagicalFarmSpillStorage spillStorage) {
+        this.chunks = chunks;
+        this.spilled = spilled;
+        this.spillStorage = spillStorage;
+    }
+
+    /**
+     * Get the feature data of the magical farmland at the specified location, only
+     * resident chunks are looked up.
+     *
+     * @param location The location of the block.
+     * @return The feature data, or {@code null} if there was no resident magical
+     *         farmland at the location.
+     */
+    public final @Nullable MagicalFarmBlock.FeatureData getFeatureData(@NotNull final BlockPos location) {
+        final var chunkData = chunks.get(ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4));
+        return chunkData == null ? null : chunkData.get(location.asLong());
+    }
+
+    /**
+     * Get the count of chunks whose data was resident.
+     *
+     * @return The count of chunks whose data was resident.
+     */
+    public final int getResidentChunks() {
+        return chunks.size();
+    }
+
+    /**
+     * Get the count of chunks whose data was evicted to disk.
+     *
+     * @return The count of chunks whose data was evicted to disk.
+     */
+    public final int getSpilledChunks() {
+        return spilled.size();
+    }
+
+    /**
+     * Write the snapshot to the specified file of the saved data, in the same
+     * layout as {@link MagicalFarmBlockSavedData#save(net.minecraft.nbt.CompoundTag)}:
+     * evicted chunks are already on disk and only their positions are written.
+     * This method performs blocking I/O and should not be called on the server
+     * thread.
+     *
+     * @param file The file of the saved data.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void save(@NotNull final Path file) throws IOException {
+        final var chunkList = new ListTag();
+        for (final var chunkData : chunks.values()) {
+            chunkList.add(chunkData.save());
+        }
+
+        MagicalFarmSpillStorage.writeData(chunkList, spilled.toLongArray(), file);
+    }
+
+    /**
+     * Export the snapshot to the specified file, in the layout described by
+     * {@link MagicalFarmDataFormat}. Evicted chunks are read back from disk, so
+     * the exported file is self-contained and can replace the saved data of the
+     * dimension as it is. This method performs blocking I/O and should not be
+     * called on the server thread.
+     *
+     * @param file The file to export to.
+     * @throws IOException if an I/O error occurs.
+     */
+    public final void export(@NotNull final Path file) throws IOException {
+        final var chunkList = new ListTag();
+        for (final var chunkData : chunks.values()) {
+            chunkList.add(chunkData.save());
+        }
+
+        spillStorage.readAll(spilled, chunkList::add);
+
+        Files.createDirectories(file.getParent());
+        MagicalFarmSpillStorage.writeData(chunkList, file);
+    }
+}
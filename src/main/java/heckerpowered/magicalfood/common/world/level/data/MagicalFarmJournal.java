@@ -0,0 +1,438 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import com.mojang.logging.LogUtils;
+
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.Util;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+
+/**
+ * An append-only journal of the changes made to a
+ * {@link MagicalFarmBlockSavedData} since its file was last written, stored as
+ * {@code data/magical_farm.journal} in the folder of the dimension. Changes are
+ * buffered in memory, handed to the I/O pool and fsynced in batches by
+ * {@link #sync()}. When a save of the saved data file starts, the journal is
+ * moved aside by {@link #rotate()} and new changes start a new journal; the
+ * moved journal is deleted by {@link #commit()} once the file is written, and
+ * is kept if the save fails. After a crash, the moved journal and the journal
+ * are replayed on top of the saved data file by {@link #replay}.
+ * <p>
+ * The file starts with the magic number {@value #MAGIC}, followed by records.
+ * Each record is a type byte, a packed location or chunk position, the feature
+ * words for {@link #SET} records, and a CRC32 of the record. Records are
+ * absolute values, so replaying a record that is already part of the saved data
+ * file is harmless. A torn record at the end of the file, left by a crash in
+ * the middle of a write, is discarded.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+final class MagicalFarmJournal {
+    /**
+     * The logger of the journal.
+     */
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /**
+     * The magic number at the start of the file, {@code MFJ} and the version.
+     */
+    private static final int MAGIC = 0x4D464A01;
+
+    /**
+     * The type of a record that sets the feature bits of a block, followed by the
+     * packed location, the count of words as a short and the words.
+     */
+    private static final byte SET = 1;
+
+    /**
+     * The type of a record that removes a block, followed by the packed location.
+     */
+    private static final byte REMOVE = 2;
+
+    /**
+     * The type of a record that marks a chunk as evicted to its region file,
+     * followed by the packed chunk position.
+     */
+    private static final byte SPILL = 3;
+
+    /**
+     * The journal file.
+     */
+    private final Path file;
+
+    /**
+     * The journal moved aside by {@link #rotate()}, which holds the changes of a
+     * save that has not been committed yet.
+     */
+    private final Path rotatedFile;
+
+    /**
+     * The records that have not been handed to the I/O pool yet.
+     */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    /**
+     * The checksum used to encode records, only used on the server thread.
+     */
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * The last write handed to the I/O pool, writes are chained so that they
+     * reach the file in order.
+     */
+    private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+    /**
+     * The count of bytes of records since the last rotation, including the
+     * buffered records.
+     */
+    private long size;
+
+    /**
+     * Whether the journal is being replayed, changes made by the replay are
+     * already in the journal and are not recorded again.
+     */
+    private boolean replaying;
+
+    /**
+     * Constructs a new journal for the specified level.
+     *
+     * @param level The level, must in server side.
+     */
+    MagicalFarmJournal(@NotNull final ServerLevel level) {
+        file = DimensionType.getStorageFolder(level.dimension(), level.getServer().getWorldPath(LevelResource.ROOT))
+                .resolve("data").resolve(MagicalFarmDataFormat.NAME + ".journal");
+        rotatedFile = file.resolveSibling(file.getFileName() + ".old");
+    }
+
+    /**
+     * Record that the feature bits of the specified block are set.
+     *
+     * @param location The packed location of the block.
+     * @param data     The feature bits of the block.
+     */
+    final void set(final long location, final long[] data) {
+        append(SET, location, data);
+    }
+
+    /**
+     * Record that the specified block is removed.
+     *
+     * @param location The packed location of the block.
+     */
+    final void remove(final long location) {
+        append(REMOVE, location, null);
+    }
+
+    /**
+     * Record that the specified chunk is evicted to its region file.
+     *
+     * @param chunk The packed position of the chunk.
+     */
+    final void spill(final long chunk) {
+        append(SPILL, chunk, null);
+    }
+
+    /**
+     * Encode a record into the buffer.
+     *
+     * @param type  The type of the record.
+     * @param key   The packed location or chunk position.
+     * @param words The feature words of a {@link #SET} record, {@code null} for
+     *              other records.
+     */
+    private final void append(final byte type, final long key, @Nullable final long[] words) {
+        if (replaying) {
+            return;
+        }
+
+        final var length = 1 + Long.BYTES + (words == null ? 0 : Short.BYTES + words.length * Long.BYTES);
+        final var record = ByteBuffer.allocate(length + Integer.BYTES);
+        record.put(type).putLong(key);
+        if (words != null) {
+            record.putShort((short) words.length);
+            for (final var word : words) {
+                record.putLong(word);
+            }
+        }
+
+        checksum.reset();
+        checksum.update(record.array(), 0, length);
+        record.putInt((int) checksum.getValue());
+
+        buffer.write(record.array(), 0, record.capacity());
+        size += record.capacity();
+    }
+
+    /**
+     * Hand the buffered records to the I/O pool, which appends them to the file
+     * and forces them to the disk. Records are lost if the server crashes before
+     * they are synced.
+     */
+    final void sync() {
+        if (buffer.size() == 0) {
+            return;
+        }
+
+        final var records = buffer.toByteArray();
+        buffer.reset();
+        enqueue(() -> {
+            try (final var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                // A new file starts with the magic number
+                if (channel.size() == 0L) {
+                    channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, MAGIC));
+                }
+
+                final var byteBuffer = ByteBuffer.wrap(records);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+
+                channel.force(false);
+            } catch (final IOException exception) {
+                LOGGER.error("Failed to write {} bytes to magical farm journal {}", records.length, file, exception);
+            }
+        });
+    }
+
+    /**
+     * Move the journal aside, this method must be called when a save of the saved
+     * data file starts, at the same point the data to save is taken. Changes
+     * recorded afterwards start a new journal. If the journal of an earlier save
+     * is still aside because that save failed, the journal is appended to it
+     * instead, so that no change is lost until a save succeeds.
+     */
+    final void rotate() {
+        sync();
+        size = 0L;
+        enqueue(() -> {
+            try {
+                if (!Files.isRegularFile(file)) {
+                    return;
+                }
+
+                if (!Files.isRegularFile(rotatedFile)) {
+                    Files.move(file, rotatedFile, StandardCopyOption.REPLACE_EXISTING);
+                    return;
+                }
+
+                // Skip the magic number, the rotated journal already starts with it
+                final var records = Files.readAllBytes(file);
+                try (final var channel = FileChannel.open(rotatedFile, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND)) {
+                    final var byteBuffer = ByteBuffer.wrap(records, Integer.BYTES,
+                            Math.max(0, records.length - Integer.BYTES));
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+
+                    channel.force(false);
+                }
+
+                Files.delete(file);
+            } catch (final IOException exception) {
+                LOGGER.error("Failed to rotate magical farm journal {}", file, exception);
+            }
+        });
+    }
+
+    /**
+     * Discard the journal moved aside by {@link #rotate()}, this method must be
+     * called once the saved data file has been written with all changes recorded
+     * before the rotation.
+     */
+    final void commit() {
+        enqueue(() -> {
+            try {
+                Files.deleteIfExists(rotatedFile);
+            } catch (final IOException exception) {
+                LOGGER.error("Failed to delete magical farm journal {}", rotatedFile, exception);
+            }
+        });
+    }
+
+    /**
+     * Sync the buffered records and wait until all writes have reached the file.
+     */
+    final void close() {
+        sync();
+        pending.join();
+    }
+
+    /**
+     * Run the specified write after all writes handed to the I/O pool before it.
+     *
+     * @param write The write, which must not throw.
+     */
+    private final void enqueue(@NotNull final Runnable write) {
+        pending = pending.thenRunAsync(write, Util.ioPool());
+    }
+
+    /**
+     * Get the count of bytes of records since the last rotation.
+     *
+     * @return The count of bytes of records since the last rotation.
+     */
+    final long getSize() {
+        return size;
+    }
+
+    /**
+     * Replay the records of the journal moved aside by an uncommitted save, then
+     * the records of the journal, in order.
+     *
+     * @param set    The action that sets the feature bits of a block.
+     * @param remove The action that removes a block.
+     * @param spill  The action that marks a chunk as evicted.
+     * @return The count of replayed records.
+     */
+    final int replay(@NotNull final MagicalFarmChunkData.BlockLoader set, @NotNull final LongConsumer remove,
+            @NotNull final LongConsumer spill) {
+        // The records of the moved journal are older, and still count as unsaved
+        final var replayed = replay(rotatedFile, set, remove, spill);
+        return replayed + replay(file, set, remove, spill);
+    }
+
+    /**
+     * Replay the records of the specified journal file in order. A torn or
+     * corrupted record ends the replay, and the file is truncated before it so
+     * that new records are not appended after it.
+     *
+     * @param file   The journal file.
+     * @param set    The action that sets the feature bits of a block.
+     * @param remove The action that removes a block.
+     * @param spill  The action that marks a chunk as evicted.
+     * @return The count of replayed records.
+     */
+    private final int replay(@NotNull final Path file, @NotNull final MagicalFarmChunkData.BlockLoader set,
+            @NotNull final LongConsumer remove, @NotNull final LongConsumer spill) {
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+
+        final ByteBuffer records;
+        try {
+            records = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (final IOException exception) {
+            LOGGER.error("Failed to read magical farm journal {}", file, exception);
+            return 0;
+        }
+
+        if (records.remaining() < Integer.BYTES || records.getInt() != MAGIC) {
+            LOGGER.warn("Ignoring magical farm journal {} with an unknown format", file);
+            return 0;
+        }
+
+        var replayed = 0;
+        var valid = records.position();
+        replaying = true;
+        try {
+            while (records.hasRemaining()) {
+                final var start = records.position();
+                if (records.remaining() < 1 + Long.BYTES) {
+                    break;
+                }
+
+                final var type = records.get();
+                final var key = records.getLong();
+                long[] words = null;
+                if (type == SET) {
+                    if (records.remaining() < Short.BYTES) {
+                        break;
+                    }
+
+                    final var count = records.getShort();
+                    if (count < 0 || records.remaining() < count * Long.BYTES) {
+                        break;
+                    }
+
+                    words = new long[count];
+
+                    for (var index = 0; index < words.length; index++) {
+                        words[index] = records.getLong();
+                    }
+                } else if (type != REMOVE && type != SPILL) {
+                    break;
+                }
+
+                // Verify the checksum before the record is applied
+                final var length = records.position() - start;
+                if (records.remaining() < Integer.BYTES) {
+                    break;
+                }
+
+                checksum.reset();
+                checksum.update(records.array(), start, length);
+                if (records.getInt() != (int) checksum.getValue()) {
+                    break;
+                }
+
+                switch (type) {
+                    case SET -> set.load(key, words);
+                    case REMOVE -> remove.accept(key);
+                    default -> spill.accept(key);
+                }
+
+                replayed++;
+                valid = records.position();
+                size += length + Integer.BYTES;
+            }
+        } finally {
+            replaying = false;
+        }
+
+        if (valid < records.limit()) {
+            LOGGER.warn("Discarding {} bytes of torn records at the end of magical farm journal {}",
+                    records.limit() - valid, file);
+            try (final var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            } catch (final IOException exception) {
+                LOGGER.error("Failed to truncate magical farm journal {}", file, exception);
+            }
+        }
+
+        return replayed;
+    }
+}
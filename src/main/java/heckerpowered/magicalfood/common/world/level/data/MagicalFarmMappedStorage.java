@@ -0,0 +1,604 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import com.mojang.logging.LogUtils;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * A {@link MagicalFarmStorage} that keeps the feature datas of a level off the
+ * heap, in a hash table laid out in a memory-mapped file stored as
+ * {@code data/magical_farm.map} in the folder of the dimension. The table is
+ * read and written through a {@link LongBuffer} view of the mapping, so there
+ * is no Java object per magical farmland: the heap used by the storage does
+ * not depend on the count of farmland, and opening the storage deserializes
+ * nothing.
+ * <p>
+ * The file starts with a header of {@value #HEADER_BYTES} bytes: the magic
+ * number, the format version, the count of feature words per entry, the offset
+ * and the capacity of the table, and the count of entries. The table is an
+ * open addressing hash table with linear probing, each entry is the packed
+ * location of the block followed by {@value #WORDS} feature words. The home
+ * slot of an entry is derived from its chunk and its column in the chunk, so
+ * the entries of a chunk stay close together and {@link #forEachInChunk} only
+ * scans the runs that start at the slots of the chunk.
+ * <p>
+ * When the table is half full, a table of twice the capacity is built after
+ * it in the same file, forced to the disk, and only then the header is pointed
+ * at it, so the file is always consistent on disk. The tables left behind are
+ * reclaimed when the storage is opened again: before the file is mapped, the
+ * header and the current table are copied to a fresh file that replaces it, see
+ * {@link #compact}. Modifications reach the
+ * page cache immediately and survive a crash of the server, they are forced to
+ * the disk every {@value #FORCE_INTERVAL} ticks and when the level is unloaded.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmMappedStorage implements MagicalFarmStorage {
+    /**
+     * The logger of the mapped storage.
+     */
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /**
+     * The magic number at the start of the file, {@code MFMAP} and zeros.
+     */
+    private static final long MAGIC = 0x4D464D4150000000L;
+
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The count of feature words of each entry, which is enough for 128 farm
+     * features.
+     */
+    private static final int WORDS = 2;
+
+    /**
+     * The count of longs of each entry.
+     */
+    private static final int STRIDE = 1 + WORDS;
+
+    /**
+     * The size of the header in bytes.
+     */
+    private static final int HEADER_BYTES = 64;
+
+    /**
+     * The capacity of a new table, must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    /**
+     * The maximum capacity of a table, a mapping can not exceed 2 GiB.
+     */
+    private static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / (STRIDE * Long.BYTES));
+
+    /**
+     * The count of columns of a chunk, the home slots of a chunk are that many
+     * consecutive slots.
+     */
+    private static final int CHUNK_COLUMNS = 256;
+
+    /**
+     * The packed location that is stored as zero, so that the zero filled slots
+     * of a new table are empty. Its Y coordinate is above the highest possible
+     * world height, so no magical farmland can be there.
+     */
+    private static final long EMPTY_LOCATION = BlockPos.asLong(0, 2047, 0);
+
+    /**
+     * The interval in ticks between two forces of the mapped files to the disk.
+     */
+    private static final int FORCE_INTERVAL = 20 * 30;
+
+    /**
+     * The mapped storages of each level that are opened.
+     */
+    private static final Map<ServerLevel, MagicalFarmMappedStorage> STORAGES = new HashMap<>();
+
+    /**
+     * The count of server ticks since the mapped files were last forced.
+     */
+    private static int ticksSinceForce;
+
+    /**
+     * The channel of the file, kept open so that the table can be remapped when
+     * it grows.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapping of the header.
+     */
+    private final MappedByteBuffer header;
+
+    /**
+     * The mapping of the table.
+     */
+    private MappedByteBuffer mapping;
+
+    /**
+     * The view of {@link #mapping} as longs.
+     */
+    private LongBuffer table;
+
+    /**
+     * The capacity of the table, a power of two.
+     */
+    private int capacity;
+
+    /**
+     * The count of entries in the table.
+     */
+    private int size;
+
+    /**
+     * Opens the mapped storage in the specified file, creating it if it does not
+     * exist. A file with an unknown format is moved aside and replaced by an
+     * empty one.
+     *
+     * @param file The file of the storage.
+     * @throws IOException if an I/O error occurs.
+     */
+    public MagicalFarmMappedStorage(@NotNull final Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        compact(file);
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        var header = channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_BYTES);
+        final var created = header.getLong(0) == 0L;
+        if (!created && (header.getLong(0) != MAGIC || header.getInt(8) != VERSION || header.getInt(12) != WORDS)) {
+            final var corrupted = file.resolveSibling(file.getFileName() + ".corrupted");
+            LOGGER.error("Moving magical farm map {} with an unknown format to {}", file, corrupted);
+            channel.close();
+            Files.move(file, corrupted, StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_BYTES);
+        }
+
+        this.channel = channel;
+        this.header = header;
+        if (header.getLong(0) == MAGIC) {
+            capacity = header.getInt(24);
+            size = header.getInt(28);
+            map(header.getLong(16));
+            return;
+        }
+
+        // A new file, the table is zero filled and therefore empty
+        capacity = INITIAL_CAPACITY;
+        map(HEADER_BYTES);
+        header.putInt(8, VERSION).putInt(12, WORDS).putLong(16, HEADER_BYTES).putInt(24, capacity).putInt(28, 0);
+        header.putLong(0, MAGIC);
+        header.force();
+    }
+
+    /**
+     * Reclaim the tables left behind by {@link #grow()} in the specified file. If
+     * the current table does not start right after the header, the header and the
+     * table are copied to a fresh file, with the header pointing at the moved
+     * table, which is forced to the disk and then renamed over the file. The slots
+     * only depend on the capacity, so the table is copied as it is. The file is
+     * not mapped yet, and a crash leaves either the old or the new file complete.
+     *
+     * @param file The file of the storage.
+     * @return The count of bytes that were reclaimed.
+     * @throws IOException if an I/O error occurs.
+     */
+    static final long compact(@NotNull final Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return 0L;
+        }
+
+        final var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        final long offset;
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the whole header
+            }
+
+            // A file with an unknown format is left to the constructor
+            if (header.hasRemaining() || header.getLong(0) != MAGIC || header.getInt(8) != VERSION
+                    || header.getInt(12) != WORDS || header.getLong(16) == HEADER_BYTES) {
+                return 0L;
+            }
+
+            offset = header.getLong(16);
+            final var length = (long) header.getInt(24) * STRIDE * Long.BYTES;
+            header.putLong(16, HEADER_BYTES).flip();
+            try (final var output = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    output.write(header);
+                }
+
+                for (var position = 0L; position < length;) {
+                    final var transferred = channel.transferTo(offset + position, length - position, output);
+                    if (transferred <= 0L) {
+                        throw new IOException("The table of magical farm map " + file + " is truncated");
+                    }
+
+                    position += transferred;
+                }
+
+                output.force(true);
+            }
+        } catch (final IOException exception) {
+            Files.deleteIfExists(temporary);
+            throw exception;
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException exception) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        final var reclaimed = offset - HEADER_BYTES;
+        LOGGER.info("Compacted magical farm map {}, reclaimed {} bytes of old tables", file, reclaimed);
+        return reclaimed;
+    }
+
+    /**
+     * Map the table at the specified offset with the current capacity.
+     *
+     * @param offset The offset of the table in the file.
+     * @throws IOException if an I/O error occurs.
+     */
+    private final void map(final long offset) throws IOException {
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) capacity * STRIDE * Long.BYTES);
+        table = mapping.asLongBuffer();
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData getFeatureData(@NotNull final BlockPos location) {
+        final var slot = find(location.asLong());
+        if (slot < 0) {
+            return null;
+        }
+
+        final var words = new long[WORDS];
+        table.get(slot * STRIDE + 1, words);
+        return new MagicalFarmBlock.FeatureData(words);
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData setFeatureData(@NotNull final BlockPos location,
+            @NotNull final MagicalFarmBlock.FeatureData featureData) {
+        final var data = featureData.getData();
+        if (data.length > WORDS) {
+            throw new IllegalArgumentException("Too many farm features for the mapped storage at " + location);
+        }
+
+        final var key = location.asLong();
+        var slot = find(key);
+        final MagicalFarmBlock.FeatureData previous;
+        if (slot >= 0) {
+            previous = getFeatureData(location);
+        } else {
+            previous = null;
+            slot = -slot - 1;
+            table.put(slot * STRIDE, key ^ EMPTY_LOCATION);
+            header.putInt(28, ++size);
+        }
+
+        for (var word = 0; word < WORDS; word++) {
+            table.put(slot * STRIDE + 1 + word, word < data.length ? data[word] : 0L);
+        }
+
+        if (size * 2 > capacity) {
+            grow();
+        }
+
+        return previous;
+    }
+
+    @Override
+    public final @Nullable MagicalFarmBlock.FeatureData removeFeatureData(@NotNull final BlockPos location) {
+        var slot = find(location.asLong());
+        if (slot < 0) {
+            return null;
+        }
+
+        final var previous = getFeatureData(location);
+
+        // Shift the entries of the run back, so that no probe stops early
+        final var mask = capacity - 1;
+        var next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            final var stored = table.get(next * STRIDE);
+            if (stored == 0L) {
+                break;
+            }
+
+            final var home = getHomeSlot(stored ^ EMPTY_LOCATION);
+            final var between = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!between) {
+                for (var index = 0; index < STRIDE; index++) {
+                    table.put(slot * STRIDE + index, table.get(next * STRIDE + index));
+                }
+
+                slot = next;
+            }
+        }
+
+        for (var index = 0; index < STRIDE; index++) {
+            table.put(slot * STRIDE + index, 0L);
+        }
+
+        header.putInt(28, --size);
+        return previous;
+    }
+
+    @Override
+    public final void forEachInChunk(final long chunk,
+            @NotNull final BiConsumer<BlockPos, MagicalFarmBlock.FeatureData> action) {
+        // The entries of the chunk are in the runs that start at its home slots
+        final var mask = capacity - 1;
+        final var first = getChunkSlot(chunk);
+        final var words = new long[WORDS];
+        for (var offset = 0; offset < capacity; offset++) {
+            final var slot = (first + offset) & mask;
+            final var stored = table.get(slot * STRIDE);
+            if (stored == 0L) {
+                if (offset >= CHUNK_COLUMNS) {
+                    return;
+                }
+
+                continue;
+            }
+
+            final var location = stored ^ EMPTY_LOCATION;
+            if (ChunkPos.asLong(BlockPos.getX(location) >> 4, BlockPos.getZ(location) >> 4) == chunk) {
+                table.get(slot * STRIDE + 1, words);
+                action.accept(BlockPos.of(location), new MagicalFarmBlock.FeatureData(words));
+            }
+        }
+    }
+
+    @Override
+    public final void persist() {
+        // Modifications are written to the mapping directly
+    }
+
+    /**
+     * Get the count of entries in the table.
+     *
+     * @return The count of entries in the table.
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Force the modifications of the table to the disk.
+     */
+    public final void force() {
+        mapping.force();
+        header.force();
+    }
+
+    /**
+     * Force the modifications to the disk and close the file, the storage must
+     * not be used afterwards.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public final void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Find the slot of the specified packed location.
+     *
+     * @param key The packed location.
+     * @return The slot of the entry, or {@code -slot - 1} of the empty slot where
+     *         the entry would be inserted.
+     */
+    private final int find(final long key) {
+        final var mask = capacity - 1;
+        final var stored = key ^ EMPTY_LOCATION;
+        for (var slot = getHomeSlot(key);; slot = (slot + 1) & mask) {
+            final var current = table.get(slot * STRIDE);
+            if (current == stored) {
+                return slot;
+            }
+
+            if (current == 0L) {
+                return -slot - 1;
+            }
+        }
+    }
+
+    /**
+     * Get the home slot of the specified packed location, which is the slot of
+     * its chunk plus its column in the chunk.
+     *
+     * @param key The packed location.
+     * @return The home slot.
+     */
+    private final int getHomeSlot(final long key) {
+        final var x = BlockPos.getX(key);
+        final var z = BlockPos.getZ(key);
+        final var column = (x & 15) << 4 | z & 15;
+        return (getChunkSlot(ChunkPos.asLong(x >> 4, z >> 4)) + column) & (capacity - 1);
+    }
+
+    /**
+     * Get the first home slot of the specified chunk.
+     *
+     * @param chunk The packed position of the chunk.
+     * @return The first home slot.
+     */
+    private final int getChunkSlot(final long chunk) {
+        return (int) HashCommon.mix(chunk) & (capacity - 1);
+    }
+
+    /**
+     * Build a table of twice the capacity after the current table, and point the
+     * header at it once it is on the disk. The space of the old table is reclaimed
+     * when the storage is opened again, see {@link #compact}.
+     */
+    private final void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("The magical farm map is full with " + size + " entries");
+        }
+
+        final var oldTable = table;
+        final var oldCapacity = capacity;
+        final var offset = header.getLong(16) + (long) oldCapacity * STRIDE * Long.BYTES;
+        capacity = oldCapacity * 2;
+        try {
+            map(offset);
+        } catch (final IOException exception) {
+            capacity = oldCapacity;
+            throw new UncheckedIOException(exception);
+        }
+
+        // The new region of the file is zero filled
+        for (var oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            final var stored = oldTable.get(oldSlot * STRIDE);
+            if (stored == 0L) {
+                continue;
+            }
+
+            final var slot = -find(stored ^ EMPTY_LOCATION) - 1;
+            for (var index = 0; index < STRIDE; index++) {
+                table.put(slot * STRIDE + index, oldTable.get(oldSlot * STRIDE + index));
+            }
+        }
+
+        mapping.force();
+        header.putLong(16, offset).putInt(24, capacity);
+        header.force();
+    }
+
+    /**
+     * Get the mapped storage of the specified level, the storage is opened when
+     * it is first accessed.
+     *
+     * @param level The level, must in server side.
+     * @return The mapped storage of the level.
+     * @throws UncheckedIOException if the file could not be opened.
+     */
+    public static final @NotNull MagicalFarmMappedStorage getStorage(@NotNull final ServerLevel level) {
+        var storage = STORAGES.get(level);
+        if (storage == null) {
+            final var file = DimensionType.getStorageFolder(level.dimension(),
+                    level.getServer().getWorldPath(LevelResource.ROOT)).resolve("data")
+                    .resolve(MagicalFarmDataFormat.NAME + ".map");
+            try {
+                storage = new MagicalFarmMappedStorage(file);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException("Failed to open magical farm map " + file, exception);
+            }
+
+            STORAGES.put(level, storage);
+        }
+
+        return storage;
+    }
+
+    /**
+     * This function is called each server tick, forces the mapped files to the
+     * disk every {@value #FORCE_INTERVAL} ticks.
+     *
+     * @param event The server tick event.
+     */
+    @SubscribeEvent
+    public static final void onServerTick(@NotNull final TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || ++ticksSinceForce < FORCE_INTERVAL) {
+            return;
+        }
+
+        ticksSinceForce = 0;
+        for (final var storage : STORAGES.values()) {
+            storage.force();
+        }
+    }
+
+    /**
+     * This function is called when a level is unloaded, forces the mapped file of
+     * the level to the disk and closes it.
+     *
+     * @param event The level unload event.
+     */
+    @SubscribeEvent
+    public static final void onLevelUnload(@NotNull final LevelEvent.Unload event) {
+        if (!(event.getLevel() instanceof final ServerLevel level)) {
+            return;
+        }
+
+        final var storage = STORAGES.remove(level);
+        if (storage == null) {
+            return;
+        }
+
+        try {
+            storage.close();
+        } catch (final IOException exception) {
+            LOGGER.error("Failed to close magical farm map of {}", level.dimension().location(), exception);
+        }
+    }
+}
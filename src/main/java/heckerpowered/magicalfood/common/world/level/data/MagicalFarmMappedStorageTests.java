@@ -0,0 +1,128 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.MagicalFood;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestAssertException;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraftforge.gametest.GameTestHolder;
+import net.minecraftforge.gametest.PrefixGameTestTemplate;
+
+/**
+ * Game tests of {@link MagicalFarmMappedStorage}, run by the game test server
+ * or the {@code /test} command. The storage is opened in a temporary file, the
+ * tests do not touch the level.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@GameTestHolder(MagicalFood.MODID)
+@PrefixGameTestTemplate(false)
+public final class MagicalFarmMappedStorageTests {
+    /**
+     * The count of entries put into the storage, enough to grow the table of a
+     * new file once.
+     */
+    private static final int ENTRIES = 3000;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmMappedStorageTests() {
+    }
+
+    /**
+     * Grow the table of a new file, and check that opening the file again
+     * reclaims the old table and keeps every entry.
+     *
+     * @param helper The game test helper.
+     * @throws IOException if an I/O error occurs.
+     */
+    @GameTest(template = "forge:empty3x3x3")
+    public static final void compactAfterGrowth(@NotNull final GameTestHelper helper) throws IOException {
+        final var folder = Files.createTempDirectory(MagicalFarmDataFormat.NAME);
+        final var file = folder.resolve(MagicalFarmDataFormat.NAME + ".map");
+        try {
+            final var storage = new MagicalFarmMappedStorage(file);
+            for (var entry = 0; entry < ENTRIES; entry++) {
+                storage.setFeatureData(getLocation(entry), new MagicalFarmBlock.FeatureData(new long[] { entry + 1 }));
+            }
+
+            storage.close();
+
+            final var grownSize = Files.size(file);
+            final var reclaimed = MagicalFarmMappedStorage.compact(file);
+            if (reclaimed <= 0L || Files.size(file) != grownSize - reclaimed) {
+                throw new GameTestAssertException("Expected the old table to be reclaimed, reclaimed " + reclaimed
+                        + " bytes of " + grownSize);
+            }
+
+            if (MagicalFarmMappedStorage.compact(file) != 0L) {
+                throw new GameTestAssertException("Expected a compacted file to be left as it is");
+            }
+
+            final var reopened = new MagicalFarmMappedStorage(file);
+            try {
+                if (reopened.size() != ENTRIES) {
+                    throw new GameTestAssertException("Expected " + ENTRIES + " entries, got " + reopened.size());
+                }
+
+                for (var entry = 0; entry < ENTRIES; entry++) {
+                    final var featureData = reopened.getFeatureData(getLocation(entry));
+                    if (featureData == null || featureData.getData().length == 0
+                            || featureData.getData()[0] != entry + 1) {
+                        throw new GameTestAssertException("Wrong feature data of entry " + entry);
+                    }
+                }
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(folder);
+        }
+
+        helper.succeed();
+    }
+
+    /**
+     * Get the location of the specified entry, the entries fill a layer of
+     * several chunks.
+     *
+     * @param entry The entry.
+     * @return The location of the entry.
+     */
+    private static final @NotNull BlockPos getLocation(final int entry) {
+        return new BlockPos(entry % 64, 64, entry / 64);
+    }
+}
@@ -0,0 +1,612 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFoodBlock;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.SharedConstants;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.storage.ChunkStorage;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.event.server.ServerStoppingEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.registries.ForgeRegistries;
+
+/**
+ * Rebuilds the index of magical farmland in a {@link MagicalFarmStorage} from
+ * the blocks of the level, after the storage and the level disagree, such as
+ * after a rollback, a crash or external map editing. Farmland without a feature
+ * data gets an empty one, and feature datas without farmland are dropped.
+ * <p>
+ * Chunks are scanned section by section, and sections whose block state
+ * palette cannot contain {@link MagicalFarmBlock} are skipped without decoding
+ * their blocks. Loaded chunks are scanned in memory. Chunks that are not loaded
+ * are read from the region files through the chunk map's I/O worker and
+ * scanned on a worker thread one region at a time, so a whole world can be
+ * reindexed in the background. The storage itself is only modified on the
+ * server thread. Indexed chunks that were not on disk when their region was
+ * scanned, such as chunks generated meanwhile, are read again at the end, and
+ * their feature datas are only dropped if the chunk is neither loaded nor on
+ * disk by then.
+ * <p>
+ * Chunks on disk are read as they were saved, without the data fixers that
+ * upgrade them when they are loaded, so chunks saved by an older version of the
+ * game are skipped and reported instead of being scanned in a format that may
+ * not match. Their feature datas are kept as they are, loading such a chunk
+ * once upgrades it, and a later reindex scans it.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmReindex {
+    /**
+     * The width of a region file in chunks.
+     */
+    private static final int REGION_SIZE = 32;
+
+    /**
+     * The count of blocks in a section.
+     */
+    private static final int SECTION_BLOCKS = 4096;
+
+    /**
+     * The interval in milliseconds at which the worker checks whether the server
+     * is still running while it waits for the server thread or the I/O worker.
+     */
+    private static final long WAIT_INTERVAL_MILLIS = 1000L;
+
+    /**
+     * The futures of the reindexes in progress, which fail when the server stops.
+     */
+    private static final Set<CompletableFuture<Result>> RUNNING = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmReindex() {
+    }
+
+    /**
+     * Reindex the loaded chunks within the specified radius of the specified chunk,
+     * this method must be called on the server thread and completes immediately.
+     *
+     * @param level  The level, must in server side.
+     * @param center The center chunk.
+     * @param radius The radius in chunks.
+     * @return The result of the reindex.
+     */
+    public static final @NotNull Result reindexLoaded(@NotNull final ServerLevel level,
+            @NotNull final ChunkPos center, final int radius) {
+        final var progress = new Progress();
+        final var storage = MagicalFarmStorage.get(level);
+        for (var chunkX = center.x - radius; chunkX <= center.x + radius; chunkX++) {
+            for (var chunkZ = center.z - radius; chunkZ <= center.z + radius; chunkZ++) {
+                final var levelChunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+                if (levelChunk != null) {
+                    reconcile(storage, levelChunk.getPos().toLong(), scan(levelChunk, progress), progress);
+                }
+            }
+        }
+
+        return progress.toResult();
+    }
+
+    /**
+     * Reindex all chunks of the level in the background, only the
+     * {@link MagicalFarmStorage.Backend#SAVED_DATA} backend can store the data of
+     * chunks that are not loaded. This method must be called on the server
+     * thread, the returned future completes on the server thread, or fails when
+     * the server stops before the reindex is done.
+     *
+     * @param level The level, must in server side.
+     * @return The future of the result.
+     */
+    public static final @NotNull CompletableFuture<Result> reindexAll(@NotNull final ServerLevel level) {
+        if (MagicalFarmStorage.getBackend() != MagicalFarmStorage.Backend.SAVED_DATA) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Only the saved data backend can reindex chunks that are not loaded"));
+        }
+
+        final var server = level.getServer();
+        final var progress = new Progress();
+        final var visited = new LongOpenHashSet();
+        final var unvisited = new LongOpenHashSet();
+        final var absent = new LongOpenHashSet();
+        final var outdated = new LongOpenHashSet();
+        final var found = new Long2ObjectOpenHashMap<LongOpenHashSet>();
+        final var regionFolder = DimensionType
+                .getStorageFolder(level.dimension(), server.getWorldPath(LevelResource.ROOT)).resolve("region");
+
+        final var result = new CompletableFuture<Result>();
+        RUNNING.add(result);
+        CompletableFuture.runAsync(() -> {
+            for (final var region : listRegions(regionFolder)) {
+                if (!server.isRunning()) {
+                    throw new IllegalStateException("Server stopped while reindexing");
+                }
+
+                final var regionOutdated = new LongOpenHashSet();
+                final var regionFound = scanRegion(level, region, regionOutdated, progress);
+
+                // Wait for the region to be applied, so that at most one region is held
+                await(CompletableFuture.runAsync(() -> {
+                    final var storage = MagicalFarmStorage.get(level);
+                    for (final var iterator = regionOutdated.iterator(); iterator.hasNext();) {
+                        final var chunk = iterator.nextLong();
+                        visited.add(chunk);
+
+                        // A loaded chunk has been upgraded when it was loaded
+                        final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk),
+                                ChunkPos.getZ(chunk));
+                        if (levelChunk == null) {
+                            progress.outdated.incrementAndGet();
+                        } else {
+                            reconcile(storage, chunk, scan(levelChunk, progress), progress);
+                        }
+                    }
+
+                    for (final var chunk : regionFound.long2ObjectEntrySet()) {
+                        visited.add(chunk.getLongKey());
+
+                        // A loaded chunk may have changed since it was saved
+                        final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk.getLongKey()),
+                                ChunkPos.getZ(chunk.getLongKey()));
+                        reconcile(storage, chunk.getLongKey(),
+                                levelChunk == null ? chunk.getValue() : scan(levelChunk, progress), progress);
+                    }
+                }, server), server);
+            }
+        }, Util.backgroundExecutor()).thenRunAsync(() -> {
+            // Indexed chunks that were not on disk when their region was scanned are
+            // either loaded, saved since, or gone
+            final var storage = MagicalFarmStorage.get(level);
+            for (final var iterator = MagicalFarmBlockSavedData.getSavedData(level).getIndexedChunks()
+                    .iterator(); iterator.hasNext();) {
+                final var chunk = iterator.nextLong();
+                if (visited.contains(chunk)) {
+                    continue;
+                }
+
+                final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk), ChunkPos.getZ(chunk));
+                if (levelChunk == null) {
+                    unvisited.add(chunk);
+                } else {
+                    reconcile(storage, chunk, scan(levelChunk, progress), progress);
+                }
+            }
+        }, server).thenRunAsync(() -> {
+            // Read the chunks again, only a chunk that is still not on disk is gone
+            found.putAll(scanChunks(level, unvisited, absent, outdated, progress));
+        }, Util.backgroundExecutor()).thenApplyAsync(unused -> {
+            final var storage = MagicalFarmStorage.get(level);
+            for (final var iterator = unvisited.iterator(); iterator.hasNext();) {
+                final var chunk = iterator.nextLong();
+                final var levelChunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunk), ChunkPos.getZ(chunk));
+                if (levelChunk != null) {
+                    reconcile(storage, chunk, scan(levelChunk, progress), progress);
+                } else if (absent.contains(chunk)) {
+                    reconcile(storage, chunk, new LongOpenHashSet(), progress);
+                } else if (outdated.contains(chunk)) {
+                    progress.outdated.incrementAndGet();
+                } else {
+                    reconcile(storage, chunk, found.get(chunk), progress);
+                }
+            }
+
+            return progress.toResult();
+        }, server).whenComplete((value, throwable) -> {
+            RUNNING.remove(result);
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(value);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Wait for the specified future on the worker thread. The tasks of the server
+     * thread and the I/O worker never run once the server stops, so the wait
+     * gives up when the server is no longer running.
+     *
+     * @param <T>    The type of the value.
+     * @param future The future.
+     * @param server The server.
+     * @return The value of the future.
+     */
+    private static final <T> T await(@NotNull final CompletableFuture<T> future,
+            @NotNull final MinecraftServer server) {
+        while (true) {
+            try {
+                return future.get(WAIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException exception) {
+                if (!server.isRunning()) {
+                    throw new IllegalStateException("Server stopped while reindexing");
+                }
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reindexing", exception);
+            } catch (final ExecutionException exception) {
+                throw new CompletionException(exception.getCause());
+            }
+        }
+    }
+
+    /**
+     * Fail the reindexes in progress when the server stops, their last step runs
+     * on the server thread, which no longer runs tasks.
+     *
+     * @param event The server stopping event.
+     */
+    @SubscribeEvent
+    public static final void onServerStopping(@NotNull final ServerStoppingEvent event) {
+        for (final var result : RUNNING) {
+            result.completeExceptionally(new IllegalStateException("Server stopped while reindexing"));
+        }
+
+        RUNNING.clear();
+    }
+
+    /**
+     * List the positions of the region files in the specified folder.
+     *
+     * @param regionFolder The region folder of the dimension.
+     * @return The packed positions of the regions, as chunk positions of regions.
+     */
+    private static final @NotNull LongOpenHashSet listRegions(@NotNull final Path regionFolder) {
+        final var regions = new LongOpenHashSet();
+        if (!Files.isDirectory(regionFolder)) {
+            return regions;
+        }
+
+        try (final var stream = Files.newDirectoryStream(regionFolder, "r.*.*.mca")) {
+            for (final var file : stream) {
+                final var parts = file.getFileName().toString().split("\\.");
+                try {
+                    regions.add(ChunkPos.asLong(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+                } catch (final NumberFormatException exception) {
+                    // Not a region file
+                }
+            }
+        } catch (final IOException exception) {
+            throw new IllegalStateException("Failed to list region files in " + regionFolder, exception);
+        }
+
+        return regions;
+    }
+
+    /**
+     * Read and scan the chunks of the specified region, on a worker thread.
+     *
+     * @param level    The level.
+     * @param region   The packed position of the region.
+     * @param outdated The set to add the packed positions of the chunks saved by
+     *                 an older version to, which are not scanned.
+     * @param progress The progress to update.
+     * @return The locations of the magical farmland of each chunk that exists on
+     *         disk and is not outdated.
+     */
+    private static final @NotNull Long2ObjectOpenHashMap<LongOpenHashSet> scanRegion(
+            @NotNull final ServerLevel level, final long region, @NotNull final LongOpenHashSet outdated,
+            @NotNull final Progress progress) {
+        final var chunkMap = level.getChunkSource().chunkMap;
+        final var baseX = ChunkPos.getX(region) * REGION_SIZE;
+        final var baseZ = ChunkPos.getZ(region) * REGION_SIZE;
+
+        // The I/O worker reads the region file once for all chunks of the region
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<Optional<CompoundTag>>[] reads = new CompletableFuture[REGION_SIZE * REGION_SIZE];
+        for (var index = 0; index < reads.length; index++) {
+            reads[index] = chunkMap.read(new ChunkPos(baseX + index % REGION_SIZE, baseZ + index / REGION_SIZE));
+        }
+
+        final var blockName = String.valueOf(ForgeRegistries.BLOCKS.getKey(MagicalFoodBlock.MAGICAL_FARM_BLOCK.get()));
+        final var found = new Long2ObjectOpenHashMap<LongOpenHashSet>();
+        for (var index = 0; index < reads.length; index++) {
+            final var chunkTag = await(reads[index], level.getServer()).orElse(null);
+            if (chunkTag == null) {
+                continue;
+            }
+
+            final var chunkPos = new ChunkPos(baseX + index % REGION_SIZE, baseZ + index / REGION_SIZE);
+            if (isOutdated(chunkTag)) {
+                outdated.add(chunkPos.toLong());
+            } else {
+                found.put(chunkPos.toLong(), scan(chunkTag, chunkPos, blockName, progress));
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Read and scan the specified chunks, on a worker thread.
+     *
+     * @param level    The level.
+     * @param chunks   The packed positions of the chunks.
+     * @param absent   The set to add the packed positions of the chunks that do not
+     *                 exist on disk to.
+     * @param outdated The set to add the packed positions of the chunks saved by
+     *                 an older version to, which are not scanned.
+     * @param progress The progress to update.
+     * @return The locations of the magical farmland of each chunk that exists on
+     *         disk and is not outdated.
+     */
+    private static final @NotNull Long2ObjectOpenHashMap<LongOpenHashSet> scanChunks(
+            @NotNull final ServerLevel level, @NotNull final LongOpenHashSet chunks,
+            @NotNull final LongOpenHashSet absent, @NotNull final LongOpenHashSet outdated,
+            @NotNull final Progress progress) {
+        final var chunkMap = level.getChunkSource().chunkMap;
+        final var blockName = String.valueOf(ForgeRegistries.BLOCKS.getKey(MagicalFoodBlock.MAGICAL_FARM_BLOCK.get()));
+        final var found = new Long2ObjectOpenHashMap<LongOpenHashSet>();
+        for (final var iterator = chunks.iterator(); iterator.hasNext();) {
+            final var chunkPos = new ChunkPos(iterator.nextLong());
+            final var chunkTag = await(chunkMap.read(chunkPos), level.getServer()).orElse(null);
+            if (chunkTag == null) {
+                absent.add(chunkPos.toLong());
+            } else if (isOutdated(chunkTag)) {
+                outdated.add(chunkPos.toLong());
+            } else {
+                found.put(chunkPos.toLong(), scan(chunkTag, chunkPos, blockName, progress));
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Returns a boolean that indicates whether the specified chunk read from disk
+     * was saved by an older version, and would have to be upgraded to be scanned.
+     *
+     * @param chunkTag The chunk read from disk.
+     * @return {@code true} if the chunk is outdated, {@code false} otherwise.
+     */
+    private static final boolean isOutdated(@NotNull final CompoundTag chunkTag) {
+        return ChunkStorage.getVersion(chunkTag) < SharedConstants.getCurrentVersion().getDataVersion().getVersion();
+    }
+
+    /**
+     * Scan a loaded chunk.
+     *
+     * @param levelChunk The chunk.
+     * @param progress   The progress to update.
+     * @return The packed locations of the magical farmland in the chunk.
+     */
+    private static final @NotNull LongOpenHashSet scan(@NotNull final LevelChunk levelChunk,
+            @NotNull final Progress progress) {
+        final var found = new LongOpenHashSet();
+        final var sections = levelChunk.getSections();
+        final var chunkPos = levelChunk.getPos();
+        progress.chunks.incrementAndGet();
+
+        for (var sectionIndex = 0; sectionIndex < sections.length; sectionIndex++) {
+            final var section = sections[sectionIndex];
+            if (section.hasOnlyAir()
+                    || !section.maybeHas(blockState -> blockState.getBlock() instanceof MagicalFarmBlock)) {
+                progress.skippedSections.incrementAndGet();
+                continue;
+            }
+
+            progress.scannedSections.incrementAndGet();
+            final var origin = SectionPos.of(chunkPos, levelChunk.getSectionYFromSectionIndex(sectionIndex)).origin();
+            for (var index = 0; index < SECTION_BLOCKS; index++) {
+                if (section.getBlockState(index & 15, index >> 8 & 15, index >> 4 & 15)
+                        .getBlock() instanceof MagicalFarmBlock) {
+                    found.add(BlockPos.asLong(origin.getX() + (index & 15), origin.getY() + (index >> 8 & 15),
+                            origin.getZ() + (index >> 4 & 15)));
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Scan a chunk read from disk. Only the palette of each section is read unless
+     * it contains the magical farmland, the block indices are then decoded from
+     * the packed data in the same layout as {@code PalettedContainer} writes it.
+     *
+     * @param chunkTag  The chunk read from disk.
+     * @param chunkPos  The position of the chunk.
+     * @param blockName The registry name of the magical farmland.
+     * @param progress  The progress to update.
+     * @return The packed locations of the magical farmland in the chunk.
+     */
+    private static final @NotNull LongOpenHashSet scan(@NotNull final CompoundTag chunkTag,
+            @NotNull final ChunkPos chunkPos, @NotNull final String blockName, @NotNull final Progress progress) {
+        final var found = new LongOpenHashSet();
+        final var sections = chunkTag.getList("sections", Tag.TAG_COMPOUND);
+        progress.chunks.incrementAndGet();
+
+        for (var sectionIndex = 0; sectionIndex < sections.size(); sectionIndex++) {
+            final var section = sections.getCompound(sectionIndex);
+            final var blockStates = section.getCompound("block_states");
+            final var palette = blockStates.getList("palette", Tag.TAG_COMPOUND);
+
+            // Find the palette entries of the magical farmland, one per block state
+            final var matches = new boolean[palette.size()];
+            var matched = false;
+            for (var entry = 0; entry < palette.size(); entry++) {
+                matches[entry] = blockName.equals(palette.getCompound(entry).getString("Name"));
+                matched |= matches[entry];
+            }
+
+            if (!matched) {
+                progress.skippedSections.incrementAndGet();
+                continue;
+            }
+
+            progress.scannedSections.incrementAndGet();
+            final var originX = chunkPos.getMinBlockX();
+            final var originY = SectionPos.sectionToBlockCoord(section.getByte("Y"));
+            final var originZ = chunkPos.getMinBlockZ();
+
+            // A single entry palette has no data, every block is the entry
+            final var data = blockStates.getLongArray("data");
+            final var bits = palette.size() == 1 ? 0 : Math.max(4, Mth.ceillog2(palette.size()));
+            final var valuesPerLong = bits == 0 ? 0 : Long.SIZE / bits;
+            if (bits != 0 && data.length != (SECTION_BLOCKS + valuesPerLong - 1) / valuesPerLong) {
+                continue;
+            }
+
+            for (var index = 0; index < SECTION_BLOCKS; index++) {
+                final var entry = bits == 0 ? 0
+                        : (int) (data[index / valuesPerLong] >>> (index % valuesPerLong * bits) & (1L << bits) - 1);
+                if (entry < matches.length && matches[entry]) {
+                    found.add(BlockPos.asLong(originX + (index & 15), originY + (index >> 8 & 15),
+                            originZ + (index >> 4 & 15)));
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Make the feature datas of the specified chunk match the specified magical
+     * farmland, on the server thread.
+     *
+     * @param storage  The storage.
+     * @param chunk    The packed position of the chunk.
+     * @param found    The packed locations of the magical farmland in the chunk.
+     * @param progress The progress to update.
+     */
+    private static final void reconcile(@NotNull final MagicalFarmStorage storage, final long chunk,
+            @NotNull final LongOpenHashSet found, @NotNull final Progress progress) {
+        final var indexed = new LongOpenHashSet();
+        storage.forEachInChunk(chunk, (location, featureData) -> indexed.add(location.asLong()));
+
+        for (final var iterator = found.iterator(); iterator.hasNext();) {
+            final var location = iterator.nextLong();
+            if (!indexed.contains(location)) {
+                storage.setFeatureData(BlockPos.of(location), new MagicalFarmBlock.FeatureData());
+                progress.added.incrementAndGet();
+            }
+        }
+
+        for (final var iterator = indexed.iterator(); iterator.hasNext();) {
+            final var location = iterator.nextLong();
+            if (!found.contains(location)) {
+                storage.removeFeatureData(BlockPos.of(location));
+                progress.removed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Represents the result of a reindex.
+     *
+     * @param chunks          The count of scanned chunks.
+     * @param scannedSections The count of sections whose blocks were scanned.
+     * @param skippedSections The count of sections skipped by their palette.
+     * @param added           The count of magical farmland that was added.
+     * @param removed         The count of feature datas that were dropped.
+     * @param outdated        The count of chunks that were skipped because they
+     *                        were saved by an older version.
+     */
+    public record Result(int chunks, int scannedSections, int skippedSections, int added, int removed,
+            int outdated) {
+    }
+
+    /**
+     * The counters of a reindex in progress, updated by the worker and the server
+     * thread.
+     *
+     * @author Heckerpowered
+     */
+    private static final class Progress {
+        /**
+         * The count of scanned chunks.
+         */
+        private final AtomicInteger chunks = new AtomicInteger();
+
+        /**
+         * The count of sections whose blocks were scanned.
+         */
+        private final AtomicInteger scannedSections = new AtomicInteger();
+
+        /**
+         * The count of sections skipped by their palette.
+         */
+        private final AtomicInteger skippedSections = new AtomicInteger();
+
+        /**
+         * The count of magical farmland that was added.
+         */
+        private final AtomicInteger added = new AtomicInteger();
+
+        /**
+         * The count of feature datas that were dropped.
+         */
+        private final AtomicInteger removed = new AtomicInteger();
+
+        /**
+         * The count of chunks that were skipped because they were saved by an older
+         * version.
+         */
+        private final AtomicInteger outdated = new AtomicInteger();
+
+        /**
+         * Get the result of the counters.
+         *
+         * @return The result.
+         */
+        private @NotNull Result toResult() {
+            return new Result(chunks.get(), scannedSections.get(), skippedSections.get(), added.get(), removed.get(),
+                    outdated.get());
+        }
+    }
+}
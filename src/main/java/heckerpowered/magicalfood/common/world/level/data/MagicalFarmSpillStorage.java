@@ -0,0 +1,237 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+
+/**
+ * Stores the chunk datas evicted by {@link MagicalFarmBlockSavedData} on disk.
+ * Chunks are grouped into region files of 32 by 32 chunks, named
+ * {@code r.<x>.<z>.dat} in the {@code data/magical_farm} folder of the
+ * dimension. Each region file has the same layout as the saved data itself,
+ * see {@link MagicalFarmDataFormat}.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+final class MagicalFarmSpillStorage {
+    /**
+     * The folder that contains the region files.
+     */
+    private final Path folder;
+
+    /**
+     * Constructs a new spill storage for the specified level.
+     *
+     * @param level The level, must in server side.
+     */
+    MagicalFarmSpillStorage(@NotNull final ServerLevel level) {
+        folder = DimensionType.getStorageFolder(level.dimension(), level.getServer().getWorldPath(LevelResource.ROOT))
+                .resolve("data").resolve(MagicalFarmDataFormat.NAME);
+    }
+
+    /**
+     * Write the specified chunk datas to their region files, replacing any
+     * previously written record of the same chunks.
+     *
+     * @param chunks The chunk datas to write.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void write(@NotNull final Collection<MagicalFarmChunkData> chunks) throws IOException {
+        // Group the chunks by region, so that each region file is rewritten once
+        final var regions = new Long2ObjectOpenHashMap<Long2ObjectLinkedOpenHashMap<CompoundTag>>();
+        for (final var chunkData : chunks) {
+            regions.computeIfAbsent(getRegion(chunkData.getChunk()), key -> new Long2ObjectLinkedOpenHashMap<>())
+                    .put(chunkData.getChunk(), chunkData.save());
+        }
+
+        Files.createDirectories(folder);
+        for (final var region : regions.long2ObjectEntrySet()) {
+            final var file = getFile(region.getLongKey());
+
+            // Keep the records of other chunks in the region
+            final var records = readRecords(file);
+            records.putAll(region.getValue());
+
+            final var chunkList = new ListTag();
+            chunkList.addAll(records.values());
+
+            writeData(chunkList, file);
+        }
+    }
+
+    /**
+     * Read the records of the specified chunks, each region file is read once.
+     * Chunks that have not been written are skipped.
+     *
+     * @param chunks The packed positions of the chunks.
+     * @param action The action that accepts each chunk record.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void readAll(@NotNull final LongCollection chunks, @NotNull final Consumer<CompoundTag> action)
+            throws IOException {
+        final var regions = new Long2ObjectOpenHashMap<LongArrayList>();
+        for (final var iterator = chunks.iterator(); iterator.hasNext();) {
+            final var chunk = iterator.nextLong();
+            regions.computeIfAbsent(getRegion(chunk), key -> new LongArrayList()).add(chunk);
+        }
+
+        for (final var region : regions.long2ObjectEntrySet()) {
+            final var records = readRecords(getFile(region.getLongKey()));
+            for (final var iterator = region.getValue().iterator(); iterator.hasNext();) {
+                final var record = records.get(iterator.nextLong());
+                if (record != null) {
+                    action.accept(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the record of the specified chunk.
+     *
+     * @param chunk The packed position of the chunk.
+     * @return The chunk record, or {@code null} if the chunk has not been written.
+     * @throws IOException if an I/O error occurs.
+     */
+    final @Nullable CompoundTag read(final long chunk) throws IOException {
+        return readRecords(getFile(getRegion(chunk))).get(chunk);
+    }
+
+    /**
+     * Read all records of a region file.
+     *
+     * @param file The region file.
+     * @return The map that maps packed chunk positions to chunk records, empty if
+     *         the file does not exist.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final @NotNull Long2ObjectLinkedOpenHashMap<CompoundTag> readRecords(@NotNull final Path file)
+            throws IOException {
+        final var records = new Long2ObjectLinkedOpenHashMap<CompoundTag>();
+        if (!Files.isRegularFile(file)) {
+            return records;
+        }
+
+        final var chunkList = NbtIo.readCompressed(file.toFile()).getCompound("data")
+                .getList(MagicalFarmDataFormat.CHUNKS, Tag.TAG_COMPOUND);
+        for (var index = 0; index < chunkList.size(); index++) {
+            final var record = chunkList.getCompound(index);
+            records.put(record.getLong(MagicalFarmDataFormat.CHUNK_POS), record);
+        }
+
+        return records;
+    }
+
+    /**
+     * Write the specified chunk records to a file in the layout described by
+     * {@link MagicalFarmDataFormat}. The file is written to a temporary file
+     * first, so that a crash never leaves a partially written file behind.
+     *
+     * @param chunkList The chunk records.
+     * @param file      The file to write.
+     * @throws IOException if an I/O error occurs.
+     */
+    static final void writeData(@NotNull final ListTag chunkList, @NotNull final Path file) throws IOException {
+        writeData(chunkList, new long[0], file);
+    }
+
+    /**
+     * Write the specified chunk records and positions of evicted chunks to a file
+     * in the layout described by {@link MagicalFarmDataFormat}. The file is
+     * written to a temporary file first, so that a crash never leaves a partially
+     * written file behind.
+     *
+     * @param chunkList The chunk records.
+     * @param spilled   The packed positions of the evicted chunks, only written if
+     *                  there is any.
+     * @param file      The file to write.
+     * @throws IOException if an I/O error occurs.
+     */
+    static final void writeData(@NotNull final ListTag chunkList, final long[] spilled, @NotNull final Path file)
+            throws IOException {
+        final var data = new CompoundTag();
+        data.putInt(MagicalFarmDataFormat.VERSION, MagicalFarmDataFormat.CURRENT_VERSION);
+        data.put(MagicalFarmDataFormat.CHUNKS, chunkList);
+        if (spilled.length > 0) {
+            data.putLongArray(MagicalFarmDataFormat.SPILLED, spilled);
+        }
+
+        final var compoundTag = new CompoundTag();
+        compoundTag.put("data", data);
+        NbtUtils.addCurrentDataVersion(compoundTag);
+
+        final var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        NbtIo.writeCompressed(compoundTag, temporary.toFile());
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException exception) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Get the region file of the specified packed region position.
+     *
+     * @param region The packed region position.
+     * @return The region file.
+     */
+    private final @NotNull Path getFile(final long region) {
+        return folder.resolve("r." + ChunkPos.getX(region) + "." + ChunkPos.getZ(region) + ".dat");
+    }
+
+    /**
+     * Get the packed position of the region that contains the specified chunk.
+     *
+     * @param chunk The packed position of the chunk.
+     * @return The packed region position.
+     */
+    private static final long getRegion(final long chunk) {
+        return ChunkPos.asLong(ChunkPos.getX(chunk) >> 5, ChunkPos.getZ(chunk) >> 5);
+    }
+}
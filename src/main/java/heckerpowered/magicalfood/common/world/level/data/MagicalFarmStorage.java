@@ -0,0 +1,153 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+
+/**
+ * Represents a place where the {@link MagicalFarmBlock.FeatureData} of the
+ * magical farmland of a level is stored. The backend is selected by
+ * {@link MagicalFoodConfig.Server#storageBackend}, see {@link Backend} for the
+ * available backends. All methods must be called on the server thread.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public interface MagicalFarmStorage {
+    /**
+     * Get the feature data of the magical farmland at the specified location.
+     *
+     * @param location The location of the block.
+     * @return The feature data, or {@code null} if there is none.
+     */
+    @Nullable
+    MagicalFarmBlock.FeatureData getFeatureData(@NotNull BlockPos location);
+
+    /**
+     * Set the feature data of the magical farmland at the specified location.
+     *
+     * @param location    The location of the block.
+     * @param featureData The feature data.
+     * @return The previous feature data, or {@code null} if there was none.
+     * @throws IllegalArgumentException if the backend can not store a feature
+     *                                  data at the location.
+     */
+    @Nullable
+    MagicalFarmBlock.FeatureData setFeatureData(@NotNull BlockPos location,
+            @NotNull MagicalFarmBlock.FeatureData featureData);
+
+    /**
+     * Remove the feature data of the magical farmland at the specified location.
+     *
+     * @param location The location of the block.
+     * @return The removed feature data, or {@code null} if there was none.
+     */
+    @Nullable
+    MagicalFarmBlock.FeatureData removeFeatureData(@NotNull BlockPos location);
+
+    /**
+     * Perform the specified action for each magical farmland with a feature data
+     * in the specified chunk.
+     *
+     * @param chunk  The packed position of the chunk.
+     * @param action The action that accepts the location and the feature data.
+     */
+    void forEachInChunk(long chunk, @NotNull BiConsumer<BlockPos, MagicalFarmBlock.FeatureData> action);
+
+    /**
+     * Make sure that all modifications are written by the next save of the level.
+     * Modifications are already tracked by each method, this method is only
+     * needed if a feature data was modified by other means.
+     */
+    void persist();
+
+    /**
+     * Get the storage of the specified level, with the configured backend.
+     *
+     * @param level The level, must in server side.
+     * @return The storage of the level.
+     */
+    static @NotNull MagicalFarmStorage get(@NotNull final ServerLevel level) {
+        return switch (getBackend()) {
+            case SAVED_DATA -> MagicalFarmBlockSavedData.getSavedData(level);
+            case BLOCK_ENTITY -> MagicalFarmBlockEntityStorage.getStorage(level);
+            case CHUNK -> MagicalFarmChunkStorage.getStorage(level);
+            case MAPPED -> MagicalFarmMappedStorage.getStorage(level);
+        };
+    }
+
+    /**
+     * Get the configured backend. If the server configuration is not loaded,
+     * the default backend is returned. Forge syncs the server configuration to
+     * remote clients on login, so clients follow the backend of the server
+     * they are connected to, and only see the default before the sync.
+     *
+     * @return The configured backend.
+     */
+    static @NotNull Backend getBackend() {
+        return MagicalFoodConfig.SERVER_SPEC.isLoaded() ? MagicalFoodConfig.SERVER.storageBackend.get()
+                : Backend.SAVED_DATA;
+    }
+
+    /**
+     * Represents the available storage backends. Data is not migrated when the
+     * backend is changed, so the backend should be chosen before the world is
+     * played.
+     *
+     * @author Heckerpowered
+     */
+    enum Backend {
+        /**
+         * All feature datas of a level are stored in a single saved data, with
+         * residency management and snapshots, see
+         * {@link MagicalFarmBlockSavedData}.
+         */
+        SAVED_DATA,
+
+        /**
+         * Each magical farmland has a block entity that stores its feature data, see
+         * {@link MagicalFarmBlockEntityStorage}.
+         */
+        BLOCK_ENTITY,
+
+        /**
+         * The feature datas of a chunk are attached to the chunk as a capability, see
+         * {@link MagicalFarmChunkStorage}.
+         */
+        CHUNK,
+
+        /**
+         * All feature datas of a level are stored off the heap in a memory-mapped
+         * hash table, see {@link MagicalFarmMappedStorage}.
+         */
+        MAPPED
+    }
+}
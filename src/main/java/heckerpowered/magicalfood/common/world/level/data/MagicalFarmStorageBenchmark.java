@@ -0,0 +1,408 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.level.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFoodBlock;
+import heckerpowered.magicalfood.common.world.level.block.entity.MagicalFarmBlockEntity;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.IntTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.entity.BlockEntity;
+
+/**
+ * Compares the {@link MagicalFarmStorage} backends by the lookup latency, the
+ * memory per magical farmland and the save time. Each backend is measured on
+ * the structures it keeps in a real level, filled with a dense square farm of
+ * the requested size, without a level around them: the block entity backend
+ * keeps a map of block entities per chunk like a level chunk does, and the
+ * chunk backend keeps a capability provider per chunk, and the mapped backend
+ * keeps its table in a temporary file.
+ * <p>
+ * The benchmark allocates a lot of memory and takes a few seconds, it should
+ * be run on a worker thread. The memory is measured as the difference of the
+ * used heap after a garbage collection, which is only an estimate on a busy
+ * server.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+public final class MagicalFarmStorageBenchmark {
+    /**
+     * The count of lookups measured, after the same count of warm-up lookups.
+     */
+    private static final int LOOKUPS = 1_000_000;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmStorageBenchmark() {
+    }
+
+    /**
+     * Measure the specified backend with the specified count of magical farmland.
+     *
+     * @param backend The backend to measure.
+     * @param count   The count of magical farmland.
+     * @return The result of the measurement.
+     */
+    public static final @NotNull Result run(@NotNull final MagicalFarmStorage.Backend backend, final int count) {
+        // A dense square farm at the same height
+        final var side = (int) Math.ceil(Math.sqrt(count));
+        final var locations = new BlockPos[count];
+        for (var index = 0; index < count; index++) {
+            locations[index] = new BlockPos(index % side, 64, index / side);
+        }
+
+        final var featureData = new MagicalFarmBlock.FeatureData(new long[] { 1L });
+        final var usedBefore = getUsedMemory();
+        final var harness = createHarness(backend);
+        try {
+            return measure(backend, harness, locations, featureData, usedBefore);
+        } finally {
+            harness.close();
+        }
+    }
+
+    /**
+     * Measure the specified harness with the specified magical farmland.
+     *
+     * @param backend     The measured backend.
+     * @param harness     The harness of the backend, empty.
+     * @param locations   The locations of the magical farmland.
+     * @param featureData The feature data of each magical farmland.
+     * @param usedBefore  The used heap memory before the harness was created.
+     * @return The result of the measurement.
+     */
+    private static final @NotNull Result measure(@NotNull final MagicalFarmStorage.Backend backend,
+            @NotNull final Harness harness, @NotNull final BlockPos[] locations,
+            @NotNull final MagicalFarmBlock.FeatureData featureData, final long usedBefore) {
+        final var count = locations.length;
+        for (final var location : locations) {
+            harness.put(location, featureData);
+        }
+
+        final var usedAfter = getUsedMemory();
+
+        // Look up in a random order, so that the caches do not favor any backend
+        final var random = RandomSource.create(count);
+        final var order = new BlockPos[LOOKUPS];
+        for (var index = 0; index < LOOKUPS; index++) {
+            order[index] = locations[random.nextInt(count)];
+        }
+
+        var found = 0;
+        for (final var location : order) {
+            found += harness.get(location) == null ? 0 : 1;
+        }
+
+        final var lookupStart = System.nanoTime();
+        for (final var location : order) {
+            found += harness.get(location) == null ? 0 : 1;
+        }
+
+        final var lookupNanos = System.nanoTime() - lookupStart;
+
+        final var saveStart = System.nanoTime();
+        final var saved = harness.save();
+        final var saveNanos = System.nanoTime() - saveStart;
+
+        // Keep the harness reachable until the memory is measured and use the
+        // results, so that no work is optimized away
+        if (found != LOOKUPS * 2 || saved.isEmpty() && count > 0) {
+            throw new IllegalStateException("Benchmark lost magical farmland: " + found);
+        }
+
+        return new Result(backend, count, (double) lookupNanos / LOOKUPS,
+                (double) (usedAfter - usedBefore) / count, saveNanos / 1_000_000.0D);
+    }
+
+    /**
+     * Get the used heap memory after a garbage collection.
+     *
+     * @return The used heap memory in bytes.
+     */
+    private static final long getUsedMemory() {
+        final var runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Create the harness of the specified backend.
+     *
+     * @param backend The backend.
+     * @return The harness.
+     */
+    private static final @NotNull Harness createHarness(@NotNull final MagicalFarmStorage.Backend backend) {
+        return switch (backend) {
+            case SAVED_DATA -> new SavedDataHarness();
+            case BLOCK_ENTITY -> new BlockEntityHarness();
+            case CHUNK -> new ChunkHarness();
+            case MAPPED -> new MappedHarness();
+        };
+    }
+
+    /**
+     * Represents the result of a measurement.
+     *
+     * @param backend        The measured backend.
+     * @param count          The count of magical farmland.
+     * @param lookupNanos    The average time of a lookup in nanoseconds.
+     * @param bytesPerEntry  The estimated memory per magical farmland in bytes.
+     * @param saveMillis     The time of saving all magical farmland in
+     *                       milliseconds.
+     */
+    public record Result(MagicalFarmStorage.Backend backend, int count, double lookupNanos, double bytesPerEntry,
+            double saveMillis) {
+    }
+
+    /**
+     * Represents the structures of a backend.
+     *
+     * @author Heckerpowered
+     */
+    private interface Harness {
+        /**
+         * Store the feature data at the specified location.
+         *
+         * @param location    The location.
+         * @param featureData The feature data.
+         */
+        void put(BlockPos location, MagicalFarmBlock.FeatureData featureData);
+
+        /**
+         * Look up the feature data at the specified location.
+         *
+         * @param location The location.
+         * @return The feature data, or {@code null} if there is none.
+         */
+        @Nullable
+        MagicalFarmBlock.FeatureData get(BlockPos location);
+
+        /**
+         * Save all feature datas the way the backend is saved.
+         *
+         * @return The saved tags.
+         */
+        ListTag save();
+
+        /**
+         * Release the resources of the harness, it must not be used afterwards.
+         * Harnesses that only use the heap have nothing to release.
+         */
+        default void close() {
+        }
+    }
+
+    /**
+     * The structures of {@link MagicalFarmBlockSavedData}.
+     */
+    private static final class SavedDataHarness implements Harness {
+        /**
+         * The chunk datas in least recently used order.
+         */
+        private final Long2ObjectLinkedOpenHashMap<MagicalFarmChunkData> chunks = new Long2ObjectLinkedOpenHashMap<>();
+
+        @Override
+        public void put(final BlockPos location, final MagicalFarmBlock.FeatureData featureData) {
+            chunks.computeIfAbsent(ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4),
+                    chunk -> new MagicalFarmChunkData(chunk, 0)).put(location.asLong(), featureData);
+        }
+
+        @Override
+        public @Nullable MagicalFarmBlock.FeatureData get(final BlockPos location) {
+            final var chunkData = chunks.getAndMoveToLast(ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4));
+            return chunkData == null ? null : chunkData.get(location.asLong());
+        }
+
+        @Override
+        public ListTag save() {
+            final var chunkList = new ListTag();
+            for (final var chunkData : chunks.values()) {
+                chunkList.add(chunkData.save());
+            }
+
+            return chunkList;
+        }
+    }
+
+    /**
+     * The structures of {@link MagicalFarmBlockEntityStorage}, a map of block
+     * entities per chunk.
+     */
+    private static final class BlockEntityHarness implements Harness {
+        /**
+         * The block entities of each chunk.
+         */
+        private final Long2ObjectOpenHashMap<Map<BlockPos, BlockEntity>> chunks = new Long2ObjectOpenHashMap<>();
+
+        @Override
+        public void put(final BlockPos location, final MagicalFarmBlock.FeatureData featureData) {
+            final var blockEntity = new MagicalFarmBlockEntity(location,
+                    MagicalFoodBlock.MAGICAL_FARM_BLOCK.get().defaultBlockState());
+            blockEntity.setFeatureData(featureData);
+            chunks.computeIfAbsent(ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4),
+                    chunk -> new HashMap<>()).put(location, blockEntity);
+        }
+
+        @Override
+        public @Nullable MagicalFarmBlock.FeatureData get(final BlockPos location) {
+            final var blockEntities = chunks.get(ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4));
+            return blockEntities != null && blockEntities.get(location) instanceof final MagicalFarmBlockEntity entity
+                    ? entity.getFeatureData()
+                    : null;
+        }
+
+        @Override
+        public ListTag save() {
+            final var blockEntityList = new ListTag();
+            for (final var blockEntities : chunks.values()) {
+                for (final var blockEntity : blockEntities.values()) {
+                    blockEntityList.add(blockEntity.saveWithFullMetadata());
+                }
+            }
+
+            return blockEntityList;
+        }
+    }
+
+    /**
+     * The structures of {@link MagicalFarmChunkStorage}, a capability provider per
+     * chunk.
+     */
+    private static final class ChunkHarness implements Harness {
+        /**
+         * The capability provider of each chunk.
+         */
+        private final Long2ObjectOpenHashMap<MagicalFarmChunkStorage.Provider> chunks = new Long2ObjectOpenHashMap<>();
+
+        @Override
+        public void put(final BlockPos location, final MagicalFarmBlock.FeatureData featureData) {
+            chunks.computeIfAbsent(ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4),
+                    MagicalFarmChunkStorage.Provider::new).getCapability(MagicalFarmChunkStorage.CAPABILITY, null)
+                    .ifPresent(chunkData -> chunkData.put(location.asLong(), featureData));
+        }
+
+        @Override
+        public @Nullable MagicalFarmBlock.FeatureData get(final BlockPos location) {
+            final var provider = chunks.get(ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4));
+            if (provider == null) {
+                return null;
+            }
+
+            final var chunkData = provider.getCapability(MagicalFarmChunkStorage.CAPABILITY, null).resolve()
+                    .orElse(null);
+            return chunkData == null ? null : chunkData.get(location.asLong());
+        }
+
+        @Override
+        public ListTag save() {
+            final var chunkList = new ListTag();
+            for (final var provider : chunks.values()) {
+                chunkList.add(provider.serializeNBT());
+            }
+
+            return chunkList;
+        }
+    }
+
+    /**
+     * The structures of {@link MagicalFarmMappedStorage}, a mapped table in a
+     * temporary file that is deleted when the harness is closed.
+     */
+    private static final class MappedHarness implements Harness {
+        /**
+         * The temporary file of the table.
+         */
+        private final Path file;
+
+        /**
+         * The mapped storage.
+         */
+        private final MagicalFarmMappedStorage storage;
+
+        /**
+         * Constructs a new mapped harness with an empty table.
+         */
+        private MappedHarness() {
+            try {
+                file = Files.createTempFile("magical_farm", ".map");
+                storage = new MagicalFarmMappedStorage(file);
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        @Override
+        public void put(final BlockPos location, final MagicalFarmBlock.FeatureData featureData) {
+            storage.setFeatureData(location, featureData);
+        }
+
+        @Override
+        public @Nullable MagicalFarmBlock.FeatureData get(final BlockPos location) {
+            return storage.getFeatureData(location);
+        }
+
+        @Override
+        public ListTag save() {
+            // The table is saved by forcing it to the disk, there is no tag to build
+            storage.force();
+            final var sizeList = new ListTag();
+            sizeList.add(IntTag.valueOf(storage.size()));
+            return sizeList;
+        }
+
+        @Override
+        public void close() {
+            try {
+                storage.close();
+            } catch (final IOException exception) {
+                throw new UncheckedIOException(exception);
+            } finally {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (final IOException exception) {
+                    // The mapping may still hold the file until it is collected
+                    file.toFile().deleteOnExit();
+                }
+            }
+        }
+    }
+}
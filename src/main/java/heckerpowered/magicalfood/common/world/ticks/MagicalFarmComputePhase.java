@@ -0,0 +1,339 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.ticks;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import com.mojang.logging.LogUtils;
+
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import heckerpowered.magicalfood.common.profiling.MagicalFarmEvents;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmBlockSnapshot;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.levelgen.XoroshiroRandomSource;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Runs the work of farm features in two phases. Features that split their work
+ * with {@link MagicalFarmBlock.Feature#prepare} read their inputs on the server
+ * thread and return a {@link Computation}. The computations are run in
+ * parallel on a fork/join pool, and the changes they return are applied on the
+ * server thread afterwards, in the order the computations were submitted.
+ * <p>
+ * Each computation gets its own random source, seeded from the level seed, the
+ * game time, the location and the feature. The results depend neither on the
+ * count of threads nor on the order the threads run in, so a server computing
+ * on a single thread produces exactly the same farms.
+ * <p>
+ * Computations are submitted while {@link MagicalFarmTickScheduler} drains its
+ * tasks, and the phase is run by the scheduler in batches of
+ * {@value #BATCH_SIZE}, so that the time spent here counts towards the farm
+ * tick budget. The pool is shut down when the server stops. All methods must
+ * be called on the server thread.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmComputePhase {
+    /**
+     * The count of submitted computations at which the scheduler runs the phase.
+     */
+    static final int BATCH_SIZE = 4096;
+
+    /**
+     * The count of computations below which a fork/join task computes them
+     * itself instead of splitting.
+     */
+    private static final int SPLIT_THRESHOLD = 64;
+
+    /**
+     * The logger of the compute phase.
+     */
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /**
+     * The computations submitted since the phase last ran, in submission order.
+     */
+    private static final ArrayList<Pending> PENDING = new ArrayList<>();
+
+    /**
+     * The pool the computations run on, or {@code null} if it has not been
+     * created yet.
+     */
+    private static @Nullable ForkJoinPool pool;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmComputePhase() {
+    }
+
+    /**
+     * Submit a computation of the specified feature at the specified location.
+     *
+     * @param level       The level where the block is.
+     * @param location    The location of the block.
+     * @param feature     The feature the computation belongs to.
+     * @param computation The computation.
+     */
+    public static final void submit(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+            @NotNull final MagicalFarmBlock.Feature feature, @NotNull final Computation computation) {
+        // Mix each input separately, so that neighboring locations get unrelated seeds
+        final var seed = HashCommon.mix(HashCommon.mix(HashCommon.mix(level.getSeed() ^ level.getGameTime())
+                ^ location.asLong()) ^ feature.getId());
+        PENDING.add(new Pending(level, location.immutable(), computation, seed));
+    }
+
+    /**
+     * Get the count of computations submitted since the phase last ran.
+     *
+     * @return The count of submitted computations.
+     */
+    static final int size() {
+        return PENDING.size();
+    }
+
+    /**
+     * Run all submitted computations, then apply their changes on the server
+     * thread in submission order.
+     */
+    static final void run() {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+
+        final var event = new MagicalFarmEvents.FeatureBatch();
+        event.begin();
+
+        // Take the batch first, applying the changes may submit new computations
+        final var batch = PENDING.toArray(new Pending[0]);
+        PENDING.clear();
+
+        final var changes = new Runnable[batch.length];
+        final var threads = getThreads();
+        if (threads <= 1 || batch.length <= SPLIT_THRESHOLD) {
+            compute(batch, changes, 0, batch.length);
+        } else {
+            getPool(threads).invoke(new ComputeAction(batch, changes, 0, batch.length));
+        }
+
+        var applied = 0;
+        for (var index = 0; index < batch.length; index++) {
+            if (changes[index] != null) {
+                final var start = MagicalFarmHeatmap.start();
+                changes[index].run();
+                MagicalFarmHeatmap.record(batch[index].level, batch[index].location,
+                        MagicalFarmHeatmap.Category.FEATURE, start);
+                applied++;
+            }
+        }
+
+        event.computations = batch.length;
+        event.changes = applied;
+        event.threads = threads <= 1 || batch.length <= SPLIT_THRESHOLD ? 1 : threads;
+        event.commit();
+    }
+
+    /**
+     * Compute the specified range of a batch on the current thread.
+     *
+     * @param batch   The batch of computations.
+     * @param changes The changes of the batch, written at the index of their
+     *                computation.
+     * @param from    The start of the range, inclusive.
+     * @param to      The end of the range, exclusive.
+     */
+    private static final void compute(final Pending[] batch, final Runnable[] changes, final int from,
+            final int to) {
+        for (var index = from; index < to; index++) {
+            final var pending = batch[index];
+            try {
+                changes[index] = pending.computation.compute(new XoroshiroRandomSource(pending.seed));
+            } catch (final RuntimeException exception) {
+                // A failing computation must not drop the rest of the batch
+                LOGGER.error("Failed to compute farm feature work at {}", pending.location, exception);
+            }
+        }
+    }
+
+    /**
+     * Get the configured count of threads.
+     *
+     * @return The count of threads, at least {@code 1}.
+     */
+    private static final int getThreads() {
+        final var threads = MagicalFoodConfig.SERVER.computeThreads.get();
+        return threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * Get the pool with the specified parallelism, the pool is created again if
+     * the configured count of threads changed.
+     *
+     * @param threads The count of threads.
+     * @return The pool.
+     */
+    private static final @NotNull ForkJoinPool getPool(final int threads) {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+
+            pool = new ForkJoinPool(threads, forkJoinPool -> {
+                final var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("Magical-Farm-Compute-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+
+        return pool;
+    }
+
+    /**
+     * This function is called when the server has stopped, shut the pool down so
+     * that its threads do not outlive the server, and drop the computations that
+     * were never run.
+     *
+     * @param event The server stopped event.
+     */
+    @SubscribeEvent
+    public static final void onServerStopped(@NotNull final ServerStoppedEvent event) {
+        PENDING.clear();
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * The work of a farm feature that is computed off the server thread. A
+     * computation captures everything it needs when it is created by
+     * {@link MagicalFarmBlock.Feature#prepare}, such as a
+     * {@link MagicalFarmBlockSnapshot} of the blocks it reads, and must not access
+     * the level or any other state that the server thread may modify.
+     *
+     * @author Heckerpowered
+     */
+    @FunctionalInterface
+    public interface Computation {
+        /**
+         * Compute the change to apply, possibly on another thread.
+         *
+         * @param random The random source of the computation, the only source of
+         *               randomness it may use.
+         * @return The change, which is applied on the server thread, or
+         *         {@code null} if nothing changes.
+         */
+        @Nullable
+        Runnable compute(@NotNull RandomSource random);
+    }
+
+    /**
+     * A submitted computation.
+     *
+     * @param level       The level where the block is.
+     * @param location    The location of the block.
+     * @param computation The computation.
+     * @param seed        The seed of the random source of the computation.
+     */
+    private record Pending(ServerLevel level, BlockPos location, Computation computation,
+            long seed) {
+    }
+
+    /**
+     * Computes a range of a batch, splitting it in halves while it is large.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    @MethodsReturnNonnullByDefault
+    @FieldsAreNonnullByDefault
+    private static final class ComputeAction extends RecursiveAction {
+        /**
+         * The serial version UID of the action, which is never serialized.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The batch of computations.
+         */
+        private final Pending[] batch;
+
+        /**
+         * The changes of the batch, written at the index of their computation.
+         */
+        private final Runnable[] changes;
+
+        /**
+         * The start of the range, inclusive.
+         */
+        private final int from;
+
+        /**
+         * The end of the range, exclusive.
+         */
+        private final int to;
+
+        /**
+         * Constructs a new action that computes the specified range.
+         *
+         * @param batch   The batch of computations.
+         * @param changes The changes of the batch.
+         * @param from    The start of the range, inclusive.
+         * @param to      The end of the range, exclusive.
+         */
+        private ComputeAction(final Pending[] batch, final Runnable[] changes, final int from, final int to) {
+            this.batch = batch;
+            this.changes = changes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected final void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                final var middle = (from + to) >>> 1;
+                invokeAll(new ComputeAction(batch, changes, from, middle),
+                        new ComputeAction(batch, changes, middle, to));
+                return;
+            }
+
+            MagicalFarmComputePhase.compute(batch, changes, from, to);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.ticks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Accumulates the time spent on magical farm work per chunk over a rolling
+ * window of {@value #WINDOW_SECONDS} seconds, so that the farms that cost the
+ * most can be found. The window is split into {@value #BUCKETS} buckets, and
+ * the oldest bucket is dropped each time a new one starts.
+ * <p>
+ * Collection is enabled by {@link MagicalFoodConfig.Server#heatmap}. A call
+ * site takes the start time from {@link #start()}, which does not read the
+ * clock while collection is disabled, and passes it to {@link #record}, which
+ * returns immediately in that case. All methods must be called on the server
+ * thread.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmHeatmap {
+    /**
+     * The length of the rolling window in seconds.
+     */
+    public static final int WINDOW_SECONDS = 60;
+
+    /**
+     * The count of buckets the window is split into.
+     */
+    private static final int BUCKETS = 6;
+
+    /**
+     * The length of a bucket in server ticks.
+     */
+    private static final int BUCKET_TICKS = WINDOW_SECONDS * 20 / BUCKETS;
+
+    /**
+     * The count of categories of work.
+     */
+    private static final int CATEGORIES = Category.values().length;
+
+    /**
+     * The cost of each chunk of each level, maps packed chunk positions to the
+     * cost of the chunk.
+     */
+    private static final Map<ServerLevel, Long2ObjectOpenHashMap<ChunkCost>> COSTS = new HashMap<>();
+
+    /**
+     * Whether collection is enabled, updated from the configuration each tick.
+     */
+    private static boolean enabled;
+
+    /**
+     * The sequence number of the current bucket.
+     */
+    private static long bucket;
+
+    /**
+     * The count of server ticks since the current bucket started.
+     */
+    private static int bucketAge;
+
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmHeatmap() {
+    }
+
+    /**
+     * Get the start time of work to be recorded.
+     *
+     * @return The current time in nanoseconds, or {@code 0} if collection is
+     *         disabled.
+     */
+    public static final long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the time of work at the specified location that started at the
+     * specified time.
+     *
+     * @param level    The level where the work was done.
+     * @param location The location the work belongs to.
+     * @param category The category of the work.
+     * @param start    The start time returned by {@link #start()}.
+     */
+    public static final void record(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+            @NotNull final Category category, final long start) {
+        if (start != 0L) {
+            record(level, ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4), category, start);
+        }
+    }
+
+    /**
+     * Record the time of work in the specified chunk that started at the
+     * specified time.
+     *
+     * @param level    The level where the work was done.
+     * @param chunk    The packed position of the chunk the work belongs to.
+     * @param category The category of the work.
+     * @param start    The start time returned by {@link #start()}.
+     */
+    public static final void record(@NotNull final ServerLevel level, final long chunk,
+            @NotNull final Category category, final long start) {
+        // Collection may have been disabled since the work started
+        if (start == 0L || !enabled) {
+            return;
+        }
+
+        final var nanos = System.nanoTime() - start;
+        COSTS.computeIfAbsent(level, key -> new Long2ObjectOpenHashMap<>())
+                .computeIfAbsent(chunk, key -> new ChunkCost()).add(category, nanos);
+    }
+
+    /**
+     * Returns a boolean that indicates whether collection is enabled.
+     *
+     * @return {@code true} if collection is enabled, {@code false} otherwise.
+     */
+    public static final boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the chunks that cost the most in the rolling window, in descending
+     * order of the total time.
+     *
+     * @param limit The maximum count of chunks.
+     * @return The chunks.
+     */
+    public static final @NotNull List<Entry> getTop(final int limit) {
+        final var entries = new ArrayList<Entry>();
+        for (final var levelCosts : COSTS.entrySet()) {
+            for (final var chunkCost : Long2ObjectMaps.fastIterable(levelCosts.getValue())) {
+                final var cost = chunkCost.getValue();
+                final var entry = new Entry(levelCosts.getKey(), new ChunkPos(chunkCost.getLongKey()),
+                        cost.get(Category.FEATURE), cost.get(Category.TICK), cost.get(Category.GROWTH));
+                if (entry.totalNanos() > 0L) {
+                    entries.add(entry);
+                }
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::totalNanos).reversed());
+        return entries.size() > limit ? entries.subList(0, limit) : entries;
+    }
+
+    /**
+     * This function is called at the start and the end of each server tick, the
+     * configuration is read and the window is advanced at the start of the tick.
+     *
+     * @param event The server tick event.
+     */
+    @SubscribeEvent
+    public static final void onServerTick(@NotNull final TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.START || !MagicalFoodConfig.SERVER_SPEC.isLoaded()) {
+            return;
+        }
+
+        enabled = MagicalFoodConfig.SERVER.heatmap.get();
+        if (!enabled) {
+            COSTS.clear();
+            return;
+        }
+
+        if (++bucketAge < BUCKET_TICKS) {
+            return;
+        }
+
+        // Start a new bucket, and drop the chunks that had no work in the window
+        bucketAge = 0;
+        bucket++;
+        for (final var levelCosts : COSTS.values()) {
+            levelCosts.values().removeIf(cost -> cost.lastBucket <= bucket - BUCKETS);
+        }
+    }
+
+    /**
+     * This function is called when a level is unloaded, drop the costs of the
+     * level so that the level can be garbage collected.
+     *
+     * @param event The level unload event.
+     */
+    @SubscribeEvent
+    public static final void onLevelUnload(@NotNull final LevelEvent.Unload event) {
+        if (event.getLevel() instanceof final ServerLevel level) {
+            COSTS.remove(level);
+        }
+    }
+
+    /**
+     * Represents the categories of magical farm work.
+     *
+     * @author Heckerpowered
+     */
+    public enum Category {
+        /**
+         * The work of the features enabled at magical farmland, run by
+         * {@link MagicalFarmTickScheduler}.
+         */
+        FEATURE,
+
+        /**
+         * The random ticks of magical farmland itself.
+         */
+        TICK,
+
+        /**
+         * The random ticks of crops planted on magical farmland.
+         */
+        GROWTH
+    }
+
+    /**
+     * Represents the cost of a chunk in the rolling window.
+     *
+     * @param level        The level of the chunk.
+     * @param chunk        The position of the chunk.
+     * @param featureNanos The time of feature work in nanoseconds.
+     * @param tickNanos    The time of random ticks of magical farmland in
+     *                     nanoseconds.
+     * @param growthNanos  The time of random ticks of crops in nanoseconds.
+     */
+    public record Entry(ServerLevel level, ChunkPos chunk, long featureNanos, long tickNanos, long growthNanos) {
+        /**
+         * Get the time of all work in nanoseconds.
+         *
+         * @return The time of all work in nanoseconds.
+         */
+        public long totalNanos() {
+            return featureNanos + tickNanos + growthNanos;
+        }
+    }
+
+    /**
+     * Accumulates the time of each category in each bucket of a single chunk.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    @MethodsReturnNonnullByDefault
+    @FieldsAreNonnullByDefault
+    private static final class ChunkCost {
+        /**
+         * The time in nanoseconds of each category in each bucket slot.
+         */
+        private final long[] nanos = new long[BUCKETS * CATEGORIES];
+
+        /**
+         * The sequence number of the bucket each slot currently holds.
+         */
+        private final long[] buckets = new long[BUCKETS];
+
+        /**
+         * The sequence number of the last bucket work was recorded in.
+         */
+        private long lastBucket;
+
+        /**
+         * Add the specified time to the current bucket.
+         *
+         * @param category The category of the work.
+         * @param time     The time in nanoseconds.
+         */
+        private void add(@NotNull final Category category, final long time) {
+            final var slot = (int) (bucket % BUCKETS);
+
+            // Reuse the slot of a bucket that left the window
+            if (buckets[slot] != bucket) {
+                buckets[slot] = bucket;
+                for (var index = 0; index < CATEGORIES; index++) {
+                    nanos[slot * CATEGORIES + index] = 0L;
+                }
+            }
+
+            nanos[slot * CATEGORIES + category.ordinal()] += time;
+            lastBucket = bucket;
+        }
+
+        /**
+         * Get the time of the specified category in the window.
+         *
+         * @param category The category of the work.
+         * @return The time in nanoseconds.
+         */
+        private long get(@NotNull final Category category) {
+            var time = 0L;
+            for (var slot = 0; slot < BUCKETS; slot++) {
+                if (buckets[slot] > bucket - BUCKETS) {
+                    time += nanos[slot * CATEGORIES + category.ordinal()];
+                }
+            }
+
+            return time;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.common.world.ticks;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.config.MagicalFoodConfig;
+import heckerpowered.magicalfood.common.profiling.MagicalFarmEvents;
+import heckerpowered.magicalfood.common.world.level.MagicalFarmNeighborAccess;
+import heckerpowered.magicalfood.common.world.level.block.MagicalFarmBlock;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.FieldsAreNonnullByDefault;
+import net.minecraft.MethodsReturnNonnullByDefault;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * A scheduler that bounds the time all magical farm processing may take in a
+ * single server tick. Work is queued per chunk and drained at the end of each
+ * server tick in a round-robin order over chunks, one task per chunk per round,
+ * until the time budget configured by
+ * {@link MagicalFoodConfig.Server#farmTickBudget} is exhausted. Work that does
+ * not fit into the budget carries over to the next tick, and since the round
+ * continues from where it stopped, no farm can be starved by others.
+ * <p>
+ * The work that features prepare for {@link MagicalFarmComputePhase} is
+ * computed in batches while draining and at the end of the drain, within the
+ * same budget.
+ *
+ * @author Heckerpowered
+ * @see MagicalFarmBlock
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@FieldsAreNonnullByDefault
+@Mod.EventBusSubscriber
+public final class MagicalFarmTickScheduler {
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmTickScheduler() {
+    }
+
+    /**
+     * The pending work of each level, maps packed chunk positions to the queue of
+     * the chunk.
+     */
+    private static final Map<ServerLevel, Long2ObjectOpenHashMap<ChunkQueue>> QUEUES = new HashMap<>();
+
+    /**
+     * The chunks that have pending work, in the order they will be served.
+     */
+    private static final ArrayDeque<ChunkQueue> ROUND_ROBIN = new ArrayDeque<>();
+
+    /**
+     * The count of tasks that are currently pending.
+     */
+    private static int queueDepth;
+
+    /**
+     * The count of tasks processed in the last tick.
+     */
+    private static int lastProcessed;
+
+    /**
+     * The count of tasks deferred to the next tick in the last tick.
+     */
+    private static int lastDeferred;
+
+    /**
+     * The time in nanoseconds spent on processing in the last tick.
+     */
+    private static long lastNanos;
+
+    /**
+     * The count of tasks processed since the server started.
+     */
+    private static long totalProcessed;
+
+    /**
+     * The sum of tasks deferred at the end of each tick since the server started,
+     * a task deferred over several ticks is counted once per tick.
+     */
+    private static long totalDeferred;
+
+    /**
+     * The count of tasks that were merged into a task already pending for the
+     * same location.
+     */
+    private static long totalCoalesced;
+
+    /**
+     * Schedule the specified task at the specified location. If there is already
+     * a task pending at the same location, the task will be merged into the
+     * pending one and will not run, this keeps the queue depth bounded by the
+     * count of magical farmland even if processing falls behind.
+     *
+     * @param level    The level where the task runs.
+     * @param location The location of the block the task belongs to.
+     * @param task     The task to run.
+     */
+    public static final void schedule(@NotNull final ServerLevel level, @NotNull final BlockPos location,
+            @NotNull final Runnable task) {
+        // Find the queue of the chunk, allocate a new one if there is no work pending
+        // in the chunk
+        final var chunk = ChunkPos.asLong(location.getX() >> 4, location.getZ() >> 4);
+        final var queues = QUEUES.computeIfAbsent(level, key -> new Long2ObjectOpenHashMap<>());
+        var queue = queues.get(chunk);
+        if (queue == null) {
+            queue = new ChunkQueue(level, chunk);
+            queues.put(chunk, queue);
+
+            // New chunks are served after all chunks already waiting
+            ROUND_ROBIN.addLast(queue);
+        }
+
+        // Merge the task into the pending one if any
+        if (queue.tasks.putIfAbsent(location.asLong(), task) != null) {
+            totalCoalesced++;
+            return;
+        }
+
+        queueDepth++;
+    }
+
+    /**
+     * Run the pending tasks until the time budget is exhausted. At least one task
+     * runs each tick so that processing can never stall completely.
+     *
+     * @param budgetNanos The time budget in nanoseconds.
+     */
+    private static final void drain(final long budgetNanos) {
+        final var start = System.nanoTime();
+        final var deadline = start + budgetNanos;
+        final var event = new MagicalFarmEvents.Tick();
+        event.begin();
+        var processed = 0;
+
+        // Farm work reads its neighbors through the neighbor access, which caches
+        // the chunks for the whole drain
+        MagicalFarmNeighborAccess.beginBatch();
+        try {
+            while (!ROUND_ROBIN.isEmpty()) {
+                // Take one task from the chunk at the head of the round
+                final var queue = ROUND_ROBIN.pollFirst();
+                final var task = queue.tasks.removeFirst();
+                queueDepth--;
+
+                // Chunks may have been unloaded since the task was scheduled, drop the task
+                // instead of loading the chunk again
+                if (queue.level.shouldTickBlocksAt(queue.chunk)) {
+                    final var taskStart = MagicalFarmHeatmap.start();
+                    final var chunkEvent = new MagicalFarmEvents.Chunk();
+                    chunkEvent.begin();
+                    task.run();
+                    chunkEvent.end();
+                    if (chunkEvent.shouldCommit()) {
+                        chunkEvent.dimension = queue.level.dimension().location().toString();
+                        chunkEvent.chunkX = ChunkPos.getX(queue.chunk);
+                        chunkEvent.chunkZ = ChunkPos.getZ(queue.chunk);
+                        chunkEvent.commit();
+                    }
+
+                    MagicalFarmHeatmap.record(queue.level, queue.chunk, MagicalFarmHeatmap.Category.FEATURE,
+                            taskStart);
+                    processed++;
+
+                    // Compute the work prepared by the tasks so far once a batch is full
+                    if (MagicalFarmComputePhase.size() >= MagicalFarmComputePhase.BATCH_SIZE) {
+                        MagicalFarmComputePhase.run();
+                    }
+                }
+
+                // Put the chunk back to the end of the round if it has more work
+                if (queue.tasks.isEmpty()) {
+                    QUEUES.get(queue.level).remove(queue.chunk);
+                } else {
+                    ROUND_ROBIN.addLast(queue);
+                }
+
+                if (System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+            }
+
+            // Tasks only prepare the work of two-phase features, so it is finished here
+            MagicalFarmComputePhase.run();
+        } finally {
+            MagicalFarmNeighborAccess.endBatch();
+        }
+
+        // Update metrics
+        lastNanos = System.nanoTime() - start;
+        lastProcessed = processed;
+        lastDeferred = queueDepth;
+        totalProcessed += processed;
+        totalDeferred += queueDepth;
+
+        event.processed = processed;
+        event.deferred = queueDepth;
+        event.pendingChunks = ROUND_ROBIN.size();
+        event.commit();
+    }
+
+    /**
+     * This function is called at the start and the end of each server tick, the
+     * pending work is drained at the end of the tick.
+     *
+     * @param event The server tick event.
+     */
+    @SubscribeEvent
+    public static final void onServerTick(@NotNull final TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || ROUND_ROBIN.isEmpty()) {
+            return;
+        }
+
+        drain((long) (MagicalFoodConfig.SERVER.farmTickBudget.get() * 1_000_000.0D));
+    }
+
+    /**
+     * This function is called when a level is unloaded, drop all work pending in
+     * the level so that the level can be garbage collected.
+     *
+     * @param event The level unload event.
+     */
+    @SubscribeEvent
+    public static final void onLevelUnload(@NotNull final LevelEvent.Unload event) {
+        if (!(event.getLevel() instanceof final ServerLevel level)) {
+            return;
+        }
+
+        final var queues = QUEUES.remove(level);
+        if (queues == null) {
+            return;
+        }
+
+        for (final var queue : queues.values()) {
+            queueDepth -= queue.tasks.size();
+        }
+
+        ROUND_ROBIN.removeIf(queue -> queue.level == level);
+    }
+
+    /**
+     * Get the count of tasks that are currently pending.
+     *
+     * @return The count of tasks that are currently pending.
+     */
+    public static final int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Get the count of chunks that currently have pending work.
+     *
+     * @return The count of chunks that currently have pending work.
+     */
+    public static final int getPendingChunks() {
+        return ROUND_ROBIN.size();
+    }
+
+    /**
+     * Get the count of tasks processed in the last tick.
+     *
+     * @return The count of tasks processed in the last tick.
+     */
+    public static final int getLastProcessed() {
+        return lastProcessed;
+    }
+
+    /**
+     * Get the count of tasks deferred to the next tick in the last tick.
+     *
+     * @return The count of tasks deferred to the next tick in the last tick.
+     */
+    public static final int getLastDeferred() {
+        return lastDeferred;
+    }
+
+    /**
+     * Get the time in nanoseconds spent on processing in the last tick.
+     *
+     * @return The time in nanoseconds spent on processing in the last tick.
+     */
+    public static final long getLastNanos() {
+        return lastNanos;
+    }
+
+    /**
+     * Get the count of tasks processed since the server started.
+     *
+     * @return The count of tasks processed since the server started.
+     */
+    public static final long getTotalProcessed() {
+        return totalProcessed;
+    }
+
+    /**
+     * Get the sum of tasks deferred at the end of each tick since the server
+     * started.
+     *
+     * @return The sum of tasks deferred at the end of each tick.
+     */
+    public static final long getTotalDeferred() {
+        return totalDeferred;
+    }
+
+    /**
+     * Get the count of tasks that were merged into a pending task.
+     *
+     * @return The count of tasks that were merged into a pending task.
+     */
+    public static final long getTotalCoalesced() {
+        return totalCoalesced;
+    }
+
+    /**
+     * Represents the pending work of a single chunk, tasks are keyed by the packed
+     * location of their block and run in the order they were scheduled.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    @MethodsReturnNonnullByDefault
+    @FieldsAreNonnullByDefault
+    private static final class ChunkQueue {
+        /**
+         * The level the chunk belongs to.
+         */
+        private final ServerLevel level;
+
+        /**
+         * The packed position of the chunk.
+         */
+        private final long chunk;
+
+        /**
+         * The pending tasks, keyed by the packed location of their block.
+         */
+        private final Long2ObjectLinkedOpenHashMap<Runnable> tasks = new Long2ObjectLinkedOpenHashMap<>();
+
+        /**
+         * Constructs a new empty chunk queue.
+         *
+         * @param level The level the chunk belongs to.
+         * @param chunk The packed position of the chunk.
+         */
+        private ChunkQueue(@NotNull final ServerLevel level, final long chunk) {
+            this.level = level;
+            this.chunk = chunk;
+        }
+    }
+}
@@ -0,0 +1,1055 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+import heckerpowered.magicalfood.common.world.level.data.MagicalFarmDataFormat;
+
+/**
+ * A command-line tool that inspects, repairs and compacts the
+ * {@code magical_farm} saved data of a world without starting Minecraft. The
+ * tool is the main class of the mod jar, so it can be run with
+ * {@code java -jar magicalfood.jar <inspect|compact> <world or file>}.
+ * <p>
+ * Files are processed in a streaming fashion: entries are read one by one and
+ * only a bounded number of them is buffered to group them by chunk, so files
+ * with millions of entries can be processed with little memory. Entries with
+ * locations outside the world or with feature IDs unknown to the world's
+ * {@code level.dat} are dropped by {@code compact}.
+ * <p>
+ * Changes made since a file was last written by the server are kept in the
+ * {@code magical_farm.journal} of the dimension, and replayed on top of the file
+ * when the world is loaded. The tool does not read journals, so {@code inspect}
+ * warns that its report misses their changes, and {@code compact} refuses to
+ * rewrite a file with a journal, which would otherwise be replayed on top of
+ * the compacted file and bring back dropped entries. Starting and stopping the
+ * world once folds the journal into the file and deletes it.
+ *
+ * @author Heckerpowered
+ * @see MagicalFarmDataFormat
+ */
+@ParametersAreNonnullByDefault
+public final class MagicalFarmDataTool {
+    /**
+     * Do not let anyone instantiate this class
+     */
+    private MagicalFarmDataTool() {
+    }
+
+    /**
+     * The name of the farm feature registry in the registry snapshot of
+     * {@code level.dat}.
+     */
+    private static final String FEATURE_REGISTRY = "magicalfood:farm_feature";
+
+    /**
+     * The maximum count of blocks accepted in a single chunk record, which is a
+     * full chunk of the maximum world height.
+     */
+    private static final int MAX_CHUNK_BLOCKS = 16 * 16 * 4096;
+
+    /**
+     * The maximum count of feature words accepted per block.
+     */
+    private static final int MAX_WORDS = 16;
+
+    /**
+     * The usage of the tool.
+     */
+    private static final String USAGE = """
+            Usage: java -jar magicalfood.jar <inspect|compact> <world directory|magical_farm.dat> [options]
+
+              inspect            Report entry count, feature distribution and size.
+              compact            Report, drop invalid entries and rewrite the file in the compact layout.
+
+            Options:
+              --level-dat <file> Read the farm feature IDs from the specified level.dat,
+                                 by default the level.dat of the world directory is used.
+              --features <count> Treat feature IDs below the count as valid instead of reading level.dat.
+              --min-y <y>        The minimum valid y coordinate, inclusive (default -64).
+              --max-y <y>        The maximum valid y coordinate, exclusive (default 320).
+              --buffer <entries> The count of entries buffered to group them by chunk (default 262144).
+              --output <file>    Write the result to the specified file, only for a single input file.
+              --no-backup        Do not keep the original file as <name>.bak when rewriting in place.
+
+            Files with a magical_farm.journal of changes not yet written by the server cannot be
+            compacted, start and stop the world once to fold the journal into the files first.
+            """;
+
+    /**
+     * The entry point of the tool.
+     *
+     * @param args The command-line arguments, see {@link #USAGE}.
+     */
+    public static void main(final String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (final IOException | IllegalArgumentException exception) {
+            System.err.println("error: " + exception.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run the tool with the specified arguments.
+     *
+     * @param args The command-line arguments.
+     * @return The exit code.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final int run(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.print(USAGE);
+            return 2;
+        }
+
+        final boolean rewrite;
+        switch (args[0]) {
+            case "inspect" -> rewrite = false;
+            case "compact" -> rewrite = true;
+            default -> {
+                System.err.print(USAGE);
+                return 2;
+            }
+        }
+
+        final var input = Path.of(args[1]);
+        final var options = Options.parse(args, 2);
+
+        // Locate the files to process
+        final List<Path> files;
+        if (Files.isDirectory(input)) {
+            try (final var stream = Files.walk(input, 6)) {
+                files = stream.filter(MagicalFarmDataTool::isDataFile).sorted().toList();
+            }
+        } else {
+            files = List.of(input);
+        }
+
+        if (files.isEmpty()) {
+            System.err.println("error: no " + MagicalFarmDataFormat.NAME + ".dat found under " + input);
+            return 1;
+        }
+
+        if (options.output != null && files.size() != 1) {
+            throw new IllegalArgumentException("--output requires a single input file");
+        }
+
+        // Read the feature IDs the world knows about
+        final var levelDat = options.levelDat != null ? options.levelDat
+                : Files.isDirectory(input) ? input.resolve("level.dat") : null;
+        final Map<Integer, String> featureNames = levelDat != null && Files.isRegularFile(levelDat)
+                ? readFeatureNames(levelDat)
+                : new TreeMap<>();
+
+        final BitSet knownFeatures;
+        if (options.features >= 0) {
+            knownFeatures = new BitSet();
+            knownFeatures.set(0, options.features);
+        } else if (!featureNames.isEmpty()) {
+            knownFeatures = new BitSet();
+            featureNames.keySet().forEach(knownFeatures::set);
+        } else {
+            knownFeatures = null;
+            System.out.println("warning: no farm feature IDs known, feature IDs are not validated");
+        }
+
+        // The changes in a journal are not part of the files
+        final var journals = new ArrayList<Path>();
+        for (final var file : files) {
+            for (final var journal : getJournals(file)) {
+                if (Files.isRegularFile(journal) && !journals.contains(journal)) {
+                    journals.add(journal);
+                }
+            }
+        }
+
+        for (final var journal : journals) {
+            (rewrite ? System.err : System.out).println((rewrite ? "error: " : "warning: ") + journal
+                    + " holds changes not yet written to the data files");
+        }
+
+        if (rewrite && !journals.isEmpty()) {
+            System.err.println("error: start and stop the world once to fold the journal into the data files");
+            return 1;
+        }
+
+        for (final var file : files) {
+            process(file, options, knownFeatures, featureNames, rewrite);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns a boolean that indicates whether the specified path is a
+     * {@code magical_farm.dat} in the {@code data} folder of a dimension, or a
+     * region file of evicted chunks.
+     *
+     * @param path The path to test.
+     * @return {@code true} if the path is a farm data file, {@code false}
+     *         otherwise.
+     */
+    private static final boolean isDataFile(@NotNull final Path path) {
+        final var name = path.getFileName().toString();
+        final var parent = path.getParent();
+        if (parent == null) {
+            return false;
+        }
+
+        // Region files of evicted chunks have the same layout
+        if (name.startsWith("r.") && name.endsWith(".dat")
+                && parent.getFileName().toString().equals(MagicalFarmDataFormat.NAME)) {
+            return true;
+        }
+
+        return name.equals(MagicalFarmDataFormat.NAME + ".dat") && parent.getFileName().toString().equals("data");
+    }
+
+    /**
+     * Get the journals whose changes are replayed on top of the specified farm data
+     * file, the journal and the journal moved aside by an unfinished save. The
+     * journal of a dimension is next to its {@code magical_farm.dat}, and also
+     * covers the region files of evicted chunks in the {@code magical_farm}
+     * folder.
+     *
+     * @param file The farm data file.
+     * @return The paths of the journals, which may not exist.
+     */
+    private static final @NotNull List<Path> getJournals(@NotNull final Path file) {
+        final var parent = file.getParent();
+        final var dataFolder = parent != null && parent.getFileName() != null
+                && parent.getFileName().toString().equals(MagicalFarmDataFormat.NAME)
+                && file.getFileName().toString().startsWith("r.") ? parent.getParent() : parent;
+        final var journal = dataFolder == null ? Path.of(MagicalFarmDataFormat.NAME + ".journal")
+                : dataFolder.resolve(MagicalFarmDataFormat.NAME + ".journal");
+        return List.of(journal, journal.resolveSibling(journal.getFileName() + ".old"));
+    }
+
+    /**
+     * Read the farm feature IDs and names from the registry snapshot that Forge
+     * stores in {@code level.dat}.
+     *
+     * @param levelDat The {@code level.dat} file.
+     * @return The map that maps feature IDs to names, empty if there is no
+     *         snapshot of the farm feature registry.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final @NotNull Map<Integer, String> readFeatureNames(@NotNull final Path levelDat)
+            throws IOException {
+        final var names = new TreeMap<Integer, String>();
+        try (final var input = new NbtInput(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(levelDat))))) {
+            if (input.readType() != NbtInput.COMPOUND) {
+                throw new IOException(levelDat + " is not a compound");
+            }
+
+            input.readString();
+
+            // Walk down root/fml/Registries/<registry>/ids, skipping everything else
+            if (!enterCompound(input, "fml") || !enterCompound(input, "Registries")
+                    || !enterCompound(input, FEATURE_REGISTRY)) {
+                return names;
+            }
+
+            for (var type = input.readType(); type != NbtInput.END; type = input.readType()) {
+                final var name = input.readString();
+                if (!name.equals("ids") || type != NbtInput.LIST) {
+                    input.skip(type);
+                    continue;
+                }
+
+                final var elementType = input.readType();
+                final var length = input.readInt();
+                for (var index = 0; index < length; index++) {
+                    if (elementType != NbtInput.COMPOUND) {
+                        input.skip(elementType);
+                        continue;
+                    }
+
+                    // Each element maps a name (K) to an ID (V)
+                    String key = null;
+                    var value = -1;
+                    for (var entryType = input.readType(); entryType != NbtInput.END; entryType = input.readType()) {
+                        final var entryName = input.readString();
+                        if (entryName.equals("K") && entryType == NbtInput.STRING) {
+                            key = input.readString();
+                        } else if (entryName.equals("V") && entryType == NbtInput.INT) {
+                            value = input.readInt();
+                        } else {
+                            input.skip(entryType);
+                        }
+                    }
+
+                    if (key != null && value >= 0) {
+                        names.put(value, key);
+                    }
+                }
+
+                return names;
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Skip the entries of the current compound until the compound with the
+     * specified name is found.
+     *
+     * @param input The input positioned inside a compound.
+     * @param name  The name of the compound to enter.
+     * @return {@code true} if the compound is found and the input is positioned
+     *         inside it, {@code false} if the current compound ended.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final boolean enterCompound(@NotNull final NbtInput input, @NotNull final String name)
+            throws IOException {
+        for (var type = input.readType(); type != NbtInput.END; type = input.readType()) {
+            final var entryName = input.readString();
+            if (type == NbtInput.COMPOUND && entryName.equals(name)) {
+                return true;
+            }
+
+            input.skip(type);
+        }
+
+        return false;
+    }
+
+    /**
+     * Process a single {@code magical_farm.dat} file.
+     *
+     * @param file          The file to process.
+     * @param options       The options of the tool.
+     * @param knownFeatures The feature IDs that are valid, or {@code null} if
+     *                      feature IDs should not be validated.
+     * @param featureNames  The names of the features, used for the report.
+     * @param rewrite       Whether the file should be rewritten.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final void process(@NotNull final Path file, @NotNull final Options options,
+            @Nullable final BitSet knownFeatures, @NotNull final Map<Integer, String> featureNames,
+            final boolean rewrite) throws IOException {
+        final var target = options.output != null ? options.output : file;
+        final var records = file.resolveSibling(file.getFileName() + ".chunks.tmp");
+        final var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        final var size = Files.size(file);
+        final var compactor = new Compactor(options, knownFeatures);
+        final var rootTags = new ByteArrayOutputStream();
+        final long bytesRead;
+
+        try (final var input = new NbtInput(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))));
+                final var rootOutput = new NbtOutput(rootTags);
+                final var recordOutput = rewrite
+                        ? new NbtOutput(new BufferedOutputStream(Files.newOutputStream(records)))
+                        : null) {
+            compactor.output = recordOutput;
+
+            if (input.readType() != NbtInput.COMPOUND) {
+                throw new IOException(file + " is not a compound");
+            }
+
+            input.readString();
+
+            // Keep every root tag except the data itself, such as the data version
+            for (var type = input.readType(); type != NbtInput.END; type = input.readType()) {
+                final var name = input.readString();
+                if (name.equals("data") && type == NbtInput.COMPOUND) {
+                    readData(input, compactor);
+                } else {
+                    rootOutput.writeHeader(type, name);
+                    input.copy(type, rootOutput);
+                }
+            }
+
+            compactor.flushAll();
+            bytesRead = input.getBytesRead();
+        }
+
+        if (rewrite) {
+            try {
+                writeCompact(temporary, rootTags.toByteArray(), records, compactor.records, compactor.spilled);
+            } finally {
+                Files.deleteIfExists(records);
+            }
+
+            // Keep the original file unless told otherwise, then replace it
+            if (target.equals(file) && !options.noBackup) {
+                Files.copy(file, file.resolveSibling(file.getFileName() + ".bak"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException exception) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        report(file, size, bytesRead, compactor, featureNames, rewrite ? Files.size(target) : -1);
+    }
+
+    /**
+     * Read the {@code data} compound of the saved data, accepting both the chunk
+     * layout and the legacy layout.
+     *
+     * @param input     The input positioned inside the {@code data} compound.
+     * @param compactor The compactor that receives the entries.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final void readData(@NotNull final NbtInput input, @NotNull final Compactor compactor)
+            throws IOException {
+        for (var type = input.readType(); type != NbtInput.END; type = input.readType()) {
+            final var name = input.readString();
+            if (name.equals(MagicalFarmDataFormat.VERSION) && type == NbtInput.INT) {
+                compactor.version = input.readInt();
+            } else if (name.equals(MagicalFarmDataFormat.CHUNKS) && type == NbtInput.LIST) {
+                final var elementType = input.readType();
+                final var length = input.readInt();
+                for (var index = 0; index < length; index++) {
+                    if (elementType == NbtInput.COMPOUND) {
+                        readChunk(input, compactor);
+                    } else {
+                        input.skip(elementType);
+                        compactor.malformed++;
+                    }
+                }
+            } else if (name.equals(MagicalFarmDataFormat.SPILLED) && type == NbtInput.LONG_ARRAY) {
+                // Chunks evicted to region files are kept as they are
+                compactor.spilled = input.readLongArray(Integer.MAX_VALUE - 8);
+            } else if (type == NbtInput.LONG_ARRAY) {
+                // Legacy entry, the name is the location in the form of x,y,z
+                final var data = input.readLongArray(MAX_WORDS);
+                final var coordinates = name.split(",", 3);
+                try {
+                    compactor.accept(Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1]),
+                            Integer.parseInt(coordinates[2]), data);
+                } catch (final NumberFormatException | ArrayIndexOutOfBoundsException exception) {
+                    compactor.entries++;
+                    compactor.invalidLocations++;
+                }
+            } else {
+                input.skip(type);
+                compactor.malformed++;
+            }
+        }
+    }
+
+    /**
+     * Read a single chunk record of the chunk layout, accepting both the section
+     * layout and the layout of version {@code 1}.
+     *
+     * @param input     The input positioned inside the chunk compound.
+     * @param compactor The compactor that receives the entries.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final void readChunk(@NotNull final NbtInput input, @NotNull final Compactor compactor)
+            throws IOException {
+        long[] blocks = null;
+        long[] features = null;
+        var words = -1;
+        var chunk = 0L;
+        var hasChunk = false;
+        final var sections = new ArrayList<Section>();
+
+        for (var type = input.readType(); type != NbtInput.END; type = input.readType()) {
+            final var name = input.readString();
+            if (name.equals(MagicalFarmDataFormat.BLOCKS) && type == NbtInput.LONG_ARRAY) {
+                blocks = input.readLongArray(MAX_CHUNK_BLOCKS);
+            } else if (name.equals(MagicalFarmDataFormat.WORDS) && type == NbtInput.INT) {
+                words = input.readInt();
+            } else if (name.equals(MagicalFarmDataFormat.FEATURES) && type == NbtInput.LONG_ARRAY) {
+                features = input.readLongArray(MAX_CHUNK_BLOCKS * MAX_WORDS);
+            } else if (name.equals(MagicalFarmDataFormat.CHUNK_POS) && type == NbtInput.LONG) {
+                chunk = input.readLong();
+                hasChunk = true;
+            } else if (name.equals(MagicalFarmDataFormat.SECTIONS) && type == NbtInput.LIST) {
+                final var elementType = input.readType();
+                final var length = input.readInt();
+                for (var index = 0; index < length; index++) {
+                    if (elementType == NbtInput.COMPOUND) {
+                        sections.add(readSection(input));
+                    } else {
+                        input.skip(elementType);
+                        compactor.malformed++;
+                    }
+                }
+            } else {
+                input.skip(type);
+            }
+        }
+
+        if (blocks == null && features == null) {
+            // Section layout, the blocks are located relative to the chunk position
+            if (!hasChunk) {
+                compactor.malformed++;
+                return;
+            }
+
+            for (final var section : sections) {
+                readSection(section, chunk, compactor);
+            }
+
+            return;
+        }
+
+        // The chunk position of the layout of version 1 is derived from the blocks
+        if (blocks == null || features == null || words < 0 || words > MAX_WORDS
+                || features.length != blocks.length * words) {
+            compactor.malformed++;
+            return;
+        }
+
+        for (var index = 0; index < blocks.length; index++) {
+            final var data = new long[words];
+            System.arraycopy(features, index * words, data, 0, words);
+            compactor.accept(MagicalFarmDataFormat.unpackX(blocks[index]),
+                    MagicalFarmDataFormat.unpackY(blocks[index]), MagicalFarmDataFormat.unpackZ(blocks[index]), data);
+        }
+    }
+
+    /**
+     * Read a single section of a chunk record. The tags are only collected, the
+     * chunk position may follow the sections.
+     *
+     * @param input The input positioned inside the section compound.
+     * @return The section.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final @NotNull Section readSection(@NotNull final NbtInput input) throws IOException {
+        final var section = new Section();
+        for (var type = input.readType(); type != NbtInput.END; type = input.readType()) {
+            final var name = input.readString();
+            if (name.equals(MagicalFarmDataFormat.SECTION_Y) && type == NbtInput.INT) {
+                section.y = input.readInt();
+            } else if (name.equals(MagicalFarmDataFormat.WORDS) && type == NbtInput.INT) {
+                section.words = input.readInt();
+            } else if (name.equals(MagicalFarmDataFormat.PALETTE) && type == NbtInput.LONG_ARRAY) {
+                section.palette = input.readLongArray(MagicalFarmDataFormat.SECTION_CELLS * MAX_WORDS);
+            } else if (name.equals(MagicalFarmDataFormat.DATA) && type == NbtInput.LONG_ARRAY) {
+                section.data = input.readLongArray(MagicalFarmDataFormat.SECTION_CELLS);
+            } else {
+                input.skip(type);
+            }
+        }
+
+        return section;
+    }
+
+    /**
+     * Pass the blocks of a section to the compactor.
+     *
+     * @param section   The section.
+     * @param chunk     The packed position of the chunk of the section.
+     * @param compactor The compactor that receives the entries.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final void readSection(@NotNull final Section section, final long chunk,
+            @NotNull final Compactor compactor) throws IOException {
+        final var words = section.words;
+        final var palette = section.palette;
+        if (palette == null || section.data == null || words <= 0 || words > MAX_WORDS
+                || palette.length % words != 0) {
+            compactor.malformed++;
+            return;
+        }
+
+        final var paletteSize = palette.length / words;
+        final var bits = MagicalFarmDataFormat.getIndexBits(paletteSize);
+        if (section.data.length != MagicalFarmDataFormat.getDataLength(bits)) {
+            compactor.malformed++;
+            return;
+        }
+
+        final var minX = MagicalFarmDataFormat.unpackChunkX(chunk) << 4;
+        final var minY = section.y << 4;
+        final var minZ = MagicalFarmDataFormat.unpackChunkZ(chunk) << 4;
+        for (var cell = 0; cell < MagicalFarmDataFormat.SECTION_CELLS; cell++) {
+            final var index = MagicalFarmDataFormat.getIndex(section.data, bits, cell);
+            if (index == 0) {
+                continue;
+            }
+
+            if (index > paletteSize) {
+                compactor.entries++;
+                compactor.malformed++;
+                continue;
+            }
+
+            compactor.accept(minX | cell & 15, minY | cell >> 8, minZ | (cell >> 4) & 15,
+                    Arrays.copyOfRange(palette, (index - 1) * words, index * words));
+        }
+    }
+
+    /**
+     * Write the compact file from the root tags and the chunk records written
+     * before. The count of chunk records is only known after all entries are
+     * read, so the records are first written to a separate file and copied here.
+     *
+     * @param file     The file to write.
+     * @param rootTags The encoded root tags other than the data.
+     * @param records  The file that contains the encoded chunk records.
+     * @param count    The count of chunk records.
+     * @param spilled  The packed positions of evicted chunks, or {@code null} if
+     *                 the file has none.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static final void writeCompact(@NotNull final Path file, final byte[] rootTags,
+            @NotNull final Path records, final int count, @Nullable final long[] spilled) throws IOException {
+        try (final var output = new NbtOutput(
+                new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file))))) {
+            // Root compound and the tags kept from the original file
+            output.writeHeader(NbtInput.COMPOUND, "");
+            output.writeRaw(rootTags);
+
+            // The data compound
+            output.writeHeader(NbtInput.COMPOUND, "data");
+            output.writeHeader(NbtInput.INT, MagicalFarmDataFormat.VERSION);
+            output.writeInt(MagicalFarmDataFormat.CURRENT_VERSION);
+            output.writeHeader(NbtInput.LIST, MagicalFarmDataFormat.CHUNKS);
+            output.writeByte(NbtInput.COMPOUND);
+            output.writeInt(count);
+            try (final var recordStream = Files.newInputStream(records)) {
+                output.writeRaw(recordStream);
+            }
+
+            if (spilled != null) {
+                output.writeHeader(NbtInput.LONG_ARRAY, MagicalFarmDataFormat.SPILLED);
+                output.writeLongArray(spilled, spilled.length);
+            }
+
+            output.writeByte(NbtInput.END);
+            output.writeByte(NbtInput.END);
+        }
+    }
+
+    /**
+     * Print the report of a processed file.
+     *
+     * @param file         The processed file.
+     * @param size         The size of the file before processing.
+     * @param bytesRead    The uncompressed size of the file.
+     * @param compactor    The compactor that processed the entries.
+     * @param featureNames The names of the features.
+     * @param written      The size of the rewritten file, or a negative value if
+     *                     the file was not rewritten.
+     */
+    private static final void report(@NotNull final Path file, final long size, final long bytesRead,
+            @NotNull final Compactor compactor, @NotNull final Map<Integer, String> featureNames,
+            final long written) {
+        System.out.println(file);
+        System.out.println("  layout:    " + (compactor.version > 0 ? "chunked v" + compactor.version : "legacy"));
+        System.out.printf("  size:      %,d bytes compressed, %,d bytes uncompressed%n", size, bytesRead);
+        System.out.printf("  entries:   %,d read, %,d valid%n", compactor.entries, compactor.valid);
+        if (compactor.spilled != null) {
+            System.out.printf("  evicted:   %,d chunks in region files%n", compactor.spilled.length);
+        }
+
+        System.out.printf("  dropped:   %,d invalid locations, %,d unknown features, %,d malformed tags%n",
+                compactor.invalidLocations, compactor.invalidFeatures, compactor.malformed);
+
+        System.out.println("  features:");
+        for (var featureID = 0; featureID < compactor.distribution.length; featureID++) {
+            if (compactor.distribution[featureID] != 0) {
+                System.out.printf("    %4d %-40s %,d%n", featureID, featureNames.getOrDefault(featureID, "?"),
+                        compactor.distribution[featureID]);
+            }
+        }
+
+        if (written >= 0) {
+            System.out.printf("  written:   %,d bytes compressed, %,d chunk records, %,d duplicates merged%n", written,
+                    compactor.records, compactor.duplicates);
+        }
+    }
+
+    /**
+     * Receives the entries read from a file, validates and counts them, and
+     * groups the valid entries by chunk before writing them as chunk records.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    private static final class Compactor {
+        /**
+         * The options of the tool.
+         */
+        private final Options options;
+
+        /**
+         * The feature IDs that are valid, or {@code null} if feature IDs should not
+         * be validated.
+         */
+        @Nullable
+        private final BitSet knownFeatures;
+
+        /**
+         * The output the chunk records are written to, or {@code null} if the file
+         * is only inspected.
+         */
+        @Nullable
+        private NbtOutput output;
+
+        /**
+         * The buffered entries, grouped by chunk in the order of last access.
+         */
+        private final LinkedHashMap<Long, Map<Long, long[]>> buffers = new LinkedHashMap<>(16, 0.75F, true);
+
+        /**
+         * The count of buffered entries.
+         */
+        private long buffered;
+
+        /**
+         * The version of the layout, 0 for the legacy layout.
+         */
+        private int version;
+
+        /**
+         * The count of entries read.
+         */
+        private long entries;
+
+        /**
+         * The count of valid entries.
+         */
+        private long valid;
+
+        /**
+         * The count of entries dropped for an invalid location.
+         */
+        private long invalidLocations;
+
+        /**
+         * The count of entries dropped for an unknown feature.
+         */
+        private long invalidFeatures;
+
+        /**
+         * The count of tags that could not be interpreted.
+         */
+        private long malformed;
+
+        /**
+         * The count of entries that replaced an entry buffered at the same location.
+         */
+        private long duplicates;
+
+        /**
+         * The packed positions of evicted chunks, or {@code null} if the file has
+         * none.
+         */
+        private @Nullable long[] spilled;
+
+        /**
+         * The count of chunk records written.
+         */
+        private int records;
+
+        /**
+         * The count of valid entries per feature ID.
+         */
+        private long[] distribution = new long[64];
+
+        /**
+         * Constructs a new compactor.
+         *
+         * @param options       The options of the tool.
+         * @param knownFeatures The feature IDs that are valid, or {@code null}.
+         */
+        private Compactor(@NotNull final Options options, @Nullable final BitSet knownFeatures) {
+            this.options = options;
+            this.knownFeatures = knownFeatures;
+        }
+
+        /**
+         * Accept a single entry.
+         *
+         * @param x    The x coordinate of the block.
+         * @param y    The y coordinate of the block.
+         * @param z    The z coordinate of the block.
+         * @param data The feature bits of the block.
+         * @throws IOException if an I/O error occurs.
+         */
+        private final void accept(final int x, final int y, final int z, final long[] data) throws IOException {
+            entries++;
+
+            if (!MagicalFarmDataFormat.isValidLocation(x, y, z, options.minY, options.maxY)) {
+                invalidLocations++;
+                return;
+            }
+
+            // Trim trailing empty words, the same as BitSet#toLongArray
+            final var features = BitSet.valueOf(data);
+            if (knownFeatures != null) {
+                final var unknown = (BitSet) features.clone();
+                unknown.andNot(knownFeatures);
+                if (!unknown.isEmpty()) {
+                    invalidFeatures++;
+                    return;
+                }
+            }
+
+            valid++;
+            for (var featureID = features.nextSetBit(0); featureID >= 0; featureID = features
+                    .nextSetBit(featureID + 1)) {
+                if (featureID >= distribution.length) {
+                    distribution = Arrays.copyOf(distribution, Math.max(featureID + 1, distribution.length * 2));
+                }
+
+                distribution[featureID]++;
+            }
+
+            if (output == null) {
+                return;
+            }
+
+            // Group by chunk, entries of the same location replace each other
+            final var block = MagicalFarmDataFormat.packBlock(x, y, z);
+            final var buffer = buffers.computeIfAbsent(MagicalFarmDataFormat.chunkOf(block),
+                    key -> new LinkedHashMap<>());
+            if (buffer.put(block, features.toLongArray()) != null) {
+                duplicates++;
+            } else {
+                buffered++;
+            }
+
+            // Write the least recently used chunks once the buffer is full
+            while (buffered > options.buffer) {
+                final var eldest = buffers.entrySet().iterator().next();
+                buffers.remove(eldest.getKey());
+                flush(eldest.getKey(), eldest.getValue());
+            }
+        }
+
+        /**
+         * Write all buffered chunks.
+         *
+         * @throws IOException if an I/O error occurs.
+         */
+        private final void flushAll() throws IOException {
+            if (output == null) {
+                return;
+            }
+
+            for (final var entry : new ArrayList<>(buffers.entrySet())) {
+                flush(entry.getKey(), entry.getValue());
+            }
+
+            buffers.clear();
+        }
+
+        /**
+         * Write a single chunk record.
+         *
+         * @param chunk  The packed position of the chunk.
+         * @param blocks The blocks of the chunk and their feature bits.
+         * @throws IOException if an I/O error occurs.
+         */
+        private final void flush(final long chunk, @NotNull final Map<Long, long[]> blocks) throws IOException {
+            buffered -= blocks.size();
+
+            // Group the blocks by section, the palette of a section is in the order of first use
+            final var sections = new TreeMap<Integer, Map<BitSet, List<Integer>>>();
+            for (final var entry : blocks.entrySet()) {
+                final long block = entry.getKey();
+                final var x = MagicalFarmDataFormat.unpackX(block);
+                final var y = MagicalFarmDataFormat.unpackY(block);
+                final var z = MagicalFarmDataFormat.unpackZ(block);
+                sections.computeIfAbsent(y >> 4, key -> new LinkedHashMap<>())
+                        .computeIfAbsent(BitSet.valueOf(entry.getValue()), key -> new ArrayList<>())
+                        .add(MagicalFarmDataFormat.getCell(x, y, z));
+            }
+
+            // The record is an element of a list, so it has no header
+            output.writeHeader(NbtInput.LONG, MagicalFarmDataFormat.CHUNK_POS);
+            output.writeLong(chunk);
+            output.writeHeader(NbtInput.LIST, MagicalFarmDataFormat.SECTIONS);
+            output.writeByte(NbtInput.COMPOUND);
+            output.writeInt(sections.size());
+            for (final var section : sections.entrySet()) {
+                final var entries = section.getValue();
+                var words = 1;
+                for (final var features : entries.keySet()) {
+                    words = Math.max(words, features.toLongArray().length);
+                }
+
+                final var palette = new long[entries.size() * words];
+                final var bits = MagicalFarmDataFormat.getIndexBits(entries.size());
+                final var data = new long[MagicalFarmDataFormat.getDataLength(bits)];
+                var index = 0;
+                for (final var entry : entries.entrySet()) {
+                    final var features = entry.getKey().toLongArray();
+                    System.arraycopy(features, 0, palette, index * words, features.length);
+                    index++;
+                    for (final int cell : entry.getValue()) {
+                        MagicalFarmDataFormat.setIndex(data, bits, cell, index);
+                    }
+                }
+
+                output.writeHeader(NbtInput.INT, MagicalFarmDataFormat.SECTION_Y);
+                output.writeInt(section.getKey());
+                output.writeHeader(NbtInput.INT, MagicalFarmDataFormat.WORDS);
+                output.writeInt(words);
+                output.writeHeader(NbtInput.LONG_ARRAY, MagicalFarmDataFormat.PALETTE);
+                output.writeLongArray(palette, palette.length);
+                output.writeHeader(NbtInput.LONG_ARRAY, MagicalFarmDataFormat.DATA);
+                output.writeLongArray(data, data.length);
+                output.writeByte(NbtInput.END);
+            }
+
+            output.writeByte(NbtInput.END);
+            records++;
+        }
+    }
+
+    /**
+     * The tags of a section of a chunk record.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    private static final class Section {
+        /**
+         * The y coordinate of the section.
+         */
+        private int y;
+
+        /**
+         * The count of feature words of each palette entry.
+         */
+        private int words = -1;
+
+        /**
+         * The flattened palette, or {@code null} if the section has none.
+         */
+        private @Nullable long[] palette;
+
+        /**
+         * The packed palette indices, or {@code null} if the section has none.
+         */
+        private @Nullable long[] data;
+    }
+
+    /**
+     * The options of the tool.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    private static final class Options {
+        /**
+         * The {@code level.dat} to read feature IDs from.
+         */
+        @Nullable
+        private Path levelDat;
+
+        /**
+         * The count of valid feature IDs, or a negative value to read them from
+         * {@code level.dat}.
+         */
+        private int features = -1;
+
+        /**
+         * The minimum valid y coordinate, inclusive.
+         */
+        private int minY = -64;
+
+        /**
+         * The maximum valid y coordinate, exclusive.
+         */
+        private int maxY = 320;
+
+        /**
+         * The count of entries buffered to group them by chunk.
+         */
+        private long buffer = 1 << 18;
+
+        /**
+         * The file to write the result to.
+         */
+        @Nullable
+        private Path output;
+
+        /**
+         * Whether the original file should not be kept.
+         */
+        private boolean noBackup;
+
+        /**
+         * Parse the options from the specified arguments.
+         *
+         * @param args  The command-line arguments.
+         * @param start The index of the first option.
+         * @return The parsed options.
+         * @throws IllegalArgumentException if an option is unknown or malformed.
+         */
+        private static final @NotNull Options parse(final String[] args, final int start) {
+            final var options = new Options();
+            for (var index = start; index < args.length; index++) {
+                final var option = args[index];
+                if (option.equals("--no-backup")) {
+                    options.noBackup = true;
+                    continue;
+                }
+
+                if (index + 1 >= args.length) {
+                    throw new IllegalArgumentException("missing value of " + option);
+                }
+
+                final var value = args[++index];
+                switch (option) {
+                    case "--level-dat" -> options.levelDat = Path.of(value);
+                    case "--features" -> options.features = Integer.parseInt(value);
+                    case "--min-y" -> options.minY = Integer.parseInt(value);
+                    case "--max-y" -> options.maxY = Integer.parseInt(value);
+                    case "--buffer" -> options.buffer = Math.max(1, Long.parseLong(value));
+                    case "--output" -> options.output = Path.of(value);
+                    default -> throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+
+            return options;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.tools;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A streaming reader of the named binary tag format, which reads tags one by
+ * one without building a tree in memory. This class does not depend on
+ * Minecraft, so it can be used without starting the game.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+final class NbtInput implements AutoCloseable {
+    /**
+     * The type of the tag that ends a compound.
+     */
+    static final int END = 0;
+
+    /**
+     * The type of a byte tag.
+     */
+    static final int BYTE = 1;
+
+    /**
+     * The type of a short tag.
+     */
+    static final int SHORT = 2;
+
+    /**
+     * The type of an integer tag.
+     */
+    static final int INT = 3;
+
+    /**
+     * The type of a long tag.
+     */
+    static final int LONG = 4;
+
+    /**
+     * The type of a float tag.
+     */
+    static final int FLOAT = 5;
+
+    /**
+     * The type of a double tag.
+     */
+    static final int DOUBLE = 6;
+
+    /**
+     * The type of a byte array tag.
+     */
+    static final int BYTE_ARRAY = 7;
+
+    /**
+     * The type of a string tag.
+     */
+    static final int STRING = 8;
+
+    /**
+     * The type of a list tag.
+     */
+    static final int LIST = 9;
+
+    /**
+     * The type of a compound tag.
+     */
+    static final int COMPOUND = 10;
+
+    /**
+     * The type of an integer array tag.
+     */
+    static final int INT_ARRAY = 11;
+
+    /**
+     * The type of a long array tag.
+     */
+    static final int LONG_ARRAY = 12;
+
+    /**
+     * The stream that counts the bytes read from the underlying stream.
+     */
+    private final CountingInputStream counter;
+
+    /**
+     * The data input the tags are read from.
+     */
+    private final DataInputStream input;
+
+    /**
+     * Constructs a new reader on the specified uncompressed stream.
+     *
+     * @param input The uncompressed stream to read from.
+     */
+    NbtInput(@NotNull final InputStream input) {
+        counter = new CountingInputStream(input);
+        this.input = new DataInputStream(counter);
+    }
+
+    /**
+     * Get the count of bytes read so far.
+     *
+     * @return The count of bytes read so far.
+     */
+    final long getBytesRead() {
+        return counter.count;
+    }
+
+    /**
+     * Read the type of the next tag.
+     *
+     * @return The type of the next tag.
+     * @throws IOException if an I/O error occurs.
+     */
+    final int readType() throws IOException {
+        return input.readUnsignedByte();
+    }
+
+    /**
+     * Read a string, which is also the encoding of tag names.
+     *
+     * @return The string.
+     * @throws IOException if an I/O error occurs.
+     */
+    final @NotNull String readString() throws IOException {
+        return input.readUTF();
+    }
+
+    /**
+     * Read the payload of an integer tag.
+     *
+     * @return The integer.
+     * @throws IOException if an I/O error occurs.
+     */
+    final int readInt() throws IOException {
+        return input.readInt();
+    }
+
+    /**
+     * Read the payload of a long tag.
+     *
+     * @return The long.
+     * @throws IOException if an I/O error occurs.
+     */
+    final long readLong() throws IOException {
+        return input.readLong();
+    }
+
+    /**
+     * Read the payload of a long array tag.
+     *
+     * @param maxLength The maximum length accepted, which bounds the memory used.
+     * @return The long array.
+     * @throws IOException if an I/O error occurs or the array is longer than the
+     *                     maximum length.
+     */
+    final long[] readLongArray(final int maxLength) throws IOException {
+        final var length = input.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Long array of length " + length + " exceeds the limit of " + maxLength);
+        }
+
+        final var array = new long[length];
+        for (var index = 0; index < length; index++) {
+            array[index] = input.readLong();
+        }
+
+        return array;
+    }
+
+    /**
+     * Skip the payload of a tag of the specified type.
+     *
+     * @param type The type of the tag.
+     * @throws IOException if an I/O error occurs or the type is unknown.
+     */
+    final void skip(final int type) throws IOException {
+        switch (type) {
+            case BYTE -> skipFully(1);
+            case SHORT -> skipFully(2);
+            case INT, FLOAT -> skipFully(4);
+            case LONG, DOUBLE -> skipFully(8);
+            case BYTE_ARRAY -> skipFully(input.readInt());
+            case STRING -> skipFully(input.readUnsignedShort());
+            case LIST -> {
+                final var elementType = readType();
+                final var length = input.readInt();
+                for (var index = 0; index < length; index++) {
+                    skip(elementType);
+                }
+            }
+            case COMPOUND -> {
+                for (var entryType = readType(); entryType != END; entryType = readType()) {
+                    skipFully(input.readUnsignedShort());
+                    skip(entryType);
+                }
+            }
+            case INT_ARRAY -> skipFully(input.readInt() * 4L);
+            case LONG_ARRAY -> skipFully(input.readInt() * 8L);
+            default -> throw new IOException("Unknown tag type: " + type);
+        }
+    }
+
+    /**
+     * Copy the payload of a tag of the specified type to the specified output.
+     *
+     * @param type   The type of the tag.
+     * @param output The output to copy to.
+     * @throws IOException if an I/O error occurs or the type is unknown.
+     */
+    final void copy(final int type, @NotNull final NbtOutput output) throws IOException {
+        switch (type) {
+            case BYTE -> output.writeByte(input.readByte());
+            case SHORT -> output.writeShort(input.readShort());
+            case INT -> output.writeInt(input.readInt());
+            case FLOAT -> output.writeInt(input.readInt());
+            case LONG, DOUBLE -> output.writeLong(input.readLong());
+            case BYTE_ARRAY -> {
+                final var length = input.readInt();
+                output.writeInt(length);
+                for (var index = 0; index < length; index++) {
+                    output.writeByte(input.readByte());
+                }
+            }
+            case STRING -> output.writeString(input.readUTF());
+            case LIST -> {
+                final var elementType = readType();
+                final var length = input.readInt();
+                output.writeByte(elementType);
+                output.writeInt(length);
+                for (var index = 0; index < length; index++) {
+                    copy(elementType, output);
+                }
+            }
+            case COMPOUND -> {
+                for (var entryType = readType(); entryType != END; entryType = readType()) {
+                    output.writeHeader(entryType, input.readUTF());
+                    copy(entryType, output);
+                }
+
+                output.writeByte(END);
+            }
+            case INT_ARRAY -> {
+                final var length = input.readInt();
+                output.writeInt(length);
+                for (var index = 0; index < length; index++) {
+                    output.writeInt(input.readInt());
+                }
+            }
+            case LONG_ARRAY -> {
+                final var length = input.readInt();
+                output.writeInt(length);
+                for (var index = 0; index < length; index++) {
+                    output.writeLong(input.readLong());
+                }
+            }
+            default -> throw new IOException("Unknown tag type: " + type);
+        }
+    }
+
+    /**
+     * Skip exactly the specified count of bytes.
+     *
+     * @param count The count of bytes to skip.
+     * @throws IOException if an I/O error occurs or the stream ends early.
+     */
+    private final void skipFully(final long count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Negative length: " + count);
+        }
+
+        var remaining = count;
+        while (remaining > 0) {
+            final var skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                // Some streams refuse to skip, fall back to reading
+                if (input.read() < 0) {
+                    throw new EOFException();
+                }
+
+                remaining--;
+            } else {
+                remaining -= skipped;
+            }
+        }
+    }
+
+    @Override
+    public final void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * An input stream that counts the bytes read from the underlying stream.
+     *
+     * @author Heckerpowered
+     */
+    @ParametersAreNonnullByDefault
+    private static final class CountingInputStream extends FilterInputStream {
+        /**
+         * The count of bytes read so far.
+         */
+        private long count;
+
+        /**
+         * Constructs a new counting stream on the specified stream.
+         *
+         * @param input The underlying stream.
+         */
+        private CountingInputStream(@NotNull final InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public final int read() throws IOException {
+            final var value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+
+            return value;
+        }
+
+        @Override
+        public final int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final var read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+
+            return read;
+        }
+
+        @Override
+        public final long skip(final long length) throws IOException {
+            final var skipped = super.skip(length);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
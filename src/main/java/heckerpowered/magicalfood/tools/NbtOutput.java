@@ -0,0 +1,155 @@
+/**
+* Copyright (C) 2022 Heckerpowered Corporation
+*
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+* and associated documentation files (the “Software”), to deal in the Software without
+* restriction, including without limitation the rights to use, copy, modify, merge, publish,
+* distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the
+* Software is furnished to do so, subject to the following conditions:
+*
+* The above copyright notice and this permission notice shall be included in all copies or
+* substantial portions of the Software.
+*
+* THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+* BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+* NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+* DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+* FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+package heckerpowered.magicalfood.tools;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A streaming writer of the named binary tag format, the counterpart of
+ * {@link NbtInput}. Tags are written as they come, so the caller is
+ * responsible for writing a well-formed structure.
+ *
+ * @author Heckerpowered
+ */
+@ParametersAreNonnullByDefault
+final class NbtOutput implements AutoCloseable {
+    /**
+     * The data output the tags are written to.
+     */
+    private final DataOutputStream output;
+
+    /**
+     * Constructs a new writer on the specified uncompressed stream.
+     *
+     * @param output The uncompressed stream to write to.
+     */
+    NbtOutput(@NotNull final OutputStream output) {
+        this.output = new DataOutputStream(output);
+    }
+
+    /**
+     * Write the type and the name of a named tag, the payload should be written
+     * right after.
+     *
+     * @param type The type of the tag.
+     * @param name The name of the tag.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeHeader(final int type, @NotNull final String name) throws IOException {
+        output.writeByte(type);
+        output.writeUTF(name);
+    }
+
+    /**
+     * Write a byte, which is also the encoding of tag types.
+     *
+     * @param value The byte.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeByte(final int value) throws IOException {
+        output.writeByte(value);
+    }
+
+    /**
+     * Write the payload of a short tag.
+     *
+     * @param value The short.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeShort(final int value) throws IOException {
+        output.writeShort(value);
+    }
+
+    /**
+     * Write the payload of an integer tag.
+     *
+     * @param value The integer.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeInt(final int value) throws IOException {
+        output.writeInt(value);
+    }
+
+    /**
+     * Write the payload of a long tag.
+     *
+     * @param value The long.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeLong(final long value) throws IOException {
+        output.writeLong(value);
+    }
+
+    /**
+     * Write the payload of a string tag.
+     *
+     * @param value The string.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeString(@NotNull final String value) throws IOException {
+        output.writeUTF(value);
+    }
+
+    /**
+     * Write the payload of a long array tag from a part of the specified array.
+     *
+     * @param array  The array.
+     * @param length The count of longs to write from the start of the array.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeLongArray(final long[] array, final int length) throws IOException {
+        output.writeInt(length);
+        for (var index = 0; index < length; index++) {
+            output.writeLong(array[index]);
+        }
+    }
+
+    /**
+     * Write already encoded bytes.
+     *
+     * @param bytes The encoded bytes.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeRaw(final byte[] bytes) throws IOException {
+        output.write(bytes);
+    }
+
+    /**
+     * Write all remaining bytes of the specified stream, which contains already
+     * encoded tags.
+     *
+     * @param input The stream of encoded bytes.
+     * @throws IOException if an I/O error occurs.
+     */
+    final void writeRaw(@NotNull final InputStream input) throws IOException {
+        input.transferTo(output);
+    }
+
+    @Override
+    public final void close() throws IOException {
+        output.close();
+    }
+}